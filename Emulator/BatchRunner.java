@@ -0,0 +1,198 @@
+package Emulator;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+
+/**
+ * Runs a library of ROMs for a number of frames each, on a pool of threads
+ * with one per processor by default, each ROM in its own EmulatorSession. A
+ * CSV line is written for every run with the CRC32 of its last frame, the
+ * instructions and clock cycles run and the time it took, so two runs of the
+ * library can be compared line by line.
+ *
+ * Usage: BatchRunner [-core=name|all] [-frames=n] [-threads=n] [-out=file]
+ *                    rom|directory...
+ *
+ * Directories are searched for .gb and .gbc files, and with -core=all every
+ * ROM is run on each core. The lines are in the order the ROMs were given,
+ * whatever order the runs finish in. The CSV is written to batch.csv unless
+ * another file is given, the messages of the runs go to standard output.
+ */
+public class BatchRunner {
+   static final String CSV_HEADER = "rom,core,frames,instructions,cycles,frameCrc,wallMillis,error";
+
+   /** A run of one ROM on one core, and what it gave */
+   static class Run implements Callable<Run> {
+      String romFileName;
+      String coreName;
+      int numFrames;
+
+      long frames;
+      long instructions;
+      long cycles;
+      long frameCrc;
+      long wallTime;
+      String error;
+
+      Run(String romFileName, String coreName, int numFrames) {
+         this.romFileName = romFileName;
+         this.coreName = coreName;
+         this.numFrames = numFrames;
+      }
+
+      public Run call() {
+         long start = System.nanoTime();
+         try {
+            EmulatorSession session = new EmulatorSession(romFileName, coreName, false);
+            for (int r = 0; r < numFrames; r++) {
+               session.stepFrame();
+            }
+            frames = session.getFrames();
+            instructions = session.getDmgcpu().instrCount;
+            cycles = session.getCycles();
+            frameCrc = frameCrc(session);
+         } catch (RuntimeException e) {
+            error = e.toString();
+         }
+         wallTime = (System.nanoTime() - start) / 1000000;
+         return this;
+      }
+
+      String toCsv() {
+         return csvField(romFileName) + "," + coreName + "," + frames + "," + instructions + ","
+                  + cycles + "," + String.format("%08X", frameCrc) + "," + wallTime + ","
+                  + ((error != null) ? csvField(error) : "");
+      }
+   }
+
+   /** The CRC32 of the last frame of a session, over its RGB bytes */
+   static long frameCrc(EmulatorSession session) {
+      int[] frame = new int[EmulatorSession.WIDTH * EmulatorSession.HEIGHT];
+      session.getFramebuffer(frame);
+
+      byte[] rgb = new byte[frame.length * 3];
+      for (int r = 0; r < frame.length; r++) {
+         rgb[r * 3] = (byte) (frame[r] >> 16);
+         rgb[r * 3 + 1] = (byte) (frame[r] >> 8);
+         rgb[r * 3 + 2] = (byte) frame[r];
+      }
+      CRC32 crc = new CRC32();
+      crc.update(rgb);
+      return crc.getValue();
+   }
+
+   /** Quote a CSV field when it holds a comma, a quote or a line break */
+   static String csvField(String s) {
+      if ((s.indexOf(',') == -1) && (s.indexOf('"') == -1) && (s.indexOf('\n') == -1)) {
+         return s;
+      }
+      return "\"" + s.replace("\"", "\"\"") + "\"";
+   }
+
+   /** Add the ROM files in a file or directory, directories in name order */
+   static void findRoms(File file, List<String> roms) {
+      if (file.isDirectory()) {
+         File[] files = file.listFiles();
+         if (files != null) {
+            Arrays.sort(files);
+            for (File f : files) {
+               findRoms(f, roms);
+            }
+         }
+      } else {
+         String name = file.getName().toLowerCase();
+         if (name.endsWith(".gb") || name.endsWith(".gbc")) {
+            roms.add(file.getPath());
+         }
+      }
+   }
+
+   /**
+    * Run the ROMs on each of the cores with the given number of threads, and
+    * write a CSV line for each run to out as they are done, in order
+    */
+   public static void runAll(List<String> roms, String[] cores, int numFrames, int threads,
+            PrintWriter out) throws InterruptedException {
+      ExecutorService pool = Executors.newFixedThreadPool(threads);
+      List<Future<Run>> runs = new ArrayList<Future<Run>>();
+      for (String rom : roms) {
+         for (String core : cores) {
+            runs.add(pool.submit(new Run(rom, core, numFrames)));
+         }
+      }
+      pool.shutdown();
+
+      out.println(CSV_HEADER);
+      for (Future<Run> run : runs) {
+         try {
+            out.println(run.get().toCsv());
+         } catch (ExecutionException e) {
+            // Errors are kept in the run, only an Error from the JVM gets here
+            throw new RuntimeException(e.getCause());
+         }
+         out.flush();
+      }
+   }
+
+   public static void main(String[] args) throws IOException, InterruptedException {
+      String[] cores = { Dmgcpu.CORE_NAMES[0] };
+      int frames = 3600;
+      int threads = Runtime.getRuntime().availableProcessors();
+      String outFileName = "batch.csv";
+
+      int first = 0;
+      for (; (first < args.length) && args[first].startsWith("-"); first++) {
+         String option = args[first];
+         if (option.startsWith("-core=")) {
+            String name = option.substring(6);
+            cores = name.equals("all") ? Dmgcpu.CORE_NAMES : new String[] { name };
+         } else if (option.startsWith("-frames=")) {
+            frames = Integer.parseInt(option.substring(8));
+         } else if (option.startsWith("-threads=")) {
+            threads = Integer.parseInt(option.substring(9));
+         } else if (option.startsWith("-out=")) {
+            outFileName = option.substring(5);
+         } else {
+            System.out.println("Unknown option " + option);
+            return;
+         }
+      }
+      if (first >= args.length) {
+         System.out.println("Usage: BatchRunner [-core=name|all] [-frames=n] [-threads=n] "
+                  + "[-out=file] rom|directory...");
+         return;
+      }
+      for (String core : cores) {
+         if (!Arrays.asList(Dmgcpu.CORE_NAMES).contains(core)) {
+            System.out.println("Unknown CPU core " + core + ", the cores are "
+                     + Arrays.toString(Dmgcpu.CORE_NAMES));
+            return;
+         }
+      }
+
+      List<String> roms = new ArrayList<String>();
+      for (int r = first; r < args.length; r++) {
+         findRoms(new File(args[r]), roms);
+      }
+
+      // The debugging lines of every load and reset would bury the errors
+      Util.setDebugLog(false);
+      PrintWriter out = new PrintWriter(outFileName);
+      long start = System.currentTimeMillis();
+      runAll(roms, cores, frames, threads, out);
+      long wallTime = System.currentTimeMillis() - start;
+      out.close();
+      System.out.println("Ran " + roms.size() * cores.length + " games in " + wallTime + " ms on "
+               + threads + " threads, wrote " + outFileName);
+   }
+}
@@ -0,0 +1,72 @@
+package Emulator;
+
+/**
+ * Keeps the sound in a ring buffer of 16-bit stereo samples, for the program
+ * running the emulator to take with drain(), instead of playing it. A frame
+ * gets the samples of the time a frame takes on the hardware, so a second of
+ * emulated time gives a second of sound whatever the speed it runs at.
+ * Nothing is allocated once it is created.
+ */
+class BufferedSoundChip extends SoundChip {
+   /** Clock cycles of a frame and per second, at normal speed */
+   private static final long CYCLES_PER_FRAME = 70224;
+   private static final long CYCLES_PER_SECOND = 4194304;
+
+   /** The samples not drained yet, left and right interleaved */
+   private short[] samples;
+   private int readPos = 0;
+   private int count = 0;
+
+   /** The 8-bit samples of the frame being mixed */
+   private byte[] frame;
+
+   /** Remainder of the stereo samples due for the frames so far, in cycles */
+   private long sampleCycles = 0;
+
+   /** Create a buffer holding up to the given number of milliseconds of sound */
+   public BufferedSoundChip(int rate, int bufferLength) {
+      setSampleRate(rate);
+      bufferLengthMsec = bufferLength;
+      samples = new short[(int) ((long) rate * bufferLength / 1000) * 2];
+      frame = new byte[(int) (rate * CYCLES_PER_FRAME / CYCLES_PER_SECOND + 1) * 2];
+      soundEnabled = true;
+   }
+
+   /**
+    * Mix a frame of sound into the buffer. When it is full, the oldest samples
+    * are dropped
+    */
+   public void outputSound() {
+      sampleCycles += sampleRate * CYCLES_PER_FRAME;
+      int numSamples = (int) (sampleCycles / CYCLES_PER_SECOND) * 2;
+      sampleCycles %= CYCLES_PER_SECOND;
+
+      for (int r = 0; r < numSamples; r++) {
+         frame[r] = 0;
+      }
+      mix(frame, numSamples);
+
+      for (int r = 0; r < numSamples; r++) {
+         if (count == samples.length) {
+            readPos = (readPos + 1) % samples.length;
+            count--;
+         }
+         samples[(readPos + count) % samples.length] = (short) (frame[r] << 8);
+         count++;
+      }
+   }
+
+   /**
+    * Move the samples made since the last call into dst, as many as fit.
+    * Returns the number of values written, two for each stereo sample
+    */
+   public int drain(short[] dst) {
+      int n = Math.min(count, dst.length) & ~1;
+      int first = Math.min(n, samples.length - readPos);
+      System.arraycopy(samples, readPos, dst, 0, first);
+      System.arraycopy(samples, 0, dst, first, n - first);
+      readPos = (readPos + n) % samples.length;
+      count -= n;
+      return n;
+   }
+}
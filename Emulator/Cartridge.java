@@ -111,6 +111,9 @@ class Cartridge {
    /** Contains the RAM on the cartridge */
    public byte[] ram = new byte[0x10000];
 
+   /** Pages of the RAM shared with snapshots */
+   SharedPages ramPages = new SharedPages(ram);
+
    /** Number of 16Kb ROM banks */
    int numBanks;
 
@@ -129,6 +132,9 @@ class Cartridge {
     */
    int savedBank = -1;
 
+   /** The CPU this cartridge is plugged into, told about ROM bank changes */
+   Dmgcpu dmgcpu;
+
    /**
     * The RAM bank number which is currently mapped at 0xA000 in CPU address
     * space
@@ -151,8 +157,16 @@ class Cartridge {
 
    /** Real time clock registers. Only used on MBC3 */
    int[] RTCReg = new int[5];
-   long realTimeStart;
-   long lastSecondIncrement;
+
+   /**
+    * Advance the real time clock by the time that has passed since the
+    * battery RAM was saved, when it is loaded. The clock only runs in
+    * emulated time otherwise
+    */
+   public static boolean rtcCatchUp = true;
+
+   /** Size of the real time clock data stored after the battery RAM */
+   static final int RTC_SAVE_SIZE = 48;
    String romIntFileName;
 
    /**
@@ -203,9 +217,9 @@ class Cartridge {
          } while (total > 0);
          is.close();
 
-         JavaBoy.debugLog("Loaded ROM '" + romFileName + "'.  " + numBanks + " banks, "
+         Util.debugLog("Loaded ROM '" + romFileName + "'.  " + numBanks + " banks, "
                   + (numBanks * 16) + "Kb.  " + getNumRAMBanks() + " RAM banks.");
-         JavaBoy.debugLog("Type: " + cartTypeTable[cartType] + " (" + JavaBoy.hexByte(cartType)
+         Util.debugLog("Type: " + cartTypeTable[cartType] + " (" + Util.hexByte(cartType)
                   + ")");
 
          if (!verifyChecksum() && (a instanceof Frame)) {
@@ -213,11 +227,7 @@ class Cartridge {
                      "It may not execute correctly.");
          }
 
-         if (!JavaBoy.runningAsApplet) {
-            loadBatteryRam();
-         }
-
-         // Set up the real time clock
+         // Set up the real time clock, the battery RAM may hold the saved one
          Calendar rightNow = Calendar.getInstance();
 
          int days = rightNow.get(Calendar.DAY_OF_YEAR);
@@ -231,65 +241,71 @@ class Cartridge {
          RTCReg[DAYS_LO] = days & 0x00FF;
          RTCReg[DAYS_HI] = (days & 0x01FF) >> 8;
 
-         realTimeStart = System.currentTimeMillis();
-         lastSecondIncrement = realTimeStart;
+         if (!runningAsApplet()) {
+            loadBatteryRam();
+         }
 
          cartridgeReady = true;
 
       } catch (IOException e) {
          System.out.println("Error opening ROM image '" + romFileName + "'!");
       } catch (IndexOutOfBoundsException e) {
-         new ModalDialog((Frame) a, "Error", "Loading the ROM image failed.",
-                  "The file is not a valid Gameboy ROM.");
+         if (a != null) {
+            new ModalDialog((Frame) a, "Error", "Loading the ROM image failed.",
+                     "The file is not a valid Gameboy ROM.");
+         } else {
+            System.out.println("Error loading ROM image '" + romFileName
+                     + "'! The file is not a valid Gameboy ROM.");
+         }
       }
    }
 
-   public void saveData(DataOutputStream sv, String directory) {
-      try {
-         sv.write(ram);
-         
-         sv.writeInt(pageStart);
-         sv.writeInt(currentBank);
-         sv.writeInt(savedBank);
-         sv.writeInt(ramBank);
-         sv.writeInt(ramPageStart);
-         
-         sv.writeBoolean(mbc1LargeRamMode);
-         sv.writeBoolean(ramEnabled);
-         sv.writeBoolean(disposed);
-         
-      } catch (IOException e) {
-         System.out.println("Dmgcpu.saveState\\Cartridge.saveData: Could not write to file " + directory);
-         System.out.println("Error Message: " + e.getMessage());
-         System.exit(-1);
-      }
+   /**
+    * True when running as an applet, which is then the component. A cartridge
+    * with no component is never part of one, and does not touch JavaBoy,
+    * which would load AWT
+    */
+   private boolean runningAsApplet() {
+      return (applet != null) && (applet instanceof JavaBoy);
    }
 
-   public void loadData(DataInputStream sv, String directory) {
-      try {
-         int size = ram.length;
-         if(sv.read(ram) != size){
-            System.out.println("Dmgcpu.loadState\\Cartridge.loadData: ram loaded has different size!");
-            System.exit(-1);
-         }
-         
-         pageStart = sv.readInt();
-         currentBank = sv.readInt();
-         savedBank = sv.readInt();
-         ramBank = sv.readInt();
-         ramPageStart = sv.readInt();
-         
-         mbc1LargeRamMode = sv.readBoolean();
-         ramEnabled = sv.readBoolean();
-         disposed = sv.readBoolean();
-         
-      } catch (IOException e) {
-         System.out.println("Dmgcpu.loadState\\Cartridge.loadData: Could not read file " + directory);
-         System.out.println("Error Message: " + e.getMessage());
-         System.exit(-1);
+   /** Copy the state into a snapshot */
+   void saveSnapshot(Snapshot s) {
+      s.romLength = rom.length;
+      s.romChecksum = getChecksum();
+      s.cartridgeRam = ramPages.snapshot();
+      s.currentBank = currentBank;
+      s.savedBank = savedBank;
+      s.ramBank = ramBank;
+      s.ramPageStart = ramPageStart;
+      s.mbc1LargeRamMode = mbc1LargeRamMode;
+      s.ramEnabled = ramEnabled;
+      s.rtc = RTCReg.clone();
+   }
+
+   /**
+    * Put back the state of a snapshot. It is checked first that the snapshot
+    * is of this game, nothing is changed when it is not
+    */
+   void loadSnapshot(Snapshot s) {
+      if ((s.romLength != rom.length) || (s.romChecksum != getChecksum())) {
+         throw new IllegalArgumentException("The snapshot is not of " + romFileName);
       }
+      ramPages.restore(s.cartridgeRam);
+      savedBank = s.savedBank;
+      ramBank = s.ramBank;
+      ramPageStart = s.ramPageStart;
+      mbc1LargeRamMode = s.mbc1LargeRamMode;
+      ramEnabled = s.ramEnabled;
+      System.arraycopy(s.rtc, 0, RTCReg, 0, RTCReg.length);
+      mapRom(s.currentBank);
    }
-   
+
+   /** The global checksum in the ROM header */
+   private int getChecksum() {
+      return (Util.unsign(rom[0x14E]) << 8) + Util.unsign(rom[0x14F]);
+   }
+
    public boolean needsResetEnable() {
       // System.out.println("Reset !");
       if (needsReset) {
@@ -305,31 +321,30 @@ class Cartridge {
       needsReset = true;
    }
 
-   public void update() {
-      // Update the realtime clock from the system time
-      long millisSinceLastUpdate = System.currentTimeMillis() - lastSecondIncrement;
-
-      while (millisSinceLastUpdate > 1000) {
-         millisSinceLastUpdate -= 1000;
-         RTCReg[SECONDS]++;
-         if (RTCReg[SECONDS] == 60) {
-            RTCReg[MINUTES]++;
-            RTCReg[SECONDS] = 0;
-            if (RTCReg[MINUTES] == 60) {
-               RTCReg[HOURS]++;
-               RTCReg[MINUTES] = 0;
-               if (RTCReg[HOURS] == 24) {
-                  if (RTCReg[DAYS_LO] == 255) {
-                     RTCReg[DAYS_LO] = 0;
-                     RTCReg[DAYS_HI] = 1;
-                  } else {
-                     RTCReg[DAYS_LO]++;
-                  }
-                  RTCReg[HOURS] = 0;
+   /** TRUE for the MBC3 cartridges, which have a real time clock */
+   boolean hasRtc() {
+      return (cartType >= 0x0F) && (cartType <= 0x13);
+   }
+
+   /** Advance the real time clock by one second */
+   void tickRtc() {
+      RTCReg[SECONDS]++;
+      if (RTCReg[SECONDS] == 60) {
+         RTCReg[MINUTES]++;
+         RTCReg[SECONDS] = 0;
+         if (RTCReg[MINUTES] == 60) {
+            RTCReg[HOURS]++;
+            RTCReg[MINUTES] = 0;
+            if (RTCReg[HOURS] == 24) {
+               if (RTCReg[DAYS_LO] == 255) {
+                  RTCReg[DAYS_LO] = 0;
+                  RTCReg[DAYS_HI] = 1;
+               } else {
+                  RTCReg[DAYS_LO]++;
                }
+               RTCReg[HOURS] = 0;
             }
          }
-         lastSecondIncrement = System.currentTimeMillis();
       }
    }
 
@@ -362,7 +377,7 @@ class Cartridge {
       if (bFormat == bNotCompressed) {
          try {
             romIntFileName = stripExtention(romFileName);
-            if (JavaBoy.runningAsApplet) {
+            if (runningAsApplet()) {
                return new java.net.URL(((Applet) (a)).getDocumentBase(), romFileName).openStream();
             } else {
                return new FileInputStream(new File(romFileName));
@@ -381,7 +396,7 @@ class Cartridge {
 
          try {
 
-            if (JavaBoy.runningAsApplet) {
+            if (runningAsApplet()) {
                zip = new java.util.zip.ZipInputStream(new java.net.URL(
                         ((Applet) (a)).getDocumentBase(), romFileName).openStream());
             } else {
@@ -403,13 +418,13 @@ class Cartridge {
             }
             // Show an error if no ROM file was found in the ZIP
             if (!bFoundGBROM) {
-               if (JavaBoy.runningAsApplet) {
+               if (runningAsApplet()) {
                   new ModalDialog((Frame) a, "Error", "No GBx ROM found!", "");
                }
                System.err.println("No GBx ROM found!");
                throw new java.io.IOException("ERROR");
             }
-            if (!JavaBoy.runningAsApplet) {
+            if (!runningAsApplet()) {
                System.out.println("Found " + romName);
             }
             return zip;
@@ -423,7 +438,7 @@ class Cartridge {
          System.out.println("Loading GZIP Compressed ROM");
          romIntFileName = stripExtention(romFileName);
          try {
-            if (JavaBoy.runningAsApplet) {
+            if (runningAsApplet()) {
                return new java.util.zip.GZIPInputStream(new java.net.URL(
                         ((Applet) (a)).getDocumentBase(), romFileName).openStream());
             } else {
@@ -487,11 +502,11 @@ class Cartridge {
          case 9:
             return "This ROM has no mapper.";
          case 1 /* MBC1 */:
-            return "MBC1: ROM bank " + JavaBoy.hexByte(currentBank) + " mapped to "
+            return "MBC1: ROM bank " + Util.hexByte(currentBank) + " mapped to "
                      + " 4000 - 7FFFF";
          case 2 /* MBC1+RAM */:
          case 3 /* MBC1+RAM+BATTERY */:
-            out = "MBC1: ROM bank " + JavaBoy.hexByte(currentBank) + " mapped to "
+            out = "MBC1: ROM bank " + Util.hexByte(currentBank) + " mapped to "
                      + " 4000 - 7FFFF.  ";
             if (mbc1LargeRamMode) {
                out = out + "Cartridge is in 16MBit ROM/8KByte RAM Mode.";
@@ -501,17 +516,17 @@ class Cartridge {
             return out;
          case 5:
          case 6:
-            return "MBC2: ROM bank " + JavaBoy.hexByte(currentBank) + " mapped to 4000 - 7FFF";
+            return "MBC2: ROM bank " + Util.hexByte(currentBank) + " mapped to 4000 - 7FFF";
 
          case 0x19:
          case 0x1C:
-            return "MBC5: ROM bank " + JavaBoy.hexByte(currentBank) + " mapped to 4000 - 7FFF";
+            return "MBC5: ROM bank " + Util.hexByte(currentBank) + " mapped to 4000 - 7FFF";
 
          case 0x1A:
          case 0x1B:
          case 0x1D:
          case 0x1E:
-            return "MBC5: ROM bank " + JavaBoy.hexByte(currentBank) + " mapped to 4000 - 7FFF";
+            return "MBC5: ROM bank " + Util.hexByte(currentBank) + " mapped to 4000 - 7FFF";
 
       }
       return "Unknown mapper.";
@@ -523,6 +538,70 @@ class Cartridge {
       // if (bankNo == 0) bankNo = 1;
       currentBank = bankNo;
       pageStart = 0x4000 * bankNo;
+      if (dmgcpu != null) {
+         dmgcpu.decodeCache.mapRom(bankNo);
+         mapRomPages();
+      }
+   }
+
+   /** Points the CPU memory map at the ROM and the mapped RAM bank */
+   void mapPages() {
+      dmgcpu.mapRead(0x0000, 0x4000, rom, 0);
+      mapRomPages();
+      mapRamPages();
+   }
+
+   private void mapRomPages() {
+      // banks past the end of the ROM are left to addressRead()
+      if ((pageStart >= 0) && (pageStart + 0x4000 <= rom.length)) {
+         dmgcpu.mapRead(0x4000, 0x4000, rom, pageStart);
+      } else {
+         dmgcpu.mapRead(0x4000, 0x4000, null, 0);
+      }
+   }
+
+   /**
+    * Maps the cartridge RAM bank. The RTC registers and RAM that ignores
+    * writes are left to addressRead() and addressWrite()
+    */
+   private void mapRamPages() {
+      boolean readable = true;
+      boolean writable;
+
+      switch (cartType) {
+         case 1: /* MBC1 */
+         case 2:
+         case 3:
+         case 5: /* MBC2 */
+         case 6:
+            writable = ramEnabled;
+            break;
+
+         case 0x0F:
+         case 0x10:
+         case 0x11:
+         case 0x12:
+         case 0x13: /* MBC3 */
+            readable = ramBank < 0x04;
+            writable = ramBank <= 0x03;
+            break;
+
+         case 0x19:
+         case 0x1A:
+         case 0x1B:
+         case 0x1C:
+         case 0x1D:
+         case 0x1E: /* MBC5 */
+            writable = true;
+            break;
+
+         default:
+            writable = false;
+            break;
+      }
+
+      dmgcpu.mapRead(0xA000, 0x2000, readable ? ram : null, ramPageStart);
+      dmgcpu.mapWrite(0xA000, 0x2000, writable ? ram : null, ramPageStart);
    }
 
    public void reset() {
@@ -538,7 +617,7 @@ class Cartridge {
    /** Restore the saved mapper state */
    public void restoreMapping() {
       if (savedBank != -1) {
-         System.out.println("- ROM Mapping restored to bank " + JavaBoy.hexByte(savedBank));
+         System.out.println("- ROM Mapping restored to bank " + Util.hexByte(savedBank));
          addressWrite(0x2000, savedBank);
          savedBank = -1;
       }
@@ -697,6 +776,10 @@ class Cartridge {
 
       }
 
+      if ((addr < 0x8000) && (dmgcpu != null)) {
+         // RAM may have been enabled or banked
+         mapRamPages();
+      }
    }
 
    public int getNumRAMBanks() {
@@ -727,6 +810,7 @@ class Cartridge {
       String saveRamFileName = romFileName;
       int numRamBanks;
 
+      ramPages.writtenAll();
       try {
          int dotPosition = romFileName.lastIndexOf('.');
 
@@ -743,9 +827,12 @@ class Cartridge {
          numRamBanks = getNumRAMBanks();
 
          if ((cartType == 3) || (cartType == 9) || (cartType == 0x1B) || (cartType == 0x1E)
-                  || (cartType == 0x10) || (cartType == 0x13)) {
+                  || (cartType == 0x0F) || (cartType == 0x10) || (cartType == 0x13)) {
             FileInputStream is = new FileInputStream(new File(saveRamFileName));
             is.read(ram, 0, numRamBanks * 8192);
+            if (hasRtc()) {
+               loadRtc(is);
+            }
             is.close();
             System.out.println("Read SRAM from '" + saveRamFileName + "'");
          }
@@ -782,6 +869,62 @@ class Cartridge {
     * Writes an image of battery RAM to disk, if the current cartridge mapper
     * supports it.
     */
+   /**
+    * Writes the real time clock after the battery RAM, in the layout most
+    * emulators use: the five registers and their latched copies as 32-bit
+    * little endian values, then the time of the save in seconds
+    */
+   private void saveRtc(OutputStream os) throws IOException {
+      byte[] data = new byte[RTC_SAVE_SIZE];
+
+      for (int r = 0; r < 5; r++) {
+         writeLittleEndian(data, r * 4, RTCReg[r], 4);
+         writeLittleEndian(data, 20 + r * 4, RTCReg[r], 4);
+      }
+      writeLittleEndian(data, 40, System.currentTimeMillis() / 1000, 8);
+      os.write(data);
+   }
+
+   /** Reads the real time clock saved by saveRtc(), if the file has one */
+   private void loadRtc(InputStream is) throws IOException {
+      byte[] data = new byte[RTC_SAVE_SIZE];
+      int total = 0;
+      int read;
+
+      while ((total < data.length) && ((read = is.read(data, total, data.length - total)) > 0)) {
+         total += read;
+      }
+      if (total != RTC_SAVE_SIZE) {
+         // saved before the clock was stored, keep the system time
+         return;
+      }
+
+      for (int r = 0; r < 5; r++) {
+         RTCReg[r] = (int) readLittleEndian(data, r * 4, 4);
+      }
+
+      if (rtcCatchUp) {
+         long elapsed = System.currentTimeMillis() / 1000 - readLittleEndian(data, 40, 8);
+         for (long second = 0; second < elapsed; second++) {
+            tickRtc();
+         }
+      }
+   }
+
+   private static void writeLittleEndian(byte[] data, int offset, long value, int length) {
+      for (int i = 0; i < length; i++) {
+         data[offset + i] = (byte) (value >> (i * 8));
+      }
+   }
+
+   private static long readLittleEndian(byte[] data, int offset, int length) {
+      long value = 0;
+      for (int i = 0; i < length; i++) {
+         value |= (long) Util.unsign(data[offset + i]) << (i * 8);
+      }
+      return value;
+   }
+
    public void saveBatteryRam() {
       String saveRamFileName = romFileName;
       int numRamBanks;
@@ -801,9 +944,12 @@ class Cartridge {
          }
 
          if ((cartType == 3) || (cartType == 9) || (cartType == 0x1B) || (cartType == 0x1E)
-                  || (cartType == 0x10) || (cartType == 0x13)) {
+                  || (cartType == 0x0F) || (cartType == 0x10) || (cartType == 0x13)) {
             FileOutputStream os = new FileOutputStream(new File(saveRamFileName));
             os.write(ram, 0, numRamBanks * 8192);
+            if (hasRtc()) {
+               saveRtc(os);
+            }
             os.close();
             System.out.println("Written SRAM to '" + saveRamFileName + "'");
          }
@@ -829,19 +975,19 @@ class Cartridge {
 
    /** Peforms saving of the battery RAM before the object is discarded */
    public void dispose() {
-      if (!JavaBoy.runningAsApplet) {
+      if (!runningAsApplet()) {
          saveBatteryRam();
       }
       disposed = true;
    }
 
    public boolean verifyChecksum() {
-      int checkSum = (JavaBoy.unsign(rom[0x14E]) << 8) + JavaBoy.unsign(rom[0x14F]);
+      int checkSum = (Util.unsign(rom[0x14E]) << 8) + Util.unsign(rom[0x14F]);
 
       int total = 0; // Calculate ROM checksum
       for (int r = 0; r < rom.length; r++) {
          if ((r != 0x14E) && (r != 0x14F)) {
-            total = (total + JavaBoy.unsign(rom[r])) & 0x0000FFFF;
+            total = (total + Util.unsign(rom[r])) & 0x0000FFFF;
          }
       }
 
@@ -864,7 +1010,7 @@ class Cartridge {
       cartName = new String(rom, 0x0134, 16);
       // Extract the game name from the cartridge header
 
-      // JavaBoy.debugLog(rom[0x14F]+ " "+ rom[0x14E]);
+      // Util.debugLog(rom[0x14F]+ " "+ rom[0x14E]);
 
       checksumOk = verifyChecksum();
 
@@ -887,7 +1033,7 @@ class Cartridge {
          infoString = infoString + "Checksum invalid!";
       }
 
-      JavaBoy.debugLog(infoString);
+      Util.debugLog(infoString);
    }
 
    /**
@@ -1019,7 +1165,7 @@ class WebSaveRAM implements Runnable, DialogListener {
       byte[] ram = cart.getBatteryRam();
 
       for (int r = 0; r < cart.getBatteryRamSize(); r++) {
-         saveData.append(JavaBoy.hexByte(JavaBoy.unsign(ram[r])));
+         saveData.append(Util.hexByte(Util.unsign(ram[r])));
       }
       // saveData = URLEncoder.encode("Hel\0lo");
 
@@ -1105,6 +1251,7 @@ class WebSaveRAM implements Runnable, DialogListener {
       } catch (Exception e) {
          throw e;
       }
+      cart.ramPages.writtenAll();
       cpu.reset();
    }
 }
@@ -0,0 +1,148 @@
+package Emulator;
+
+/**
+ * Measures how fast the CPU cores run a ROM, so changes to the cores and
+ * the instruction handlers can be compared on numbers that anyone can
+ * reproduce. Each configuration runs the frames once to warm up the JIT,
+ * then the given number of times, and the fastest run is reported in
+ * instructions per second, nanoseconds per instruction and times the speed
+ * of a real Game Boy. The sound, the screen, checkpoints and idle loop
+ * skipping are off, so every instruction is run.
+ *
+ * With -handlers, single instruction handlers are called instead, through
+ * the dispatch table of the strategy core with no fetch or events, and the
+ * time of a call is reported for each, next to that of NOP.
+ *
+ * Usage: CoreBenchmark [-frames=n] [-runs=n] rom
+ *        CoreBenchmark -handlers [-calls=n] [-runs=n] rom
+ */
+public class CoreBenchmark {
+   /** Clock cycles of a frame, and frames a second on a real Game Boy */
+   static final int CYCLES_PER_FRAME = 70224;
+   static final double FRAMES_PER_SECOND = 4194304.0 / CYCLES_PER_FRAME;
+
+   /** The configurations run, by name */
+   static final String[] CONFIGURATIONS = { "strategy, block cache", "strategy, decode cache",
+            "strategy, dispatch table", "strategy, shared handlers", "switch" };
+
+   /** The opcodes timed with -handlers, NOP first as the cost of a call */
+   static final int[] HANDLER_OPCODES = { 0x00, 0x09, 0x29, 0x39, 0x02, 0x22, 0x32 };
+   static final String[] HANDLER_NAMES = { "NOP", "ADD HL, BC", "ADD HL, HL", "ADD HL, SP",
+            "LD (BC), A", "LD (HL+), A", "LD (HL-), A" };
+
+   private String romFileName;
+   private int runs;
+
+   public CoreBenchmark(String romFileName, int runs) {
+      this.romFileName = romFileName;
+      this.runs = runs;
+   }
+
+   /** Create a CPU with no screen set up as the named configuration */
+   private Dmgcpu createCpu(String configuration) {
+      Dmgcpu cpu = new Dmgcpu(new Cartridge(romFileName, null), null, null);
+      cpu.setCore(configuration.startsWith("switch") ? "switch" : "strategy");
+      cpu.setBlockCache(configuration.endsWith("block cache"));
+      cpu.setDecodeCache(configuration.endsWith("decode cache"));
+      cpu.setExpandedDispatch(!configuration.endsWith("shared handlers"));
+      cpu.setCheckpointFrames(0);
+      cpu.setIdleLoopSkip(false);
+      cpu.reset();
+      return cpu;
+   }
+
+   /** Run every configuration for the given number of frames and report each */
+   public void runCores(int numFrames) {
+      System.out.println("Running " + numFrames + " frames, best of " + runs + " runs");
+      for (String configuration : CONFIGURATIONS) {
+         createCpu(configuration).runFrames(numFrames);
+
+         long best = Long.MAX_VALUE;
+         long instructions = 0;
+         for (int r = 0; r < runs; r++) {
+            Dmgcpu cpu = createCpu(configuration);
+            long start = System.nanoTime();
+            cpu.runFrames(numFrames);
+            long time = System.nanoTime() - start;
+            if (time < best) {
+               best = time;
+               instructions = cpu.instrCount;
+            }
+         }
+
+         System.out.println(String.format("%-26s %8.2f M instructions/s %7.2f ns/instruction %7.1fx real time",
+                  configuration, instructions * 1000.0 / best, (double) best / instructions,
+                  numFrames / FRAMES_PER_SECOND / (best / 1e9)));
+      }
+   }
+
+   /** Call each of the timed handlers the given number of times and report each */
+   public void runHandlers(int calls) {
+      Dmgcpu cpu = createCpu(CONFIGURATIONS[2]);
+      System.out.println("Calling each handler " + calls + " times, best of " + runs + " runs");
+      // every handler is seen by the call site before any is timed, or the
+      // first ones would be timed with a call the JIT has made direct
+      for (int opcode : HANDLER_OPCODES) {
+         timeHandler(cpu, opcode, calls);
+      }
+      for (int h = 0; h < HANDLER_OPCODES.length; h++) {
+         long best = Long.MAX_VALUE;
+         for (int r = 0; r < runs; r++) {
+            best = Math.min(best, timeHandler(cpu, HANDLER_OPCODES[h], calls));
+         }
+         System.out.println(String.format("%-12s %6.2f ns/call", HANDLER_NAMES[h],
+                  (double) best / calls));
+      }
+   }
+
+   /**
+    * Time calls of the handler of an opcode, in nanoseconds. The registers
+    * are set back every 256 calls, so the writes stay in work RAM
+    */
+   private long timeHandler(Dmgcpu cpu, int opcode, int calls) {
+      long start = System.nanoTime();
+      for (int c = 0; c < calls; c++) {
+         if ((c & 0xFF) == 0) {
+            cpu.pc = 0xC000;
+            cpu.setBC(0xC100);
+            cpu.setHL(0xC100);
+         }
+         cpu.instructionManager.execute(opcode, 0, 0, 0);
+      }
+      return System.nanoTime() - start;
+   }
+
+   public static void main(String[] args) {
+      String rom = null;
+      boolean handlers = false;
+      int numFrames = 3000;
+      int calls = 100000000;
+      int runs = 3;
+
+      for (String arg : args) {
+         if (arg.startsWith("-frames=")) {
+            numFrames = Integer.parseInt(arg.substring(8));
+         } else if (arg.startsWith("-calls=")) {
+            calls = Integer.parseInt(arg.substring(7));
+         } else if (arg.startsWith("-runs=")) {
+            runs = Integer.parseInt(arg.substring(6));
+         } else if (arg.equals("-handlers")) {
+            handlers = true;
+         } else {
+            rom = arg;
+         }
+      }
+      if (rom == null) {
+         System.out.println("Usage: CoreBenchmark [-frames=n] [-runs=n] rom");
+         System.out.println("       CoreBenchmark -handlers [-calls=n] [-runs=n] rom");
+         return;
+      }
+
+      CoreBenchmark benchmark = new CoreBenchmark(rom, runs);
+      if (handlers) {
+         benchmark.runHandlers(calls);
+      } else {
+         benchmark.runCores(numFrames);
+      }
+   }
+}
@@ -0,0 +1,16 @@
+package Emulator;
+
+/**
+ * An engine that runs the Game Boy instructions for the Dmgcpu. A core
+ * fetches the instruction at pc, executes it and adds its clock cycles, the
+ * Dmgcpu services the interrupts between instructions. Cores are selected
+ * with Dmgcpu.setCore(), so they can be compared on the same game
+ */
+public interface CpuCore {
+
+   /** Execute the instruction at pc */
+   public void step();
+
+   /** The name the core is selected by */
+   public String getName();
+}
@@ -25,9 +25,14 @@ Place - Suite 330, Boston, MA 02111-1307, USA.
 
 package Emulator;
 
+import Instructions.BlockCache;
+import Instructions.DecodeCache;
+import Instructions.FlagTables;
 import Instructions.InstructionManager;
+import Instructions.SwitchCore;
 import java.awt.*;
 import java.io.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 
 /** This is the main controlling class for the emulation
@@ -38,15 +43,39 @@ import java.io.*;
  */
 public class Dmgcpu {
    /** Registers: 8-bit */
-   
-   private final int a = 7, b = 0, c = 1, d = 2, e = 3;
+   public int a;
    public short newf;
-   
-   // b = 0, c = 1, d = 2, e = 3, a = 7
-   public int[] registers = new int[8];
    public int f;
-   /** Registers: 16-bit */
-   public int sp, pc, hl;
+
+   /**
+    * Operations whose flags have not been computed yet. With lazy flags the
+    * ALU handlers only record the operation and the index of its entry in
+    * FlagTables, and f is worked out by updateFlags() when something reads it
+    */
+   public static final int FLAGS_DONE = 0;
+   /** ADD A, nn and ADC A, nn */
+   public static final int FLAGS_ADD = 1;
+   /** ADD A, r and ADC A, r */
+   public static final int FLAGS_ADD_A = 2;
+   /** SUB, SBC and CP A, r */
+   public static final int FLAGS_SUB = 3;
+   /** CP nn (N is not set) */
+   public static final int FLAGS_CP = 4;
+   /** AND, OR and XOR, flagIndex holds the result */
+   public static final int FLAGS_LOGIC = 5;
+
+   /** The pending operation, and the FlagTables entry of its flags */
+   public int flagOp = FLAGS_DONE;
+   public int flagIndex;
+
+   /** Compute the ALU flags only when f is read, changed with setLazyFlagsMode() */
+   public boolean lazyFlagsEnable = true;
+   /**
+    * Registers: 16-bit. B, C, D, E, H and L are kept in their pairs, with B, D
+    * and H in the high byte. registerRead() and registerWrite() give the 8-bit
+    * view of every register
+    */
+   public int sp, pc, bc, de, hl;
 
    //private Stats stats = new Stats();
    /**
@@ -54,17 +83,40 @@ public class Dmgcpu {
     */
    public int instrCount = 0;
 
+   /** The number of clock cycles that have been executed since the last reset */
+   public long cycles = 0;
+
    public boolean interruptsEnabled = false;
-   boolean saveInterrupt = false;
-   boolean loadStateInterrupt = false;
-   boolean saveCheckpointInterrupt = false;
-   boolean loadCheckpointInterrupt = false;
+
+   /** Commands for queueCommand(), run at the end of the next frame */
+   public static final int SAVE_STATE = 0;
+   public static final int LOAD_STATE = 1;
+   public static final int SAVE_CHECKPOINT = 2;
+   public static final int LOAD_CHECKPOINT = 3;
+   public static final int TERMINATE = 4;
+
+   /**
+    * Commands posted by other threads (the UI, the debugger key handler),
+    * only taken by the emulation thread at frame boundaries
+    */
+   private ConcurrentLinkedQueue<Integer> commands = new ConcurrentLinkedQueue<Integer>();
+
+   /**
+    * Set when a frame ends with commands to run. They are run by execute()
+    * once the instruction in progress is over, as a state loaded in the
+    * middle of one (a HALT waiting for the next frame) would be changed by
+    * the rest of it. HALT stops waiting when this is set
+    */
+   public boolean commandsDue;
 
    /** Used to implement the IE delay slot */
    public int ieDelay = -1;
 
    boolean timaEnabled = false;
-   int instrsPerTima = 6000;
+   int cyclesPerTima = 1024;
+
+   /** Timer, DIV and LCD events, timed in executed instructions */
+   EventScheduler scheduler = new EventScheduler();
 
    /** TRUE when the CPU is currently processing an interrupt */
    public boolean inInterrupt = false;
@@ -76,6 +128,33 @@ public class Dmgcpu {
     */
    public boolean breakpointEnable = false;
 
+   /**
+    * Execute ROM code through the basic block cache. When disabled every
+    * instruction is fetched and decoded by the InstructionManager
+    */
+   public boolean blockCacheEnable = true;
+
+   /**
+    * Keep the decoded instruction of every address executed. When disabled
+    * the code outside cached blocks is fetched and decoded every time
+    */
+   public boolean decodeCacheEnable = true;
+
+   /**
+    * Skip the passes of idle loops (code polling LY or a variable set by an
+    * interrupt) until the next timer or LCD event
+    */
+   public boolean idleLoopSkipEnable = true;
+
+   /** Clock cycles skipped in idle loops since the last reset */
+   public long idleCyclesSkipped = 0;
+
+   /** Cycle count at which events were last run */
+   long lastEventTime = 0;
+
+   /** Instructions left to record before the superinstructions are chosen */
+   int fusionProfileLeft = 0;
+
    // Constants for flags register
 
    /** Zero flag */
@@ -87,19 +166,34 @@ public class Dmgcpu {
    /** Carry flag */
    public final short F_CARRY = 0x10;
 
-   public final short INSTRS_PER_VBLANK = 9000; /* 10000 */
+   /** Clock cycles per second of the CPU in normal speed mode */
+   public final int CYCLES_PER_SECOND = 4194304;
 
    /**
-    * Used to set the speed of the emulator. This controls how many instructions
-    * are executed for each horizontal line scanned on the screen. Multiply by
-    * 154 to find out how many instructions per frame.
+    * Clock cycles taken by each horizontal line scanned on the screen.
+    * Multiply by 154 to find out how many cycles per frame.
     */
-   final short BASE_INSTRS_PER_HBLANK = 60; /* 60 */
-   short INSTRS_PER_HBLANK = BASE_INSTRS_PER_HBLANK;
+   final short BASE_CYCLES_PER_HBLANK = 456;
+   short CYCLES_PER_HBLANK = BASE_CYCLES_PER_HBLANK;
 
    /** Used to set the speed of DIV increments */
-   final short BASE_INSTRS_PER_DIV = 33; /* 33 */
-   short INSTRS_PER_DIV = BASE_INSTRS_PER_DIV;
+   final short BASE_CYCLES_PER_DIV = 256;
+   short CYCLES_PER_DIV = BASE_CYCLES_PER_DIV;
+
+   /** Clock cycles between the seconds of the cartridge's real time clock */
+   int CYCLES_PER_RTC_TICK = CYCLES_PER_SECOND;
+
+   /** TRUE when the CPU runs at twice the normal clock speed */
+   boolean doubleSpeedCpu = false;
+
+   /**
+    * Wall clock time (in nanoseconds) and cycle count the speed throttle
+    * measures the emulated time from
+    */
+   long throttleTime, throttleCycles;
+
+   /** Running further behind than this (in nanoseconds) is not made up for */
+   final long MAX_THROTTLE_LAG = 100000000L;
 
    // Constants for interrupts
 
@@ -118,6 +212,43 @@ public class Dmgcpu {
    /** P10 - P13 (Joypad) interrupt */
    public final short INT_P10 = 0x10;
 
+   // Joypad buttons, in the order of the bits read from the joypad register
+
+   public static final int PAD_RIGHT = 0x01;
+   public static final int PAD_LEFT = 0x02;
+   public static final int PAD_UP = 0x04;
+   public static final int PAD_DOWN = 0x08;
+   public static final int PAD_A = 0x10;
+   public static final int PAD_B = 0x20;
+   public static final int PAD_SELECT = 0x40;
+   public static final int PAD_START = 0x80;
+
+   /**
+    * Interrupts that are both requested (IF) and enabled (IE), kept up to date
+    * by updateInterrupts() when either register changes
+    */
+   public int pendingInterrupts = 0;
+
+   /**
+    * The interrupt serviced for a value of pendingInterrupts, by priority:
+    * its bit and its vector, or -1 when only unused bits are set
+    */
+   private static final int[] INTERRUPT_BIT = new int[0x100];
+   private static final int[] INTERRUPT_VECTOR = new int[0x100];
+
+   static {
+      for (int pending = 0; pending < 0x100; pending++) {
+         INTERRUPT_VECTOR[pending] = -1;
+         for (int bit = 0; bit < 5; bit++) {
+            if ((pending & (1 << bit)) != 0) {
+               INTERRUPT_BIT[pending] = 1 << bit;
+               INTERRUPT_VECTOR[pending] = 0x40 + bit * 8;
+               break;
+            }
+         }
+      }
+   }
+
    String[] registerNames = { "B", "C", "D", "E", "H", "L", "(HL)", "A" };
    String[] aluOperations = { "ADD", "ADC", "SUB", "SBC", "AND", "XOR", "OR", "CP" };
    String[] shiftOperations = { "RLC", "RRC", "RL", "RR", "SLA", "SRA", "SWAP", "SRL" };
@@ -126,9 +257,32 @@ public class Dmgcpu {
    // 32Kb for GBC
    byte[] mainRam = new byte[0x8000];
 
+   /** Pages of the main RAM shared with snapshots */
+   SharedPages mainRamPages = new SharedPages(mainRam);
+
    // 256 bytes at top of RAM are used mainly for registers
    byte[] oam = new byte[0x100];
 
+   /**
+    * Memory map, by the high byte of the address. Pages of plain memory (ROM,
+    * work RAM, video RAM, cartridge RAM) point at the array that backs them
+    * and the offset of the page's address in it, the others (IO, OAM, MBC
+    * control, RTC...) are null and go through memoryRead() and memoryWrite()
+    */
+   private byte[][] readPages = new byte[0x100][];
+   private int[] readOffsets = new int[0x100];
+   private byte[][] writePages = new byte[0x100][];
+   private int[] writeOffsets = new int[0x100];
+
+   /**
+    * The arrays mapWrite() was given, writePages only holds them while the
+    * writes need not be seen by the slow path
+    */
+   private byte[][] writeArrays = new byte[0x100][];
+
+   /** Work RAM pages holding decoded code, writes to them go through the slow path */
+   private boolean[] codePages = new boolean[0x100];
+
    Cartridge cartridge;
    GraphicsChip graphicsChip;
    SoundChip soundChip;
@@ -136,28 +290,66 @@ public class Dmgcpu {
    public IoHandler ioHandler;
    Component applet;
    InstructionManager instructionManager;
+   BlockCache blockCache;
+   DecodeCache decodeCache;
+
+   /** Names of the cores setCore() knows, the first one is the default */
+   public static final String[] CORE_NAMES = { "strategy", "switch" };
+
+   /** The engine running the instructions */
+   CpuCore core;
    
    public boolean terminate;
    boolean running = false;
 
+   /**
+    * Set while a HALT waits for an interrupt but has stopped waiting to
+    * return or to run commands. The next step goes on with the wait rather
+    * than running the HALT again
+    */
+   boolean halted;
+
    public boolean gbcFeatures = true;
    boolean allowGbcFeatures = true;
    int gbcRamBank = 1;
 
-   //time between checkpoints in milliseconds 
-   long checkpointTime = 120000; 
-   
-   long initialTime;
+   /** Frames between checkpoints, about 120 seconds of emulated time, 0 for none */
+   int checkpointFrames = 7200;
+   int framesToCheckpoint = checkpointFrames;
+
+   /**
+    * Checkpoints written for each full one, the others only hold the pages
+    * of RAM written since the last full one
+    */
+   int checkpointsPerFull = 10;
+   int checkpointsToFull = 0;
+
+   /** Writes the save states and checkpoints, made on the first save */
+   private StateWriter stateWriter;
+
+   /** Frames run since the last reset */
+   long frames = 0;
+
+   /** Number of frames after which runFrames() returns */
+   long stopFrame = -1;
+
    /**
     * Create a CPU emulator with the supplied cartridge and game link objects.
-    * Both can be set up or changed later if needed
+    * Both can be set up or changed later if needed. Without a component to
+    * show the screen on, the frames are only drawn into the frame buffer of a
+    * FrameBufferGraphicsChip, there is no sound, the speed is not throttled
+    * and no AWT classes are loaded
     */
    public Dmgcpu(Cartridge c, GameLink l, Component a) {
       cartridge = c;
       gameLink = l;
       if (gameLink != null)
          gameLink.setDmgcpu(this);
-      graphicsChip = new TileBasedGraphicsChip(a, this);
+      if (a != null) {
+         graphicsChip = new TileBasedGraphicsChip(a, this);
+      } else {
+         graphicsChip = new FrameBufferGraphicsChip(this);
+      }
       checkEnableGbc();
       boolean java1point3 = true;
 
@@ -165,171 +357,233 @@ public class Dmgcpu {
 
       java1point3 = !((version.startsWith("1.0") || version.startsWith("1.1")));
 
-      if (java1point3) {
-         soundChip = new SoundChip();
+      if (java1point3 && (a != null)) {
+         soundChip = new LineSoundChip();
       }
       ioHandler = new IoHandler(this);
+      scheduleEvents(cycles + 1);
       applet = a;
-      initialTime = System.currentTimeMillis();
       instructionManager = new InstructionManager(this);
+      decodeCache = new DecodeCache(this, instructionManager);
+      blockCache = new BlockCache(this, instructionManager, decodeCache);
+      core = createCore(CORE_NAMES[0]);
+      cartridge.dmgcpu = this;
+      mapMemory();
    }
 
-   private void saveData(DataOutputStream sv, String directory) {
-      try {
-         // 8 bit registers
-         sv.write(registers[a]);
-         sv.write(registers[b]);
-         sv.write(registers[c]);
-         sv.write(registers[d]);
-         sv.write(registers[e]);
-         sv.write(f);
-
-         // 16 bit registers
-         sv.writeInt(sp);
-         sv.writeInt(pc);
-         sv.writeInt(hl);
-         
-         sv.writeInt(gbcRamBank);
-
-         // write ram 8Kb
-         sv.write(mainRam);
-
-         // write oam (used mainly for registers) 256 bytes
-         sv.write(oam);
-
-      } catch (IOException e) {
-         System.out.println("Dmgcpu.saveState.saveData: Could not write to file " + directory);
-         System.out.println("Error Message: " + e.getMessage());
-         System.exit(-1);
+   /**
+    * Save the state to the ROM file name with the given extension. Only a
+    * snapshot is taken here, it is compressed and written by the StateWriter
+    * on its own thread
+    */
+   public void saveState(String extension) {
+      if (stateWriter == null) {
+         stateWriter = new StateWriter();
       }
+      stateWriter.write(new File(cartridge.romFileName + extension), snapshot());
    }
 
-   private void loadData(DataInputStream sv, String directory) {
-      try {
-         int size = 0;
-         // 8 bit registers
-         registers[a] = sv.read();
-         registers[b] = sv.read();
-         registers[c] = sv.read();
-         registers[d] = sv.read();
-         registers[e] = sv.read();
-         f = sv.read();
-
-         // 16 bit registers
-         sp = sv.readInt();
-         pc = sv.readInt();
-         hl = sv.readInt();
-         
-         gbcRamBank = sv.readInt();
+   /**
+    * Save a checkpoint to the ROM file name with the extension .cksv, as a
+    * delta against the last full checkpoint except for every
+    * checkpointsPerFull one
+    */
+   public void saveCheckpoint() {
+      if (stateWriter == null) {
+         stateWriter = new StateWriter();
+      }
+      boolean full = (--checkpointsToFull <= 0);
+      if (full) {
+         checkpointsToFull = checkpointsPerFull;
+      }
+      stateWriter.writeCheckpoint(new File(cartridge.romFileName + ".cksv"), snapshot(), full);
+   }
 
-         // write ram 8Kb
-         size = mainRam.length;
-         if(sv.read(mainRam) != size){
-            System.out.println("Dmgcpu.loadState.loadData: mainRam loaded has different size!");
-            System.exit(-1);
-         }
+   /**
+    * Load the state saved to the ROM file name with the given extension,
+    * after the states still being written. Nothing is changed if the file
+    * cannot be read, or is not a save state of this game
+    */
+   public void loadState(String extension) {
+      String fileName = cartridge.romFileName + extension;
+      if (stateWriter != null) {
+         stateWriter.flush();
+      }
 
-         // write oam (used mainly for registers) 256 bytes
-         size = oam.length;
-         if(sv.read(oam) != size){
-            System.out.println("Dmgcpu.loadState.loadData: oam loaded has different size!");
-            System.exit(-1);
-         }
-         
-         saveInterrupt = false;
-         loadStateInterrupt = false;
-         saveCheckpointInterrupt = false;
-         loadCheckpointInterrupt = false;
-         
+      try {
+         restore(StateFile.read(new File(fileName)));
       } catch (IOException e) {
-         System.out.println("Dmgcpu.saveState.loadData: Could not read file " + directory);
+         System.out.println("Dmgcpu.loadState: Could not read file " + fileName);
          System.out.println("Error Message: " + e.getMessage());
-         System.exit(-1);
+         return;
+      } catch (IllegalArgumentException e) {
+         System.out.println("Dmgcpu.loadState: " + e.getMessage());
+         return;
       }
-   }
-   
-   
-   public void saveState(String extension) {
-      String directory = (cartridge.romFileName + extension);
 
-      try {
-         FileOutputStream fl = new FileOutputStream(directory);
-         DataOutputStream sv = new DataOutputStream(fl);
-         
-         saveData(sv, directory);
-         
-         // write battery ram
-         cartridge.saveData(sv, directory);
-         
-         // write graphic memory 
-         graphicsChip.saveData(sv, directory);
-         
-         // write io state
-         ioHandler.saveData(sv, directory);
-         
-         //stats.printStats();
+      System.out.println("Loaded state " + fileName);
+   }
 
-         sv.close();
-         fl.close();
+   /**
+    * Take a snapshot of the state in memory. The pages of RAM it shares are
+    * write protected, so the first write to each afterwards goes through
+    * the slow path. The flags are computed first, as the snapshot may be
+    * restored with a core or a flags mode that does not know about the lazy
+    * flags
+    */
+   public Snapshot snapshot() {
+      updateFlags();
+      Snapshot s = new Snapshot();
+      cartridge.saveSnapshot(s);
+      saveSnapshot(s);
+      graphicsChip.saveSnapshot(s);
+      ioHandler.saveSnapshot(s);
+      if (soundChip != null) {
+         soundChip.saveSnapshot(s);
+      }
+      mapMemory();
+      return s;
+   }
 
-      } catch (FileNotFoundException e) {
-         System.out.println("Dmgcpu.saveState: Could not open file " + directory);
-         System.out.println("Error Message: " + e.getMessage());
-         System.exit(-1);
-      } catch (IOException e) {
-         System.out.println("Dmgcpu.saveState: Could not write to file " + directory);
-         System.out.println("Error Message: " + e.getMessage());
-         System.exit(-1);
+   /**
+    * Put back the state of a snapshot taken by this or another Dmgcpu running
+    * the same game. Only the pages of RAM that differ are copied
+    */
+   public void restore(Snapshot s) {
+      cartridge.loadSnapshot(s);
+      loadSnapshot(s);
+      graphicsChip.loadSnapshot(s);
+      ioHandler.loadSnapshot(s);
+      if ((soundChip != null) && (s.channel1 != null)) {
+         soundChip.loadSnapshot(s);
       }
-      
-      System.out.println("Saved stage!");
+      decodeCache.flushRam();
+      mapMemory();
    }
 
-   public void loadState(String extension) {
-      String directory = cartridge.romFileName + extension;
+   private void saveSnapshot(Snapshot s) {
+      s.a = a;
+      s.f = f;
+      s.sp = sp;
+      s.pc = pc;
+      s.bc = bc;
+      s.de = de;
+      s.hl = hl;
+      s.instrCount = instrCount;
+      s.cycles = cycles;
+      s.frames = frames;
+      s.idleCyclesSkipped = idleCyclesSkipped;
+      s.lastEventTime = lastEventTime;
+      s.interruptsEnabled = interruptsEnabled;
+      s.inInterrupt = inInterrupt;
+      s.halted = halted;
+      s.ieDelay = ieDelay;
+      s.timaEnabled = timaEnabled;
+      s.cyclesPerTima = cyclesPerTima;
+      s.cyclesPerHblank = CYCLES_PER_HBLANK;
+      s.cyclesPerDiv = CYCLES_PER_DIV;
+      s.cyclesPerRtcTick = CYCLES_PER_RTC_TICK;
+      s.doubleSpeedCpu = doubleSpeedCpu;
+      s.gbcFeatures = gbcFeatures;
+      s.gbcRamBank = gbcRamBank;
+
+      // the end of a runCycles() call is not part of the state
+      s.scheduler = scheduler.copy();
+      s.scheduler.cancel(EventScheduler.STOP);
+
+      s.mainRam = mainRamPages.snapshot();
+      s.oam = oam.clone();
+   }
 
-      try {
-         reset();
-         
-         FileInputStream fl = new FileInputStream(directory);
-         DataInputStream sv = new DataInputStream(fl);
-         
-         // write cpu data
-         loadData(sv, directory);
-         
-         // write battery ram
-         cartridge.loadData(sv, directory);
-         
-         // write graphic memory 
-         graphicsChip.loadData(sv, directory);
-         
-         // writes io state
-         ioHandler.loadData(sv, directory);
-         
-         sv.close();
-         fl.close();
-
-      } catch (FileNotFoundException ex) {
-         System.out.println("Dmgcpu.loadState: Could not open file " + directory);
-         System.out.println("Error Message: " + ex.getMessage());
-         System.exit(-1);
-      } catch (IOException ex) {
-         System.out.println("Dmgcpu.loadState: Could not read file " + directory);
-         System.out.println("Error Message: " + ex.getMessage());
-         System.exit(-1);
-      } 
-      
-      System.out.println("Loaded stage!");
+   private void loadSnapshot(Snapshot s) {
+      a = s.a;
+      f = s.f;
+      flagOp = FLAGS_DONE;
+      sp = s.sp;
+      pc = s.pc;
+      bc = s.bc;
+      de = s.de;
+      hl = s.hl;
+      instrCount = s.instrCount;
+      cycles = s.cycles;
+      frames = s.frames;
+      idleCyclesSkipped = s.idleCyclesSkipped;
+      lastEventTime = s.lastEventTime;
+      interruptsEnabled = s.interruptsEnabled;
+      inInterrupt = s.inInterrupt;
+      halted = s.halted;
+      ieDelay = s.ieDelay;
+      timaEnabled = s.timaEnabled;
+      cyclesPerTima = s.cyclesPerTima;
+      CYCLES_PER_HBLANK = s.cyclesPerHblank;
+      CYCLES_PER_DIV = s.cyclesPerDiv;
+      CYCLES_PER_RTC_TICK = s.cyclesPerRtcTick;
+      doubleSpeedCpu = s.doubleSpeedCpu;
+      gbcFeatures = s.gbcFeatures;
+      gbcRamBank = s.gbcRamBank;
+      scheduler = s.scheduler.copy();
+
+      mainRamPages.restore(s.mainRam);
+      System.arraycopy(s.oam, 0, oam, 0, oam.length);
    }
-   
-   /** Clear up memory */
+
+   /** Clear up memory, once the states being saved are written */
    public void dispose() {
+      if (stateWriter != null) {
+         stateWriter.flush();
+      }
       graphicsChip.dispose();
    }
 
    /** Force the execution thread to stop and return to it's caller */
    public void terminateProcess() {
-      terminate = true;
+      queueCommand(TERMINATE);
+   }
+
+   /** Ask the execution thread to run a command at the end of the current frame */
+   public void queueCommand(int command) {
+      commands.offer(command);
+   }
+
+   /** True if the execution thread has been asked to stop */
+   public boolean terminateRequested() {
+      return terminate || commands.contains(TERMINATE);
+   }
+
+   /** Run the commands posted since the last frame */
+   private void runCommands() {
+      Integer command;
+      while ((command = commands.poll()) != null) {
+         switch (command) {
+            case SAVE_STATE:
+               saveState(".stsv");
+               break;
+            case LOAD_STATE:
+               loadState(".stsv");
+               break;
+            case SAVE_CHECKPOINT:
+               saveCheckpoint();
+               break;
+            case LOAD_CHECKPOINT:
+               loadState(".cksv");
+               break;
+            case TERMINATE:
+               terminate = true;
+               break;
+         }
+      }
+   }
+
+   /** Called once per frame, after the VBlank and the events due with it */
+   private void frameEnd() {
+      if (++frames == stopFrame) {
+         terminate = true;
+      }
+      if ((checkpointFrames > 0) && (--framesToCheckpoint <= 0)) {
+         framesToCheckpoint = checkpointFrames;
+         commands.offer(SAVE_CHECKPOINT);
+      }
+      commandsDue = !commands.isEmpty();
    }
 
    /**
@@ -339,6 +593,15 @@ public class Dmgcpu {
    public final short addressRead(int addr) {
       addr = addr & 0xFFFF;
 
+      byte[] page = readPages[addr >> 8];
+      if (page != null) {
+         return page[addr + readOffsets[addr >> 8]];
+      }
+      return memoryRead(addr);
+   }
+
+   /** Read a byte that is not in a mapped page */
+   private short memoryRead(int addr) {
       switch ((addr & 0xF000)) {
          case 0x0000:
          case 0x1000:
@@ -377,7 +640,7 @@ public class Dmgcpu {
             }
 
          default:
-            System.out.println("Tried to read address " + addr + ".  pc = " + JavaBoy.hexWord(pc));
+            System.out.println("Tried to read address " + addr + ".  pc = " + Util.hexWord(pc));
             return 0xFF;
       }
 
@@ -388,6 +651,18 @@ public class Dmgcpu {
     * the right parts of memory.
     */
    public final void addressWrite(int addr, int data) {
+      if ((addr & 0xFFFF) == addr) {
+         byte[] page = writePages[addr >> 8];
+         if (page != null) {
+            page[addr + writeOffsets[addr >> 8]] = (byte) data;
+            return;
+         }
+      }
+      memoryWrite(addr, data);
+   }
+
+   /** Write a byte that is not in a mapped page */
+   private void memoryWrite(int addr, int data) {
       switch (addr & 0xF000) {
          case 0x0000:
          case 0x1000:
@@ -399,6 +674,8 @@ public class Dmgcpu {
          case 0x7000:
             if (!running) {
                cartridge.debuggerAddressWrite(addr, data);
+               blockCache.flush();
+               decodeCache.flush();
             } else {
                cartridge.addressWrite(addr, data);
                
@@ -408,56 +685,205 @@ public class Dmgcpu {
          case 0x8000:
          case 0x9000:
             graphicsChip.addressWrite(addr - 0x8000, (byte) data);
+            graphicsChip.videoRamPages.written(addr - 0x8000 + graphicsChip.vidRamStart);
             break;
 
          case 0xA000:
          case 0xB000:
             cartridge.addressWrite(addr, data);
+            cartridge.ramPages.written(addr - 0xA000 + cartridge.ramPageStart);
             break;
 
          case 0xC000:
             mainRam[addr - 0xC000] = (byte) data;
+            mainRamPages.written(addr - 0xC000);
+            decodeCache.write(addr);
             break;
 
          case 0xD000:
             mainRam[addr - 0xD000 + (gbcRamBank * 0x1000)] = (byte) data;
+            mainRamPages.written(addr - 0xD000 + (gbcRamBank * 0x1000));
+            decodeCache.write(addr);
             break;
 
          case 0xE000:
             mainRam[addr - 0xE000] = (byte) data;
+            mainRamPages.written(addr - 0xE000);
+            decodeCache.write(addr - 0x2000);
             break;
 
          case 0xF000:
             if (addr < 0xFE00) {
                try {
                   mainRam[addr - 0xE000] = (byte) data;
+                  mainRamPages.written(addr - 0xE000);
+                  decodeCache.write(addr - 0x2000);
                } catch (ArrayIndexOutOfBoundsException e) {
-                  System.out.println("Address error: " + addr + " pc = " + JavaBoy.hexWord(pc));
+                  System.out.println("Address error: " + addr + " pc = " + Util.hexWord(pc));
                }
             } else if (addr < 0xFF00) {
                oam[addr - 0xFE00] = (byte) data;
             } else {
                ioHandler.ioWrite(addr - 0xFF00, (short) data);
+               decodeCache.write(addr);
             }
             break;
       }
 
+      // a page written since the last snapshot can be written directly again
+      int page = (addr >> 8) & 0xFF;
+      if (isWritable(page)) {
+         writePages[page] = writeArrays[page];
+      }
+   }
+
+   /**
+    * Point the pages of an area at an array for reads, offset being the index
+    * of the area's first byte in it. A null array sends the reads to the slow
+    * path
+    */
+   final void mapRead(int start, int length, byte[] data, int offset) {
+      for (int page = start >> 8; page < (start + length) >> 8; page++) {
+         readPages[page] = data;
+         readOffsets[page] = offset - start;
+      }
+   }
+
+   /**
+    * Same as mapRead(), for writes. Pages that hold decoded code, or that are
+    * shared with a snapshot and not written since, are left to the slow path
+    */
+   final void mapWrite(int start, int length, byte[] data, int offset) {
+      for (int page = start >> 8; page < (start + length) >> 8; page++) {
+         writeArrays[page] = data;
+         writeOffsets[page] = offset - start;
+         writePages[page] = isWritable(page) ? data : null;
+      }
+   }
+
+   /** True if the writes to a page can go straight to the array mapped there */
+   private boolean isWritable(int page) {
+      byte[] data = writeArrays[page];
+      if ((data == null) || codePages[page]) {
+         return false;
+      }
+
+      SharedPages shared = null;
+      if (data == mainRam) {
+         shared = mainRamPages;
+      } else if (data == graphicsChip.videoRam) {
+         shared = graphicsChip.videoRamPages;
+      } else if (data == cartridge.ram) {
+         shared = cartridge.ramPages;
+      }
+      return (shared == null) || !shared.isClean((page << 8) + writeOffsets[page]);
+   }
+
+   /** Rebuild the whole memory map, after a reset or when a state is loaded */
+   final void mapMemory() {
+      cartridge.mapPages();
+      mapVideoRam();
+      mapWorkRam();
+   }
+
+   /** Called when the video RAM bank changes */
+   final void mapVideoRam() {
+      byte[] videoRam = graphicsChip.videoRam;
+      int bank = graphicsChip.vidRamStart;
+
+      mapRead(0x8000, 0x2000, videoRam, bank);
+      // writes to the tile data invalidate the tile cache
+      mapWrite(0x8000, 0x1800, null, 0);
+      mapWrite(0x9800, 0x0800, videoRam, bank + 0x1800);
+   }
+
+   /** Called when the work RAM bank changes */
+   final void mapWorkRam() {
+      int bank = gbcRamBank * 0x1000;
+
+      mapRead(0xC000, 0x1000, mainRam, 0);
+      mapWrite(0xC000, 0x1000, mainRam, 0);
+      mapRead(0xD000, 0x1000, mainRam, bank);
+      mapWrite(0xD000, 0x1000, mainRam, bank);
+      // echo RAM, 0xF000 - 0xFDFF always shows bank 1
+      mapRead(0xE000, 0x1E00, mainRam, 0);
+      mapWrite(0xE000, 0x1E00, mainRam, 0);
+   }
+
+   /**
+    * Called when the decode cache keeps an instruction decoded from work RAM,
+    * writes to its page (and the page's echo) must go through memoryWrite()
+    * so the cache sees them
+    */
+   public final void protectCode(int addr) {
+      int page = addr >> 8;
+      if (codePages[page]) {
+         return;
+      }
+
+      codePages[page] = true;
+      writePages[page] = null;
+      if (page + 0x20 < 0xFE) {
+         codePages[page + 0x20] = true;
+         writePages[page + 0x20] = null;
+      }
+   }
+
+   /** Called when the decode cache is flushed */
+   public final void clearCodePages() {
+      for (int page = 0; page < codePages.length; page++) {
+         codePages[page] = false;
+      }
+      mapWorkRam();
+   }
+
+   /** Record an ALU operation, its flags are computed when f is next read */
+   public final void setLazyFlags(int op, int index) {
+      flagOp = op;
+      flagIndex = index;
+   }
+
+   /** Compute f from the pending ALU operation, if there is one */
+   public final void updateFlags() {
+      if (flagOp != FLAGS_DONE) {
+         f = lazyFlags(flagOp, flagIndex, f);
+         flagOp = FLAGS_DONE;
+      }
+   }
+
+   /** The flags left by an ALU operation recorded with setLazyFlags(), f if there is none */
+   static int lazyFlags(int op, int index, int f) {
+      switch (op) {
+         case FLAGS_ADD:
+            return FlagTables.ADD[index] >> 8;
+         case FLAGS_ADD_A:
+            return FlagTables.ADD_A[index] >> 8;
+         case FLAGS_SUB:
+            return FlagTables.SUB[index] >> 8;
+         case FLAGS_CP:
+            return (FlagTables.SUB[index] >> 8) & ~0x40;    // N is not set
+         case FLAGS_LOGIC:
+            return FlagTables.LOGIC[index] >> 8;
+         default:
+            return f;
+      }
    }
 
    /** Sets the value of a register by it's name */
    public boolean setRegister(String reg, int value) {
       if (reg.equals("a") || reg.equals("acc")) {
-         registers[a] = (short) value;
+         a = value;
       } else if (reg.equals("b")) {
-         registers[b] = (short) value;
+         bc = (bc & 0x00FF) | (value << 8);
       } else if (reg.equals("c")) {
-         registers[c] = (short) value;
+         bc = (bc & 0xFF00) | value;
       } else if (reg.equals("d")) {
-         registers[d] = (short) value;
+         de = (de & 0x00FF) | (value << 8);
       } else if (reg.equals("e")) {
-         registers[e] = (short) value;
+         de = (de & 0xFF00) | value;
       } else if (reg.equals("f")) {
          f = (short) value;
+         flagOp = FLAGS_DONE;
       } else if (reg.equals("h")) {
          hl = (hl & 0x00FF) | (value << 8);
       } else if (reg.equals("l")) {
@@ -467,11 +893,9 @@ public class Dmgcpu {
       } else if (reg.equals("pc") || reg.equals("ip")) {
          pc = value;
       } else if (reg.equals("bc")) {
-         registers[b] = (short) (value >> 8);
-         registers[c] = (short) (value & 0x00FF);
+         bc = value;
       } else if (reg.equals("de")) {
-         registers[d] = (short) (value >> 8);
-         registers[e] = (short) (value & 0x00FF);
+         de = value;
       } else if (reg.equals("hl")) {
          hl = value;
       } else {
@@ -480,14 +904,17 @@ public class Dmgcpu {
       return true;
    }
 
+   /** Returns the ROM bank currently mapped at 0x4000 */
+   public final int getRomBank() {
+      return cartridge.currentBank;
+   }
+
    public void setBC(int value) {
-      registers[b] = (short) ((value & 0xFF00) >> 8);
-      registers[c] = (short) (value & 0x00FF);
+      bc = value & 0xFFFF;
    }
 
    public void setDE(int value) {
-      registers[d] = (short) ((value & 0xFF00) >> 8);
-      registers[e] = (short) (value & 0x00FF);
+      de = value & 0xFFFF;
    }
 
    public void setHL(int value) {
@@ -496,38 +923,55 @@ public class Dmgcpu {
 
    /** Performs a read of a register by internal register number */
    public final int registerRead(int regNum) {
-      if((regNum >= 0 && regNum <= 3) || regNum == 7){
-         return registers[regNum];
-      } else{
-         if(regNum == 4){
-            return (short) ((hl & 0xFF00) >> 8);
-         } else if(regNum == 5){
-            return (short) (hl & 0x00FF);
-         } else if(regNum == 6){
-            return JavaBoy.unsign(addressRead(hl));
-         }
+      switch (regNum) {
+         case 0:
+            return bc >> 8;
+         case 1:
+            return bc & 0x00FF;
+         case 2:
+            return de >> 8;
+         case 3:
+            return de & 0x00FF;
+         case 4:
+            return hl >> 8;
+         case 5:
+            return hl & 0x00FF;
+         case 6:
+            return Util.unsign(addressRead(hl));
+         case 7:
+            return a;
       }
       return -1;
    }
 
    /** Performs a write of a register by internal register number */
    public final void registerWrite(int regNum, int data) {
-      if((regNum >= 0 && regNum <= 3) || regNum == 7){
-         registers[regNum] = (short) data;
-         return;
-      } else{
-         if(regNum == 4){
+      switch (regNum) {
+         case 0:
+            bc = (bc & 0x00FF) | (data << 8);
+            break;
+         case 1:
+            bc = (bc & 0xFF00) | data;
+            break;
+         case 2:
+            de = (de & 0x00FF) | (data << 8);
+            break;
+         case 3:
+            de = (de & 0xFF00) | data;
+            break;
+         case 4:
             hl = (hl & 0x00FF) | (data << 8);
-            return;
-         } else if(regNum == 5){
+            break;
+         case 5:
             hl = (hl & 0xFF00) | data;
-            return;
-         } else if(regNum == 6){
+            break;
+         case 6:
             addressWrite(hl, data);
-            return;
-         }
+            break;
+         case 7:
+            a = data;
+            break;
       }
-      return;
    }
 
    public void checkEnableGbc() {
@@ -549,39 +993,57 @@ public class Dmgcpu {
       cartridge.reset();
       interruptsEnabled = false;
       ieDelay = -1;
+      halted = false;
       pc = 0x0100;
       sp = 0xFFFE;
       f = 0xB0;
+      flagOp = FLAGS_DONE;
       gbcRamBank = 1;
       instrCount = 0;
+      cycles = 0;
+      frames = 0;
+      idleCyclesSkipped = 0;
+      lastEventTime = 0;
 
       if (gbcFeatures) {
-         registers[a] = 0x11;
+         a = 0x11;
       } else {
-         registers[a] = 0x01;
+         a = 0x01;
       }
 
       for (int r = 0; r < 0x8000; r++) {
          mainRam[r] = 0;
       }
+      mainRamPages.writtenAll();
 
       setBC(0x0013);
       setDE(0x00D8);
       setHL(0x014D);
-      JavaBoy.debugLog("CPU reset");
+      mapMemory();
+      decodeCache.flush();
+      Util.debugLog("CPU reset");
 
       ioHandler.reset();
+      scheduleEvents(cycles + 1);
    }
 
    public void setDoubleSpeedCpu(boolean enabled) {
+      doubleSpeedCpu = enabled;
 
       if (enabled) {
-         INSTRS_PER_HBLANK = BASE_INSTRS_PER_HBLANK * 2;
-         INSTRS_PER_DIV = BASE_INSTRS_PER_DIV * 2;
+         CYCLES_PER_HBLANK = BASE_CYCLES_PER_HBLANK * 2;
+         CYCLES_PER_DIV = BASE_CYCLES_PER_DIV * 2;
+         CYCLES_PER_RTC_TICK = CYCLES_PER_SECOND * 2;
       } else {
-         INSTRS_PER_HBLANK = BASE_INSTRS_PER_HBLANK;
-         INSTRS_PER_DIV = BASE_INSTRS_PER_DIV;
+         CYCLES_PER_HBLANK = BASE_CYCLES_PER_HBLANK;
+         CYCLES_PER_DIV = BASE_CYCLES_PER_DIV;
+         CYCLES_PER_RTC_TICK = CYCLES_PER_SECOND;
+      }
+
+      if (ioHandler != null) {
+         scheduleEvents(cycles);
       }
+      resetThrottle();
 
    }
 
@@ -590,131 +1052,300 @@ public class Dmgcpu {
     * occurred, jump to the relevant interrupt vector address
     */
    public final void checkInterrupts() {
-      int intFlags = ioHandler.registers[0x0F];
-      int ieReg = ioHandler.registers[0xFF];
-      if ((intFlags & ieReg) != 0) {
+      int pending = pendingInterrupts;
+      if (pending != 0) {
+         int intFlags = ioHandler.registers[0x0F];
+
          sp -= 2;
          addressWrite(sp + 1, pc >> 8); // Push current program counter onto
                                         // stack
          addressWrite(sp, pc & 0x00FF);
          interruptsEnabled = false;
 
-         if ((intFlags & ieReg & INT_VBLANK) != 0) {
-            pc = 0x40; // Jump to Vblank interrupt address
-            intFlags -= INT_VBLANK;
-            // System.out.println("VBLANK Interrupt called");
-         } else if ((intFlags & ieReg & INT_LCDC) != 0) {
-            pc = 0x48;
-            intFlags -= INT_LCDC;
-            // System.out.println("LCDC Interrupt called");
-         } else if ((intFlags & ieReg & INT_TIMA) != 0) {
-            pc = 0x50;
-            intFlags -= INT_TIMA;
-            // System.out.println("TIMA Interrupt called");
-         } else if ((intFlags & ieReg & INT_SER) != 0) {
-            pc = 0x58;
-            intFlags -= INT_SER;
-            // System.out.println("TIMA Interrupt called");
-         } else if ((intFlags & ieReg & INT_P10) != 0) { // Joypad interrupt
-            pc = 0x60;
-            intFlags -= INT_P10;
-            // System.out.println("Joypad int.");
-         } /* Other interrupts go here, not done yet */
-
-         ioHandler.registers[0x0F] = (byte) intFlags;
+         // VBlank, LCDC, TIMA, serial then joypad
+         if (INTERRUPT_VECTOR[pending] != -1) {
+            pc = INTERRUPT_VECTOR[pending];
+         }
+
+         ioHandler.registers[0x0F] = (byte) (intFlags & ~INTERRUPT_BIT[pending]);
+         updateInterrupts();
          inInterrupt = true;
+         cycles += 20;
       }
    }
 
-   /** Initiate an interrupt of the specified type */
+   /** Called when IF or IE change */
+   public final void updateInterrupts() {
+      ioHandler.updateInterrupts();
+   }
+
    public final void triggerInterrupt(int intr) {
       ioHandler.registers[0x0F] |= intr;
+      updateInterrupts();
    }
 
    public final void triggerInterruptIfEnabled(int intr) {
-      if ((ioHandler.registers[0xFF] & (short) (intr)) != 0)
+      if ((ioHandler.registers[0xFF] & (short) (intr)) != 0) {
          ioHandler.registers[0x0F] |= intr;
+         updateInterrupts();
+      }
    }
 
-   /** Check for interrupts that need to be initiated */
+   /** Run the timer, DIV and LCD events that are due */
    public final void initiateInterrupts() {
-      if (timaEnabled && ((instrCount % instrsPerTima) == 0)) {
-         if (JavaBoy.unsign(ioHandler.registers[05]) == 0) {
-            ioHandler.registers[05] = ioHandler.registers[06]; // Set TIMA
-                                                               // modulo
-            if ((ioHandler.registers[0xFF] & INT_TIMA) != 0)
-               triggerInterrupt(INT_TIMA);
+      if (cycles >= scheduler.nextEvent) {
+         lastEventTime = cycles;
+         boolean frameEnded = false;
+         int event;
+         while ((event = scheduler.nextDue(cycles)) != -1) {
+            switch (event) {
+               case EventScheduler.TIMA:
+                  timaEvent();
+                  break;
+               case EventScheduler.DIV:
+                  ioHandler.registers[04]++;
+                  scheduler.schedule(EventScheduler.DIV, scheduler.when(EventScheduler.DIV) + CYCLES_PER_DIV);
+                  break;
+               case EventScheduler.HDMA:
+                  hdmaEvent();
+                  break;
+               case EventScheduler.VBLANK:
+                  frameEnded = vblankEvent();
+                  break;
+               case EventScheduler.HBLANK:
+                  hblankEvent();
+                  break;
+               case EventScheduler.RTC:
+                  cartridge.tickRtc();
+                  scheduler.schedule(EventScheduler.RTC, scheduler.when(EventScheduler.RTC) + CYCLES_PER_RTC_TICK);
+                  break;
+               case EventScheduler.STOP:
+                  scheduler.cancel(EventScheduler.STOP);
+                  terminate = true;
+                  break;
+            }
          }
-         ioHandler.registers[05]++;
-      }
 
-      if ((instrCount % INSTRS_PER_DIV) == 0) {
-         ioHandler.registers[04]++;
+         if (frameEnded) {
+            frameEnd();
+         }
       }
+   }
 
-      if ((instrCount % INSTRS_PER_HBLANK) == 0) {
+   /**
+    * Called after a pass of an idle loop that takes the given cycles and
+    * instructions. Skips every further pass that ends before the next event,
+    * as nothing the loop reads can change until then
+    */
+   public final void skipIdleLoop(int loopCycles, int loopInstrs) {
+      // an event during the pass may have changed what it read
+      if ((ieDelay != -1) || (lastEventTime > cycles - loopCycles)) {
+         return;
+      }
+      // an interrupt already pending is taken after this instruction
+      if (interruptsEnabled && (pendingInterrupts != 0)) {
+         return;
+      }
 
-         // LCY Coincidence
-         // The +1 is due to the LCY register being just about to be incremented
-         int cline = JavaBoy.unsign(ioHandler.registers[0x44]) + 1;
-         if (cline == 152)
-            cline = 0;
+      long passes = (scheduler.nextEvent - cycles - 1) / loopCycles;
+      if (passes > 0) {
+         cycles += passes * loopCycles;
+         instrCount += passes * loopInstrs;
+         idleCyclesSkipped += passes * loopCycles;
+      }
+   }
 
-         if (((ioHandler.registers[0xFF] & INT_LCDC) != 0)
-                  && ((ioHandler.registers[0x41] & 64) != 0)
-                  && (JavaBoy.unsign(ioHandler.registers[0x45]) == cline)
-                  && ((ioHandler.registers[0x40] & 0x80) != 0) && (cline < 0x90)) {
-            triggerInterrupt(INT_LCDC);
+   /**
+    * The wait of a HALT, whose pc has already been moved past it. Nothing can
+    * happen before the next event, so the clock jumps straight to each event
+    * in steps of 4 cycles until an interrupt is requested. When asked to stop
+    * or to run commands first, halted is set and the wait goes on at the
+    * next step
+    */
+   public final void waitForInterrupt() {
+      while (ioHandler.registers[0x0F] == 0) {
+         if (terminate || commandsDue) {
+            halted = true;
+            return;
          }
+         long steps = (scheduler.nextEvent - cycles + 3) / 4;
+         if (steps < 1) {
+            steps = 1;
+         }
+         cycles += steps * 4;
+         instrCount += steps;
+         initiateInterrupts();
+      }
+      halted = false;
+   }
+
+   /** The cycle count at which the next timer, DIV or LCD event is due */
+   public final long getNextEvent() {
+      return scheduler.nextEvent;
+   }
+
+   /** Schedule every event again, the first one no earlier than cycle from */
+   void scheduleEvents(long from) {
+      scheduler.schedule(EventScheduler.DIV, EventScheduler.align(from, CYCLES_PER_DIV));
+      scheduler.schedule(EventScheduler.HBLANK, EventScheduler.align(from, CYCLES_PER_HBLANK));
+      scheduleTimer(from);
+      scheduleHdma();
+      if (cartridge.hasRtc()) {
+         scheduler.schedule(EventScheduler.RTC, EventScheduler.align(from, CYCLES_PER_RTC_TICK));
+      } else {
+         scheduler.cancel(EventScheduler.RTC);
+      }
+      if (Util.unsign(ioHandler.registers[0x44]) == 143) {
+         scheduler.schedule(EventScheduler.VBLANK, scheduler.when(EventScheduler.HBLANK));
+      } else {
+         scheduler.cancel(EventScheduler.VBLANK);
+      }
+   }
 
-         // Trigger on every line
-         if (((ioHandler.registers[0xFF] & INT_LCDC) != 0)
-                  && ((ioHandler.registers[0x41] & 0x8) != 0)
-                  && ((ioHandler.registers[0x40] & 0x80) != 0) && (cline < 0x90)) {
+   /** Called when the timer is enabled, disabled or its frequency changes */
+   void scheduleTimer(long from) {
+      if (timaEnabled) {
+         scheduler.schedule(EventScheduler.TIMA, EventScheduler.align(from, cyclesPerTima));
+      } else {
+         scheduler.cancel(EventScheduler.TIMA);
+      }
+   }
+
+   /** Called when a HDMA transfer starts, one block is copied on each HBlank */
+   void scheduleHdma() {
+      if (ioHandler.hdmaRunning) {
+         scheduler.schedule(EventScheduler.HDMA, scheduler.when(EventScheduler.HBLANK));
+      } else {
+         scheduler.cancel(EventScheduler.HDMA);
+      }
+   }
+
+   private void timaEvent() {
+      if (Util.unsign(ioHandler.registers[05]) == 0) {
+         ioHandler.registers[05] = ioHandler.registers[06]; // Set TIMA
+                                                            // modulo
+         if ((ioHandler.registers[0xFF] & INT_TIMA) != 0)
+            triggerInterrupt(INT_TIMA);
+      }
+      ioHandler.registers[05]++;
+      scheduler.schedule(EventScheduler.TIMA, scheduler.when(EventScheduler.TIMA) + cyclesPerTima);
+   }
+
+   private void hdmaEvent() {
+      if ((gbcFeatures) && (ioHandler.hdmaRunning)) {
+         ioHandler.performHdma();
+      }
+
+      if (ioHandler.hdmaRunning) {
+         scheduler.schedule(EventScheduler.HDMA, scheduler.when(EventScheduler.HDMA) + CYCLES_PER_HBLANK);
+      } else {
+         scheduler.cancel(EventScheduler.HDMA);
+      }
+   }
+
+   /** Runs on the HBlank where LY is 143, returns false if LY has moved since */
+   private boolean vblankEvent() {
+      scheduler.cancel(EventScheduler.VBLANK);
+
+      // LY may have been written since the event was scheduled
+      if (Util.unsign(ioHandler.registers[0x44]) != 143) {
+         return false;
+      }
+
+      for (int r = 144; r < 170; r++) {
+         graphicsChip.notifyScanline(r);
+      }
+      if (((ioHandler.registers[0x40] & 0x80) != 0)
+               && ((ioHandler.registers[0xFF] & INT_VBLANK) != 0)) {
+         triggerInterrupt(INT_VBLANK);
+         if (((ioHandler.registers[0x41] & 16) != 0)
+                  && ((ioHandler.registers[0xFF] & INT_LCDC) != 0)) {
             triggerInterrupt(INT_LCDC);
          }
+      }
+
+      boolean speedThrottle = applet != null;
+      if (speedThrottle && !(applet instanceof JavaBoy)) {
+         GameBoyScreen g = (GameBoyScreen) applet;
+         speedThrottle = g.viewSpeedThrottle.getState();
+      }
+      if (speedThrottle) {
+         throttle();
+      } else {
+         resetThrottle();
+      }
+      return true;
+   }
 
-         if ((gbcFeatures) && (ioHandler.hdmaRunning)) {
-            ioHandler.performHdma();
+   /** Start measuring the emulated time from now */
+   void resetThrottle() {
+      throttleTime = System.nanoTime();
+      throttleCycles = cycles;
+   }
+
+   /**
+    * Sleep until the wall clock reaches the time the cycles executed take on
+    * the real hardware
+    */
+   private void throttle() {
+      long cyclesPerSecond = doubleSpeedCpu ? CYCLES_PER_SECOND * 2L : CYCLES_PER_SECOND;
+      throttleTime += (cycles - throttleCycles) * 1000000000L / cyclesPerSecond;
+      throttleCycles = cycles;
+
+      long wait = throttleTime - System.nanoTime();
+      if (wait > 0) {
+         try {
+            java.lang.Thread.sleep(wait / 1000000, (int) (wait % 1000000));
+         } catch (InterruptedException e) {
+            // Nothing.
          }
+      } else if (wait < -MAX_THROTTLE_LAG) {
+         resetThrottle();
+      }
+   }
 
-         if (JavaBoy.unsign(ioHandler.registers[0x44]) == 143) {
-            for (int r = 144; r < 170; r++) {
-               graphicsChip.notifyScanline(r);
-            }
-            if (((ioHandler.registers[0x40] & 0x80) != 0)
-                     && ((ioHandler.registers[0xFF] & INT_VBLANK) != 0)) {
-               triggerInterrupt(INT_VBLANK);
-               if (((ioHandler.registers[0x41] & 16) != 0)
-                        && ((ioHandler.registers[0xFF] & INT_LCDC) != 0)) {
-                  triggerInterrupt(INT_LCDC);
-               }
-            }
+   /**
+    * End of a scanline. Runs after the HDMA and VBlank events due at the same
+    * time, which only add interrupt flags the LCDC checks do not look at
+    */
+   private void hblankEvent() {
+      long time = scheduler.when(EventScheduler.HBLANK);
+
+      // LCY Coincidence
+      // The +1 is due to the LCY register being just about to be incremented
+      int cline = Util.unsign(ioHandler.registers[0x44]) + 1;
+      if (cline == 152)
+         cline = 0;
+
+      if (((ioHandler.registers[0xFF] & INT_LCDC) != 0)
+               && ((ioHandler.registers[0x41] & 64) != 0)
+               && (Util.unsign(ioHandler.registers[0x45]) == cline)
+               && ((ioHandler.registers[0x40] & 0x80) != 0) && (cline < 0x90)) {
+         triggerInterrupt(INT_LCDC);
+      }
 
-            boolean speedThrottle = true;
-            if (!JavaBoy.runningAsApplet) {
-               GameBoyScreen g = (GameBoyScreen) applet;
-               speedThrottle = g.viewSpeedThrottle.getState();
-            }
-            if ((speedThrottle) && (graphicsChip.frameWaitTime >= 0)) {
-               try {
-                  java.lang.Thread.sleep(graphicsChip.frameWaitTime);
-               } catch (InterruptedException e) {
-                  // Nothing.
-               }
-            }
+      // Trigger on every line
+      if (((ioHandler.registers[0xFF] & INT_LCDC) != 0)
+               && ((ioHandler.registers[0x41] & 0x8) != 0)
+               && ((ioHandler.registers[0x40] & 0x80) != 0) && (cline < 0x90)) {
+         triggerInterrupt(INT_LCDC);
+      }
 
-         }
+      graphicsChip.notifyScanline(Util.unsign(ioHandler.registers[0x44]));
+      ioHandler.registers[0x44] = (byte) (Util.unsign(ioHandler.registers[0x44]) + 1);
+      scheduler.schedule(EventScheduler.HBLANK, time + CYCLES_PER_HBLANK);
 
-         graphicsChip.notifyScanline(JavaBoy.unsign(ioHandler.registers[0x44]));
-         ioHandler.registers[0x44] = (byte) (JavaBoy.unsign(ioHandler.registers[0x44]) + 1);
-         
-         if (JavaBoy.unsign(ioHandler.registers[0x44]) >= 153) {
-            ioHandler.registers[0x44] = 0;
-            if (soundChip != null)
-               soundChip.outputSound();
+      if (Util.unsign(ioHandler.registers[0x44]) == 143) {
+         scheduler.schedule(EventScheduler.VBLANK, time + CYCLES_PER_HBLANK);
+      }
+
+      if (Util.unsign(ioHandler.registers[0x44]) >= 153) {
+         ioHandler.registers[0x44] = 0;
+         if (soundChip != null)
+            soundChip.outputSound();
+         if (applet != null) {
             graphicsChip.frameDone = false;
-            if (JavaBoy.runningAsApplet) {
+            if (applet instanceof JavaBoy) {
                ((JavaBoy) (applet)).drawNextFrame();
             } else {
                ((GameBoyScreen) (applet)).repaint();
@@ -738,22 +1369,20 @@ public class Dmgcpu {
       terminate = false;
       running = true;
       graphicsChip.startTime = System.currentTimeMillis();
-      int b1, b2, b3, offset;
-      
-      long t;
-      for (int r = 0; (r != numInstr) && (!terminate); r++) {
-         t = System.currentTimeMillis();
-         
-         instrCount++;
+      resetThrottle();
 
-         b1 = JavaBoy.unsign(addressRead(pc));
-         offset = addressRead(pc + 1);
-         b3 = JavaBoy.unsign(addressRead(pc + 2));
-         b2 = JavaBoy.unsign((short) offset);
+      // requests to stop made while the CPU was not running are dropped
+      while (commands.remove(TERMINATE)) {
+      }
+
+      for (int r = 0; (r != numInstr) && (!terminate); r++) {
+         if (halted) {
+            waitForInterrupt();
+         } else {
+            instrCount++;
+            core.step();
+         }
 
-         //stats.addExecution(b1);
-         instructionManager.execute(b1, b2, b3, offset);
-         
          if (ieDelay != -1) {
             if (ieDelay > 0) {
                ieDelay--;
@@ -763,42 +1392,184 @@ public class Dmgcpu {
             }
          }
          
-         if (interruptsEnabled) {
+         if ((pendingInterrupts != 0) && interruptsEnabled) {
             checkInterrupts();
          }
-         cartridge.update();
          initiateInterrupts();
-         
-         if((t - initialTime) > checkpointTime){
-            initialTime = t;
-            saveCheckpointInterrupt = true;
-         }
 
-         if(saveInterrupt){
-            saveState(".stsv");
-            saveInterrupt = false;
-         }
-         if(loadStateInterrupt){
-            loadState(".stsv");
-            loadStateInterrupt = false;
-         }
-         if(saveCheckpointInterrupt){
-            saveState(".cksv");
-            saveCheckpointInterrupt = false;
-         }
-         if(loadCheckpointInterrupt){
-            loadState(".cksv");
-            loadCheckpointInterrupt = false;
+         if (commandsDue) {
+            commandsDue = false;
+            runCommands();
          }
       }
       running = false;
       terminate = false;
    }
 
+   /**
+    * Execute instructions until the given number of frames have ended, or
+    * the CPU is asked to stop. Returns at the end of the frame, after its
+    * VBlank
+    */
+   public void runFrames(int numFrames) {
+      stopFrame = frames + numFrames;
+      execute(-1);
+      stopFrame = -1;
+   }
+
+   /**
+    * Execute instructions until the given number of clock cycles have passed,
+    * or the CPU is asked to stop. Returns after the instruction that reaches
+    * the cycle count, so it may be passed by a few cycles
+    */
+   public void runCycles(long numCycles) {
+      scheduler.schedule(EventScheduler.STOP, cycles + numCycles);
+      execute(-1);
+      scheduler.cancel(EventScheduler.STOP);
+   }
+
+   /** The number of frames that have ended since the last reset */
+   public long getFrames() {
+      return frames;
+   }
+
+   /** Returns a new core of this CPU by name, or null if there is none */
+   public CpuCore createCore(String name) {
+      if (name.equals("strategy")) {
+         return new StrategyCore(this);
+      } else if (name.equals("switch")) {
+         return new SwitchCore(this);
+      }
+      return null;
+   }
+
+   /**
+    * Run the instructions with another core. The flags are computed first,
+    * as a core may not know about the lazy flags of the other
+    */
+   public void setCore(CpuCore newCore) {
+      updateFlags();
+      core = newCore;
+   }
+
+   /** Select a core by name, returns false if there is no such core */
+   public boolean setCore(String name) {
+      CpuCore newCore = createCore(name);
+      if (newCore == null) {
+         return false;
+      }
+      setCore(newCore);
+      return true;
+   }
+
+   public String getCoreName() {
+      return core.getName();
+   }
+
+   /** Save a checkpoint every given number of frames, 0 to save none */
+   public void setCheckpointFrames(int frames) {
+      checkpointFrames = frames;
+      framesToCheckpoint = frames;
+   }
+
+   /** Write every given number of checkpoints in full, 1 to write them all in full */
+   public void setCheckpointsPerFull(int checkpoints) {
+      checkpointsPerFull = checkpoints;
+      checkpointsToFull = 0;
+   }
+
+   /**
+    * Set the joypad buttons held down, as PAD_ bits. The joypad interrupt is
+    * raised when any of them changes, like for the keys of the window
+    */
+   public void setJoypad(int buttons) {
+      boolean changed = buttons != getJoypad();
+
+      ioHandler.padRight = (buttons & PAD_RIGHT) != 0;
+      ioHandler.padLeft = (buttons & PAD_LEFT) != 0;
+      ioHandler.padUp = (buttons & PAD_UP) != 0;
+      ioHandler.padDown = (buttons & PAD_DOWN) != 0;
+      ioHandler.padA = (buttons & PAD_A) != 0;
+      ioHandler.padB = (buttons & PAD_B) != 0;
+      ioHandler.padSelect = (buttons & PAD_SELECT) != 0;
+      ioHandler.padStart = (buttons & PAD_START) != 0;
+      if (changed) {
+         triggerInterruptIfEnabled(INT_P10);
+      }
+   }
+
+   /** The joypad buttons held down, as PAD_ bits */
+   public int getJoypad() {
+      return (ioHandler.padRight ? PAD_RIGHT : 0) | (ioHandler.padLeft ? PAD_LEFT : 0)
+               | (ioHandler.padUp ? PAD_UP : 0) | (ioHandler.padDown ? PAD_DOWN : 0)
+               | (ioHandler.padA ? PAD_A : 0) | (ioHandler.padB ? PAD_B : 0)
+               | (ioHandler.padSelect ? PAD_SELECT : 0) | (ioHandler.padStart ? PAD_START : 0);
+   }
+
    public void setBreakpoint(boolean on) {
       breakpointEnable = on;
    }
 
+   public void setBlockCache(boolean on) {
+      blockCacheEnable = on;
+   }
+
+   public void setDecodeCache(boolean on) {
+      decodeCacheEnable = on;
+   }
+
+   public void setIdleLoopSkip(boolean on) {
+      idleLoopSkipEnable = on;
+   }
+
+   /**
+    * Switch between one handler per opcode for LD r, r', the ALU operations
+    * on registers and the CB prefixed opcodes, and the shared handlers
+    */
+   public void setExpandedDispatch(boolean on) {
+      instructionManager.setExpandedDispatch(on);
+      blockCache.flush();
+      decodeCache.flush();
+   }
+
+   public void setLazyFlagsMode(boolean on) {
+      // the eager handlers do not know about a pending operation
+      updateFlags();
+      lazyFlagsEnable = on;
+   }
+
+   /**
+    * Record the opcode sequences of the next numInstr instructions and then
+    * replace the superinstructions by the most frequent ones. Only the
+    * strategy core records the profile
+    */
+   public void profileFusion(int numInstr) {
+      instructionManager.startFusionProfile();
+      blockCache.flush();
+      decodeCache.flush();
+      fusionProfileLeft = numInstr;
+   }
+
+   /** Remove the superinstructions, so every opcode runs on its own */
+   public void clearFusion() {
+      instructionManager.installFusion(new int[0][]);
+      blockCache.flush();
+      decodeCache.flush();
+   }
+
+   /** Install the superinstructions found in a statistics file written by Stats */
+   public boolean loadFusionProfile(String fileName) {
+      boolean loaded = instructionManager.loadFusionProfile(fileName);
+      blockCache.flush();
+      decodeCache.flush();
+      return loaded;
+   }
+
+   /** Describe the superinstructions installed */
+   public String getFusionInfo() {
+      return instructionManager.getFusionInfo();
+   }
+
    /**
     * Output a disassembly of the specified number of instructions starting at
     * the speicifed address.
@@ -808,12 +1579,12 @@ public class Dmgcpu {
       System.out.println("Addr  Data      Instruction");
 
       for (int r = 0; r < numInstr; r++) {
-         short b1 = JavaBoy.unsign(addressRead(address));
+         short b1 = Util.unsign(addressRead(address));
          short offset = addressRead(address + 1);
-         short b3 = JavaBoy.unsign(addressRead(address + 2));
-         short b2 = JavaBoy.unsign(offset);
+         short b3 = Util.unsign(addressRead(address + 2));
+         short b2 = Util.unsign(offset);
 
-         String instr = new String("Unknown Opcode! (" + Integer.toHexString(JavaBoy.unsign(b1))
+         String instr = new String("Unknown Opcode! (" + Integer.toHexString(Util.unsign(b1))
                   + ")");
          byte instrLength = 1;
 
@@ -822,7 +1593,7 @@ public class Dmgcpu {
                instr = "NOP";
                break;
             case 0x01:
-               instr = "LD BC, " + JavaBoy.hexWord((b3 << 8) + b2);
+               instr = "LD BC, " + Util.hexWord((b3 << 8) + b2);
                instrLength = 3;
                break;
             case 0x02:
@@ -838,14 +1609,14 @@ public class Dmgcpu {
                instr = "DEC B";
                break;
             case 0x06:
-               instr = "LD B, " + JavaBoy.hexByte(b2);
+               instr = "LD B, " + Util.hexByte(b2);
                instrLength = 2;
                break;
             case 0x07:
                instr = "RLC A";
                break;
             case 0x08:
-               instr = "LD (" + JavaBoy.hexWord((b3 << 8) + b2) + "), SP";
+               instr = "LD (" + Util.hexWord((b3 << 8) + b2) + "), SP";
                instrLength = 3; // Non Z80
                break;
             case 0x09:
@@ -864,7 +1635,7 @@ public class Dmgcpu {
                instr = "DEC C";
                break;
             case 0x0E:
-               instr = "LD C, " + JavaBoy.hexByte(b2);
+               instr = "LD C, " + Util.hexByte(b2);
                instrLength = 2;
                break;
             case 0x0F:
@@ -875,7 +1646,7 @@ public class Dmgcpu {
                instrLength = 2; // STOP instruction must be followed by a NOP
                break;
             case 0x11:
-               instr = "LD DE, " + JavaBoy.hexWord((b3 << 8) + b2);
+               instr = "LD DE, " + Util.hexWord((b3 << 8) + b2);
                instrLength = 3;
                break;
             case 0x12:
@@ -891,14 +1662,14 @@ public class Dmgcpu {
                instr = "DEC D";
                break;
             case 0x16:
-               instr = "LD D, " + JavaBoy.hexByte(b2);
+               instr = "LD D, " + Util.hexByte(b2);
                instrLength = 2;
                break;
             case 0x17:
                instr = "RL A";
                break;
             case 0x18:
-               instr = "JR " + JavaBoy.hexWord(address + 2 + offset);
+               instr = "JR " + Util.hexWord(address + 2 + offset);
                instrLength = 2;
                break;
             case 0x19:
@@ -917,19 +1688,19 @@ public class Dmgcpu {
                instr = "DEC E";
                break;
             case 0x1E:
-               instr = "LD E, " + JavaBoy.hexByte(b2);
+               instr = "LD E, " + Util.hexByte(b2);
                instrLength = 2;
                break;
             case 0x1F:
                instr = "RR A";
                break;
             case 0x20:
-               instr = "JR NZ, " + JavaBoy.hexWord(address + 2 + offset) + ": " + offset;
+               instr = "JR NZ, " + Util.hexWord(address + 2 + offset) + ": " + offset;
 
                instrLength = 2;
                break;
             case 0x21:
-               instr = "LD HL, " + JavaBoy.hexWord((b3 << 8) + b2);
+               instr = "LD HL, " + Util.hexWord((b3 << 8) + b2);
                instrLength = 3;
                break;
             case 0x22:
@@ -945,14 +1716,14 @@ public class Dmgcpu {
                instr = "DEC H";
                break;
             case 0x26:
-               instr = "LD H, " + JavaBoy.hexByte(b2);
+               instr = "LD H, " + Util.hexByte(b2);
                instrLength = 2;
                break;
             case 0x27:
                instr = "DAA";
                break;
             case 0x28:
-               instr = "JR Z, " + JavaBoy.hexWord(address + 2 + offset);
+               instr = "JR Z, " + Util.hexWord(address + 2 + offset);
                instrLength = 2;
                break;
             case 0x29:
@@ -971,18 +1742,18 @@ public class Dmgcpu {
                instr = "DEC L";
                break;
             case 0x2E:
-               instr = "LD L, " + JavaBoy.hexByte(b2);
+               instr = "LD L, " + Util.hexByte(b2);
                instrLength = 2;
                break;
             case 0x2F:
                instr = "CPL";
                break;
             case 0x30:
-               instr = "JR NC, " + JavaBoy.hexWord(address + 2 + offset);
+               instr = "JR NC, " + Util.hexWord(address + 2 + offset);
                instrLength = 2;
                break;
             case 0x31:
-               instr = "LD SP, " + JavaBoy.hexWord((b3 << 8) + b2);
+               instr = "LD SP, " + Util.hexWord((b3 << 8) + b2);
                instrLength = 3;
                break;
             case 0x32:
@@ -998,14 +1769,14 @@ public class Dmgcpu {
                instr = "DEC (HL)";
                break;
             case 0x36:
-               instr = "LD (HL), " + JavaBoy.hexByte(b2);
+               instr = "LD (HL), " + Util.hexByte(b2);
                instrLength = 2;
                break;
             case 0x37:
                instr = "SCF"; // Set carry flag?
                break;
             case 0x38:
-               instr = "JR C, " + JavaBoy.hexWord(address + 2 + offset);
+               instr = "JR C, " + Util.hexWord(address + 2 + offset);
                instrLength = 2;
                break;
             case 0x39:
@@ -1024,7 +1795,7 @@ public class Dmgcpu {
                instr = "DEC A";
                break;
             case 0x3E:
-               instr = "LD A, " + JavaBoy.hexByte(JavaBoy.unsign(b2));
+               instr = "LD A, " + Util.hexByte(Util.unsign(b2));
                instrLength = 2;
                break;
             case 0x3F:
@@ -1045,22 +1816,22 @@ public class Dmgcpu {
                instr = "POP BC";
                break;
             case 0xC2:
-               instr = "JP NZ, " + JavaBoy.hexWord((b3 << 8) + b2);
+               instr = "JP NZ, " + Util.hexWord((b3 << 8) + b2);
                instrLength = 3;
                break;
             case 0xC3:
-               instr = "JP " + JavaBoy.hexWord((b3 << 8) + b2);
+               instr = "JP " + Util.hexWord((b3 << 8) + b2);
                instrLength = 3;
                break;
             case 0xC4:
-               instr = "CALL NZ, " + JavaBoy.hexWord((b3 << 8) + b2);
+               instr = "CALL NZ, " + Util.hexWord((b3 << 8) + b2);
                instrLength = 3;
                break;
             case 0xC5:
                instr = "PUSH BC";
                break;
             case 0xC6:
-               instr = "ADD A, " + JavaBoy.hexByte(b2);
+               instr = "ADD A, " + Util.hexByte(b2);
                instrLength = 2;
                break;
             case 0xC7:
@@ -1073,22 +1844,22 @@ public class Dmgcpu {
                instr = "RET";
                break;
             case 0xCA:
-               instr = "JP Z, " + JavaBoy.hexWord((b3 << 8) + b2);
+               instr = "JP Z, " + Util.hexWord((b3 << 8) + b2);
                instrLength = 3;
                break;
 
             // 0xCB = Shifts (see below)
 
             case 0xCC:
-               instr = "CALL Z, " + JavaBoy.hexWord((b3 << 8) + b2);
+               instr = "CALL Z, " + Util.hexWord((b3 << 8) + b2);
                instrLength = 3;
                break;
             case 0xCD:
-               instr = "CALL " + JavaBoy.hexWord((b3 << 8) + b2);
+               instr = "CALL " + Util.hexWord((b3 << 8) + b2);
                instrLength = 3;
                break;
             case 0xCE:
-               instr = "ADC A, " + JavaBoy.hexByte(b2); // Signed or unsigned?
+               instr = "ADC A, " + Util.hexByte(b2); // Signed or unsigned?
                instrLength = 2;
                break;
             case 0xCF:
@@ -1101,21 +1872,21 @@ public class Dmgcpu {
                instr = "POP DE";
                break;
             case 0xD2:
-               instr = "JP NC, " + JavaBoy.hexWord((b3 << 8) + b2);
+               instr = "JP NC, " + Util.hexWord((b3 << 8) + b2);
                instrLength = 3;
                break;
 
             // 0xD3: Unknown
 
             case 0xD4:
-               instr = "CALL NC, " + JavaBoy.hexWord((b3 << 8) + b2);
+               instr = "CALL NC, " + Util.hexWord((b3 << 8) + b2);
                instrLength = 3;
                break;
             case 0xD5:
                instr = "PUSH DE";
                break;
             case 0xD6:
-               instr = "SUB A, " + JavaBoy.hexByte(b2);
+               instr = "SUB A, " + Util.hexByte(b2);
                instrLength = 2;
                break;
             case 0xD7:
@@ -1128,28 +1899,28 @@ public class Dmgcpu {
                instr = "RETI";
                break;
             case 0xDA:
-               instr = "JP C, " + JavaBoy.hexWord((b3 << 8) + b2);
+               instr = "JP C, " + Util.hexWord((b3 << 8) + b2);
                instrLength = 3;
                break;
 
             // 0xDB: Unknown
 
             case 0xDC:
-               instr = "CALL C, " + JavaBoy.hexWord((b3 << 8) + b2);
+               instr = "CALL C, " + Util.hexWord((b3 << 8) + b2);
                instrLength = 3;
                break;
 
             // 0xDD: Unknown
 
             case 0xDE:
-               instr = "SBC A, " + JavaBoy.hexByte(b2);
+               instr = "SBC A, " + Util.hexByte(b2);
                instrLength = 2;
                break;
             case 0xDF:
                instr = "RST 18";
                break;
             case 0xE0:
-               instr = "LDH (FF" + JavaBoy.hexByte(b2 & 0xFF) + "), A";
+               instr = "LDH (FF" + Util.hexByte(b2 & 0xFF) + "), A";
                instrLength = 2;
                break;
             case 0xE1:
@@ -1165,35 +1936,35 @@ public class Dmgcpu {
                instr = "PUSH HL";
                break;
             case 0xE6:
-               instr = "AND " + JavaBoy.hexByte(b2);
+               instr = "AND " + Util.hexByte(b2);
                instrLength = 2;
                break;
             case 0xE7:
                instr = "RST 20";
                break;
             case 0xE8:
-               instr = "ADD SP, " + JavaBoy.hexByte(offset);
+               instr = "ADD SP, " + Util.hexByte(offset);
                instrLength = 2;
                break;
             case 0xE9:
                instr = "JP (HL)";
                break;
             case 0xEA:
-               instr = "LD (" + JavaBoy.hexWord((b3 << 8) + b2) + "), A";
+               instr = "LD (" + Util.hexWord((b3 << 8) + b2) + "), A";
                instrLength = 3;
                break;
 
             // 0xEB - 0xED: Unknown
 
             case 0xEE:
-               instr = "XOR " + JavaBoy.hexByte(b2);
+               instr = "XOR " + Util.hexByte(b2);
                instrLength = 2;
                break;
             case 0xEF:
                instr = "RST 28";
                break;
             case 0xF0:
-               instr = "LDH A, (FF" + JavaBoy.hexByte(b2) + ")";
+               instr = "LDH A, (FF" + Util.hexByte(b2) + ")";
                instrLength = 2;
                break;
             case 0xF1:
@@ -1212,14 +1983,14 @@ public class Dmgcpu {
                instr = "PUSH AF";
                break;
             case 0xF6:
-               instr = "OR " + JavaBoy.hexByte(b2);
+               instr = "OR " + Util.hexByte(b2);
                instrLength = 2;
                break;
             case 0xF7:
                instr = "RST 30";
                break;
             case 0xF8:
-               instr = "LD HL, SP + " + JavaBoy.hexByte(offset); // Check this
+               instr = "LD HL, SP + " + Util.hexByte(offset); // Check this
                                                                  // one, docs
                                                                  // disagree
                instrLength = 2;
@@ -1228,7 +1999,7 @@ public class Dmgcpu {
                instr = "LD SP, HL";
                break;
             case 0xFA:
-               instr = "LD A, (" + JavaBoy.hexWord((b3 << 8) + b2) + ")";
+               instr = "LD A, (" + Util.hexWord((b3 << 8) + b2) + ")";
                instrLength = 3;
                break;
             case 0xFB:
@@ -1238,7 +2009,7 @@ public class Dmgcpu {
             // 0xFC - 0xFD: Unknown
 
             case 0xFE:
-               instr = "CP " + JavaBoy.hexByte(b2);
+               instr = "CP " + Util.hexByte(b2);
                instrLength = 2;
                break;
             case 0xFF:
@@ -1252,8 +2023,8 @@ public class Dmgcpu {
          // The exception to this rule is 0x76, which is HALT, and takes
          // the place of LD (HL), (HL)
 
-         if ((JavaBoy.unsign(b1) >= 0x40) && (JavaBoy.unsign(b1) <= 0x7F)
-                  && ((JavaBoy.unsign(b1) != 0x76))) {
+         if ((Util.unsign(b1) >= 0x40) && (Util.unsign(b1) <= 0x7F)
+                  && ((Util.unsign(b1) != 0x76))) {
             /* 0x76 is HALT, and takes the place of LD (HL), (HL) */
             int sourceRegister = b1 & 0x07; /* Lower 3 bits */
             int destRegister = (b1 & 0x38) >> 3; /* Bits 5 - 3 */
@@ -1275,9 +2046,9 @@ public class Dmgcpu {
          //     1 0 1 1 0 R R R Logical or OR
          //     1 0 1 1 1 R R R Compare? CP
 
-         if ((JavaBoy.unsign(b1) >= 0x80) && (JavaBoy.unsign(b1) <= 0xBF)) {
-            int sourceRegister = JavaBoy.unsign(b1) & 0x07;
-            int operation = (JavaBoy.unsign(b1) & 0x38) >> 3;
+         if ((Util.unsign(b1) >= 0x80) && (Util.unsign(b1) <= 0xBF)) {
+            int sourceRegister = Util.unsign(b1) & 0x07;
+            int operation = (Util.unsign(b1) & 0x38) >> 3;
 
             // System.out.println("ALU Op " + operation + " reg " +
             // sourceRegister);
@@ -1300,47 +2071,47 @@ public class Dmgcpu {
          //     1 0 N N N R R R Reset Bit n RES
          //     1 1 N N N R R R Set Bit n SET
 
-         if (JavaBoy.unsign(b1) == 0xCB) {
+         if (Util.unsign(b1) == 0xCB) {
             int operation;
             int sourceRegister;
             int bitNumber;
 
             instrLength = 2;
 
-            switch ((JavaBoy.unsign(b2) & 0xC0) >> 6) {
+            switch ((Util.unsign(b2) & 0xC0) >> 6) {
                case 0:
-                  operation = (JavaBoy.unsign(b2) & 0x38) >> 3;
-                  sourceRegister = JavaBoy.unsign(b2) & 0x07;
+                  operation = (Util.unsign(b2) & 0x38) >> 3;
+                  sourceRegister = Util.unsign(b2) & 0x07;
                   instr = shiftOperations[operation] + " " + registerNames[sourceRegister];
                   break;
                case 1:
-                  bitNumber = (JavaBoy.unsign(b2) & 0x38) >> 3;
-                  sourceRegister = JavaBoy.unsign(b2) & 0x07;
+                  bitNumber = (Util.unsign(b2) & 0x38) >> 3;
+                  sourceRegister = Util.unsign(b2) & 0x07;
                   instr = "BIT " + bitNumber + ", " + registerNames[sourceRegister];
                   break;
                case 2:
-                  bitNumber = (JavaBoy.unsign(b2) & 0x38) >> 3;
-                  sourceRegister = JavaBoy.unsign(b2) & 0x07;
+                  bitNumber = (Util.unsign(b2) & 0x38) >> 3;
+                  sourceRegister = Util.unsign(b2) & 0x07;
                   instr = "RES " + bitNumber + ", " + registerNames[sourceRegister];
                   break;
                case 3:
-                  bitNumber = (JavaBoy.unsign(b2) & 0x38) >> 3;
-                  sourceRegister = JavaBoy.unsign(b2) & 0x07;
+                  bitNumber = (Util.unsign(b2) & 0x38) >> 3;
+                  sourceRegister = Util.unsign(b2) & 0x07;
                   instr = "SET " + bitNumber + ", " + registerNames[sourceRegister];
                   break;
             }
          }
 
-         System.out.print(JavaBoy.hexWord(address) + ": " + JavaBoy.hexByte(JavaBoy.unsign(b1)));
+         System.out.print(Util.hexWord(address) + ": " + Util.hexByte(Util.unsign(b1)));
 
          if (instrLength >= 2) {
-            System.out.print(" " + JavaBoy.hexByte(JavaBoy.unsign(b2)));
+            System.out.print(" " + Util.hexByte(Util.unsign(b2)));
          } else {
             System.out.print("   ");
          }
 
          if (instrLength == 3) {
-            System.out.print(" " + JavaBoy.hexByte(JavaBoy.unsign(b3)) + "  ");
+            System.out.print(" " + Util.hexByte(Util.unsign(b3)) + "  ");
          } else {
             System.out.print("     ");
          }
@@ -0,0 +1,135 @@
+package Emulator;
+
+/**
+ * Runs a game from other Java code, a frame or a number of clock cycles at a
+ * time, without a window. The joypad is set between steps, and the screen
+ * and the sound made so far are copied out into arrays owned by the caller.
+ * Once the game is running, stepping and copying allocate nothing, so
+ * thousands of frames a second can be run in one process. No AWT classes
+ * are loaded. Sessions share no state, so each can run on its own thread,
+ * but a session must only be used by one thread at a time.
+ */
+public class EmulatorSession {
+   /** Size of the screen, in pixels */
+   public static final int WIDTH = FrameBufferGraphicsChip.WIDTH;
+   public static final int HEIGHT = FrameBufferGraphicsChip.HEIGHT;
+
+   /** Sample rate of the sound given by drainAudio() */
+   public static final int SAMPLE_RATE = 44100;
+
+   /** Sound kept for drainAudio(), in milliseconds */
+   public static final int AUDIO_BUFFER_LENGTH = 1000;
+
+   private Dmgcpu dmgcpu;
+   private FrameBufferGraphicsChip screen;
+   private BufferedSoundChip sound;
+
+   /** Start the game in a ROM file with the default core, and with sound */
+   public EmulatorSession(String romFileName) {
+      this(romFileName, Dmgcpu.CORE_NAMES[0], true);
+   }
+
+   /**
+    * Start the game in a ROM file with the named core. Without sound no
+    * samples are mixed, which saves time when they are not wanted
+    */
+   public EmulatorSession(String romFileName, String coreName, boolean audio) {
+      Cartridge cartridge = new Cartridge(romFileName, null);
+      if (!cartridge.cartridgeReady) {
+         throw new IllegalArgumentException("Could not load ROM " + romFileName);
+      }
+      dmgcpu = new Dmgcpu(cartridge, null, null);
+      if (!dmgcpu.setCore(coreName)) {
+         throw new IllegalArgumentException("Unknown CPU core " + coreName);
+      }
+      dmgcpu.setCheckpointFrames(0);
+      screen = (FrameBufferGraphicsChip) dmgcpu.graphicsChip;
+      screen.frameSkip = 1;
+      if (audio) {
+         sound = new BufferedSoundChip(SAMPLE_RATE, AUDIO_BUFFER_LENGTH);
+         dmgcpu.soundChip = sound;
+      }
+      dmgcpu.reset();
+   }
+
+   /** Run until the end of the next frame, after its VBlank */
+   public void stepFrame() {
+      dmgcpu.runFrames(1);
+   }
+
+   /**
+    * Run for the given number of clock cycles. The last instruction may pass
+    * the count by a few cycles
+    */
+   public void stepCycles(long numCycles) {
+      if (numCycles > 0) {
+         dmgcpu.runCycles(numCycles);
+      }
+   }
+
+   /** Set the buttons held down, as Dmgcpu.PAD_ bits */
+   public void setJoypad(int buttons) {
+      dmgcpu.setJoypad(buttons);
+   }
+
+   /**
+    * Copy the screen into dst, which holds at least WIDTH x HEIGHT values, as
+    * RGB values row by row. Lines not drawn yet in this frame hold the last
+    * frame
+    */
+   public void getFramebuffer(int[] dst) {
+      System.arraycopy(screen.frameBuffer, 0, dst, 0, WIDTH * HEIGHT);
+   }
+
+   /**
+    * Move the sound made since the last call into dst, as 16-bit samples at
+    * SAMPLE_RATE with left and right interleaved. Returns the number of values
+    * written, the rest is kept for the next call. Sound older than
+    * AUDIO_BUFFER_LENGTH ms is dropped, and without sound nothing is written
+    */
+   public int drainAudio(short[] dst) {
+      if (sound == null) {
+         return 0;
+      }
+      return sound.drain(dst);
+   }
+
+   /**
+    * Take a snapshot of the game in memory, to go back to with restore().
+    * The memory it shares with the running game is copied on write, so
+    * taking one is cheap
+    */
+   public Snapshot snapshot() {
+      return dmgcpu.snapshot();
+   }
+
+   /** Go back to a snapshot taken by this or another session of the same game */
+   public void restore(Snapshot snapshot) {
+      dmgcpu.restore(snapshot);
+   }
+
+   /** Start the game again from power on */
+   public void reset() {
+      dmgcpu.reset();
+   }
+
+   /** The number of frames run since the last reset */
+   public long getFrames() {
+      return dmgcpu.getFrames();
+   }
+
+   /** The number of clock cycles run since the last reset */
+   public long getCycles() {
+      return dmgcpu.cycles;
+   }
+
+   /** Read a byte of the Gameboy address space, as a value from 0 to 255 */
+   public int readMemory(int addr) {
+      return Util.unsign(dmgcpu.addressRead(addr));
+   }
+
+   /** The CPU running the game, for what the session does not offer */
+   public Dmgcpu getDmgcpu() {
+      return dmgcpu;
+   }
+}
@@ -0,0 +1,118 @@
+package Emulator;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Keeps the time of the next timer, DIV, HDMA, VBlank, HBlank and RTC events,
+ * and of the end of a Dmgcpu.runCycles() call, in clock cycles. The CPU only compares its cycle counter with nextEvent
+ * after each instruction and asks for the due events when it is reached.
+ *
+ * There are only a few events, so they are kept in a plain array instead
+ * of a heap.
+ */
+class EventScheduler {
+   /** Events, in the order they run when they are due at the same time */
+   static final int TIMA = 0;
+   static final int DIV = 1;
+   static final int HDMA = 2;
+   static final int VBLANK = 3;
+   static final int HBLANK = 4;
+   static final int RTC = 5;
+   static final int STOP = 6;
+   static final int NUM_EVENTS = 7;
+
+   /** Time of the earliest pending event */
+   long nextEvent;
+
+   private long[] when = new long[NUM_EVENTS];
+   private boolean[] pending = new boolean[NUM_EVENTS];
+
+   /** Set the time of an event, replacing the previous one */
+   void schedule(int event, long time) {
+      when[event] = time;
+      pending[event] = true;
+      update();
+   }
+
+   /** Remove a pending event */
+   void cancel(int event) {
+      pending[event] = false;
+      update();
+   }
+
+   /** A copy of the events, for a Snapshot */
+   EventScheduler copy() {
+      EventScheduler copy = new EventScheduler();
+      System.arraycopy(when, 0, copy.when, 0, NUM_EVENTS);
+      System.arraycopy(pending, 0, copy.pending, 0, NUM_EVENTS);
+      copy.nextEvent = nextEvent;
+      return copy;
+   }
+
+   /** Write the events to a save state */
+   void write(DataOutputStream out) throws IOException {
+      out.writeInt(NUM_EVENTS);
+      for (int event = 0; event < NUM_EVENTS; event++) {
+         out.writeBoolean(pending[event]);
+         out.writeLong(when[event]);
+      }
+      out.writeLong(nextEvent);
+   }
+
+   /** Read events written by write() */
+   static EventScheduler read(DataInputStream in) throws IOException {
+      if (in.readInt() != NUM_EVENTS) {
+         throw new IOException("The number of events differs");
+      }
+      EventScheduler scheduler = new EventScheduler();
+      for (int event = 0; event < NUM_EVENTS; event++) {
+         scheduler.pending[event] = in.readBoolean();
+         scheduler.when[event] = in.readLong();
+      }
+      scheduler.nextEvent = in.readLong();
+      return scheduler;
+   }
+
+   /** The time an event is scheduled for */
+   long when(int event) {
+      return when[event];
+   }
+
+   /**
+    * Returns the earliest event due at the given time, or -1 if there is
+    * none. The event stays scheduled, its handler must reschedule or cancel it
+    */
+   int nextDue(long now) {
+      int found = -1;
+      for (int event = 0; event < NUM_EVENTS; event++) {
+         if (pending[event] && (when[event] <= now)
+                  && ((found == -1) || (when[event] < when[found]))) {
+            found = event;
+         }
+      }
+      return found;
+   }
+
+   /** Returns the first multiple of period that is not before time */
+   static long align(long time, long period) {
+      long remainder = time % period;
+      if (remainder == 0) {
+         return time;
+      }
+      return time - remainder + period;
+   }
+
+   private void update() {
+      int first = -1;
+      for (int event = 0; event < NUM_EVENTS; event++) {
+         if (pending[event] && ((first == -1) || (when[event] < when[first]))) {
+            first = event;
+         }
+      }
+      if (first != -1) {
+         nextEvent = when[first];
+      }
+   }
+}
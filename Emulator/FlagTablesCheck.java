@@ -0,0 +1,325 @@
+package Emulator;
+
+import Instructions.FlagTables;
+
+/**
+ * Checks every entry of the FlagTables against the ALU code the handlers ran
+ * before the tables: ADD, ADC, SUB, SBC and CP for every value of A, operand
+ * and carry, AND, OR and XOR for every A and operand, INC and DEC for every
+ * value and carry, and DAA for every A and N, H and C flags. The formulas
+ * below are those of the old handlers, with the A register and F as plain
+ * ints. The instructions read the tables as follows:
+ *
+ *    ADD A, nn / ADC A, nn     ADD
+ *    ADD A, r / ADC A, r       ADD_A
+ *    SUB / SBC                 SUB
+ *    CP A, r                   the flags of SUB, A is kept
+ *    CP nn                     the flags of SUB without N
+ *    AND / OR / XOR            LOGIC of the result
+ *    INC / DEC                 the flags are ORed with the C flag kept
+ *    DAA                       DAA by ((f & (N | H | C)) << 4) | a
+ *
+ * Usage: FlagTablesCheck
+ *
+ * The first differences are printed, and the exit status is 1 if there
+ * are any.
+ */
+public class FlagTablesCheck {
+   static final int F_ZERO = 0x80;
+   static final int F_SUBTRACT = 0x40;
+   static final int F_HALFCARRY = 0x20;
+   static final int F_CARRY = 0x10;
+
+   /** Differences printed before the rest are only counted */
+   static final int MAX_REPORTED = 20;
+
+   private long cases;
+   private long differences;
+
+   /** The A register and F after an old handler */
+   private int a, f;
+
+   /** Compare a table entry with the A and F left by the old code */
+   private void compare(String name, int entry, int operand, int carry) {
+      cases++;
+      if (((entry & 0xFF) != a) || ((entry >> 8) != f)) {
+         if (++differences <= MAX_REPORTED) {
+            System.out.println(name + " operand " + Util.hexByte(operand) + " carry " + carry
+                     + ": table gives A=" + Util.hexByte(entry & 0xFF) + " F="
+                     + Util.hexByte(entry >> 8) + ", the ALU code A=" + Util.hexByte(a) + " F="
+                     + Util.hexByte(f));
+         }
+      }
+   }
+
+   /** ADD A, nn and ADC A, nn, which only set Z when the result overflows to 0 */
+   private void oldAdd(int operand) {
+      f = 0;
+      if ((((a & 0x0F) + (operand & 0x0F)) & 0xF0) != 0x00) {
+         f |= F_HALFCARRY;
+      }
+      a += operand;
+      if ((a & 0xFF00) != 0) {
+         if (a == 0x0100) {
+            f |= F_ZERO + F_CARRY + F_HALFCARRY;
+            a = 0;
+         } else {
+            f |= F_CARRY + F_HALFCARRY;
+            a &= 0x00FF;
+         }
+      }
+   }
+
+   /** ADD A, r and ADC A, r */
+   private void oldAddA(int operand) {
+      f = 0;
+      if ((((a & 0x0F) + (operand & 0x0F)) & 0xF0) != 0x00) {
+         f |= F_HALFCARRY;
+      }
+      a += operand;
+      if (a == 0) {
+         f |= F_ZERO;
+      }
+      if ((a & 0xFF00) != 0) {
+         if (a == 0x0100) {
+            f |= F_ZERO + F_CARRY + F_HALFCARRY;
+            a = 0;
+         } else {
+            f |= F_CARRY + F_HALFCARRY;
+            a &= 0x00FF;
+         }
+      }
+   }
+
+   /** SUB and SBC, A, r or nn */
+   private void oldSub(int operand) {
+      f = F_SUBTRACT;
+      if ((((a & 0x0F) - (operand & 0x0F)) & 0xFFF0) != 0x00) {
+         f |= F_HALFCARRY;
+      }
+      a -= operand;
+      if ((a & 0xFF00) != 0) {
+         a &= 0x00FF;
+         f |= F_CARRY;
+      }
+      if (a == 0) {
+         f |= F_ZERO;
+      }
+   }
+
+   /** CP A, r */
+   private void oldCpA(int operand) {
+      f = F_SUBTRACT;
+      if (a == operand) {
+         f |= F_ZERO;
+      }
+      if (a < operand) {
+         f |= F_CARRY;
+      }
+      if ((a & 0x0F) < (operand & 0x0F)) {
+         f |= F_HALFCARRY;
+      }
+   }
+
+   /** CP nn */
+   private void oldCp(int operand) {
+      f = 0;
+      if (operand == a) {
+         f |= F_ZERO;
+      }
+      if (a < operand) {
+         f |= F_CARRY;
+      }
+      if ((((a & 0x0F) - (operand & 0x0F)) & 0xFFF0) != 0x00) {
+         f |= F_HALFCARRY;
+      }
+   }
+
+   /** INC r, f holds the flags before */
+   private void oldInc() {
+      f &= F_CARRY;
+      switch (a) {
+         case 0xFF:
+            f |= F_HALFCARRY + F_ZERO;
+            a = 0x00;
+            break;
+         case 0x0F:
+            f |= F_HALFCARRY;
+            a = 0x10;
+            break;
+         default:
+            a++;
+            break;
+      }
+   }
+
+   /** DEC r, f holds the flags before */
+   private void oldDec() {
+      f &= F_CARRY;
+      f |= F_SUBTRACT;
+      switch (a) {
+         case 0x00:
+            f |= F_HALFCARRY;
+            a = 0xFF;
+            break;
+         case 0x10:
+            f |= F_HALFCARRY;
+            a = 0x0F;
+            break;
+         case 0x01:
+            f |= F_ZERO;
+            a = 0x00;
+            break;
+         default:
+            a--;
+            break;
+      }
+   }
+
+   /** DAA, f holds the flags before */
+   private void oldDaa() {
+      int upperNibble = (a & 0xF0) >> 4;
+      int lowerNibble = a & 0x0F;
+      int newf = f & F_SUBTRACT;
+
+      if ((f & F_SUBTRACT) == 0) {
+         if ((f & F_CARRY) == 0) {
+            if ((upperNibble <= 8) && (lowerNibble >= 0xA) && ((f & F_HALFCARRY) == 0)) {
+               a += 0x06;
+            }
+            if ((upperNibble <= 9) && (lowerNibble <= 0x3) && ((f & F_HALFCARRY) == F_HALFCARRY)) {
+               a += 0x06;
+            }
+            if ((upperNibble >= 0xA) && (lowerNibble <= 0x9) && ((f & F_HALFCARRY) == 0)) {
+               a += 0x60;
+               newf |= F_CARRY;
+            }
+            if ((upperNibble >= 0x9) && (lowerNibble >= 0xA) && ((f & F_HALFCARRY) == 0)) {
+               a += 0x66;
+               newf |= F_CARRY;
+            }
+            if ((upperNibble >= 0xA) && (lowerNibble <= 0x3) && ((f & F_HALFCARRY) == F_HALFCARRY)) {
+               a += 0x66;
+               newf |= F_CARRY;
+            }
+         } else { // If carry set
+            if ((upperNibble <= 0x2) && (lowerNibble <= 0x9) && ((f & F_HALFCARRY) == 0)) {
+               a += 0x60;
+               newf |= F_CARRY;
+            }
+            if ((upperNibble <= 0x2) && (lowerNibble >= 0xA) && ((f & F_HALFCARRY) == 0)) {
+               a += 0x66;
+               newf |= F_CARRY;
+            }
+            if ((upperNibble <= 0x3) && (lowerNibble <= 0x3) && ((f & F_HALFCARRY) == F_HALFCARRY)) {
+               a += 0x66;
+               newf |= F_CARRY;
+            }
+         }
+      } else { // Subtract is set
+         if ((f & F_CARRY) == 0) {
+            if ((upperNibble <= 0x8) && (lowerNibble >= 0x6) && ((f & F_HALFCARRY) == F_HALFCARRY)) {
+               a += 0xFA;
+            }
+         } else { // Carry is set
+            if ((upperNibble >= 0x7) && (lowerNibble <= 0x9) && ((f & F_HALFCARRY) == 0)) {
+               a += 0xA0;
+               newf |= F_CARRY;
+            }
+            if ((upperNibble >= 0x6) && (lowerNibble >= 0x6) && ((f & F_HALFCARRY) == F_HALFCARRY)) {
+               a += 0x9A;
+               newf |= F_CARRY;
+            }
+         }
+      }
+
+      a &= 0x00FF;
+      if (a == 0) {
+         newf |= F_ZERO;
+      }
+      f = newf;
+   }
+
+   /** Check every table, returns true if they all agree with the ALU code */
+   public boolean check() {
+      for (int carry = 0; carry <= 1; carry++) {
+         for (int value = 0; value < 0x100; value++) {
+            for (int operand = 0; operand < 0x100; operand++) {
+               int i = FlagTables.index(carry, value, operand);
+               String at = "A=" + Util.hexByte(value) + " ";
+
+               a = value;
+               oldAdd(operand + carry);
+               compare(at + "ADD/ADC A, nn", FlagTables.ADD[i], operand, carry);
+
+               a = value;
+               oldAddA(operand + carry);
+               compare(at + "ADD/ADC A, r", FlagTables.ADD_A[i], operand, carry);
+
+               a = value;
+               oldSub(operand + carry);
+               compare(at + "SUB/SBC", FlagTables.SUB[i], operand, carry);
+
+               if (carry == 0) {
+                  a = value;
+                  oldCpA(operand);
+                  compare(at + "CP A, r", (FlagTables.SUB[i] & 0xFF00) | value, operand, carry);
+
+                  a = value;
+                  oldCp(operand);
+                  compare(at + "CP nn", (FlagTables.SUB[i] & (~F_SUBTRACT << 8) & 0xFF00) | value,
+                           operand, carry);
+
+                  int[] results = { value & operand, value | operand, value ^ operand };
+                  String[] names = { "AND", "OR", "XOR" };
+                  for (int op = 0; op < results.length; op++) {
+                     a = results[op];
+                     f = (a == 0) ? F_ZERO : 0;
+                     compare(at + names[op], FlagTables.LOGIC[results[op]], operand, carry);
+                  }
+               }
+            }
+
+            int flagsBefore = (carry == 1) ? F_CARRY : 0;
+
+            a = value;
+            f = flagsBefore;
+            oldInc();
+            int entry = FlagTables.INC[value];
+            compare("INC " + Util.hexByte(value), (((flagsBefore & F_CARRY) | (entry >> 8)) << 8)
+                     | (entry & 0xFF), value, carry);
+
+            a = value;
+            f = flagsBefore;
+            oldDec();
+            entry = FlagTables.DEC[value];
+            compare("DEC " + Util.hexByte(value), (((flagsBefore & F_CARRY) | (entry >> 8)) << 8)
+                     | (entry & 0xFF), value, carry);
+         }
+      }
+
+      // DAA reads every flag but Z, which it is checked with too
+      for (int flags = 0; flags < 0x100; flags += 0x10) {
+         for (int value = 0; value < 0x100; value++) {
+            a = value;
+            f = flags;
+            oldDaa();
+            compare("DAA A=" + Util.hexByte(value) + " F=" + Util.hexByte(flags),
+                     FlagTables.DAA[((flags & (F_SUBTRACT | F_HALFCARRY | F_CARRY)) << 4) | value],
+                     value, (flags & F_CARRY) != 0 ? 1 : 0);
+         }
+      }
+
+      if (differences == 0) {
+         System.out.println("FlagTables agree with the ALU code in all " + cases + " cases");
+      } else {
+         System.out.println("FlagTables differ from the ALU code in " + differences + " of " + cases
+                  + " cases");
+      }
+      return differences == 0;
+   }
+
+   public static void main(String[] args) {
+      System.exit(new FlagTablesCheck().check() ? 0 : 1);
+   }
+}
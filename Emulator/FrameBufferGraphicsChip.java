@@ -0,0 +1,270 @@
+package Emulator;
+
+import java.awt.Component;
+import java.awt.Graphics;
+import java.util.Arrays;
+
+/**
+ * A GraphicsChip that draws every scanline pixel by pixel into an array of
+ * RGB values, rather than drawing cached tile images into an AWT image. It
+ * needs no component and loads no AWT classes, so it is the one used when the
+ * Dmgcpu has no screen. Each line is drawn with the registers as they are at
+ * its end, so raster effects within a frame are shown too
+ */
+class FrameBufferGraphicsChip extends GraphicsChip {
+   static final int WIDTH = 160;
+   static final int HEIGHT = 144;
+
+   /** The frame, one RGB value per pixel, row by row */
+   int[] frameBuffer = new int[WIDTH * HEIGHT];
+
+   /** Colour numbers of the background and window pixels of the current line */
+   private int[] lineColours = new int[WIDTH];
+
+   /** Background pixels of the current line with the GBC priority bit set */
+   private boolean[] linePriority = new boolean[WIDTH];
+
+   /** Pixels of the current line a sprite in front of the others has taken */
+   private boolean[] spritePixels = new boolean[WIDTH];
+
+   /** OAM numbers of the sprites on the current line, in drawing order */
+   private int[] lineSprites = new int[10];
+
+   /** The line of the window drawn next */
+   private int windowLine = 0;
+
+   public FrameBufferGraphicsChip(Dmgcpu d) {
+      super(null, d);
+   }
+
+   public short addressRead(int addr) {
+      return videoRam[addr + vidRamStart];
+   }
+
+   public void addressWrite(int addr, byte data) {
+      videoRam[addr + vidRamStart] = data;
+   }
+
+   /** There are no tile images to invalidate, the tiles are read on every line */
+   public void invalidateAll(int attribs) {
+   }
+
+   public void invalidateAll() {
+   }
+
+   public void dispose() {
+   }
+
+   void saveSnapshot(Snapshot s) {
+      super.saveSnapshot(s);
+      s.windowLine = windowLine;
+   }
+
+   void loadSnapshot(Snapshot s) {
+      super.loadSnapshot(s);
+      windowLine = s.windowLine;
+   }
+
+   public boolean isFrameReady() {
+      return (framesDrawn % frameSkip) == 0;
+   }
+
+   /** The frames are only kept in frameBuffer, there is no image to draw */
+   public boolean draw(Graphics g, int startX, int startY, Component a) {
+      return false;
+   }
+
+   /** Draw a line when the display hardware has finished it */
+   public void notifyScanline(int line) {
+      if (line >= HEIGHT) {
+         return;
+      }
+      if (line == 0) {
+         windowLine = 0;
+      }
+
+      if ((framesDrawn % frameSkip) == 0) {
+         drawLine(line);
+      }
+
+      if (line == HEIGHT - 1) {
+         framesDrawn++;
+         frameDone = true;
+      }
+   }
+
+   private void drawLine(int line) {
+      byte[] registers = dmgcpu.ioHandler.registers;
+      int offset = line * WIDTH;
+
+      // LCD off
+      if ((registers[0x40] & 0x80) == 0) {
+         Arrays.fill(frameBuffer, offset, offset + WIDTH, 0xFFFFFFFF);
+         return;
+      }
+
+      // Can't disable background on GBC, the bit gives the sprites priority instead
+      if (bgEnabled || dmgcpu.gbcFeatures) {
+         int scrollX = Util.unsign(registers[0x43]);
+         int scrollY = Util.unsign(registers[0x42]);
+         drawTiles(offset, 0, hiBgTileMapAddress ? 0x1C00 : 0x1800, (line + scrollY) & 0xFF,
+                  scrollX);
+      } else {
+         Arrays.fill(frameBuffer, offset, offset + WIDTH, backgroundPalette.getRgbEntry(0));
+         Arrays.fill(lineColours, 0);
+         Arrays.fill(linePriority, false);
+      }
+
+      int windowX = Util.unsign(registers[0x4B]) - 7;
+      int windowY = Util.unsign(registers[0x4A]);
+      if (winEnabled && (line >= windowY) && (windowX < WIDTH)) {
+         drawTiles(offset, Math.max(windowX, 0), ((registers[0x40] & 0x40) != 0) ? 0x1C00 : 0x1800,
+                  windowLine, -windowX);
+         windowLine++;
+      }
+
+      if (spritesEnabled) {
+         drawSprites(line, offset);
+      }
+   }
+
+   /**
+    * Draw the pixels of the line from startX on with line mapY of the tile
+    * map at mapAddress, scrolled left by scrollX pixels
+    */
+   private void drawTiles(int offset, int startX, int mapAddress, int mapY, int scrollX) {
+      int rowAddress = mapAddress + ((mapY >> 3) * 32);
+
+      for (int x = startX; x < WIDTH; x++) {
+         int mapX = (x + scrollX) & 0xFF;
+         int tileAddress = rowAddress + (mapX >> 3);
+
+         int tileNum;
+         if (bgWindowDataSelect) {
+            tileNum = Util.unsign(videoRam[tileAddress]);
+         } else {
+            tileNum = 256 + videoRam[tileAddress];
+         }
+
+         int dataAddress = tileNum << 4;
+         int px = mapX & 7;
+         int py = mapY & 7;
+         int attributes = 0;
+         GameboyPalette palette = backgroundPalette;
+
+         if (dmgcpu.gbcFeatures) {
+            attributes = Util.unsign(videoRam[tileAddress + 0x2000]);
+            if ((attributes & 0x08) != 0) {
+               dataAddress += 0x2000;
+            }
+            if ((attributes & 0x20) != 0) {
+               px = 7 - px;
+            }
+            if ((attributes & 0x40) != 0) {
+               py = 7 - py;
+            }
+            palette = gbcBackground[attributes & 0x07];
+         }
+
+         int colour = pixel(dataAddress + (py * 2), px);
+         lineColours[x] = colour;
+         linePriority[x] = (attributes & 0x80) != 0;
+         frameBuffer[offset + x] = palette.getRgbEntry(colour);
+      }
+   }
+
+   /** Draw the sprites on the line over the background and window */
+   private void drawSprites(int line, int offset) {
+      byte[] oam = dmgcpu.oam;
+      int height = doubledSprites ? 16 : 8;
+
+      // Only the first ten sprites on a line are shown
+      int count = 0;
+      for (int i = 0; (i < 40) && (count < 10); i++) {
+         int row = line - (Util.unsign(oam[i * 4]) - 16);
+         if ((row >= 0) && (row < height)) {
+            lineSprites[count++] = i;
+         }
+      }
+
+      // The GBC puts the sprite first in OAM in front, the Gameboy the one
+      // furthest left, and of those the one first in OAM
+      if (!dmgcpu.gbcFeatures) {
+         for (int i = 1; i < count; i++) {
+            int sprite = lineSprites[i];
+            int x = Util.unsign(oam[sprite * 4 + 1]);
+            int j = i;
+            while ((j > 0) && (Util.unsign(oam[lineSprites[j - 1] * 4 + 1]) > x)) {
+               lineSprites[j] = lineSprites[j - 1];
+               j--;
+            }
+            lineSprites[j] = sprite;
+         }
+      }
+
+      Arrays.fill(spritePixels, false);
+      for (int s = 0; s < count; s++) {
+         int address = lineSprites[s] * 4;
+         int spriteX = Util.unsign(oam[address + 1]) - 8;
+         int row = line - (Util.unsign(oam[address]) - 16);
+         int tileNum = Util.unsign(oam[address + 2]);
+         int attributes = Util.unsign(oam[address + 3]);
+
+         if (doubledSprites) {
+            tileNum &= 0xFE;
+         }
+         if ((attributes & 0x40) != 0) {
+            row = height - 1 - row;
+         }
+
+         // The second tile of a tall sprite follows the first
+         int dataAddress = (tileNum << 4) + (row * 2);
+         GameboyPalette palette;
+         if (dmgcpu.gbcFeatures) {
+            if ((attributes & 0x08) != 0) {
+               dataAddress += 0x2000;
+            }
+            palette = gbcSprite[attributes & 0x07];
+         } else if ((attributes & 0x10) != 0) {
+            palette = obj2Palette;
+         } else {
+            palette = obj1Palette;
+         }
+         boolean behind = (attributes & 0x80) != 0;
+
+         for (int px = 0; px < 8; px++) {
+            int x = spriteX + px;
+            if ((x < 0) || (x >= WIDTH) || spritePixels[x]) {
+               continue;
+            }
+            int colour = pixel(dataAddress, ((attributes & 0x20) != 0) ? 7 - px : px);
+            if (colour == 0) {
+               continue;
+            }
+
+            // A sprite hidden by the background still hides the sprites behind it
+            spritePixels[x] = true;
+            if (inFront(x, behind)) {
+               frameBuffer[offset + x] = palette.getRgbEntry(colour);
+            }
+         }
+      }
+   }
+
+   /** True if a sprite pixel at x is drawn over the background pixel there */
+   private boolean inFront(int x, boolean behind) {
+      if (lineColours[x] == 0) {
+         return true;
+      }
+      if (dmgcpu.gbcFeatures) {
+         return !bgEnabled || (!behind && !linePriority[x]);
+      }
+      return !behind;
+   }
+
+   /** The colour number of pixel px of the tile row at address */
+   private int pixel(int address, int px) {
+      int shift = 7 - px;
+      return ((videoRam[address] >> shift) & 1) | (((videoRam[address + 1] >> shift) & 1) << 1);
+   }
+}
@@ -132,7 +132,7 @@ class GameBoyPrinter extends GameLink {
       cpu.ioHandler.registers[0x02] &= 0x7F; // Turn of the send bit
       cpu.triggerInterruptIfEnabled(cpu.INT_SER);
 
-      buffer[bufferFillPos++] = JavaBoy.unsign(b);
+      buffer[bufferFillPos++] = Util.unsign(b);
       if (bufferFillPos == BUFFER_SIZE) {
          bufferFillPos = 0;
       }
@@ -524,7 +524,7 @@ class GameBoyScreen extends Frame implements ActionListener, ComponentListener,
       if (command.equals("Open ROM")) {
 
          if (applet.dmgcpu != null) {
-            applet.dmgcpu.terminate = true;
+            applet.dmgcpu.terminateProcess();
             if (applet.cartridge != null)
                applet.cartridge.dispose();
             if (applet.dmgcpu != null) {
@@ -540,6 +540,7 @@ class GameBoyScreen extends Frame implements ActionListener, ComponentListener,
          if (fd.getFile() != null) {
             applet.cartridge = new Cartridge(fd.getDirectory() + fd.getFile(), this);
             applet.dmgcpu = new Dmgcpu(applet.cartridge, applet.gameLink, this);
+            applet.dmgcpu.setCore(applet.coreName);
             // applet.gameBoyPrinter = new GameBoyPrinter();
             if (applet.gameLink != null)
                applet.gameLink.setDmgcpu(applet.dmgcpu);
@@ -552,7 +553,7 @@ class GameBoyScreen extends Frame implements ActionListener, ComponentListener,
             applet.dmgcpu.allowGbcFeatures = fileGameboyColor.getState();
             applet.dmgcpu.reset();
             applet.queueDebuggerCommand("g");
-            applet.dmgcpu.terminate = true;
+            applet.dmgcpu.terminateProcess();
          }
       } else if (command.equals("Frame counter")) {
          viewFrameCounter.setState(!viewFrameCounter.getState());
@@ -561,15 +562,15 @@ class GameBoyScreen extends Frame implements ActionListener, ComponentListener,
       } else if (command.equals("Emulate")) {
          if ((applet.cartridge != null) && (applet.cartridge.cartridgeReady)) {
             applet.queueDebuggerCommand("g");
-            applet.dmgcpu.terminate = true;
+            applet.dmgcpu.terminateProcess();
          } else {
             new ModalDialog(this, "Error", "You need to load a ROM before", "you select 'Emulate'.");
          }
       } else if (command.equals("Reset")) {
          applet.queueDebuggerCommand("s;g");
-         applet.dmgcpu.terminate = true;
+         applet.dmgcpu.terminateProcess();
       } else if (command.equals("Pause")) {
-         applet.dmgcpu.terminate = true;
+         applet.dmgcpu.terminateProcess();
       } else if (command.equals("Controls")) {
          // makeControlsDialog();
          new DefineControls();
@@ -578,14 +579,14 @@ class GameBoyScreen extends Frame implements ActionListener, ComponentListener,
             FileDialog fd = new FileDialog(this, "Execute debugger script");
             fd.show();
             applet.queueDebuggerCommand("c " + fd.getDirectory() + fd.getFile());
-            applet.dmgcpu.terminate = true;
+            applet.dmgcpu.terminateProcess();
          } else {
             new ModalDialog(this, "Error", "Load a ROM before executing a debugger script", "");
          }
       } else if (command.equals("Enter debugger")) {
          if (applet.dmgcpu != null) {
             applet.debuggerActive = true;
-            applet.dmgcpu.terminate = true;
+            applet.dmgcpu.terminateProcess();
          } else {
             new ModalDialog(this, "Error", "Load a ROM before entering the debugger", "");
          }
@@ -624,15 +625,15 @@ class GameBoyScreen extends Frame implements ActionListener, ComponentListener,
 
       } else if (command.equals("Save State")){
          if (applet.dmgcpu != null) {
-            applet.dmgcpu.saveInterrupt = true;
+            applet.dmgcpu.queueCommand(Dmgcpu.SAVE_STATE);
          }
       } else if (command.equals("Load State")){
          if (applet.dmgcpu != null) {
-            applet.dmgcpu.loadStateInterrupt = true;
+            applet.dmgcpu.queueCommand(Dmgcpu.LOAD_STATE);
          }
       } else if (command.equals("Load Checkpoint")){
          if (applet.dmgcpu != null) {
-            applet.dmgcpu.loadCheckpointInterrupt = true;
+            applet.dmgcpu.queueCommand(Dmgcpu.LOAD_CHECKPOINT);
          }
       }
    }
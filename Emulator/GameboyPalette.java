@@ -22,10 +22,9 @@ Place - Suite 330, Boston, MA 02111-1307, USA.
 
 */
 
-import java.awt.*;
+//import java.awt.*;
 //import java.awt.image.*;
 //import java.lang.*;
-import java.io.*;
 //import java.applet.*;
 //import java.net.*;
 //import java.awt.event.KeyListener;
@@ -69,51 +68,24 @@ class GameboyPalette {
       decodePalette(pal);
    }
 
-   public void saveData(DataOutputStream sv, String directory) {
-      try {
-         sv.writeShort(data[0]);
-         sv.writeShort(data[1]);
-         sv.writeShort(data[2]);
-         sv.writeShort(data[3]);
-
-         sv.writeInt(gbcData[0]);
-         sv.writeInt(gbcData[1]);
-         sv.writeInt(gbcData[2]);
-         sv.writeInt(gbcData[3]);
-
-         sv.writeInt(colours[0]);
-         sv.writeInt(colours[1]);
-         sv.writeInt(colours[2]);
-         sv.writeInt(colours[3]);
-
-      } catch (IOException e) {
-         System.out.println("Dmgcpu.saveState\\GameboyPalette.saveData: Could not write to file " + directory);
-         System.out.println("Error Message: " + e.getMessage());
-         System.exit(-1);
+   /** Number of values saveSnapshot() writes */
+   static final int SNAPSHOT_SIZE = 12;
+
+   /** Write the palette into s, from index pos */
+   void saveSnapshot(int[] s, int pos) {
+      for (int r = 0; r < 4; r++) {
+         s[pos + r] = data[r];
+         s[pos + 4 + r] = gbcData[r];
+         s[pos + 8 + r] = colours[r];
       }
    }
 
-   public void loadData(DataInputStream sv, String directory) {
-      try {
-         data[0] = sv.readShort();
-         data[1] = sv.readShort();
-         data[2] = sv.readShort();
-         data[3] = sv.readShort();
-
-         gbcData[0] = sv.readInt();
-         gbcData[1] = sv.readInt();
-         gbcData[2] = sv.readInt();
-         gbcData[3] = sv.readInt();
-
-         colours[0] = sv.readInt();
-         colours[1] = sv.readInt();
-         colours[2] = sv.readInt();
-         colours[3] = sv.readInt();
-
-      } catch (IOException e) {
-         System.out.println("Dmgcpu.loadState\\GameboyPalette.loadData: Could not read file " + directory);
-         System.out.println("Error Message: " + e.getMessage());
-         System.exit(-1);
+   /** Read back a palette written by saveSnapshot() */
+   void loadSnapshot(int[] s, int pos) {
+      for (int r = 0; r < 4; r++) {
+         data[r] = (short) s[pos + r];
+         gbcData[r] = s[pos + 4 + r];
+         colours[r] = s[pos + 8 + r];
       }
    }
 
@@ -160,9 +132,8 @@ class GameboyPalette {
 
       data[3] = 3;
 
-      Color c = new Color(red, green, blue);
-
-      colours[entryNo] = c.getRGB();
+      // the same opaque ARGB value as java.awt.Color would give
+      colours[entryNo] = 0xFF000000 | (red << 16) | (green << 8) | blue;
 
       // System.out.println("Colour " + entryNo + " set to " + red + ", " +
       // green + ", " + blue);
@@ -23,9 +23,7 @@ Place - Suite 330, Boston, MA 02111-1307, USA.
 */
 
 import java.awt.*;
-//import java.awt.image.*;
 //import java.lang.*;
-import java.io.*;
 //import java.applet.*;
 //import java.net.*;
 //import java.awt.event.KeyListener;
@@ -64,6 +62,9 @@ abstract class GraphicsChip {
    /** The current contents of the video memory, mapped in at 0x8000 - 0x9FFF */
    byte[] videoRam = new byte[0x8000];
 
+   /** Pages of the video memory shared with snapshots */
+   SharedPages videoRamPages = new SharedPages(videoRam);
+
    /** The background palette */
    GameboyPalette backgroundPalette;
 
@@ -79,9 +80,6 @@ abstract class GraphicsChip {
 
    boolean bgEnabled = true;
    boolean winEnabled = true;
-   
-   /** The image containing the Gameboy screen */
-   Image backBuffer;
 
    /** The current frame skip value */
    int frameSkip = 2;
@@ -131,105 +129,69 @@ abstract class GraphicsChip {
          gbcSprite[r] = new GameboyPalette(0, 1, 2, 3);
       }
 
-      backBuffer = a.createImage(160 * mag, 144 * mag);
       applet = a;
    }
 
-   /** Set the magnification for the screen */
-
-   public void saveData(DataOutputStream sv, String directory) {
-      try {
-         // write videoRam
-         sv.write(videoRam);
-
-         // write background
-         backgroundPalette.saveData(sv, directory);
+   /** Copy the state into a snapshot */
+   void saveSnapshot(Snapshot s) {
+      s.videoRam = videoRamPages.snapshot();
 
-         // write first sprite palette
-         obj1Palette.saveData(sv, directory);
-
-         // write second sprite palette
-         obj2Palette.saveData(sv, directory);
-
-         for (int i = 0; i < 8; i++) {
-            gbcBackground[i].saveData(sv, directory);
-            gbcSprite[i].saveData(sv, directory);
-         }
-         
-         sv.writeBoolean(spritesEnabled);
-         sv.writeBoolean(bgEnabled);
-         sv.writeBoolean(winEnabled);
-         sv.writeBoolean(bgWindowDataSelect);
-         sv.writeBoolean(doubledSprites);
-         sv.writeBoolean(hiBgTileMapAddress);
-         sv.writeBoolean(frameDone);
-         
-         sv.writeInt(tileStart);
-         sv.writeInt(vidRamStart);
-          
-      } catch (IOException e) {
-         System.out.println("Dmgcpu.saveState\\GraphicsChip.saveData: Could not write to file "
-                  + directory);
-         System.out.println("Error Message: " + e.getMessage());
-         System.exit(-1);
+      GameboyPalette[] palettes = allPalettes();
+      s.palettes = new int[palettes.length * GameboyPalette.SNAPSHOT_SIZE];
+      for (int i = 0; i < palettes.length; i++) {
+         palettes[i].saveSnapshot(s.palettes, i * GameboyPalette.SNAPSHOT_SIZE);
       }
-   }
 
-   public void loadData(DataInputStream sv, String directory) {
-      try {
-         backBuffer.flush();
-         int size = videoRam.length;
-         // write video ram
-         if(sv.read(videoRam) != size){
-            System.out.println("Dmgcpu.loadState\\GraphicsChip.loadData: videoRam loaded has different size!");
-            System.exit(-1);
-         }
+      s.spritesEnabled = spritesEnabled;
+      s.bgEnabled = bgEnabled;
+      s.winEnabled = winEnabled;
+      s.bgWindowDataSelect = bgWindowDataSelect;
+      s.doubledSprites = doubledSprites;
+      s.hiBgTileMapAddress = hiBgTileMapAddress;
+      s.tileStart = tileStart;
+      s.vidRamStart = vidRamStart;
+   }
 
-         // write background
-         backgroundPalette.loadData(sv, directory);
+   /** Put back the state of a snapshot, the cached tiles are drawn again */
+   void loadSnapshot(Snapshot s) {
+      videoRamPages.restore(s.videoRam);
 
-         // write first sprite palette
-         obj1Palette.loadData(sv, directory);
+      GameboyPalette[] palettes = allPalettes();
+      for (int i = 0; i < palettes.length; i++) {
+         palettes[i].loadSnapshot(s.palettes, i * GameboyPalette.SNAPSHOT_SIZE);
+      }
 
-         // write second sprite palette
-         obj2Palette.loadData(sv, directory);
+      spritesEnabled = s.spritesEnabled;
+      bgEnabled = s.bgEnabled;
+      winEnabled = s.winEnabled;
+      bgWindowDataSelect = s.bgWindowDataSelect;
+      doubledSprites = s.doubledSprites;
+      hiBgTileMapAddress = s.hiBgTileMapAddress;
+      tileStart = s.tileStart;
+      vidRamStart = s.vidRamStart;
+      invalidateAll();
+   }
 
-         for (int i = 0; i < 8; i++) {
-            gbcBackground[i].loadData(sv, directory);
-            gbcSprite[i].loadData(sv, directory);
-         }
-         
-         spritesEnabled = sv.readBoolean();
-         bgEnabled = sv.readBoolean();
-         winEnabled = sv.readBoolean();
-         bgWindowDataSelect = sv.readBoolean();
-         doubledSprites = sv.readBoolean();
-         hiBgTileMapAddress = sv.readBoolean();
-         frameDone = sv.readBoolean();
-         
-         tileStart = sv.readInt();
-         vidRamStart = sv.readInt();
-
-      } catch (IOException e) {
-         System.out.println("Dmgcpu.loadState\\GraphicsChip.loadData: Could not read file " + directory);
-         System.out.println("Error Message: " + e.getMessage());
-         System.exit(-1);
-      }
+   /** The Gameboy palettes followed by the GBC ones, in a fixed order */
+   private GameboyPalette[] allPalettes() {
+      GameboyPalette[] palettes = new GameboyPalette[19];
+      palettes[0] = backgroundPalette;
+      palettes[1] = obj1Palette;
+      palettes[2] = obj2Palette;
+      System.arraycopy(gbcBackground, 0, palettes, 3, 8);
+      System.arraycopy(gbcSprite, 0, palettes, 11, 8);
+      return palettes;
    }
 
+   /** Set the magnification for the screen */
    public void setMagnify(int m) {
       mag = m;
       width = m * 160;
       height = m * 144;
-      if (backBuffer != null)
-         backBuffer.flush();
-      backBuffer = applet.createImage(160 * mag, 144 * mag);
    }
 
    /** Clear up any allocated memory */
-   public void dispose() {
-      backBuffer.flush();
-   }
+   abstract public void dispose();
 
    /** Calculate the number of frames per second for the current sampling period */
    public void calculateFPS() {
@@ -0,0 +1,144 @@
+package Emulator;
+
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+
+/**
+ * Runs a ROM with no screen, no sound and no speed throttling, for a number
+ * of frames or until a byte of memory holds a given value, and then writes
+ * the last frame as a PPM image and the statistics of the run as a text file.
+ * No AWT or Swing classes are loaded, so it runs on hosts without a display.
+ *
+ * Usage: Headless [-core=name] [-frames=n] [-until=addr:value] [-frameskip=n]
+ *                 [-out=prefix] rom
+ *
+ * The address and value of -until are in hexadecimal, and the condition is
+ * checked at the end of every frame. The files written are prefix.ppm and
+ * prefix.txt, the prefix is the ROM file name without its extension unless
+ * given.
+ */
+public class Headless {
+   private EmulatorSession session;
+   private Dmgcpu dmgcpu;
+
+   /** Address and value of the byte that stops the run, -1 for none */
+   private int untilAddress = -1;
+   private int untilValue;
+
+   public Headless(String romFileName, String coreName) {
+      session = new EmulatorSession(romFileName, coreName, false);
+      dmgcpu = session.getDmgcpu();
+   }
+
+   /** Stop the run at the end of the first frame after which addr holds value */
+   public void setUntil(int addr, int value) {
+      untilAddress = addr;
+      untilValue = value;
+   }
+
+   /** Draw only one in every given number of frames, writeFrame() writes the last one drawn */
+   public void setFrameSkip(int frameSkip) {
+      dmgcpu.graphicsChip.frameSkip = frameSkip;
+   }
+
+   /** Run up to the given number of frames, returns true if the condition was met */
+   public boolean run(int numFrames) {
+      for (int r = 0; r < numFrames; r++) {
+         session.stepFrame();
+         if ((untilAddress != -1) && (session.readMemory(untilAddress) == untilValue)) {
+            return true;
+         }
+      }
+      return false;
+   }
+
+   /** Write the last frame drawn as a binary PPM image */
+   public void writeFrame(String fileName) throws IOException {
+      int[] frame = new int[EmulatorSession.WIDTH * EmulatorSession.HEIGHT];
+      session.getFramebuffer(frame);
+
+      OutputStream out = new BufferedOutputStream(new FileOutputStream(fileName));
+      out.write(("P6\n" + EmulatorSession.WIDTH + " " + EmulatorSession.HEIGHT + "\n255\n")
+               .getBytes("US-ASCII"));
+      for (int rgb : frame) {
+         out.write(rgb >> 16);
+         out.write(rgb >> 8);
+         out.write(rgb);
+      }
+      out.close();
+   }
+
+   /** Write the statistics of the run as name=value lines */
+   public void writeStats(String fileName, String romFileName, boolean conditionMet, long wallTime)
+            throws IOException {
+      double emulatedTime = (double) dmgcpu.cycles / dmgcpu.CYCLES_PER_SECOND;
+      PrintWriter out = new PrintWriter(fileName);
+      out.println("rom=" + romFileName);
+      out.println("core=" + dmgcpu.getCoreName());
+      out.println("frames=" + session.getFrames());
+      out.println("instructions=" + dmgcpu.instrCount);
+      out.println("cycles=" + dmgcpu.cycles);
+      out.println("conditionMet=" + conditionMet);
+      out.println("wallMillis=" + wallTime);
+      out.println("emulatedMillis=" + (long) (emulatedTime * 1000));
+      out.println("speed=" + ((wallTime > 0) ? emulatedTime * 1000 / wallTime : 0));
+      out.println("pc=" + Util.hexWord(dmgcpu.pc));
+      out.close();
+   }
+
+   public static void main(String[] args) throws IOException {
+      String coreName = Dmgcpu.CORE_NAMES[0];
+      int frames = 3600;
+      int frameSkip = 1;
+      String until = null;
+      String prefix = null;
+
+      int first = 0;
+      for (; (first < args.length) && args[first].startsWith("-"); first++) {
+         String option = args[first];
+         if (option.startsWith("-core=")) {
+            coreName = option.substring(6);
+         } else if (option.startsWith("-frames=")) {
+            frames = Integer.parseInt(option.substring(8));
+         } else if (option.startsWith("-until=")) {
+            until = option.substring(7);
+         } else if (option.startsWith("-frameskip=")) {
+            frameSkip = Integer.parseInt(option.substring(11));
+         } else if (option.startsWith("-out=")) {
+            prefix = option.substring(5);
+         } else {
+            System.out.println("Unknown option " + option);
+            return;
+         }
+      }
+      if (first >= args.length) {
+         System.out.println("Usage: Headless [-core=name] [-frames=n] [-until=addr:value] "
+                  + "[-frameskip=n] [-out=prefix] rom");
+         return;
+      }
+      String romFileName = args[first];
+      if (prefix == null) {
+         int dot = romFileName.lastIndexOf('.');
+         prefix = (dot > 0) ? romFileName.substring(0, dot) : romFileName;
+      }
+
+      Headless headless = new Headless(romFileName, coreName);
+      headless.setFrameSkip(frameSkip);
+      if (until != null) {
+         String[] fields = until.split(":");
+         headless.setUntil(Integer.parseInt(fields[0], 16), Integer.parseInt(fields[1], 16));
+      }
+
+      long start = System.currentTimeMillis();
+      boolean conditionMet = headless.run(frames);
+      long wallTime = System.currentTimeMillis() - start;
+
+      headless.writeFrame(prefix + ".ppm");
+      headless.writeStats(prefix + ".txt", romFileName, conditionMet, wallTime);
+      System.out.println("Ran " + headless.session.getFrames() + " frames in " + wallTime
+               + " ms, wrote " + prefix + ".ppm and " + prefix + ".txt");
+   }
+}
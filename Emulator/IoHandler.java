@@ -25,7 +25,6 @@ Place - Suite 330, Boston, MA 02111-1307, USA.
 //import java.awt.*;
 //import java.awt.image.*;
 //import java.lang.*;
-import java.io.*;
 //import java.applet.*;
 //import java.net.*;
 //import java.awt.event.KeyListener;
@@ -67,56 +66,36 @@ public class IoHandler {
       reset();
    }
 
-   public void saveData(DataOutputStream sv, String directory) {
-      try {
-         sv.write(registers);
-         
-//         sv.writeBoolean(padLeft);
-//         sv.writeBoolean(padRight);
-//         sv.writeBoolean(padUp);
-//         sv.writeBoolean(padDown);
-         sv.writeBoolean(padA);
-         sv.writeBoolean(padB);
-         sv.writeBoolean(padStart);
-         sv.writeBoolean(padSelect);
-         sv.writeBoolean(hdmaRunning);
-
-      } catch (IOException e) {
-         System.out.println("Dmgcpu.saveState\\IoHandler.saveData: Could not write to file " + directory);
-         System.out.println("Error Message: " + e.getMessage());
-         System.exit(-1);
-      }
+   /** Copy the state into a snapshot */
+   void saveSnapshot(Snapshot s) {
+      s.registers = registers.clone();
+      s.buttons = dmgcpu.getJoypad();
+      s.hdmaRunning = hdmaRunning;
    }
 
-   public void loadData(DataInputStream sv, String directory) {
-      try {
-         int size = registers.length;
-         
-         if(sv.read(registers) != size){
-            System.out.println("Dmgcpu.loadState\\IoHandler.loadData: registers loaded has different size!");
-            System.exit(-1);
-         }
-
-//         padLeft = sv.readBoolean();
-//         padRight = sv.readBoolean();
-//         padUp = sv.readBoolean();
-//         padDown = sv.readBoolean();
-         padA = sv.readBoolean();
-         padB = sv.readBoolean();
-         padStart = sv.readBoolean();
-         padSelect = sv.readBoolean();
-         hdmaRunning = sv.readBoolean();
-         
-      } catch (IOException e) {
-         System.out.println("Dmgcpu.loadState\\IoHandler.loadData: Could not read file " + directory);
-         System.out.println("Error Message: " + e.getMessage());
-         System.exit(-1);
-      }
+   /** Put back the state of a snapshot */
+   void loadSnapshot(Snapshot s) {
+      System.arraycopy(s.registers, 0, registers, 0, registers.length);
+      padRight = (s.buttons & Dmgcpu.PAD_RIGHT) != 0;
+      padLeft = (s.buttons & Dmgcpu.PAD_LEFT) != 0;
+      padUp = (s.buttons & Dmgcpu.PAD_UP) != 0;
+      padDown = (s.buttons & Dmgcpu.PAD_DOWN) != 0;
+      padA = (s.buttons & Dmgcpu.PAD_A) != 0;
+      padB = (s.buttons & Dmgcpu.PAD_B) != 0;
+      padSelect = (s.buttons & Dmgcpu.PAD_SELECT) != 0;
+      padStart = (s.buttons & Dmgcpu.PAD_START) != 0;
+      hdmaRunning = s.hdmaRunning;
+      updateInterrupts();
+   }
+
+   /** Recompute the CPU's pending interrupts from IF and IE */
+   void updateInterrupts() {
+      dmgcpu.pendingInterrupts = registers[0x0F] & registers[0xFF] & 0xFF;
    }
-   
+
    /** Initialize IO to initial power on state */
    public void reset() {
-      System.out.println("Hardware reset");
+      Util.debugLog("Hardware reset");
       for (int r = 0; r < 0xFF; r++) {
          ioWrite(r, (short) 0x00);
       }
@@ -158,13 +137,13 @@ public class IoHandler {
    }
 
    public void performHdma() {
-      int dmaSrc = (JavaBoy.unsign(registers[0x51]) << 8)
-               + (JavaBoy.unsign(registers[0x52]) & 0xF0);
-      int dmaDst = ((JavaBoy.unsign(registers[0x53]) & 0x1F) << 8)
-               + (JavaBoy.unsign(registers[0x54]) & 0xF0) + 0x8000;
+      int dmaSrc = (Util.unsign(registers[0x51]) << 8)
+               + (Util.unsign(registers[0x52]) & 0xF0);
+      int dmaDst = ((Util.unsign(registers[0x53]) & 0x1F) << 8)
+               + (Util.unsign(registers[0x54]) & 0xF0) + 0x8000;
 
-      // System.out.println("Copied 16 bytes from " + JavaBoy.hexWord(dmaSrc) +
-      // " to " + JavaBoy.hexWord(dmaDst));
+      // System.out.println("Copied 16 bytes from " + Util.hexWord(dmaSrc) +
+      // " to " + Util.hexWord(dmaDst));
 
       for (int r = 0; r < 16; r++) {
          dmgcpu.addressWrite(dmaDst + r, dmgcpu.addressRead(dmaSrc + r));
@@ -177,7 +156,7 @@ public class IoHandler {
       registers[0x53] = (byte) ((dmaDst & 0x1F00) >> 8);
       registers[0x54] = (byte) (dmaDst & 0x00F0);
 
-      int len = JavaBoy.unsign(registers[0x55]);
+      int len = Util.unsign(registers[0x55]);
       if (len == 0x00) {
          registers[0x55] = (byte) 0xFF;
          hdmaRunning = false;
@@ -191,8 +170,8 @@ public class IoHandler {
    /** Read data from IO Ram */
    public short ioRead(int num) {
       if (num <= 0x4B) {
-         // System.out.println("Read of register " + JavaBoy.hexByte(num) +
-         // " at " + JavaBoy.hexWord(dmgcpu.pc));
+         // System.out.println("Read of register " + Util.hexByte(num) +
+         // " at " + Util.hexWord(dmgcpu.pc));
       }
 
       switch (num) {
@@ -209,10 +188,10 @@ public class IoHandler {
                output |= 4;
             }
 
-            int cyclePos = dmgcpu.instrCount % dmgcpu.INSTRS_PER_HBLANK;
-            int sectionLength = dmgcpu.INSTRS_PER_HBLANK / 6;
+            int cyclePos = (int) (dmgcpu.cycles % dmgcpu.CYCLES_PER_HBLANK);
+            int sectionLength = dmgcpu.CYCLES_PER_HBLANK / 6;
 
-            if (JavaBoy.unsign(registers[0x44]) > 144) {
+            if (Util.unsign(registers[0x44]) > 144) {
                output |= 1;
             } else {
                if (cyclePos <= sectionLength * 3) {
@@ -230,7 +209,7 @@ public class IoHandler {
 
             // case 0x44 :
             // System.out.println("Checking LCDY at " +
-            // JavaBoy.hexWord(dmgcpu.pc));
+            // Util.hexWord(dmgcpu.pc));
             // return registers[num];
 
          case 0x55:
@@ -241,8 +220,8 @@ public class IoHandler {
             if (dmgcpu.gbcFeatures) {
                int palNumber = (registers[0x68] & 0x38) >> 3;
                return dmgcpu.graphicsChip.gbcBackground[palNumber].getGbcColours(
-                        (JavaBoy.unsign(registers[0x68]) & 0x06) >> 1,
-                        (JavaBoy.unsign(registers[0x68]) & 0x01) == 1);
+                        (Util.unsign(registers[0x68]) & 0x06) >> 1,
+                        (Util.unsign(registers[0x68]) & 0x01) == 1);
             } else {
                return registers[num];
             }
@@ -252,8 +231,8 @@ public class IoHandler {
             if (dmgcpu.gbcFeatures) {
                int palNumber = (registers[0x6A] & 0x38) >> 3;
                return dmgcpu.graphicsChip.gbcSprite[palNumber].getGbcColours(
-                        (JavaBoy.unsign(registers[0x6A]) & 0x06) >> 1,
-                        (JavaBoy.unsign(registers[0x6A]) & 0x01) == 1);
+                        (Util.unsign(registers[0x6A]) & 0x06) >> 1,
+                        (Util.unsign(registers[0x6A]) & 0x01) == 1);
             } else {
                return registers[num];
             }
@@ -268,9 +247,9 @@ public class IoHandler {
       boolean soundOn = (dmgcpu.soundChip != null);
 
       if (num <= 0x4B) {
-         // System.out.println("Write of register " + JavaBoy.hexByte(num) +
-         // " to " + JavaBoy.hexWord(data) + " at " +
-         // JavaBoy.hexWord(dmgcpu.pc));
+         // System.out.println("Write of register " + Util.hexByte(num) +
+         // " to " + Util.hexWord(data) + " at " +
+         // Util.hexWord(dmgcpu.pc));
       }
 
       switch (num) {
@@ -306,9 +285,9 @@ public class IoHandler {
             }
             output |= (data & 0xF0);
             registers[0x00] = (byte) (output);
-            // System.out.println("Joypad port = " + JavaBoy.hexByte(data) +
-            // " output = " + JavaBoy.hexByte(output) + "(PC=" +
-            // JavaBoy.hexWord(dmgcpu.pc) + ")");
+            // System.out.println("Joypad port = " + Util.hexByte(data) +
+            // " output = " + Util.hexByte(output) + "(PC=" +
+            // Util.hexWord(dmgcpu.pc) + ")");
             break;
 
          case 0x02: // Serial
@@ -317,7 +296,7 @@ public class IoHandler {
 
             if (dmgcpu.gameLink != null) { // Game Link is connected to serial
                                            // port
-               if (((JavaBoy.unsign(data) & 0x81) == 0x81)) {
+               if (((Util.unsign(data) & 0x81) == 0x81)) {
                   dmgcpu.gameLink.send(registers[0x01]);
                }
             } else {
@@ -336,13 +315,13 @@ public class IoHandler {
              * if (dmgcpu.gameLink == null) { // Simulate no gameboy present if
              * ((registers[0x02] & 0x01) == 1) {
              * //System.out.println("Sent byte: " +
-             * JavaBoy.hexByte(JavaBoy.unsign(registers[0x01])));
+             * Util.hexByte(Util.unsign(registers[0x01])));
              * registers[0x01] = (byte) 0xFF; // when no LAN connection
              * dmgcpu.triggerInterrupt(dmgcpu.INT_SER); registers[0x02] &= 0x7F;
-             * } } else if (((JavaBoy.unsign(data) & 0x81) == 0x81) &&
+             * } } else if (((Util.unsign(data) & 0x81) == 0x81) &&
              * (dmgcpu.gameLink != null)) {
              * dmgcpu.gameLink.send(registers[0x01]); } //
-             * System.out.println(JavaBoy.hexWord(dmgcpu.pc));
+             * System.out.println(Util.hexWord(dmgcpu.pc));
              */
             break;
 
@@ -357,44 +336,45 @@ public class IoHandler {
                dmgcpu.timaEnabled = true;
             }
 
-            int instrsPerSecond = dmgcpu.INSTRS_PER_VBLANK * 60;
+            int cyclesPerSecond = dmgcpu.CYCLES_PER_SECOND;
             int clockFrequency = (data & 0x03);
 
             switch (clockFrequency) {
                case 0:
-                  dmgcpu.instrsPerTima = (instrsPerSecond / 4096);
+                  dmgcpu.cyclesPerTima = (cyclesPerSecond / 4096);
                   break;
                case 1:
-                  dmgcpu.instrsPerTima = (instrsPerSecond / 262144);
+                  dmgcpu.cyclesPerTima = (cyclesPerSecond / 262144);
                   break;
                case 2:
-                  dmgcpu.instrsPerTima = (instrsPerSecond / 65536);
+                  dmgcpu.cyclesPerTima = (cyclesPerSecond / 65536);
                   break;
                case 3:
-                  dmgcpu.instrsPerTima = (instrsPerSecond / 16384);
+                  dmgcpu.cyclesPerTima = (cyclesPerSecond / 16384);
                   break;
             }
+            dmgcpu.scheduleTimer(dmgcpu.cycles);
             break;
 
          case 0x10: // Sound channel 1, sweep
             if (soundOn)
-               dmgcpu.soundChip.channel1.setSweep((JavaBoy.unsign(data) & 0x70) >> 4,
-                        (JavaBoy.unsign(data) & 0x07), (JavaBoy.unsign(data) & 0x08) == 1);
+               dmgcpu.soundChip.channel1.setSweep((Util.unsign(data) & 0x70) >> 4,
+                        (Util.unsign(data) & 0x07), (Util.unsign(data) & 0x08) == 1);
             registers[0x10] = (byte) data;
             break;
 
          case 0x11: // Sound channel 1, length and wave duty
             if (soundOn) {
-               dmgcpu.soundChip.channel1.setDutyCycle((JavaBoy.unsign(data) & 0xC0) >> 6);
-               dmgcpu.soundChip.channel1.setLength(JavaBoy.unsign(data) & 0x3F);
+               dmgcpu.soundChip.channel1.setDutyCycle((Util.unsign(data) & 0xC0) >> 6);
+               dmgcpu.soundChip.channel1.setLength(Util.unsign(data) & 0x3F);
             }
             registers[0x11] = (byte) data;
             break;
 
          case 0x12: // Sound channel 1, volume envelope
             if (soundOn) {
-               dmgcpu.soundChip.channel1.setEnvelope((JavaBoy.unsign(data) & 0xF0) >> 4,
-                        (JavaBoy.unsign(data) & 0x07), (JavaBoy.unsign(data) & 0x08) == 8);
+               dmgcpu.soundChip.channel1.setEnvelope((Util.unsign(data) & 0xF0) >> 4,
+                        (Util.unsign(data) & 0x07), (Util.unsign(data) & 0x08) == 8);
             }
             registers[0x12] = (byte) data;
             break;
@@ -403,8 +383,8 @@ public class IoHandler {
             registers[0x13] = (byte) data;
             if (soundOn) {
                dmgcpu.soundChip.channel1
-                        .setFrequency(((int) (JavaBoy.unsign(registers[0x14]) & 0x07) << 8)
-                                 + JavaBoy.unsign(registers[0x13]));
+                        .setFrequency(((int) (Util.unsign(registers[0x14]) & 0x07) << 8)
+                                 + Util.unsign(registers[0x13]));
             }
             break;
 
@@ -413,26 +393,26 @@ public class IoHandler {
 
             if (soundOn) {
                if ((registers[0x14] & 0x80) != 0) {
-                  dmgcpu.soundChip.channel1.setLength(JavaBoy.unsign(registers[0x11]) & 0x3F);
+                  dmgcpu.soundChip.channel1.setLength(Util.unsign(registers[0x11]) & 0x3F);
                   dmgcpu.soundChip.channel1.setEnvelope(
-                           (JavaBoy.unsign(registers[0x12]) & 0xF0) >> 4,
-                           (JavaBoy.unsign(registers[0x12]) & 0x07),
-                           (JavaBoy.unsign(registers[0x12]) & 0x08) == 8);
+                           (Util.unsign(registers[0x12]) & 0xF0) >> 4,
+                           (Util.unsign(registers[0x12]) & 0x07),
+                           (Util.unsign(registers[0x12]) & 0x08) == 8);
                }
                if ((registers[0x14] & 0x40) == 0) {
                   dmgcpu.soundChip.channel1.setLength(-1);
                }
 
                dmgcpu.soundChip.channel1
-                        .setFrequency(((int) (JavaBoy.unsign(registers[0x14]) & 0x07) << 8)
-                                 + JavaBoy.unsign(registers[0x13]));
+                        .setFrequency(((int) (Util.unsign(registers[0x14]) & 0x07) << 8)
+                                 + Util.unsign(registers[0x13]));
             }
             break;
 
          case 0x17: // Sound channel 2, volume envelope
             if (soundOn) {
-               dmgcpu.soundChip.channel2.setEnvelope((JavaBoy.unsign(data) & 0xF0) >> 4,
-                        (JavaBoy.unsign(data) & 0x07), (JavaBoy.unsign(data) & 0x08) == 8);
+               dmgcpu.soundChip.channel2.setEnvelope((Util.unsign(data) & 0xF0) >> 4,
+                        (Util.unsign(data) & 0x07), (Util.unsign(data) & 0x08) == 8);
             }
             registers[0x17] = (byte) data;
             break;
@@ -441,8 +421,8 @@ public class IoHandler {
             registers[0x18] = (byte) data;
             if (soundOn) {
                dmgcpu.soundChip.channel2
-                        .setFrequency(((int) (JavaBoy.unsign(registers[0x19]) & 0x07) << 8)
-                                 + JavaBoy.unsign(registers[0x18]));
+                        .setFrequency(((int) (Util.unsign(registers[0x19]) & 0x07) << 8)
+                                 + Util.unsign(registers[0x18]));
             }
             break;
 
@@ -451,34 +431,34 @@ public class IoHandler {
 
             if (soundOn) {
                if ((registers[0x19] & 0x80) != 0) {
-                  dmgcpu.soundChip.channel2.setLength(JavaBoy.unsign(registers[0x21]) & 0x3F);
+                  dmgcpu.soundChip.channel2.setLength(Util.unsign(registers[0x21]) & 0x3F);
                   dmgcpu.soundChip.channel2.setEnvelope(
-                           (JavaBoy.unsign(registers[0x17]) & 0xF0) >> 4,
-                           (JavaBoy.unsign(registers[0x17]) & 0x07),
-                           (JavaBoy.unsign(registers[0x17]) & 0x08) == 8);
+                           (Util.unsign(registers[0x17]) & 0xF0) >> 4,
+                           (Util.unsign(registers[0x17]) & 0x07),
+                           (Util.unsign(registers[0x17]) & 0x08) == 8);
                }
                if ((registers[0x19] & 0x40) == 0) {
                   dmgcpu.soundChip.channel2.setLength(-1);
                }
                dmgcpu.soundChip.channel2
-                        .setFrequency(((int) (JavaBoy.unsign(registers[0x19]) & 0x07) << 8)
-                                 + JavaBoy.unsign(registers[0x18]));
+                        .setFrequency(((int) (Util.unsign(registers[0x19]) & 0x07) << 8)
+                                 + Util.unsign(registers[0x18]));
             }
             break;
 
          case 0x16: // Sound channel 2, length and wave duty
             if (soundOn) {
-               dmgcpu.soundChip.channel2.setDutyCycle((JavaBoy.unsign(data) & 0xC0) >> 6);
-               dmgcpu.soundChip.channel2.setLength(JavaBoy.unsign(data) & 0x3F);
+               dmgcpu.soundChip.channel2.setDutyCycle((Util.unsign(data) & 0xC0) >> 6);
+               dmgcpu.soundChip.channel2.setLength(Util.unsign(data) & 0x3F);
             }
             registers[0x16] = (byte) data;
             break;
 
          case 0x1A: // Sound channel 3, on/off
             if (soundOn) {
-               if ((JavaBoy.unsign(data) & 0x80) != 0) {
+               if ((Util.unsign(data) & 0x80) != 0) {
                   dmgcpu.soundChip.channel3
-                           .setVolume((JavaBoy.unsign(registers[0x1C]) & 0x60) >> 5);
+                           .setVolume((Util.unsign(registers[0x1C]) & 0x60) >> 5);
                } else {
                   dmgcpu.soundChip.channel3.setVolume(0);
                }
@@ -491,52 +471,52 @@ public class IoHandler {
             // System.out.println("D:" + data);
             registers[0x1B] = (byte) data;
             if (soundOn)
-               dmgcpu.soundChip.channel3.setLength(JavaBoy.unsign(data));
+               dmgcpu.soundChip.channel3.setLength(Util.unsign(data));
             break;
 
          case 0x1C: // Sound channel 3, volume
             registers[0x1C] = (byte) data;
             if (soundOn)
-               dmgcpu.soundChip.channel3.setVolume((JavaBoy.unsign(registers[0x1C]) & 0x60) >> 5);
+               dmgcpu.soundChip.channel3.setVolume((Util.unsign(registers[0x1C]) & 0x60) >> 5);
             break;
 
          case 0x1D: // Sound channel 3, frequency lower 8-bit
             registers[0x1D] = (byte) data;
             if (soundOn)
                dmgcpu.soundChip.channel3
-                        .setFrequency(((int) (JavaBoy.unsign(registers[0x1E]) & 0x07) << 8)
-                                 + JavaBoy.unsign(registers[0x1D]));
+                        .setFrequency(((int) (Util.unsign(registers[0x1E]) & 0x07) << 8)
+                                 + Util.unsign(registers[0x1D]));
             break;
 
          case 0x1E: // Sound channel 3, frequency higher 3-bit
             registers[0x1E] = (byte) data;
             if (soundOn) {
                if ((registers[0x19] & 0x80) != 0) {
-                  dmgcpu.soundChip.channel3.setLength(JavaBoy.unsign(registers[0x1B]));
+                  dmgcpu.soundChip.channel3.setLength(Util.unsign(registers[0x1B]));
                }
                dmgcpu.soundChip.channel3
-                        .setFrequency(((int) (JavaBoy.unsign(registers[0x1E]) & 0x07) << 8)
-                                 + JavaBoy.unsign(registers[0x1D]));
+                        .setFrequency(((int) (Util.unsign(registers[0x1E]) & 0x07) << 8)
+                                 + Util.unsign(registers[0x1D]));
             }
             break;
 
          case 0x20: // Sound channel 4, length
             if (soundOn)
-               dmgcpu.soundChip.channel4.setLength(JavaBoy.unsign(data) & 0x3F);
+               dmgcpu.soundChip.channel4.setLength(Util.unsign(data) & 0x3F);
             registers[0x20] = (byte) data;
             break;
 
          case 0x21: // Sound channel 4, volume envelope
             if (soundOn)
-               dmgcpu.soundChip.channel4.setEnvelope((JavaBoy.unsign(data) & 0xF0) >> 4,
-                        (JavaBoy.unsign(data) & 0x07), (JavaBoy.unsign(data) & 0x08) == 8);
+               dmgcpu.soundChip.channel4.setEnvelope((Util.unsign(data) & 0xF0) >> 4,
+                        (Util.unsign(data) & 0x07), (Util.unsign(data) & 0x08) == 8);
             registers[0x21] = (byte) data;
             break;
 
          case 0x22: // Sound channel 4, polynomial parameters
             if (soundOn)
-               dmgcpu.soundChip.channel4.setParameters((JavaBoy.unsign(data) & 0x07),
-                        (JavaBoy.unsign(data) & 0x08) == 8, (JavaBoy.unsign(data) & 0xF0) >> 4);
+               dmgcpu.soundChip.channel4.setParameters((Util.unsign(data) & 0x07),
+                        (Util.unsign(data) & 0x08) == 8, (Util.unsign(data) & 0xF0) >> 4);
             registers[0x22] = (byte) data;
             break;
 
@@ -544,7 +524,7 @@ public class IoHandler {
             registers[0x23] = (byte) data;
             if (soundOn) {
                if ((registers[0x23] & 0x80) != 0) {
-                  dmgcpu.soundChip.channel4.setLength(JavaBoy.unsign(registers[0x20]) & 0x3F);
+                  dmgcpu.soundChip.channel4.setLength(Util.unsign(registers[0x20]) & 0x3F);
                }
                if ((registers[0x23] & 0x40) == 0) {
                   dmgcpu.soundChip.channel4.setLength(-1);
@@ -559,28 +539,28 @@ public class IoHandler {
 
             if (soundOn) {
                chanData = 0;
-               if ((JavaBoy.unsign(data) & 0x01) != 0) {
+               if ((Util.unsign(data) & 0x01) != 0) {
                   chanData |= SquareWaveGenerator.CHAN_LEFT;
                }
-               if ((JavaBoy.unsign(data) & 0x10) != 0) {
+               if ((Util.unsign(data) & 0x10) != 0) {
                   chanData |= SquareWaveGenerator.CHAN_RIGHT;
                }
                dmgcpu.soundChip.channel1.setChannel(chanData);
 
                chanData = 0;
-               if ((JavaBoy.unsign(data) & 0x02) != 0) {
+               if ((Util.unsign(data) & 0x02) != 0) {
                   chanData |= SquareWaveGenerator.CHAN_LEFT;
                }
-               if ((JavaBoy.unsign(data) & 0x20) != 0) {
+               if ((Util.unsign(data) & 0x20) != 0) {
                   chanData |= SquareWaveGenerator.CHAN_RIGHT;
                }
                dmgcpu.soundChip.channel2.setChannel(chanData);
 
                chanData = 0;
-               if ((JavaBoy.unsign(data) & 0x04) != 0) {
+               if ((Util.unsign(data) & 0x04) != 0) {
                   chanData |= SquareWaveGenerator.CHAN_LEFT;
                }
-               if ((JavaBoy.unsign(data) & 0x40) != 0) {
+               if ((Util.unsign(data) & 0x40) != 0) {
                   chanData |= SquareWaveGenerator.CHAN_RIGHT;
                }
                dmgcpu.soundChip.channel3.setChannel(chanData);
@@ -605,13 +585,13 @@ public class IoHandler {
          case 0x3E:
          case 0x3F:
             if (soundOn)
-               dmgcpu.soundChip.channel3.setSamplePair(num - 0x30, JavaBoy.unsign(data));
+               dmgcpu.soundChip.channel3.setSamplePair(num - 0x30, Util.unsign(data));
             registers[num] = (byte) data;
             break;
 
          case 0x40: // LCDC
-            // System.out.println("LCDC write at " + JavaBoy.hexWord(dmgcpu.pc)
-            // + " = " + JavaBoy.hexWord(data));
+            // System.out.println("LCDC write at " + Util.hexWord(dmgcpu.pc)
+            // + " = " + Util.hexWord(data));
             dmgcpu.graphicsChip.bgEnabled = true;
 
             if ((data & 0x20) == 0x20) { // BIT 5
@@ -654,29 +634,29 @@ public class IoHandler {
 
          case 0x41:
             // System.out.println("STAT set to " + data + " lcdc is " +
-            // JavaBoy.unsign(registers[0x44]) + " pc is " +
-            // JavaBoy.hexWord(dmgcpu.pc));
+            // Util.unsign(registers[0x44]) + " pc is " +
+            // Util.hexWord(dmgcpu.pc));
             registers[0x41] = (byte) data;
             break;
 
          case 0x42: // SCY
             // System.out.println("SCY set to " + data + " lcdc is " +
-            // JavaBoy.unsign(registers[0x44]) + " pc is " +
-            // JavaBoy.hexWord(dmgcpu.pc));
+            // Util.unsign(registers[0x44]) + " pc is " +
+            // Util.hexWord(dmgcpu.pc));
             registers[0x42] = (byte) data;
             break;
 
          case 0x43: // SCX
             // System.out.println("SCX set to " + data + " lcdc is " +
-            // JavaBoy.unsign(registers[0x44]) + " pc is " +
-            // JavaBoy.hexWord(dmgcpu.pc));
+            // Util.unsign(registers[0x44]) + " pc is " +
+            // Util.hexWord(dmgcpu.pc));
             registers[0x43] = (byte) data;
             break;
 
          case 0x46: // DMA
             int sourceAddress = (data << 8);
             // System.out.println("DMA Transfer initiated from " +
-            // JavaBoy.hexWord(sourceAddress) + "!");
+            // Util.hexWord(sourceAddress) + "!");
 
             // This could be sped up using System.arrayCopy, but hey.
             for (int i = 0x00; i < 0xA0; i++) {
@@ -712,17 +692,18 @@ public class IoHandler {
             if (dmgcpu.gbcFeatures) {
                dmgcpu.graphicsChip.tileStart = (data & 0x01) * 384;
                dmgcpu.graphicsChip.vidRamStart = (data & 0x01) * 0x2000;
+               dmgcpu.mapVideoRam();
             }
             registers[0x4F] = (byte) data;
             break;
 
          case 0x55:
             if ((!hdmaRunning) && ((registers[0x55] & 0x80) == 0) && ((data & 0x80) == 0)) {
-               int dmaSrc = (JavaBoy.unsign(registers[0x51]) << 8)
-                        + (JavaBoy.unsign(registers[0x52]) & 0xF0);
-               int dmaDst = ((JavaBoy.unsign(registers[0x53]) & 0x1F) << 8)
-                        + (JavaBoy.unsign(registers[0x54]) & 0xF0) + 0x8000;
-               int dmaLen = ((JavaBoy.unsign(data) & 0x7F) * 16) + 16;
+               int dmaSrc = (Util.unsign(registers[0x51]) << 8)
+                        + (Util.unsign(registers[0x52]) & 0xF0);
+               int dmaDst = ((Util.unsign(registers[0x53]) & 0x1F) << 8)
+                        + (Util.unsign(registers[0x54]) & 0xF0) + 0x8000;
+               int dmaLen = ((Util.unsign(data) & 0x7F) * 16) + 16;
 
                if (dmaLen > 2048)
                   dmaLen = 2048;
@@ -731,12 +712,13 @@ public class IoHandler {
                   dmgcpu.addressWrite(dmaDst + r, dmgcpu.addressRead(dmaSrc + r));
                }
             } else {
-               if ((JavaBoy.unsign(data) & 0x80) == 0x80) {
+               if ((Util.unsign(data) & 0x80) == 0x80) {
                   hdmaRunning = true;
+                  dmgcpu.scheduleHdma();
                   // System.out.println("HDMA started");
                   registers[0x55] = (byte) (data & 0x7F);
                   break;
-               } else if ((hdmaRunning) && ((JavaBoy.unsign(data) & 0x80) == 0)) {
+               } else if ((hdmaRunning) && ((Util.unsign(data) & 0x80) == 0)) {
                   hdmaRunning = false;
                   // System.out.println("HDMA stopped");
                }
@@ -750,11 +732,11 @@ public class IoHandler {
             if (dmgcpu.gbcFeatures) {
                int palNumber = (registers[0x68] & 0x38) >> 3;
                dmgcpu.graphicsChip.gbcBackground[palNumber].setGbcColours(
-                        (JavaBoy.unsign(registers[0x68]) & 0x06) >> 1,
-                        (JavaBoy.unsign(registers[0x68]) & 0x01) == 1, JavaBoy.unsign(data));
+                        (Util.unsign(registers[0x68]) & 0x06) >> 1,
+                        (Util.unsign(registers[0x68]) & 0x01) == 1, Util.unsign(data));
                dmgcpu.graphicsChip.invalidateAll(palNumber * 4);
 
-               if ((JavaBoy.unsign(registers[0x68]) & 0x80) != 0) {
+               if ((Util.unsign(registers[0x68]) & 0x80) != 0) {
                   registers[0x68]++;
                }
 
@@ -769,11 +751,11 @@ public class IoHandler {
                int palNumber = (registers[0x6A] & 0x38) >> 3;
                // System.out.print("Pal " + palNumber + "  ");
                dmgcpu.graphicsChip.gbcSprite[palNumber].setGbcColours(
-                        (JavaBoy.unsign(registers[0x6A]) & 0x06) >> 1,
-                        (JavaBoy.unsign(registers[0x6A]) & 0x01) == 1, JavaBoy.unsign(data));
+                        (Util.unsign(registers[0x6A]) & 0x06) >> 1,
+                        (Util.unsign(registers[0x6A]) & 0x01) == 1, Util.unsign(data));
                dmgcpu.graphicsChip.invalidateAll((palNumber * 4) + 32);
 
-               if ((JavaBoy.unsign(registers[0x6A]) & 0x80) != 0) {
+               if ((Util.unsign(registers[0x6A]) & 0x80) != 0) {
                   if ((registers[0x6A] & 0x3F) == 0x3F) {
                      registers[0x6A] = (byte) 0x80;
                   } else {
@@ -792,10 +774,18 @@ public class IoHandler {
                } else {
                   dmgcpu.gbcRamBank = data & 0x07;
                }
+               dmgcpu.decodeCache.invalidate(0xD000, 0x1000);
+               dmgcpu.mapWorkRam();
             }
             registers[0x70] = (byte) data;
             break;
 
+         case 0x0F: // IF
+         case 0xFF: // IE
+            registers[num] = (byte) data;
+            updateInterrupts();
+            break;
+
          default:
 
             registers[num] = (byte) data;
@@ -103,6 +103,7 @@ import java.awt.event.ActionEvent;
 import java.awt.event.ItemEvent;
 import java.awt.event.MouseEvent;
 import java.util.StringTokenizer;
+import java.util.Arrays;
 //import javax.sound.sampled.*;
 
 /** This is the main controlling class which contains the main() method
@@ -118,16 +119,15 @@ public class JavaBoy extends java.applet.Applet implements Runnable, KeyListener
     * 
     */
    private static final long serialVersionUID = 2420583206016542966L;
-   private final int a = 7, b = 0, c = 1, d = 2, e = 3;
 
    private final String WEBSITE_URL = "http://www.millstone.demon.co.uk/download/javaboy";
-   private static final String hexChars = "0123456789ABCDEF";
 
    /** The version string is displayed on the title bar of the application */
    private static String versionString = "0.92";
 
    private boolean appletRunning = true;
-   public static boolean runningAsApplet;
+   /** False for the application, which shows the game in a GameBoyScreen */
+   private boolean runningAsApplet = true;
 
    private boolean fullFrame = true;
 
@@ -194,6 +194,9 @@ public class JavaBoy extends java.applet.Applet implements Runnable, KeyListener
     */
    GameBoyScreen mainWindow;
 
+   /** Name of the CPU core the emulator is started with, set with -core=name */
+   String coreName = Dmgcpu.CORE_NAMES[0];
+
    /** Stores commands queued to be executed by the debugger */
    String debuggerQueue = null;
 
@@ -222,45 +225,6 @@ public class JavaBoy extends java.applet.Applet implements Runnable, KeyListener
 
    long lastClickTime = 0;
 
-   /** Outputs a line of debugging information */
-   static public void debugLog(String s) {
-      System.out.println("Debug: " + s);
-   }
-
-   /** Returns the unsigned value (0 - 255) of a signed byte */
-   static public short unsign(byte b) {
-      if (b < 0) {
-         return (short) (256 + b);
-      } else {
-         return b;
-      }
-   }
-
-   /**
-    * Returns the unsigned value (0 - 255) of a signed 8-bit value stored in a
-    * short
-    */
-   static public short unsign(short b) {
-      if (b < 0) {
-         return (short) (256 + b);
-      } else {
-         return b;
-      }
-   }
-
-   /** Returns a string representation of an 8-bit number in hexadecimal */
-   static public String hexByte(int b) {
-      String s = new Character(hexChars.charAt(b >> 4)).toString();
-      s = s + new Character(hexChars.charAt(b & 0x0F)).toString();
-
-      return s;
-   }
-
-   /** Returns a string representation of an 16-bit number in hexadecimal */
-   static public String hexWord(int w) {
-      return new String(hexByte((w & 0x0000FF00) >> 8) + hexByte(w & 0x000000FF));
-   }
-
    /** When running as an applet, updates the screen when necessary */
    public void paint(Graphics g) {
       if (dmgcpu != null) {
@@ -593,6 +557,9 @@ public class JavaBoy extends java.applet.Applet implements Runnable, KeyListener
       System.out.println("o                     Output Gameboy screen to applet window");
       System.out.println("b addr                Set breakpoint at addr");
       System.out.println("k [keyname]           Toggle Gameboy key");
+      System.out.println("f                     Show _f_used instructions");
+      System.out.println("f len                 Choose fused instructions from the next len instructions");
+      System.out.println("f file                Choose fused instructions from a statistics file");
       System.out.println("m bank                _M_ap to ROM bank");
       System.out.println("m                     Display current ROM mapping");
       System.out.println("q                     Quit debugger interface");
@@ -607,9 +574,9 @@ public class JavaBoy extends java.applet.Applet implements Runnable, KeyListener
          lines = 1;
 
       for (int l = 0; l < lines; l++) {
-         System.out.print(JavaBoy.hexWord(start + (l * 16)) + "   ");
+         System.out.print(Util.hexWord(start + (l * 16)) + "   ");
          for (int r = start + (l * 16); r < start + (l * 16) + 16; r++) {
-            System.out.print(JavaBoy.hexByte(unsign(dmgcpu.addressRead(r))) + " ");
+            System.out.print(Util.hexByte(Util.unsign(dmgcpu.addressRead(r))) + " ");
          }
          System.out.print("   ");
          for (int r = start + (l * 16); r < start + (l * 16) + 16; r++) {
@@ -627,13 +594,13 @@ public class JavaBoy extends java.applet.Applet implements Runnable, KeyListener
    /** Output the current register values to the console */
    public void showRegisterValues() {
       System.out.println("- Register values");
-      System.out.print("A = " + JavaBoy.hexWord(dmgcpu.registers[a]) + "    BC = " + JavaBoy.hexWord(dmgcpu.registers[b])
-               + JavaBoy.hexWord(dmgcpu.registers[c]));
-      System.out.print("    DE = " + JavaBoy.hexByte(dmgcpu.registers[d]) + JavaBoy.hexByte(dmgcpu.registers[e]));
-      System.out.print("    HL = " + JavaBoy.hexWord(dmgcpu.hl));
-      System.out.print("    PC = " + JavaBoy.hexWord(dmgcpu.pc));
-      System.out.println("    SP = " + JavaBoy.hexWord(dmgcpu.sp));
-      System.out.println("F = " + JavaBoy.hexByte(unsign((short) dmgcpu.f)));
+      System.out.print("A = " + Util.hexWord(dmgcpu.a) + "    BC = " + Util.hexWord(dmgcpu.bc));
+      System.out.print("    DE = " + Util.hexWord(dmgcpu.de));
+      System.out.print("    HL = " + Util.hexWord(dmgcpu.hl));
+      System.out.print("    PC = " + Util.hexWord(dmgcpu.pc));
+      System.out.println("    SP = " + Util.hexWord(dmgcpu.sp));
+      dmgcpu.updateFlags();
+      System.out.println("F = " + Util.hexByte(Util.unsign((short) dmgcpu.f)));
    }
 
    /**
@@ -675,7 +642,7 @@ public class JavaBoy extends java.applet.Applet implements Runnable, KeyListener
       BufferedReader in = null;
       try {
 
-         if (JavaBoy.runningAsApplet) {
+         if (runningAsApplet) {
             is = new URL(getDocumentBase(), fn).openStream();
          } else {
             is = new FileInputStream(new File(fn));
@@ -683,7 +650,7 @@ public class JavaBoy extends java.applet.Applet implements Runnable, KeyListener
          in = new BufferedReader(new InputStreamReader(is));
 
          String line;
-         while (((line = in.readLine()) != null) && (!dmgcpu.terminate) && (appletRunning)) {
+         while (((line = in.readLine()) != null) && (!dmgcpu.terminateRequested()) && (appletRunning)) {
             executeDebuggerCommand(line);
          }
 
@@ -737,8 +704,8 @@ public class JavaBoy extends java.applet.Applet implements Runnable, KeyListener
                try {
                   int address = Integer.valueOf(st.nextToken(), 16).intValue();
                   int length = Integer.valueOf(st.nextToken(), 16).intValue();
-                  System.out.println("- Dumping " + JavaBoy.hexWord(length)
-                           + " instructions starting from " + JavaBoy.hexWord(address));
+                  System.out.println("- Dumping " + Util.hexWord(length)
+                           + " instructions starting from " + Util.hexWord(address));
                   hexDump(address, length);
                } catch (java.util.NoSuchElementException e) {
                   System.out.println("Invalid number of parameters to 'd' command.");
@@ -750,8 +717,8 @@ public class JavaBoy extends java.applet.Applet implements Runnable, KeyListener
                try {
                   int address = Integer.valueOf(st.nextToken(), 16).intValue();
                   int length = Integer.valueOf(st.nextToken(), 16).intValue();
-                  System.out.println("- Dissasembling " + JavaBoy.hexWord(length)
-                           + " instructions starting from " + JavaBoy.hexWord(address));
+                  System.out.println("- Dissasembling " + Util.hexWord(length)
+                           + " instructions starting from " + Util.hexWord(address));
                   dmgcpu.disassemble(address, length);
                } catch (java.util.NoSuchElementException e) {
                   System.out.println("Invalid number of parameters to 'i' command.");
@@ -762,9 +729,9 @@ public class JavaBoy extends java.applet.Applet implements Runnable, KeyListener
             case 'p':
                try {
                   int length = Integer.valueOf(st.nextToken(), 16).intValue();
-                  System.out.println("- Dissasembling " + JavaBoy.hexWord(length)
+                  System.out.println("- Dissasembling " + Util.hexWord(length)
                            + " instructions starting from program counter ("
-                           + JavaBoy.hexWord(dmgcpu.pc) + ")");
+                           + Util.hexWord(dmgcpu.pc) + ")");
                   dmgcpu.disassemble(dmgcpu.pc, length);
                } catch (java.util.NoSuchElementException e) {
                   System.out.println("Invalid number of parameters to 'p' command.");
@@ -786,7 +753,7 @@ public class JavaBoy extends java.applet.Applet implements Runnable, KeyListener
                   try {
                      int val = Integer.valueOf(st.nextToken(), 16).intValue();
                      if (dmgcpu.setRegister(reg, val)) {
-                        System.out.println("- Set register " + reg + " to " + JavaBoy.hexWord(val)
+                        System.out.println("- Set register " + reg + " to " + Util.hexWord(val)
                                  + ".");
                      } else {
                         System.out.println("Invalid register name '" + reg + "'.");
@@ -835,7 +802,7 @@ public class JavaBoy extends java.applet.Applet implements Runnable, KeyListener
                   System.out.println("Missing address.");
                   break;
                }
-               System.out.print("- Written data starting at " + JavaBoy.hexWord(address) + " (");
+               System.out.print("- Written data starting at " + Util.hexWord(address) + " (");
                if (!st.hasMoreTokens()) {
                   System.out.println("");
                   System.out.println("Missing data value(s)");
@@ -845,7 +812,7 @@ public class JavaBoy extends java.applet.Applet implements Runnable, KeyListener
                   while (st.hasMoreTokens()) {
                      short data = (byte) Integer.valueOf(st.nextToken(), 16).intValue();
                      dmgcpu.addressWrite(address++, data);
-                     // System.out.print(JavaBoy.hexByte(unsign(data)));
+                     // System.out.print(Util.hexByte(Util.unsign(data)));
                      // if (st.hasMoreTokens()) System.out.print(", ");
                   }
                   System.out.println(")");
@@ -866,7 +833,7 @@ public class JavaBoy extends java.applet.Applet implements Runnable, KeyListener
                      dmgcpu.setBreakpoint(false);
                   }
                   int addr = Integer.valueOf(st.nextToken(), 16).intValue();
-                  System.out.println("- Setting breakpoint at " + JavaBoy.hexWord(addr));
+                  System.out.println("- Setting breakpoint at " + Util.hexWord(addr));
                   breakpointAddr = (short) addr;
                   breakpointInstr = (short) dmgcpu.addressRead(addr);
                   breakpointBank = (short) cartridge.currentBank;
@@ -902,11 +869,29 @@ public class JavaBoy extends java.applet.Applet implements Runnable, KeyListener
                else
                   System.out.println("disabled.");
 
+               break;
+            case 'f':
+               try {
+                  String param = st.nextToken();
+                  try {
+                     int length = Integer.valueOf(param, 16).intValue();
+                     System.out.println("- Recording opcode sequences of the next "
+                              + Util.hexWord(length) + " instructions");
+                     dmgcpu.profileFusion(length);
+                  } catch (NumberFormatException e) {
+                     if (dmgcpu.loadFusionProfile(param)) {
+                        System.out.println("- Superinstructions loaded from " + param);
+                     }
+                  }
+               } catch (java.util.NoSuchElementException e) {
+                  System.out.println("- Superinstructions:");
+                  System.out.print(dmgcpu.getFusionInfo());
+               }
                break;
             case 'm':
                try {
                   int bank = Integer.valueOf(st.nextToken(), 16).intValue();
-                  System.out.println("- Mapping ROM bank " + JavaBoy.hexByte(bank)
+                  System.out.println("- Mapping ROM bank " + Util.hexByte(bank)
                            + " to 4000 - 7FFFF");
                   cartridge.saveMapping();
                   cartridge.mapRom(bank);
@@ -919,9 +904,9 @@ public class JavaBoy extends java.applet.Applet implements Runnable, KeyListener
                try {
                   cartridge.restoreMapping();
                   int length = Integer.valueOf(st.nextToken(), 16).intValue();
-                  System.out.println("- Executing " + JavaBoy.hexWord(length)
+                  System.out.println("- Executing " + Util.hexWord(length)
                            + " instructions starting from program counter ("
-                           + JavaBoy.hexWord(dmgcpu.pc) + ")");
+                           + Util.hexWord(dmgcpu.pc) + ")");
                   dmgcpu.execute(length);
                   if (dmgcpu.pc == breakpointAddr) {
                      dmgcpu.addressWrite(breakpointAddr, breakpointInstr);
@@ -930,7 +915,7 @@ public class JavaBoy extends java.applet.Applet implements Runnable, KeyListener
                   }
                } catch (java.util.NoSuchElementException e) {
                   System.out.println("- Executing instruction at program counter ("
-                           + JavaBoy.hexWord(dmgcpu.pc) + ")");
+                           + Util.hexWord(dmgcpu.pc) + ")");
                   dmgcpu.execute(1);
                } catch (NumberFormatException e) {
                   System.out.println("Error parsing hex value.");
@@ -973,6 +958,7 @@ public class JavaBoy extends java.applet.Applet implements Runnable, KeyListener
 
    /** Initialize JavaBoy when run as an application */
    public JavaBoy(String cartName) {
+      runningAsApplet = false;
       mainWindow = new GameBoyScreen("JavaBoy " + versionString, this);
       mainWindow.setVisible(true);
       this.requestFocus();
@@ -985,16 +971,29 @@ public class JavaBoy extends java.applet.Applet implements Runnable, KeyListener
    public static void main(String[] args) {
       System.out.println("JavaBoy (tm) Version " + versionString
                + " (c) 2005 Neil Millstone (application)");
-      runningAsApplet = false;
       JavaBoy javaBoy = new JavaBoy("");
 
       // javaBoy.mainWindow.addKeyListener(javaBoy);
       // javaBoy.mainWindow.addWindowListener(javaBoy);
-      if (args.length > 0) {
-         if (args[0].equals("server")) {
+      // options come first, then the game link mode
+      int first = 0;
+      while ((first < args.length) && args[first].startsWith("-")) {
+         if (args[first].startsWith("-core=")) {
+            String name = args[first].substring(6);
+            if (Arrays.asList(Dmgcpu.CORE_NAMES).contains(name)) {
+               javaBoy.coreName = name;
+            } else {
+               System.out.println("Unknown CPU core " + name + ", the cores are "
+                        + Arrays.toString(Dmgcpu.CORE_NAMES));
+            }
+         }
+         first++;
+      }
+      if (args.length > first) {
+         if (args[first].equals("server")) {
             javaBoy.gameLink = new TCPGameLink(null);
-         } else if (args[0].equals("client")) {
-            javaBoy.gameLink = new TCPGameLink(null, args[1]);
+         } else if (args[first].equals("client")) {
+            javaBoy.gameLink = new TCPGameLink(null, args[first + 1]);
          }
       }
       // javaBoy.mainWindow.setGraphicsChip(javaBoy.dmgcpu.graphicsChip);
@@ -1006,13 +1005,15 @@ public class JavaBoy extends java.applet.Applet implements Runnable, KeyListener
    public void start() {
       Thread p = new Thread(this);
 
-      runningAsApplet = true;
       setupKeyboard();
       System.out.println("JavaBoy (tm) Version " + versionString
                + " (c) 2005 Neil Millstone (applet)");
 
       cartridge = new Cartridge(getParameter("ROMIMAGE"), this);
       dmgcpu = new Dmgcpu(cartridge, null, this);
+      if (getParameter("CORE") != null) {
+         dmgcpu.setCore(getParameter("CORE"));
+      }
       dmgcpu.graphicsChip.setMagnify(getSize().width / 160);
       this.requestFocus();
       p.start();
@@ -1103,7 +1104,7 @@ public class JavaBoy extends java.applet.Applet implements Runnable, KeyListener
       System.out.println("Applet stopped");
       appletRunning = false;
       if (dmgcpu != null)
-         dmgcpu.terminate = true;
+         dmgcpu.terminateProcess();
    }
 
 }
@@ -0,0 +1,143 @@
+package Emulator;
+/*
+
+JavaBoy
+                                  
+COPYRIGHT (C) 2001 Neil Millstone and The Victoria University of Manchester
+                                                                         ;;;
+This program is free software; you can redistribute it and/or modify it
+under the terms of the GNU General Public License as published by the Free
+Software Foundation; either version 2 of the License, or (at your option)
+any later version.        
+
+This program is distributed in the hope that it will be useful, but WITHOUT
+ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+more details.
+
+
+You should have received a copy of the GNU General Public License along with
+this program; if not, write to the Free Software Foundation, Inc., 59 Temple
+Place - Suite 330, Boston, MA 02111-1307, USA.
+
+*/
+
+import javax.sound.sampled.*;
+//import java.awt.*;
+//import java.awt.image.*;
+//import java.lang.*;
+//import java.io.*;
+//import java.applet.*;
+//import java.net.*;
+//import java.awt.event.KeyListener;
+//import java.awt.event.WindowListener;
+//import java.awt.event.ActionListener;
+//import java.awt.event.ComponentListener;
+//import java.awt.event.ItemListener;
+//import java.awt.event.KeyEvent;
+//import java.awt.event.WindowEvent;
+//import java.awt.event.ActionEvent;
+//import java.awt.event.ComponentEvent;
+//import java.awt.event.ItemEvent;
+//import java.util.StringTokenizer;
+
+
+
+/** Plays the sound through a Java Sound API data line, when there is
+ *  sound hardware to open one on.
+ */
+class LineSoundChip extends SoundChip {
+   /** The DataLine for outputting the sound */
+   SourceDataLine soundLine;
+
+   /** Initialize sound emulation, and allocate sound hardware */
+   public LineSoundChip() {
+      soundLine = initSoundHardware();
+   }
+
+   /** Initialize sound hardware if available */
+   public SourceDataLine initSoundHardware() {
+
+      try {
+         AudioFormat format = new AudioFormat(AudioFormat.Encoding.PCM_SIGNED, sampleRate, 8, 2, 2,
+                  sampleRate, true);
+         DataLine.Info lineInfo = new DataLine.Info(SourceDataLine.class, format);
+
+         if (!AudioSystem.isLineSupported(lineInfo)) {
+            System.out.println("Error: Can't find audio output system!");
+            soundEnabled = false;
+         } else {
+            SourceDataLine line = (SourceDataLine) AudioSystem.getLine(lineInfo);
+
+            int bufferLength = (sampleRate / 1000) * bufferLengthMsec;
+            line.open(format, bufferLength);
+            line.start();
+            // System.out.println("Initialized audio successfully.");
+            soundEnabled = true;
+            return line;
+         }
+      } catch (Exception e) {
+         System.out.println("Error: Audio system busy!");
+         soundEnabled = false;
+      }
+
+      return null;
+   }
+
+   /** Set the output volume */
+   public void setVolume(float vol) {
+      if (soundLine.isControlSupported(FloatControl.Type.MASTER_GAIN)) {
+         try {
+            FloatControl volume = (FloatControl) soundLine
+                     .getControl(FloatControl.Type.MASTER_GAIN);
+            volume.setValue(vol);
+            
+            if (vol > -70) {
+               soundEnabled = true;
+            } else {
+               soundEnabled = false;
+            }
+
+         } catch (IllegalArgumentException e) {
+            System.out.println("Could not set volume!" + e.getMessage());
+         }
+      }
+   }
+
+   /** Change the sample rate of the playback */
+   public void setSampleRate(int sr) {
+      super.setSampleRate(sr);
+
+      soundLine.flush();
+      soundLine.close();
+
+      soundLine = initSoundHardware();
+   }
+
+   /** Change the sound buffer length */
+   public void setBufferLength(int time) {
+      super.setBufferLength(time);
+
+      soundLine.flush();
+      soundLine.close();
+
+      soundLine = initSoundHardware();
+   }
+
+   /** Adds a single frame of sound data to the buffer */
+   public void outputSound() {
+      if (soundEnabled) {
+         int numSamples;
+
+         if (sampleRate / 28 >= soundLine.available() * 2) {
+            numSamples = soundLine.available() * 2;
+         } else {
+            numSamples = (sampleRate / 28) & 0xFFFE;
+         }
+
+         byte[] b = new byte[numSamples];
+         mix(b, numSamples);
+         soundLine.write(b, 0, numSamples);
+      }
+   }
+}
@@ -0,0 +1,217 @@
+package Emulator;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.zip.CRC32;
+
+/**
+ * Runs the same ROM on two Dmgcpu instances with different cores, in
+ * lockstep and with the same joypad input, and compares their registers
+ * and a hash of their memory every interval instructions. When they
+ * differ, the last interval is run again one instruction at a time to find
+ * the first instruction after which they do, and its PC, its opcode and the
+ * state of both CPUs are reported.
+ *
+ * Superinstructions, which are off unless a fusion profile is taken, and
+ * idle loop skipping are turned off on both. They run several instructions
+ * in one step, so the CPUs would not be compared after the same
+ * instructions.
+ * A difference that is overwritten before the next comparison is not seen,
+ * an interval of 1 compares after every instruction.
+ *
+ * Usage: LockstepCheck rom [coreA] [coreB] [interval] [instructions] [input file]
+ *
+ * Each line of the input file holds an instruction count and the buttons
+ * held down from then on, as in "120000 a,start" or "150000 none".
+ */
+public class LockstepCheck {
+   static final String[] BUTTON_NAMES = { "right", "left", "up", "down", "a", "b", "select", "start" };
+
+   private String romFileName;
+   private String[] cores;
+
+   /** Instruction counts and buttons of the joypad input, in order */
+   private long[] inputTimes;
+   private int[] inputButtons;
+
+   /** Real time clock the cartridges start from, so every run sees the same */
+   private int[] rtc;
+
+   public LockstepCheck(String romFileName, String coreA, String coreB, String inputFileName)
+            throws IOException {
+      this.romFileName = romFileName;
+      cores = new String[] { coreA, coreB };
+      readInput(inputFileName);
+   }
+
+   private void readInput(String fileName) throws IOException {
+      ArrayList<String> lines = new ArrayList<String>();
+      if (fileName != null) {
+         BufferedReader in = new BufferedReader(new FileReader(fileName));
+         String line;
+         while ((line = in.readLine()) != null) {
+            if (line.trim().length() > 0) {
+               lines.add(line.trim());
+            }
+         }
+         in.close();
+      }
+
+      inputTimes = new long[lines.size()];
+      inputButtons = new int[lines.size()];
+      for (int i = 0; i < lines.size(); i++) {
+         String[] fields = lines.get(i).split("\\s+");
+         inputTimes[i] = Long.parseLong(fields[0]);
+         inputButtons[i] = (fields.length > 1) ? parseButtons(fields[1]) : 0;
+      }
+   }
+
+   /** Returns the PAD_ bits of a list of button names such as "a,start" */
+   static int parseButtons(String names) {
+      int buttons = 0;
+      for (String name : names.toLowerCase().split(",")) {
+         for (int bit = 0; bit < BUTTON_NAMES.length; bit++) {
+            if (BUTTON_NAMES[bit].equals(name)) {
+               buttons |= 1 << bit;
+            }
+         }
+      }
+      return buttons;
+   }
+
+   /** Create a CPU with no screen running the given core, ready to start */
+   private Dmgcpu createCpu(String core) {
+      Cartridge cartridge = new Cartridge(romFileName, null);
+      if (rtc == null) {
+         rtc = cartridge.RTCReg.clone();
+      } else {
+         System.arraycopy(rtc, 0, cartridge.RTCReg, 0, rtc.length);
+      }
+
+      Dmgcpu cpu = new Dmgcpu(cartridge, null, null);
+      if (!cpu.setCore(core)) {
+         throw new IllegalArgumentException("Unknown CPU core " + core);
+      }
+      cpu.setCheckpointFrames(0);
+      cpu.clearFusion();
+      cpu.setIdleLoopSkip(false);
+      cpu.reset();
+      return cpu;
+   }
+
+   /** Run both CPUs from instruction from to instruction to, in steps of interval */
+   private long run(Dmgcpu[] cpus, long from, long to, long interval) {
+      int input = 0;
+      while ((input < inputTimes.length) && (inputTimes[input] < from)) {
+         input++;
+      }
+
+      for (long done = from; done < to;) {
+         long next = Math.min(done + interval, to);
+         while ((input < inputTimes.length) && (inputTimes[input] == done)) {
+            for (Dmgcpu cpu : cpus) {
+               cpu.setJoypad(inputButtons[input]);
+            }
+            input++;
+         }
+         if ((input < inputTimes.length) && (inputTimes[input] < next)) {
+            next = inputTimes[input];
+         }
+
+         for (Dmgcpu cpu : cpus) {
+            cpu.execute((int) (next - done));
+         }
+         done = next;
+
+         if (!state(cpus[0]).equals(state(cpus[1]))) {
+            return done;
+         }
+      }
+      return -1;
+   }
+
+   /**
+    * Compare the cores for the given number of instructions. Returns true if
+    * they did not differ
+    */
+   public boolean check(long instructions, long interval) {
+      Dmgcpu[] cpus = { createCpu(cores[0]), createCpu(cores[1]) };
+      long start = System.currentTimeMillis();
+      long differs = run(cpus, 0, instructions, interval);
+
+      if (differs < 0) {
+         System.out.println("Cores " + cores[0] + " and " + cores[1] + " agree for "
+                  + instructions + " instructions (" + (System.currentTimeMillis() - start)
+                  + " ms)");
+         return true;
+      }
+
+      // run the last interval again, comparing after each instruction
+      long from = Math.max(0, ((differs - 1) / interval) * interval);
+      cpus = new Dmgcpu[] { createCpu(cores[0]), createCpu(cores[1]) };
+      run(cpus, 0, from, interval);
+
+      int pc = 0, opcode = 0, b2 = 0;
+      boolean found = false;
+      for (long done = from; (done < differs) && !found; done++) {
+         pc = cpus[0].pc;
+         opcode = Util.unsign(cpus[0].addressRead(pc));
+         b2 = Util.unsign(cpus[0].addressRead(pc + 1));
+         if (run(cpus, done, done + 1, 1) >= 0) {
+            differs = done + 1;
+            found = true;
+         }
+      }
+
+      if (found) {
+         System.out.println("Cores " + cores[0] + " and " + cores[1] + " differ after instruction "
+                  + differs + ", PC " + Util.hexWord(pc) + " opcode " + Util.hexByte(opcode)
+                  + ((opcode == 0xCB) ? " " + Util.hexByte(b2) : ""));
+      } else {
+         System.out.println("Cores " + cores[0] + " and " + cores[1] + " differ at instruction "
+                  + differs + ", but not when run again one instruction at a time");
+      }
+      String[] a = state(cpus[0]).split(" ");
+      String[] b = state(cpus[1]).split(" ");
+      for (int i = 0; i < a.length; i++) {
+         System.out.println((a[i].equals(b[i]) ? "   " : " * ") + a[i] + "  " + b[i]);
+      }
+      return false;
+   }
+
+   /** Registers and memory hashes of a CPU, as name=value fields */
+   static String state(Dmgcpu cpu) {
+      cpu.updateFlags();
+      return "pc=" + Util.hexWord(cpu.pc) + " sp=" + Util.hexWord(cpu.sp)
+               + " a=" + Util.hexByte(cpu.a) + " f=" + Util.hexByte(cpu.f)
+               + " bc=" + Util.hexWord(cpu.bc) + " de=" + Util.hexWord(cpu.de)
+               + " hl=" + Util.hexWord(cpu.hl) + " ime=" + cpu.interruptsEnabled
+               + " cycles=" + cpu.cycles
+               + " ram=" + hash(cpu.mainRam) + " oam=" + hash(cpu.oam)
+               + " vram=" + hash(cpu.graphicsChip.videoRam) + " io=" + hash(cpu.ioHandler.registers)
+               + " cartram=" + hash(cpu.cartridge.ram);
+   }
+
+   private static String hash(byte[] data) {
+      CRC32 crc = new CRC32();
+      crc.update(data);
+      return Long.toHexString(crc.getValue());
+   }
+
+   public static void main(String[] args) throws IOException {
+      if (args.length < 1) {
+         System.out.println("Usage: LockstepCheck rom [coreA] [coreB] [interval] [instructions] [input file]");
+         return;
+      }
+      String coreA = (args.length > 1) ? args[1] : Dmgcpu.CORE_NAMES[0];
+      String coreB = (args.length > 2) ? args[2] : Dmgcpu.CORE_NAMES[1];
+      long interval = (args.length > 3) ? Long.parseLong(args[3]) : 1000;
+      long instructions = (args.length > 4) ? Long.parseLong(args[4]) : 10000000;
+      String input = (args.length > 5) ? args[5] : null;
+
+      LockstepCheck lockstep = new LockstepCheck(args[0], coreA, coreB, input);
+      System.exit(lockstep.check(instructions, interval) ? 0 : 1);
+   }
+}
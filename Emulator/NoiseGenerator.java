@@ -45,7 +45,7 @@ import java.util.Random;
  *  channel 4.
  */
 
-class NoiseGenerator {
+class NoiseGenerator implements Cloneable {
    /** Indicates sound is to be played on the left channel of a stereo sound */
    public static final int CHAN_LEFT = 1;
 
@@ -93,6 +93,9 @@ class NoiseGenerator {
    int finalFreq;
    int cycleOffset;
 
+   /** Picks where the short noise pattern starts, kept so setting it allocates nothing */
+   Random rand = new Random();
+
    /**
     * Creates a white noise generator with the specified wavelength, amplitude,
     * channel, and sample rate
@@ -107,8 +110,6 @@ class NoiseGenerator {
 
       randomValues = new boolean[32767];
 
-      Random rand = new java.util.Random();
-
       for (int r = 0; r < 32767; r++) {
          randomValues[r] = rand.nextBoolean();
       }
@@ -127,8 +128,6 @@ class NoiseGenerator {
 
       randomValues = new boolean[32767];
 
-      Random rand = new java.util.Random();
-
       for (int r = 0; r < 32767; r++) {
          randomValues[r] = rand.nextBoolean();
       }
@@ -140,6 +139,18 @@ class NoiseGenerator {
       sampleRate = sr;
    }
 
+   /**
+    * A copy of the generator, for a Snapshot. The noise pattern is never
+    * changed, so it is shared
+    */
+   NoiseGenerator copy() {
+      try {
+         return (NoiseGenerator) clone();
+      } catch (CloneNotSupportedException e) {
+         throw new InternalError();
+      }
+   }
+
    /** Set the channel that the white noise is playing on */
    public void setChannel(int chan) {
       channel = chan;
@@ -172,8 +183,6 @@ class NoiseGenerator {
          this.polynomialSteps = 63;
          cycleLength = 63 << 8;
 
-         java.util.Random rand = new java.util.Random();
-
          cycleOffset = (int) (rand.nextFloat() * 1000);
       }
       this.shiftClockFreq = shiftClockFreq;
@@ -0,0 +1,71 @@
+package Emulator;
+
+/**
+ * The pages of a memory array as they were in the last Snapshot taken or
+ * restored, and which pages have been written since. Pages are 256 bytes,
+ * as in the CPU memory map, and are never written once they are in a
+ * snapshot, so a new snapshot shares the pages that did not change with the
+ * last one and only copies the others.
+ *
+ * Writes are only seen when they are reported with written(). The CPU
+ * sends the writes to clean pages through its slow path to report them,
+ * and other code that fills the array calls writtenAll().
+ */
+class SharedPages {
+   static final int PAGE_SIZE = 0x100;
+
+   private byte[] data;
+
+   /** The pages of the last snapshot, null when none is shared */
+   private byte[][] pages;
+
+   /** Pages of data written since then */
+   private boolean[] dirty;
+
+   SharedPages(byte[] data) {
+      this.data = data;
+      dirty = new boolean[data.length / PAGE_SIZE];
+   }
+
+   /** True if a write to data[index] must be reported */
+   boolean isClean(int index) {
+      return (pages != null) && !dirty[index / PAGE_SIZE];
+   }
+
+   /** Report a write to data[index] */
+   void written(int index) {
+      dirty[index / PAGE_SIZE] = true;
+   }
+
+   /** Report that the whole array may have changed */
+   void writtenAll() {
+      pages = null;
+   }
+
+   /** The pages of the array as it is now, sharing those not written since the last call */
+   byte[][] snapshot() {
+      byte[][] copy = new byte[dirty.length][];
+      for (int page = 0; page < dirty.length; page++) {
+         if ((pages == null) || dirty[page]) {
+            copy[page] = new byte[PAGE_SIZE];
+            System.arraycopy(data, page * PAGE_SIZE, copy[page], 0, PAGE_SIZE);
+            dirty[page] = false;
+         } else {
+            copy[page] = pages[page];
+         }
+      }
+      pages = copy;
+      return copy;
+   }
+
+   /** Put back the pages of a snapshot, only copying the ones that differ */
+   void restore(byte[][] from) {
+      for (int page = 0; page < dirty.length; page++) {
+         if ((pages == null) || dirty[page] || (pages[page] != from[page])) {
+            System.arraycopy(from[page], 0, data, page * PAGE_SIZE, PAGE_SIZE);
+            dirty[page] = false;
+         }
+      }
+      pages = from;
+   }
+}
@@ -0,0 +1,308 @@
+package Emulator;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * The state of a Dmgcpu and of its cartridge, graphics, IO and sound, taken
+ * in memory with Dmgcpu.snapshot() and put back with Dmgcpu.restore(). The
+ * work RAM, video RAM and cartridge RAM are kept as 256 byte pages shared
+ * with the snapshots taken before and after, a page is only copied when it
+ * has been written since the last snapshot. Taking one mostly costs the
+ * copy of the page tables, so a game can be forked thousands of times a
+ * second.
+ *
+ * A snapshot never changes once taken. It can be restored any number of
+ * times, into any Dmgcpu running the same game. The picture on the screen is
+ * not part of it, the next frame is drawn from the restored state.
+ *
+ * Save states are snapshots written to a file by StateFile. The sound
+ * channels are not written, after loading one the sound goes on as it was
+ * until the game sets it again. A checkpoint can be written as a delta
+ * against an earlier snapshot, holding only the pages of RAM that are not
+ * shared with it, which are the pages written since.
+ */
+public class Snapshot {
+   // Cartridge
+   int romLength;
+   int romChecksum;
+   byte[][] cartridgeRam;
+   int currentBank;
+   int savedBank;
+   int ramBank;
+   int ramPageStart;
+   boolean mbc1LargeRamMode;
+   boolean ramEnabled;
+   int[] rtc;
+
+   // Dmgcpu
+   int a, f;
+   int sp, pc, bc, de, hl;
+   int instrCount;
+   long cycles;
+   long frames;
+   long idleCyclesSkipped;
+   long lastEventTime;
+   boolean interruptsEnabled;
+   boolean inInterrupt;
+   boolean halted;
+   int ieDelay;
+   boolean timaEnabled;
+   int cyclesPerTima;
+   short cyclesPerHblank;
+   short cyclesPerDiv;
+   int cyclesPerRtcTick;
+   boolean doubleSpeedCpu;
+   boolean gbcFeatures;
+   int gbcRamBank;
+   EventScheduler scheduler;
+   byte[][] mainRam;
+   byte[] oam;
+
+   // GraphicsChip
+   byte[][] videoRam;
+   int[] palettes;
+   boolean spritesEnabled;
+   boolean bgEnabled;
+   boolean winEnabled;
+   boolean bgWindowDataSelect;
+   boolean doubledSprites;
+   boolean hiBgTileMapAddress;
+   int tileStart;
+   int vidRamStart;
+   int windowLine;
+
+   // IoHandler
+   byte[] registers;
+   int buttons;
+   boolean hdmaRunning;
+
+   // SoundChip, null when the Dmgcpu has none
+   SquareWaveGenerator channel1;
+   SquareWaveGenerator channel2;
+   VoluntaryWaveGenerator channel3;
+   NoiseGenerator channel4;
+
+   /**
+    * Write the snapshot for a save state, without the sound channels. When
+    * base is not null, only the pages of RAM not shared with it are written
+    */
+   void write(DataOutputStream out, Snapshot base) throws IOException {
+      out.writeInt(romLength);
+      out.writeInt(romChecksum);
+      writePages(out, cartridgeRam, (base != null) ? base.cartridgeRam : null);
+      out.writeInt(currentBank);
+      out.writeInt(savedBank);
+      out.writeInt(ramBank);
+      out.writeInt(ramPageStart);
+      out.writeBoolean(mbc1LargeRamMode);
+      out.writeBoolean(ramEnabled);
+      writeInts(out, rtc);
+
+      out.writeInt(a);
+      out.writeInt(f);
+      out.writeInt(sp);
+      out.writeInt(pc);
+      out.writeInt(bc);
+      out.writeInt(de);
+      out.writeInt(hl);
+      out.writeInt(instrCount);
+      out.writeLong(cycles);
+      out.writeLong(frames);
+      out.writeLong(idleCyclesSkipped);
+      out.writeLong(lastEventTime);
+      out.writeBoolean(interruptsEnabled);
+      out.writeBoolean(inInterrupt);
+      out.writeBoolean(halted);
+      out.writeInt(ieDelay);
+      out.writeBoolean(timaEnabled);
+      out.writeInt(cyclesPerTima);
+      out.writeShort(cyclesPerHblank);
+      out.writeShort(cyclesPerDiv);
+      out.writeInt(cyclesPerRtcTick);
+      out.writeBoolean(doubleSpeedCpu);
+      out.writeBoolean(gbcFeatures);
+      out.writeInt(gbcRamBank);
+      scheduler.write(out);
+      writePages(out, mainRam, (base != null) ? base.mainRam : null);
+      writeBytes(out, oam);
+
+      writePages(out, videoRam, (base != null) ? base.videoRam : null);
+      writeInts(out, palettes);
+      out.writeBoolean(spritesEnabled);
+      out.writeBoolean(bgEnabled);
+      out.writeBoolean(winEnabled);
+      out.writeBoolean(bgWindowDataSelect);
+      out.writeBoolean(doubledSprites);
+      out.writeBoolean(hiBgTileMapAddress);
+      out.writeInt(tileStart);
+      out.writeInt(vidRamStart);
+      out.writeInt(windowLine);
+
+      writeBytes(out, registers);
+      out.writeInt(buttons);
+      out.writeBoolean(hdmaRunning);
+   }
+
+   /**
+    * Read a snapshot written by write(), with the same base, in a file of the
+    * given StateFile version. The pages not written are shared with the base
+    */
+   static Snapshot read(DataInputStream in, Snapshot base, int version) throws IOException {
+      Snapshot s = new Snapshot();
+      s.romLength = in.readInt();
+      s.romChecksum = in.readInt();
+      s.cartridgeRam = readPages(in, (base != null) ? base.cartridgeRam : null);
+      s.currentBank = in.readInt();
+      s.savedBank = in.readInt();
+      s.ramBank = in.readInt();
+      s.ramPageStart = in.readInt();
+      s.mbc1LargeRamMode = in.readBoolean();
+      s.ramEnabled = in.readBoolean();
+      s.rtc = readInts(in);
+
+      s.a = in.readInt();
+      s.f = in.readInt();
+      if (version < 4) {
+         // before version 4 the flags of a pending ALU operation came next
+         int flagOp = in.readInt();
+         int flagIndex = in.readInt();
+         s.f = Dmgcpu.lazyFlags(flagOp, flagIndex, s.f);
+      }
+      s.sp = in.readInt();
+      s.pc = in.readInt();
+      s.bc = in.readInt();
+      s.de = in.readInt();
+      s.hl = in.readInt();
+      s.instrCount = in.readInt();
+      s.cycles = in.readLong();
+      s.frames = in.readLong();
+      s.idleCyclesSkipped = in.readLong();
+      s.lastEventTime = in.readLong();
+      s.interruptsEnabled = in.readBoolean();
+      s.inInterrupt = in.readBoolean();
+      // before version 3 a HALT stopped early was run again
+      s.halted = (version >= 3) && in.readBoolean();
+      s.ieDelay = in.readInt();
+      s.timaEnabled = in.readBoolean();
+      s.cyclesPerTima = in.readInt();
+      s.cyclesPerHblank = in.readShort();
+      s.cyclesPerDiv = in.readShort();
+      s.cyclesPerRtcTick = in.readInt();
+      s.doubleSpeedCpu = in.readBoolean();
+      s.gbcFeatures = in.readBoolean();
+      s.gbcRamBank = in.readInt();
+      s.scheduler = EventScheduler.read(in);
+      s.mainRam = readPages(in, (base != null) ? base.mainRam : null);
+      s.oam = readBytes(in);
+
+      s.videoRam = readPages(in, (base != null) ? base.videoRam : null);
+      s.palettes = readInts(in);
+      s.spritesEnabled = in.readBoolean();
+      s.bgEnabled = in.readBoolean();
+      s.winEnabled = in.readBoolean();
+      s.bgWindowDataSelect = in.readBoolean();
+      s.doubledSprites = in.readBoolean();
+      s.hiBgTileMapAddress = in.readBoolean();
+      s.tileStart = in.readInt();
+      s.vidRamStart = in.readInt();
+      s.windowLine = in.readInt();
+
+      s.registers = readBytes(in);
+      s.buttons = in.readInt();
+      s.hdmaRunning = in.readBoolean();
+      return s;
+   }
+
+   /**
+    * Write the pages of a memory array. With base pages, a bitmap of the
+    * pages that differ from them comes first and only those are written
+    */
+   private static void writePages(DataOutputStream out, byte[][] pages, byte[][] basePages)
+            throws IOException {
+      out.writeInt(pages.length);
+      if (basePages == null) {
+         for (byte[] page : pages) {
+            out.write(page);
+         }
+         return;
+      }
+
+      byte[] changed = new byte[(pages.length + 7) / 8];
+      for (int page = 0; page < pages.length; page++) {
+         if (pages[page] != basePages[page]) {
+            changed[page >> 3] |= 1 << (page & 7);
+         }
+      }
+      out.write(changed);
+      for (int page = 0; page < pages.length; page++) {
+         if (pages[page] != basePages[page]) {
+            out.write(pages[page]);
+         }
+      }
+   }
+
+   private static byte[][] readPages(DataInputStream in, byte[][] basePages) throws IOException {
+      int count = in.readInt();
+      if (basePages == null) {
+         byte[][] pages = new byte[count][SharedPages.PAGE_SIZE];
+         for (byte[] page : pages) {
+            in.readFully(page);
+         }
+         return pages;
+      }
+
+      if (count != basePages.length) {
+         throw new IOException("The number of pages differs from the base");
+      }
+      byte[] changed = new byte[(count + 7) / 8];
+      in.readFully(changed);
+      byte[][] pages = new byte[count][];
+      for (int page = 0; page < count; page++) {
+         if ((changed[page >> 3] & (1 << (page & 7))) != 0) {
+            pages[page] = new byte[SharedPages.PAGE_SIZE];
+            in.readFully(pages[page]);
+         } else {
+            pages[page] = basePages[page];
+         }
+      }
+      return pages;
+   }
+
+   private static void writeBytes(DataOutputStream out, byte[] b) throws IOException {
+      out.writeInt(b.length);
+      out.write(b);
+   }
+
+   private static byte[] readBytes(DataInputStream in) throws IOException {
+      byte[] b = new byte[in.readInt()];
+      in.readFully(b);
+      return b;
+   }
+
+   private static void writeInts(DataOutputStream out, int[] values) throws IOException {
+      out.writeInt(values.length);
+      for (int value : values) {
+         out.writeInt(value);
+      }
+   }
+
+   private static int[] readInts(DataInputStream in) throws IOException {
+      int[] values = new int[in.readInt()];
+      for (int r = 0; r < values.length; r++) {
+         values[r] = in.readInt();
+      }
+      return values;
+   }
+
+   /** The number of frames run since the last reset when it was taken */
+   public long getFrames() {
+      return frames;
+   }
+
+   /** The number of clock cycles run since the last reset when it was taken */
+   public long getCycles() {
+      return cycles;
+   }
+}
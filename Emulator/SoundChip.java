@@ -22,7 +22,7 @@ Place - Suite 330, Boston, MA 02111-1307, USA.
 
 */
 
-import javax.sound.sampled.*;
+//import javax.sound.sampled.*;
 //import java.awt.*;
 //import java.awt.image.*;
 //import java.lang.*;
@@ -44,13 +44,12 @@ import javax.sound.sampled.*;
 
 
 /** This is the central controlling class for the sound.
- *  It interfaces with the Java Sound API, and handles the
- *  calsses for each sound channel.
+ *  It handles the classes for each sound channel and mixes them into
+ *  frames of samples, which a subclass sends to where the sound goes:
+ *  LineSoundChip plays them through the Java Sound API, BufferedSoundChip
+ *  keeps them for the program running the emulator.
  */
-class SoundChip {
-   /** The DataLine for outputting the sound */
-   SourceDataLine soundLine;
-
+abstract class SoundChip {
    SquareWaveGenerator channel1;
    SquareWaveGenerator channel2;
    VoluntaryWaveGenerator channel3;
@@ -67,73 +66,22 @@ class SoundChip {
    /** Amount of sound data to buffer before playback */
    int bufferLengthMsec = 200;
 
-   /** Initialize sound emulation, and allocate sound hardware */
+   /** Initialize sound emulation */
    public SoundChip() {
-      soundLine = initSoundHardware();
       channel1 = new SquareWaveGenerator(sampleRate);
       channel2 = new SquareWaveGenerator(sampleRate);
       channel3 = new VoluntaryWaveGenerator(sampleRate);
       channel4 = new NoiseGenerator(sampleRate);
    }
 
-   /** Initialize sound hardware if available */
-   public SourceDataLine initSoundHardware() {
-
-      try {
-         AudioFormat format = new AudioFormat(AudioFormat.Encoding.PCM_SIGNED, sampleRate, 8, 2, 2,
-                  sampleRate, true);
-         DataLine.Info lineInfo = new DataLine.Info(SourceDataLine.class, format);
-
-         if (!AudioSystem.isLineSupported(lineInfo)) {
-            System.out.println("Error: Can't find audio output system!");
-            soundEnabled = false;
-         } else {
-            SourceDataLine line = (SourceDataLine) AudioSystem.getLine(lineInfo);
-
-            int bufferLength = (sampleRate / 1000) * bufferLengthMsec;
-            line.open(format, bufferLength);
-            line.start();
-            // System.out.println("Initialized audio successfully.");
-            soundEnabled = true;
-            return line;
-         }
-      } catch (Exception e) {
-         System.out.println("Error: Audio system busy!");
-         soundEnabled = false;
-      }
-
-      return null;
-   }
-
    /** Set the output volume */
    public void setVolume(float vol) {
-      if (soundLine.isControlSupported(FloatControl.Type.MASTER_GAIN)) {
-         try {
-            FloatControl volume = (FloatControl) soundLine
-                     .getControl(FloatControl.Type.MASTER_GAIN);
-            volume.setValue(vol);
-            
-            if (vol > -70) {
-               soundEnabled = true;
-            } else {
-               soundEnabled = false;
-            }
-
-         } catch (IllegalArgumentException e) {
-            System.out.println("Could not set volume!" + e.getMessage());
-         }
-      }
    }
 
    /** Change the sample rate of the playback */
    public void setSampleRate(int sr) {
       sampleRate = sr;
 
-      soundLine.flush();
-      soundLine.close();
-
-      soundLine = initSoundHardware();
-
       channel1.setSampleRate(sr);
       channel2.setSampleRate(sr);
       channel3.setSampleRate(sr);
@@ -143,34 +91,42 @@ class SoundChip {
    /** Change the sound buffer length */
    public void setBufferLength(int time) {
       bufferLengthMsec = time;
+   }
+
+   /**
+    * Mix a frame of the enabled channels into b, which holds numSamples
+    * bytes of 8-bit stereo samples
+    */
+   void mix(byte[] b, int numSamples) {
+      if (channel1Enable)
+         channel1.play(b, numSamples / 2, 0);
+      if (channel2Enable)
+         channel2.play(b, numSamples / 2, 0);
+      if (channel3Enable)
+         channel3.play(b, numSamples / 2, 0);
+      if (channel4Enable)
+         channel4.play(b, numSamples / 2, 0);
+   }
 
-      soundLine.flush();
-      soundLine.close();
+   /** Adds a single frame of sound data to the output */
+   abstract public void outputSound();
 
-      soundLine = initSoundHardware();
+   void saveSnapshot(Snapshot s) {
+      s.channel1 = channel1.copy();
+      s.channel2 = channel2.copy();
+      s.channel3 = channel3.copy();
+      s.channel4 = channel4.copy();
    }
 
-   /** Adds a single frame of sound data to the buffer */
-   public void outputSound() {
-      if (soundEnabled) {
-         int numSamples;
-
-         if (sampleRate / 28 >= soundLine.available() * 2) {
-            numSamples = soundLine.available() * 2;
-         } else {
-            numSamples = (sampleRate / 28) & 0xFFFE;
-         }
-
-         byte[] b = new byte[numSamples];
-         if (channel1Enable)
-            channel1.play(b, numSamples / 2, 0);
-         if (channel2Enable)
-            channel2.play(b, numSamples / 2, 0);
-         if (channel3Enable)
-            channel3.play(b, numSamples / 2, 0);
-         if (channel4Enable)
-            channel4.play(b, numSamples / 2, 0);
-         soundLine.write(b, 0, numSamples);
-      }
+   /** The channels are copied again, the ones of the snapshot must not change */
+   void loadSnapshot(Snapshot s) {
+      channel1 = s.channel1.copy();
+      channel2 = s.channel2.copy();
+      channel3 = s.channel3.copy();
+      channel4 = s.channel4.copy();
+      channel1.setSampleRate(sampleRate);
+      channel2.setSampleRate(sampleRate);
+      channel3.setSampleRate(sampleRate);
+      channel4.setSampleRate(sampleRate);
    }
 }
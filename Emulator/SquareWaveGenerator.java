@@ -45,7 +45,7 @@ Place - Suite 330, Boston, MA 02111-1307, USA.
 /** This class can mix a square wave signal with a sound buffer.
  *  It supports all features of the Gameboys sound channels 1 and 2.
  */
-class SquareWaveGenerator {
+class SquareWaveGenerator implements Cloneable {
  /** Sound is to be played on the left channel of a stereo sound */
  public static final int CHAN_LEFT = 1;
 
@@ -130,6 +130,15 @@ class SquareWaveGenerator {
   sampleRate = sr;
  }
 
+ /** A copy of the generator and its position in the wave, for a Snapshot */
+ SquareWaveGenerator copy() {
+  try {
+   return (SquareWaveGenerator) clone();
+  } catch (CloneNotSupportedException e) {
+   throw new InternalError();
+  }
+ }
+
  /** Set the duty cycle */
  public void setDutyCycle(int duty) {
   switch (duty) {
@@ -0,0 +1,216 @@
+package Emulator;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * The save state file format. A file is a header followed by the snapshot
+ * written by Snapshot.write(), compressed with deflate:
+ *
+ *    4 bytes  MAGIC
+ *    int      format version
+ *    int      flags, DELTA when the snapshot is a delta
+ *    int      checksum of the base file of a delta, 0 otherwise
+ *    int      length of the snapshot before compression
+ *    int      length of the compressed snapshot
+ *    int      CRC32 of the snapshot before compression
+ *
+ * Version 1 files have no flags and base checksum, and are read as full
+ * snapshots.
+ * Version 3 adds whether a HALT was waiting to the snapshot.
+ * Version 4 drops the pending lazy flags operation, F holds the flags.
+ *
+ * A delta holds only the pages of RAM that differ from a full snapshot kept
+ * in its base file, the file name followed by ".base", and is only read with
+ * the base it was written against.
+ *
+ * Files are written to a temporary file which is then renamed, so a save
+ * state is never left half written. A file with a later version is refused,
+ * VERSION must be changed whenever Snapshot.write() is.
+ */
+class StateFile {
+   static final byte[] MAGIC = { 'J', 'B', 'S', 'S' };
+   static final int VERSION = 4;
+   static final int HEADER_SIZE = 28;
+
+   /** Flag of a delta against the snapshot in the base file */
+   static final int DELTA = 1;
+
+   /** The contents of a file, after its checks */
+   private static class Contents {
+      int version;
+      int flags;
+      int baseChecksum;
+      int checksum;
+      byte[] data;
+   }
+
+   /** The file holding the full snapshot a delta is written against */
+   static File baseFile(File file) {
+      return new File(file.getPath() + ".base");
+   }
+
+   /**
+    * Compress a full snapshot and write it to each of the files in order.
+    * Returns its checksum, which deltas against it refer to
+    */
+   static int write(Snapshot s, File... files) throws IOException {
+      return write(s, null, 0, files);
+   }
+
+   /**
+    * Compress the pages of a snapshot that differ from base, a full snapshot
+    * written to the base file of file with the given checksum, and write
+    * them to file
+    */
+   static void writeDelta(File file, Snapshot s, Snapshot base, int baseChecksum)
+            throws IOException {
+      write(s, base, baseChecksum, file);
+   }
+
+   private static int write(Snapshot s, Snapshot base, int baseChecksum, File... files)
+            throws IOException {
+      ByteArrayOutputStream data = new ByteArrayOutputStream(0x30000);
+      DataOutputStream out = new DataOutputStream(data);
+      s.write(out, base);
+      out.flush();
+      byte[] uncompressed = data.toByteArray();
+      CRC32 crc = new CRC32();
+      crc.update(uncompressed);
+
+      // Most of the memory is zeros or repeated tiles, the fastest level
+      // already shrinks it several times
+      ByteArrayOutputStream compressed = new ByteArrayOutputStream(uncompressed.length / 4);
+      Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+      DeflaterOutputStream zip = new DeflaterOutputStream(compressed, deflater);
+      zip.write(uncompressed);
+      zip.close();
+      deflater.end();
+
+      ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+      header.put(MAGIC);
+      header.putInt(VERSION);
+      header.putInt((base != null) ? DELTA : 0);
+      header.putInt(baseChecksum);
+      header.putInt(uncompressed.length);
+      header.putInt(compressed.size());
+      header.putInt((int) crc.getValue());
+      header.flip();
+      ByteBuffer body = ByteBuffer.wrap(compressed.toByteArray());
+
+      for (File file : files) {
+         Path path = file.toPath();
+         Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+         FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                  StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+         try {
+            ByteBuffer[] buffers = { header, body };
+            while (body.hasRemaining()) {
+               channel.write(buffers);
+            }
+         } finally {
+            channel.close();
+         }
+         Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+         header.rewind();
+         body.rewind();
+      }
+      return (int) crc.getValue();
+   }
+
+   /**
+    * Read a snapshot from a file, checking its version and checksum. The base
+    * of a delta is read from its base file
+    */
+   static Snapshot read(File file) throws IOException {
+      Contents contents = readContents(file);
+      Snapshot base = null;
+      if ((contents.flags & DELTA) != 0) {
+         Contents baseContents = readContents(baseFile(file));
+         if (((baseContents.flags & DELTA) != 0)
+                  || (baseContents.checksum != contents.baseChecksum)) {
+            throw new IOException("The base file is not the one the delta was written against");
+         }
+         base = Snapshot.read(new DataInputStream(new ByteArrayInputStream(baseContents.data)),
+                  null, baseContents.version);
+      }
+      return Snapshot.read(new DataInputStream(new ByteArrayInputStream(contents.data)), base,
+               contents.version);
+   }
+
+   private static Contents readContents(File file) throws IOException {
+      if (!file.isFile()) {
+         throw new FileNotFoundException("There is no save state " + file.getName());
+      }
+      ByteBuffer buffer;
+      FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+      try {
+         buffer = ByteBuffer.allocate((int) channel.size());
+         while (buffer.hasRemaining() && (channel.read(buffer) != -1)) {
+         }
+      } finally {
+         channel.close();
+      }
+      buffer.flip();
+
+      byte[] magic = new byte[MAGIC.length];
+      if (buffer.remaining() < MAGIC.length + 4) {
+         throw new IOException("Not a save state");
+      }
+      buffer.get(magic);
+      if (!Arrays.equals(magic, MAGIC)) {
+         throw new IOException("Not a save state");
+      }
+      Contents contents = new Contents();
+      int version = buffer.getInt();
+      contents.version = version;
+      if ((version < 1) || (version > VERSION)) {
+         throw new IOException("Save state version " + version + " is not supported, only up to "
+                  + VERSION + " are");
+      }
+      if (buffer.limit() < ((version == 1) ? 20 : HEADER_SIZE)) {
+         throw new IOException("Save state is truncated");
+      }
+      if (version >= 2) {
+         contents.flags = buffer.getInt();
+         contents.baseChecksum = buffer.getInt();
+      }
+      int length = buffer.getInt();
+      int compressedLength = buffer.getInt();
+      contents.checksum = buffer.getInt();
+      if ((length < 0) || (compressedLength != buffer.remaining())) {
+         throw new IOException("Save state is truncated");
+      }
+
+      contents.data = new byte[length];
+      InflaterInputStream zip = new InflaterInputStream(new ByteArrayInputStream(
+               buffer.array(), buffer.position(), compressedLength));
+      try {
+         new DataInputStream(zip).readFully(contents.data);
+      } finally {
+         zip.close();
+      }
+      CRC32 crc = new CRC32();
+      crc.update(contents.data);
+      if ((int) crc.getValue() != contents.checksum) {
+         throw new IOException("Save state checksum does not match, the file is damaged");
+      }
+      return contents;
+   }
+}
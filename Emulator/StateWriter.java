@@ -0,0 +1,86 @@
+package Emulator;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes save states on a thread of its own, so the emulation thread only
+ * takes the Snapshot and goes on with the next frame while it is compressed
+ * and written. States are written in the order they are given. The thread is
+ * started when there is a state to write and stops after a few idle seconds,
+ * it is not a daemon, so the JVM does not exit before the last state is
+ * written.
+ */
+class StateWriter {
+   private ThreadPoolExecutor thread = new ThreadPoolExecutor(0, 1, 5, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<Runnable>());
+
+   // The last full checkpoint written, only used on the thread
+   private File checkpointFile;
+   private Snapshot checkpointBase;
+   private int checkpointBaseChecksum;
+
+   /** Queue a snapshot to be written to a file. Errors are reported, not thrown */
+   void write(final File file, final Snapshot s) {
+      thread.execute(new Runnable() {
+         public void run() {
+            try {
+               StateFile.write(s, file);
+               System.out.println("Saved state " + file.getName());
+            } catch (IOException e) {
+               System.out.println("StateWriter: Could not write to file " + file);
+               System.out.println("Error Message: " + e.getMessage());
+            }
+         }
+      });
+   }
+
+   /**
+    * Queue a checkpoint to be written to a file. Unless full is set, only
+    * the pages that differ from the last full checkpoint are written, which
+    * is kept in the base file. A full one is written when there is none to
+    * refer to
+    */
+   void writeCheckpoint(final File file, final Snapshot s, final boolean full) {
+      thread.execute(new Runnable() {
+         public void run() {
+            try {
+               if (full || (checkpointBase == null) || !file.equals(checkpointFile)) {
+                  // The checkpoint goes before its base, so if only one is
+                  // written it is a full checkpoint and not a delta with the
+                  // wrong base
+                  checkpointBase = null;
+                  checkpointBaseChecksum = StateFile.write(s, file, StateFile.baseFile(file));
+                  checkpointBase = s;
+                  checkpointFile = file;
+                  System.out.println("Saved full checkpoint " + file.getName());
+               } else {
+                  StateFile.writeDelta(file, s, checkpointBase, checkpointBaseChecksum);
+                  System.out.println("Saved checkpoint " + file.getName());
+               }
+            } catch (IOException e) {
+               System.out.println("StateWriter: Could not write to file " + file);
+               System.out.println("Error Message: " + e.getMessage());
+            }
+         }
+      });
+   }
+
+   /** Wait until the states queued so far are written */
+   void flush() {
+      try {
+         thread.submit(new Runnable() {
+            public void run() {
+            }
+         }).get();
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+      } catch (ExecutionException e) {
+         // The empty task cannot fail
+      }
+   }
+}
@@ -0,0 +1,35 @@
+package Emulator;
+
+/**
+ * The core built on the InstructionManager: one handler object per opcode,
+ * run through the basic block cache, the decode cache or straight from the
+ * dispatch table, as set up in the Dmgcpu
+ */
+class StrategyCore implements CpuCore {
+   private Dmgcpu dmgcpu;
+
+   StrategyCore(Dmgcpu dmgcpu) {
+      this.dmgcpu = dmgcpu;
+   }
+
+   public String getName() {
+      return "strategy";
+   }
+
+   public void step() {
+      if (dmgcpu.fusionProfileLeft > 0) {
+         dmgcpu.instructionManager.execute();
+         if (--dmgcpu.fusionProfileLeft == 0) {
+            dmgcpu.instructionManager.finishFusionProfile();
+            dmgcpu.blockCache.flush();
+            dmgcpu.decodeCache.flush();
+         }
+      } else if (dmgcpu.blockCacheEnable) {
+         dmgcpu.blockCache.execute();
+      } else if (dmgcpu.decodeCacheEnable) {
+         dmgcpu.decodeCache.execute();
+      } else {
+         dmgcpu.instructionManager.execute();
+      }
+   }
+}
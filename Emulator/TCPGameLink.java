@@ -184,7 +184,7 @@ class TCPGameLink extends GameLink implements Runnable {
 
 
      if (initial == 1) {
-//      System.out.print("<-- " + data + ":" + JavaBoy.unsign(dmgcpu.ioHandler.registers[0x02]) + "    ");
+//      System.out.print("<-- " + data + ":" + Util.unsign(dmgcpu.ioHandler.registers[0x02]) + "    ");
       outStream.write(0);
   
       writeInt(outStream, -1);
@@ -192,9 +192,9 @@ class TCPGameLink extends GameLink implements Runnable {
       outStream.write(dmgcpu.ioHandler.registers[0x01]);
       outStream.flush();
       dmgcpu.ioHandler.registers[0x02] &= 0x7F;
-//      System.out.println("--> " + JavaBoy.unsign(dmgcpu.ioHandler.registers[0x01]));
+//      System.out.println("--> " + Util.unsign(dmgcpu.ioHandler.registers[0x01]));
 
-//     if ((clock & 0x01) != (JavaBoy.unsign(dmgcpu.ioHandler.registers[0x02]) & 0x01)) {
+//     if ((clock & 0x01) != (Util.unsign(dmgcpu.ioHandler.registers[0x02]) & 0x01)) {
       dmgcpu.ioHandler.registers[0x01] = (byte) data;
       dmgcpu.triggerInterrupt(dmgcpu.INT_SER);
 //     }
@@ -227,7 +227,7 @@ class TCPGameLink extends GameLink implements Runnable {
    outStream.write(b);
    outStream.flush();
 
-//   System.out.println("--> " + JavaBoy.unsign(b) + ":" + JavaBoy.unsign(dmgcpu.ioHandler.registers[0x02]));
+//   System.out.println("--> " + Util.unsign(b) + ":" + Util.unsign(dmgcpu.ioHandler.registers[0x02]));
    try {
     java.lang.Thread.sleep(10);
    } catch (InterruptedException e) {
@@ -25,7 +25,6 @@ Place - Suite 330, Boston, MA 02111-1307, USA.
 import java.awt.*;
 import java.awt.image.*;
 //import java.lang.*;
-//import java.io.*;
 //import java.applet.*;
 //import java.net.*;
 //import java.awt.event.KeyListener;
@@ -58,14 +57,28 @@ class TileBasedGraphicsChip extends GraphicsChip {
  boolean windowEnableThisLine = false;
  int windowStopLine = 144;
 
+ /** The image containing the Gameboy screen */
+ Image backBuffer;
+
 
  public TileBasedGraphicsChip(Component a, Dmgcpu d) {
   super(a, d);
+  backBuffer = createBackBuffer();
   for (int r = 0; r < 384 * 2; r++) {
    tiles[r] = new GameboyTile(a);
   }
  }
 
+ /** The image the frame is drawn in, made by the component showing it or, if
+  *  there is none, held in memory only
+  */
+ private Image createBackBuffer() {
+  if (applet == null) {
+   return new BufferedImage(160 * mag, 144 * mag, BufferedImage.TYPE_INT_RGB);
+  }
+  return applet.createImage(160 * mag, 144 * mag);
+ }
+
  /** Flush the tile cache */
  public void dispose() {
   for (int r = 0; r < 384 * 2; r++) {
@@ -107,6 +120,8 @@ class TileBasedGraphicsChip extends GraphicsChip {
  /** Set the size of the Gameboy window. */
  public void setMagnify(int m) {
   super.setMagnify(m);
+  backBuffer.flush();
+  backBuffer = createBackBuffer();
   for (int r = 0; r < 384 * 2; r++) {
    tiles[r].setMagnify(m);
   }
@@ -226,15 +241,15 @@ public void drawSprites(Graphics back, int priority) {
   // first line the window is to be displayed.  Will work unless this is changed
   // after window is started
   // NOTE: Still no real support for hblank effects on window/sprites
-  if (line == JavaBoy.unsign(dmgcpu.ioHandler.registers[0x4A]) + 1) {		// Compare against WY reg
+  if (line == Util.unsign(dmgcpu.ioHandler.registers[0x4A]) + 1) {		// Compare against WY reg
    savedWindowDataSelect = bgWindowDataSelect;
   }
 
  // Can't disable background on GBC (?!).  Apperently not, according to BGB
   if ((!bgEnabled) && (!dmgcpu.gbcFeatures)) return;
 
-  int xPixelOfs = JavaBoy.unsign(dmgcpu.ioHandler.registers[0x43]) % 8;
-  int yPixelOfs = JavaBoy.unsign(dmgcpu.ioHandler.registers[0x42]) % 8;
+  int xPixelOfs = Util.unsign(dmgcpu.ioHandler.registers[0x43]) % 8;
+  int yPixelOfs = Util.unsign(dmgcpu.ioHandler.registers[0x42]) % 8;
 
 //  if ((yPixelOfs + 4) % 8 == line % 8) {
 
@@ -244,8 +259,8 @@ public void drawSprites(Graphics back, int priority) {
 
    Graphics back = backBuffer.getGraphics();
 
-   int xTileOfs = JavaBoy.unsign(dmgcpu.ioHandler.registers[0x43]) / 8;
-   int yTileOfs = JavaBoy.unsign(dmgcpu.ioHandler.registers[0x42]) / 8;
+   int xTileOfs = Util.unsign(dmgcpu.ioHandler.registers[0x43]) / 8;
+   int yTileOfs = Util.unsign(dmgcpu.ioHandler.registers[0x42]) / 8;
    int bgStartAddress, tileNum;
 
    int y = ((line + yPixelOfs) / 8);
@@ -266,14 +281,14 @@ public void drawSprites(Graphics back, int priority) {
      tileNumAddress = bgStartAddress +
        (((y + yTileOfs) % 32) * 32) + ((x + xTileOfs) % 32);
 
-     tileNum = JavaBoy.unsign(videoRam[tileNumAddress]);
-     attributeData = JavaBoy.unsign(videoRam[tileNumAddress + 0x2000]);
+     tileNum = Util.unsign(videoRam[tileNumAddress]);
+     attributeData = Util.unsign(videoRam[tileNumAddress + 0x2000]);
     } else {
      tileNumAddress = bgStartAddress +
         (((y + yTileOfs) % 32) * 32) + ((x + xTileOfs) % 32);
 
      tileNum = 256 + videoRam[tileNumAddress];
-     attributeData = JavaBoy.unsign(videoRam[tileNumAddress + 0x2000]);
+     attributeData = Util.unsign(videoRam[tileNumAddress + 0x2000]);
     }
 
     int attribs = 0;
@@ -359,10 +374,10 @@ public void drawSprites(Graphics back, int priority) {
 
   // Draw bg layer
 /*
-  int xTileOfs = JavaBoy.unsign(dmgcpu.ioHandler.registers[0x43]) / 8;
-  int yTileOfs = JavaBoy.unsign(dmgcpu.ioHandler.registers[0x42]) / 8;
-  int xPixelOfs = JavaBoy.unsign(dmgcpu.ioHandler.registers[0x43]) % 8;
-  int yPixelOfs = JavaBoy.unsign(dmgcpu.ioHandler.registers[0x42]) % 8;
+  int xTileOfs = Util.unsign(dmgcpu.ioHandler.registers[0x43]) / 8;
+  int yTileOfs = Util.unsign(dmgcpu.ioHandler.registers[0x42]) / 8;
+  int xPixelOfs = Util.unsign(dmgcpu.ioHandler.registers[0x43]) % 8;
+  int yPixelOfs = Util.unsign(dmgcpu.ioHandler.registers[0x42]) % 8;
 
   int bgStartAddress;
   if (hiBgTileMapAddress) {
@@ -382,10 +397,10 @@ public void drawSprites(Graphics back, int priority) {
 
     tileAddress = bgStartAddress +
        (((y + yTileOfs) % 32) * 32) + ((x + xTileOfs) % 32);
-    attributeData = JavaBoy.unsign(videoRam[tileAddress + 0x2000]);
+    attributeData = Util.unsign(videoRam[tileAddress + 0x2000]);
 
     if (bgWindowDataSelect) {
-     tileNum = JavaBoy.unsign(videoRam[tileAddress]);
+     tileNum = Util.unsign(videoRam[tileAddress]);
     } else {
      tileNum = 256 + videoRam[tileAddress];
     }
@@ -424,8 +439,8 @@ public void drawSprites(Graphics back, int priority) {
    } else {
     windowStartAddress = 0x1800;
    }
-   wx = JavaBoy.unsign(dmgcpu.ioHandler.registers[0x4B]) - 7;
-   wy = JavaBoy.unsign(dmgcpu.ioHandler.registers[0x4A]);
+   wx = Util.unsign(dmgcpu.ioHandler.registers[0x4B]) - 7;
+   wy = Util.unsign(dmgcpu.ioHandler.registers[0x4A]);
 
    back.setColor(new Color(backgroundPalette.getRgbEntry(0)));
    back.fillRect(wx * mag, wy * mag, 160 * mag, 144 * mag);
@@ -441,12 +456,12 @@ public void drawSprites(Graphics back, int priority) {
      if (!savedWindowDataSelect) {
       tileNum = 256 + videoRam[tileAddress];
       } else {
-      tileNum = JavaBoy.unsign(videoRam[tileAddress]);
+      tileNum = Util.unsign(videoRam[tileAddress]);
      }
      tileDataAddress = tileNum << 4;
 
      if (dmgcpu.gbcFeatures) {
-      attribData = JavaBoy.unsign(videoRam[tileAddress + 0x2000]);
+      attribData = Util.unsign(videoRam[tileAddress + 0x2000]);
 
       attribs = (attribData & 0x07) << 2;
 
@@ -537,7 +552,11 @@ public void drawSprites(Graphics back, int priority) {
     new DirectColorModel(32, 0x00FF0000, 0x0000FF00, 0x000000FF, 0xFF000000),
     imageData, 0, 8 * magnify);
    source[attribs].setAnimated(true);
-   image[attribs] = a.createImage(source[attribs]);
+   if (a != null) {
+    image[attribs] = a.createImage(source[attribs]);
+   } else {
+    image[attribs] = Toolkit.getDefaultToolkit().createImage(source[attribs]);
+   }
   }
 
   /** Free memory used by this tile */
@@ -572,7 +591,7 @@ public void updateImage(byte[] videoRam, int offset, int attribs) {
    GameboyPalette pal;
 
    if (offset == 0x31E0) {
-//	 System.out.println("window updated with " + JavaBoy.hexByte(attribs) + " xflip = " + (attribs & TILE_FLIPX) + "  yflip = " + (attribs & TILE_FLIPY));
+//	 System.out.println("window updated with " + Util.hexByte(attribs) + " xflip = " + (attribs & TILE_FLIPX) + "  yflip = " + (attribs & TILE_FLIPY));
    }
 
    if (dmgcpu.gbcFeatures) {
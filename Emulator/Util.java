@@ -0,0 +1,58 @@
+package Emulator;
+
+/**
+ * Conversions and logging used all over the emulator. They are kept out of
+ * JavaBoy, so using them does not load the applet and with it AWT
+ */
+public class Util {
+   private static final String hexChars = "0123456789ABCDEF";
+
+   /** False when the debugging lines are not wanted, such as in batch runs */
+   private static volatile boolean debugEnabled = true;
+
+   /** Outputs a line of debugging information */
+   static public void debugLog(String s) {
+      if (debugEnabled) {
+         System.out.println("Debug: " + s);
+      }
+   }
+
+   /** Turn the debugging lines on or off, for every emulator in the JVM */
+   static public void setDebugLog(boolean enabled) {
+      debugEnabled = enabled;
+   }
+
+   /** Returns the unsigned value (0 - 255) of a signed byte */
+   static public short unsign(byte b) {
+      if (b < 0) {
+         return (short) (256 + b);
+      } else {
+         return b;
+      }
+   }
+
+   /**
+    * Returns the unsigned value (0 - 255) of a signed 8-bit value stored in a
+    * short
+    */
+   static public short unsign(short b) {
+      if (b < 0) {
+         return (short) (256 + b);
+      } else {
+         return b;
+      }
+   }
+
+   /** Returns a string representation of an 8-bit number in hexadecimal */
+   static public String hexByte(int b) {
+      String s = new Character(hexChars.charAt(b >> 4)).toString();
+      s = s + new Character(hexChars.charAt(b & 0x0F)).toString();
+
+      return s;
+   }
+
+   /** Returns a string representation of an 16-bit number in hexadecimal */
+   static public String hexWord(int w) {
+      return new String(hexByte((w & 0x0000FF00) >> 8) + hexByte(w & 0x000000FF));
+   }
+}
@@ -22,7 +22,7 @@ Place - Suite 330, Boston, MA 02111-1307, USA.
 
 */
 
-class VoluntaryWaveGenerator {
+class VoluntaryWaveGenerator implements Cloneable {
  public static final int CHAN_LEFT = 1;
  public static final int CHAN_RIGHT = 2;
  public static final int CHAN_MONO = 4;
@@ -58,6 +58,17 @@ class VoluntaryWaveGenerator {
   sampleRate = sr;
  }
 
+ /** A copy of the generator and its waveform, for a Snapshot */
+ VoluntaryWaveGenerator copy() {
+  try {
+   VoluntaryWaveGenerator copy = (VoluntaryWaveGenerator) clone();
+   copy.waveform = waveform.clone();
+   return copy;
+  } catch (CloneNotSupportedException e) {
+   throw new InternalError();
+  }
+ }
+
  public void setFrequency(int gbFrequency) {
 //  cyclePos = 0;
   float frequency = (int) ((float) 65536 / (float) (2048 - gbFrequency));
@@ -107,7 +118,7 @@ class VoluntaryWaveGenerator {
    for (int r = offset; r < offset + length; r++) {
 
     int samplePos = (31 * cyclePos) / cycleLength;
-    val = JavaBoy.unsign(waveform[samplePos % 32]) >> volumeShift << 1;
+    val = Util.unsign(waveform[samplePos % 32]) >> volumeShift << 1;
 //    System.out.print(" " + val);
 
     if ((channel & CHAN_LEFT) != 0) b[r * 2] += val;
@@ -11,21 +11,15 @@ public class ADD extends Instruction{
       this.dmgcpu = dmgcpu;
    }
    
-   public void execute(int b2){
-      dmgcpu.f = 0;
+   public void execute(int b2, int carry){
+      int index = FlagTables.index(carry, dmgcpu.a, b2);
+      int entry = FlagTables.ADD[index];
 
-      if (((((dmgcpu.registers[a]) & 0x0F) + (b2 & 0x0F)) & 0xF0) != 0x00) {
-         dmgcpu.f |= dmgcpu.F_HALFCARRY;
-      }
-      dmgcpu.registers[a] += b2;
-      if (((dmgcpu.registers[a]) & 0xFF00) != 0) {
-         if (dmgcpu.registers[a] == 0x0100) {
-            dmgcpu.f |= dmgcpu.F_ZERO + dmgcpu.F_CARRY + dmgcpu.F_HALFCARRY;
-            dmgcpu.registers[a] = 0;
-         } else {
-            dmgcpu.f |= dmgcpu.F_CARRY + dmgcpu.F_HALFCARRY;
-            (dmgcpu.registers[a]) &= 0x00FF;
-         }
+      dmgcpu.a = entry & 0xFF;
+      if (dmgcpu.lazyFlagsEnable) {
+         dmgcpu.setLazyFlags(Dmgcpu.FLAGS_ADD, index);
+      } else {
+         dmgcpu.f = entry >> 8;
       }
    }
    
@@ -33,6 +27,6 @@ public class ADD extends Instruction{
    public void execute(int b1, int b2, int b3, int offset){  
       dmgcpu.pc += 2;
 
-      execute(b2);
+      execute(b2, 0);
    }
 }
@@ -0,0 +1,27 @@
+package Instructions;
+import Emulator.Dmgcpu;
+
+/*
+ * this class emulates: 
+ *    ADD HL, HL
+ */
+public class ADD_HL_HL extends Instruction{
+   
+   public ADD_HL_HL(Dmgcpu dmgcpu){
+      this.dmgcpu = dmgcpu;
+   }
+   
+   @Override
+   public void execute(int b1, int b2, int b3, int offset){
+      dmgcpu.updateFlags();
+      dmgcpu.pc++;
+      dmgcpu.hl += dmgcpu.hl;
+      
+      if ((dmgcpu.hl & 0xFFFF0000) != 0) {
+         dmgcpu.f = (short) ((dmgcpu.f & (dmgcpu.F_SUBTRACT + dmgcpu.F_ZERO + dmgcpu.F_HALFCARRY)) | (dmgcpu.F_CARRY));
+         dmgcpu.hl &= 0xFFFF;
+      } else {
+         dmgcpu.f = (short) ((dmgcpu.f & (dmgcpu.F_SUBTRACT + dmgcpu.F_ZERO + dmgcpu.F_HALFCARRY)));
+      }
+   }
+}
@@ -13,6 +13,7 @@ public class ADD_SP extends Instruction{
    
    @Override
    public void execute(int b1, int b2, int b3, int offset){  
+      dmgcpu.updateFlags();
       dmgcpu.pc += 2;
       dmgcpu.sp = (dmgcpu.sp + offset);
       if ((dmgcpu.sp & 0xFFFF0000) != 0) {
@@ -27,7 +27,6 @@ public class ALU extends Instruction{
 abstract class ALUInstruction{
    protected Dmgcpu dmgcpu;
    protected int operand;
-   protected final int a = 7, b = 0, c = 1, d = 2, e = 3;
    
    public abstract void execute(int b1);
 }
@@ -43,11 +42,8 @@ class ADC_A extends ALUInstruction{
    public void execute(int b1){
       operand = dmgcpu.registerRead(b1 & 0x07);
       
-      if ((dmgcpu.f & dmgcpu.F_CARRY) != 0) {
-         operand++;
-      }
-      
-      add.execute(b1, operand);
+      dmgcpu.updateFlags();
+      add.execute(b1, operand, (dmgcpu.f & dmgcpu.F_CARRY) >> 4);
    }
 }
 
@@ -57,38 +53,26 @@ class ADD_A extends ALUInstruction{
       this.dmgcpu = dmgcpu;
    }
    
-   private void add(int b1, int operand){
-      dmgcpu.f = 0;
-
-      if (((((dmgcpu.registers[a]) & 0x0F) + (operand & 0x0F)) & 0xF0) != 0x00) {
-         dmgcpu.f |= dmgcpu.F_HALFCARRY;
-      }
-
-      dmgcpu.registers[a] += operand;
+   private void add(int b1, int operand, int carry){
+      int index = FlagTables.index(carry, dmgcpu.a, operand);
+      int entry = FlagTables.ADD_A[index];
 
-      if (dmgcpu.registers[a] == 0) {
-         dmgcpu.f |= dmgcpu.F_ZERO;
-      }
-
-      if (((dmgcpu.registers[a]) & 0xFF00) != 0) { 
-         if (dmgcpu.registers[a] == 0x0100) {
-            dmgcpu.f |= dmgcpu.F_ZERO + dmgcpu.F_CARRY + dmgcpu.F_HALFCARRY;
-            dmgcpu.registers[a] = 0;
-         } else {
-            dmgcpu.f |= dmgcpu.F_CARRY + dmgcpu.F_HALFCARRY;
-            dmgcpu.registers[a] &= 0x00FF;
-         }
+      dmgcpu.a = entry & 0xFF;
+      if (dmgcpu.lazyFlagsEnable) {
+         dmgcpu.setLazyFlags(Dmgcpu.FLAGS_ADD_A, index);
+      } else {
+         dmgcpu.f = entry >> 8;
       }
    }
    
-   public void execute(int b1, int operand){
-      add(b1, operand);
+   public void execute(int b1, int operand, int carry){
+      add(b1, operand, carry);
    }
    
    public void execute(int b1){
       operand = dmgcpu.registerRead(b1 & 0x07);
       
-      add(b1, operand);
+      add(b1, operand, 0);
    }
 }
 
@@ -103,11 +87,8 @@ class SBC_A extends ALUInstruction{
    public void execute(int b1){
       operand = dmgcpu.registerRead(b1 & 0x07);
       
-      if ((dmgcpu.f & dmgcpu.F_CARRY) != 0) {
-         operand++;
-      }
-      
-      sub.execute(b1, operand);
+      dmgcpu.updateFlags();
+      sub.execute(b1, operand, (dmgcpu.f & dmgcpu.F_CARRY) >> 4);
    }
 }
 
@@ -117,32 +98,26 @@ class SUB_A extends ALUInstruction{
       this.dmgcpu = dmgcpu;
    }
    
-   private void sub(int b1, int operand){
-      dmgcpu.f = dmgcpu.F_SUBTRACT;
-
-      if (((((dmgcpu.registers[a]) & 0x0F) - (operand & 0x0F)) & 0xFFF0) != 0x00) {
-         dmgcpu.f |= dmgcpu.F_HALFCARRY;
-      }
+   private void sub(int b1, int operand, int carry){
+      int index = FlagTables.index(carry, dmgcpu.a, operand);
+      int entry = FlagTables.SUB[index];
 
-      dmgcpu.registers[a] -= operand;
-
-      if (((dmgcpu.registers[a]) & 0xFF00) != 0) {
-         dmgcpu.registers[a] &= 0x00FF;
-         dmgcpu.f |= dmgcpu.F_CARRY;
-      }
-      if (dmgcpu.registers[a] == 0) {
-         dmgcpu.f |= dmgcpu.F_ZERO;
+      dmgcpu.a = entry & 0xFF;
+      if (dmgcpu.lazyFlagsEnable) {
+         dmgcpu.setLazyFlags(Dmgcpu.FLAGS_SUB, index);
+      } else {
+         dmgcpu.f = entry >> 8;
       }
    }
    
-   public void execute(int b1, int operand){
-      sub(b1, operand);
+   public void execute(int b1, int operand, int carry){
+      sub(b1, operand, carry);
    }
    
    public void execute(int b1){
       operand = dmgcpu.registerRead(b1 & 0x07);
       
-      sub(b1, operand);
+      sub(b1, operand, 0);
    }
 }
 
@@ -155,11 +130,11 @@ class AND_A extends ALUInstruction{
    public void execute(int b1){
       operand = dmgcpu.registerRead(b1 & 0x07);
 
-      dmgcpu.registers[a] &= operand;
-      if (dmgcpu.registers[a] == 0) {
-         dmgcpu.f = dmgcpu.F_ZERO;
+      dmgcpu.a &= operand;
+      if (dmgcpu.lazyFlagsEnable) {
+         dmgcpu.setLazyFlags(Dmgcpu.FLAGS_LOGIC, dmgcpu.a);
       } else {
-         dmgcpu.f = 0;
+         dmgcpu.f = FlagTables.LOGIC[dmgcpu.a] >> 8;
       }
    }
 }
@@ -173,11 +148,11 @@ class XOR_A extends ALUInstruction{
    public void execute(int b1){
       operand = dmgcpu.registerRead(b1 & 0x07);
       
-      dmgcpu.registers[a] ^= operand;
-      if (dmgcpu.registers[a] == 0) {
-         dmgcpu.f = dmgcpu.F_ZERO;
+      dmgcpu.a ^= operand;
+      if (dmgcpu.lazyFlagsEnable) {
+         dmgcpu.setLazyFlags(Dmgcpu.FLAGS_LOGIC, dmgcpu.a);
       } else {
-         dmgcpu.f = 0;
+         dmgcpu.f = FlagTables.LOGIC[dmgcpu.a] >> 8;
       }
    }
 }
@@ -191,11 +166,11 @@ class OR_A extends ALUInstruction{
    public void execute(int b1){
       operand = dmgcpu.registerRead(b1 & 0x07);
       
-      dmgcpu.registers[a] |= operand;
-      if (dmgcpu.registers[a] == 0) {
-         dmgcpu.f = dmgcpu.F_ZERO;
+      dmgcpu.a |= operand;
+      if (dmgcpu.lazyFlagsEnable) {
+         dmgcpu.setLazyFlags(Dmgcpu.FLAGS_LOGIC, dmgcpu.a);
       } else {
-         dmgcpu.f = 0;
+         dmgcpu.f = FlagTables.LOGIC[dmgcpu.a] >> 8;
       }
    }
 }
@@ -210,15 +185,11 @@ class CP_A extends ALUInstruction{
    public void execute(int b1){
       operand = dmgcpu.registerRead(b1 & 0x07);
       
-      dmgcpu.f = dmgcpu.F_SUBTRACT;
-      if (dmgcpu.registers[a] == operand) {
-         dmgcpu.f |= dmgcpu.F_ZERO;
-      }
-      if (dmgcpu.registers[a] < operand) {
-         dmgcpu.f |= dmgcpu.F_CARRY;
-      }
-      if (((dmgcpu.registers[a]) & 0x0F) < (operand & 0x0F)) {
-         dmgcpu.f |= dmgcpu.F_HALFCARRY;
+      int index = FlagTables.index(0, dmgcpu.a, operand);
+      if (dmgcpu.lazyFlagsEnable) {
+         dmgcpu.setLazyFlags(Dmgcpu.FLAGS_SUB, index);
+      } else {
+         dmgcpu.f = FlagTables.SUB[index] >> 8;
       }
    }
 }
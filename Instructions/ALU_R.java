@@ -0,0 +1,183 @@
+package Instructions;
+import Emulator.Dmgcpu;
+
+/*
+ * ALU operations on A and a register, one class per operation so the
+ * expanded dispatch table has a handler with both the operation and the
+ * register fixed for each opcode 0x80 - 0xBF
+ */
+public abstract class ALU_R extends Instruction{
+   protected final Operand operand;
+
+   protected ALU_R(int regNum, Dmgcpu dmgcpu){
+      this.dmgcpu = dmgcpu;
+      operand = new Operand(regNum);
+   }
+
+   /** Returns the handler of an opcode 0x80 - 0xBF */
+   public static Instruction create(int opcode, Dmgcpu dmgcpu){
+      int regNum = opcode & 0x07;
+
+      switch((opcode & 0x38) >> 3){
+         case 0:  return new ADD_A_R(regNum, dmgcpu);    // ADD A, r
+         case 1:  return new ADC_A_R(regNum, dmgcpu);    // ADC A, r
+         case 2:  return new SUB_A_R(regNum, dmgcpu);    // SUB A, r
+         case 3:  return new SBC_A_R(regNum, dmgcpu);    // SBC A, r
+         case 4:  return new AND_A_R(regNum, dmgcpu);    // AND A, r
+         case 5:  return new XOR_A_R(regNum, dmgcpu);    // XOR A, r
+         case 6:  return new OR_A_R(regNum, dmgcpu);     // OR A, r
+         default: return new CP_A_R(regNum, dmgcpu);     // CP A, r
+      }
+   }
+
+   protected void add(int value, int carry){
+      int index = FlagTables.index(carry, dmgcpu.a, value);
+      int entry = FlagTables.ADD_A[index];
+
+      dmgcpu.a = entry & 0xFF;
+      if (dmgcpu.lazyFlagsEnable) {
+         dmgcpu.setLazyFlags(Dmgcpu.FLAGS_ADD_A, index);
+      } else {
+         dmgcpu.f = entry >> 8;
+      }
+   }
+
+   protected void sub(int value, int carry){
+      int index = FlagTables.index(carry, dmgcpu.a, value);
+      int entry = FlagTables.SUB[index];
+
+      dmgcpu.a = entry & 0xFF;
+      if (dmgcpu.lazyFlagsEnable) {
+         dmgcpu.setLazyFlags(Dmgcpu.FLAGS_SUB, index);
+      } else {
+         dmgcpu.f = entry >> 8;
+      }
+   }
+
+   protected void logic(){
+      if (dmgcpu.lazyFlagsEnable) {
+         dmgcpu.setLazyFlags(Dmgcpu.FLAGS_LOGIC, dmgcpu.a);
+      } else {
+         dmgcpu.f = FlagTables.LOGIC[dmgcpu.a] >> 8;
+      }
+   }
+}
+
+class ADD_A_R extends ALU_R{
+
+   ADD_A_R(int regNum, Dmgcpu dmgcpu){
+      super(regNum, dmgcpu);
+   }
+
+   @Override
+   public void execute(int b1, int b2, int b3, int offset){
+      dmgcpu.pc++;
+      add(operand.read(dmgcpu), 0);
+   }
+}
+
+class ADC_A_R extends ALU_R{
+
+   ADC_A_R(int regNum, Dmgcpu dmgcpu){
+      super(regNum, dmgcpu);
+   }
+
+   @Override
+   public void execute(int b1, int b2, int b3, int offset){
+      dmgcpu.pc++;
+      int value = operand.read(dmgcpu);
+
+      dmgcpu.updateFlags();
+      add(value, (dmgcpu.f & dmgcpu.F_CARRY) >> 4);
+   }
+}
+
+class SUB_A_R extends ALU_R{
+
+   SUB_A_R(int regNum, Dmgcpu dmgcpu){
+      super(regNum, dmgcpu);
+   }
+
+   @Override
+   public void execute(int b1, int b2, int b3, int offset){
+      dmgcpu.pc++;
+      sub(operand.read(dmgcpu), 0);
+   }
+}
+
+class SBC_A_R extends ALU_R{
+
+   SBC_A_R(int regNum, Dmgcpu dmgcpu){
+      super(regNum, dmgcpu);
+   }
+
+   @Override
+   public void execute(int b1, int b2, int b3, int offset){
+      dmgcpu.pc++;
+      int value = operand.read(dmgcpu);
+
+      dmgcpu.updateFlags();
+      sub(value, (dmgcpu.f & dmgcpu.F_CARRY) >> 4);
+   }
+}
+
+class AND_A_R extends ALU_R{
+
+   AND_A_R(int regNum, Dmgcpu dmgcpu){
+      super(regNum, dmgcpu);
+   }
+
+   @Override
+   public void execute(int b1, int b2, int b3, int offset){
+      dmgcpu.pc++;
+      dmgcpu.a &= operand.read(dmgcpu);
+      logic();
+   }
+}
+
+class XOR_A_R extends ALU_R{
+
+   XOR_A_R(int regNum, Dmgcpu dmgcpu){
+      super(regNum, dmgcpu);
+   }
+
+   @Override
+   public void execute(int b1, int b2, int b3, int offset){
+      dmgcpu.pc++;
+      dmgcpu.a ^= operand.read(dmgcpu);
+      logic();
+   }
+}
+
+class OR_A_R extends ALU_R{
+
+   OR_A_R(int regNum, Dmgcpu dmgcpu){
+      super(regNum, dmgcpu);
+   }
+
+   @Override
+   public void execute(int b1, int b2, int b3, int offset){
+      dmgcpu.pc++;
+      dmgcpu.a |= operand.read(dmgcpu);
+      logic();
+   }
+}
+
+class CP_A_R extends ALU_R{
+
+   CP_A_R(int regNum, Dmgcpu dmgcpu){
+      super(regNum, dmgcpu);
+   }
+
+   @Override
+   public void execute(int b1, int b2, int b3, int offset){
+      dmgcpu.pc++;
+      int index = FlagTables.index(0, dmgcpu.a, operand.read(dmgcpu));
+
+      if (dmgcpu.lazyFlagsEnable) {
+         dmgcpu.setLazyFlags(Dmgcpu.FLAGS_SUB, index);
+      } else {
+         dmgcpu.f = FlagTables.SUB[index] >> 8;
+      }
+   }
+}
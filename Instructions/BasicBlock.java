@@ -0,0 +1,25 @@
+package Instructions;
+
+/*
+ * A straight line run of ROM code. Only the last instruction of a block
+ * can change the flow of execution (jumps, calls, returns, HALT...).
+ */
+final class BasicBlock {
+   /** Bank the block was decoded from, FIXED_BANK for 0x0000 - 0x3FFF */
+   static final int FIXED_BANK = -1;
+
+   final int bank;
+   final DecodedInstruction[] instructions;
+
+   /**
+    * Clock cycles of one pass when the block is an idle loop (a loop that
+    * jumps back to its own start and only reads memory), 0 otherwise
+    */
+   final int idleCycles;
+
+   BasicBlock(int bank, DecodedInstruction[] instructions, int idleCycles){
+      this.bank = bank;
+      this.instructions = instructions;
+      this.idleCycles = idleCycles;
+   }
+}
@@ -0,0 +1,225 @@
+package Instructions;
+import Emulator.Dmgcpu;
+import Emulator.Util;
+
+/*
+ * Second execution tier. ROM code is split into basic blocks, keyed by
+ * bank and address, which are decoded the first time they are reached and
+ * kept for the rest of the session. Running a cached block only costs the
+ * handler calls, the opcode and operand bytes are not fetched through
+ * addressRead again.
+ *
+ * Code that runs outside ROM (WRAM, HRAM...) can be modified by the game,
+ * so it is not split into blocks and goes through the DecodeCache instead.
+ */
+public class BlockCache {
+   /** Maximum number of instructions decoded into a single block */
+   private static final int MAX_BLOCK_LENGTH = 32;
+
+   private Dmgcpu dmgcpu;
+   private InstructionManager instructionManager;
+   private DecodeCache decodeCache;
+
+   /** Blocks of the fixed ROM bank, 0x0000 - 0x3FFF */
+   private BasicBlock[] fixedBank;
+
+   /** Blocks of the switchable ROM bank, 0x4000 - 0x7FFF, by bank number */
+   private BasicBlock[][] switchableBanks;
+
+   /** The block being executed and the index of its next instruction */
+   private BasicBlock block;
+   private int index;
+
+   public BlockCache(Dmgcpu dmgcpu, InstructionManager instructionManager, DecodeCache decodeCache){
+      this.dmgcpu = dmgcpu;
+      this.instructionManager = instructionManager;
+      this.decodeCache = decodeCache;
+      flush();
+   }
+
+   /** Forget every decoded block, used when the ROM contents are patched */
+   public void flush(){
+      fixedBank = new BasicBlock[0x4000];
+      switchableBanks = new BasicBlock[0x200][];
+      block = null;
+   }
+
+   /** Execute the instruction at pc */
+   public final void execute(){
+      BasicBlock current = block;
+
+      if(current == null || index == current.instructions.length
+            || current.instructions[index].pc != dmgcpu.pc
+            || (current.bank != BasicBlock.FIXED_BANK && current.bank != dmgcpu.getRomBank())){
+         current = lookup(dmgcpu.pc);
+         block = current;
+         index = 0;
+
+         if(current == null){
+            if(dmgcpu.decodeCacheEnable){
+               decodeCache.execute();
+            } else {
+               instructionManager.execute();
+            }
+            return;
+         }
+      }
+
+      current.instructions[index++].execute();
+
+      if(index == current.instructions.length && current.idleCycles != 0
+            && dmgcpu.pc == current.instructions[0].pc && dmgcpu.idleLoopSkipEnable){
+         dmgcpu.skipIdleLoop(current.idleCycles, index);
+      }
+   }
+
+   /** Find the block starting at the given address, decoding it if needed */
+   private BasicBlock lookup(int pc){
+      BasicBlock found;
+
+      if(pc >= 0 && pc < 0x4000){
+         found = fixedBank[pc];
+         if(found == null){
+            found = decode(pc, BasicBlock.FIXED_BANK, 0x4000);
+            fixedBank[pc] = found;
+         }
+      } else if(pc >= 0x4000 && pc < 0x8000){
+         int bank = dmgcpu.getRomBank();
+         if(bank < 0 || bank >= switchableBanks.length){
+            return null;
+         }
+
+         BasicBlock[] blocks = switchableBanks[bank];
+         if(blocks == null){
+            blocks = new BasicBlock[0x4000];
+            switchableBanks[bank] = blocks;
+         }
+
+         found = blocks[pc - 0x4000];
+         if(found == null){
+            found = decode(pc, bank, 0x8000);
+            blocks[pc - 0x4000] = found;
+         }
+      } else {
+         return null;
+      }
+
+      return found;
+   }
+
+   /**
+    * Decode instructions from pc until the end of the block, without crossing
+    * the end of the ROM area the block belongs to
+    */
+   private BasicBlock decode(int pc, int bank, int end){
+      DecodedInstruction[] decoded = new DecodedInstruction[MAX_BLOCK_LENGTH];
+      int count = 0;
+      int b1;
+
+      do {
+         b1 = Util.unsign(dmgcpu.addressRead(pc));
+         int length = InstructionManager.LENGTH[b1];
+
+         if(pc + length > end){
+            break;
+         }
+
+         int b2 = 0, b3 = 0, offset = 0;
+         if(length > 1){
+            offset = dmgcpu.addressRead(pc + 1);
+            b2 = Util.unsign((short) offset);
+         }
+         if(length > 2){
+            b3 = Util.unsign(dmgcpu.addressRead(pc + 2));
+         }
+
+         decoded[count++] = new DecodedInstruction(instructionManager.getInstruction(b1, b2), b1, b2, b3, offset, pc, length);
+         pc += length;
+      } while(count < MAX_BLOCK_LENGTH && !instructionManager.endsBlock(b1));
+
+      if(count == 0){
+         return null;
+      }
+
+      DecodedInstruction[] instructions = new DecodedInstruction[count];
+      System.arraycopy(decoded, 0, instructions, 0, count);
+      return new BasicBlock(bank, instructions, idleLoopCycles(instructions));
+   }
+
+   /**
+    * Returns the cycles of one pass of the block if it is an idle loop, or 0.
+    * An idle loop ends with a jump back to its start, and the other
+    * instructions only read memory whose value can not change until the next
+    * timer or LCD event, and set A and the flags from it. For example
+    * LDH A, (44); CP 90; JR NZ, -6 waiting for a line. Every pass leaves
+    * the CPU in the same state, so passes can be skipped until the next event
+    */
+   private static int idleLoopCycles(DecodedInstruction[] instructions){
+      int cycles = 0;
+      int last = instructions.length - 1;
+
+      for(int i = 0; i < last; i++){
+         DecodedInstruction instruction = instructions[i];
+         switch(instruction.b1){
+            case 0xF0:   // LDH A, (nn)
+               if(instruction.b2 < 0x80 && instruction.b2 != 0x04 && instruction.b2 != 0x05
+                     && instruction.b2 != 0x0F && instruction.b2 != 0x44){
+                  // other IO registers change on their own (STAT, joypad, serial...)
+                  return 0;
+               }
+               break;
+            case 0xFA:   // LD A, (nnnn)
+               int addr = (instruction.b3 << 8) + instruction.b2;
+               if(!(addr >= 0xC000 && addr < 0xE000) && !(addr >= 0xFF80 && addr < 0xFFFF)){
+                  return 0;
+               }
+               break;
+            case 0xFE:   // CP n
+            case 0xE6:   // AND n
+            case 0xA7:   // AND A
+            case 0xB7:   // OR A
+               break;
+            case 0xCB:   // BIT n, A
+               if((instruction.b2 & 0xC7) != 0x47){
+                  return 0;
+               }
+               break;
+            default:
+               return 0;
+         }
+         cycles += instruction.cycles;
+      }
+
+      DecodedInstruction jump = instructions[last];
+      int target;
+      switch(jump.b1){
+         case 0x18:   // JR n
+            target = jump.pc + 2 + jump.offset;
+            break;
+         case 0x20:   // JR NZ/Z/NC/C, n
+         case 0x28:
+         case 0x30:
+         case 0x38:
+            target = jump.pc + 2 + jump.offset;
+            cycles += 4;
+            break;
+         case 0xC3:   // JP nnnn
+            target = (jump.b3 << 8) + jump.b2;
+            break;
+         case 0xC2:   // JP NZ/Z/NC/C, nnnn
+         case 0xCA:
+         case 0xD2:
+         case 0xDA:
+            target = (jump.b3 << 8) + jump.b2;
+            cycles += 4;
+            break;
+         default:
+            return 0;
+      }
+
+      if(target != instructions[0].pc){
+         return 0;
+      }
+      return cycles + jump.cycles;
+   }
+}
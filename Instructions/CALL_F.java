@@ -9,7 +9,7 @@ import Emulator.Dmgcpu;
  *    CALL C, nnnn
  */
 public class CALL_F extends Instruction{
-   private short flag1, flag2;
+   private final short flag1, flag2;
    
    public CALL_F(short flag1, short flag2, Dmgcpu dmgcpu){
       this.dmgcpu = dmgcpu;
@@ -19,7 +19,9 @@ public class CALL_F extends Instruction{
    
    @Override
    public void execute(int b1, int b2, int b3, int offset){
+      dmgcpu.updateFlags();
       if ((dmgcpu.f & flag1) == flag2) {        
+         dmgcpu.cycles += 12;
          dmgcpu.pc += 3;
          dmgcpu.sp -= 2;
          dmgcpu.addressWrite(dmgcpu.sp + 1, dmgcpu.pc >> 8);
@@ -13,6 +13,7 @@ public class CCF extends Instruction{
    
    @Override
    public void execute(int b1, int b2, int b3, int offset){  
+      dmgcpu.updateFlags();
       dmgcpu.pc++;
       if ((dmgcpu.f & dmgcpu.F_CARRY) == 0) {
          dmgcpu.f = (short) ((dmgcpu.f & dmgcpu.F_ZERO) | dmgcpu.F_CARRY);
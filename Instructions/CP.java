@@ -14,15 +14,12 @@ public class CP extends Instruction{
    @Override
    public void execute(int b1, int b2, int b3, int offset){  
       dmgcpu.pc += 2;
-      dmgcpu.f = 0;
-      if (b2 == dmgcpu.registers[a]) {
-         dmgcpu.f |= dmgcpu.F_ZERO;
-      }
-      if (dmgcpu.registers[a] < b2) {
-         dmgcpu.f |= dmgcpu.F_CARRY;
-      }
-      if (((((dmgcpu.registers[a]) & 0x0F) - (b2 & 0x0F)) & 0xFFF0) != 0x00){
-         dmgcpu.f |= dmgcpu.F_HALFCARRY;
+
+      int index = FlagTables.index(0, dmgcpu.a, b2);
+      if (dmgcpu.lazyFlagsEnable) {
+         dmgcpu.setLazyFlags(Dmgcpu.FLAGS_CP, index);
+      } else {
+         dmgcpu.f = (FlagTables.SUB[index] >> 8) & ~dmgcpu.F_SUBTRACT;
       }
    }
 }
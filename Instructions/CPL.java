@@ -13,8 +13,9 @@ public class CPL extends Instruction{
    
    @Override
    public void execute(int b1, int b2, int b3, int offset){  
+      dmgcpu.updateFlags();
       dmgcpu.pc++;            
-      dmgcpu.registers[a] = (short) ((~(dmgcpu.registers[a])) & 0x00FF);
+      dmgcpu.a = (short) ((~(dmgcpu.a)) & 0x00FF);
       dmgcpu.f = (short) ((dmgcpu.f & (dmgcpu.F_CARRY | dmgcpu.F_ZERO)) | dmgcpu.F_SUBTRACT | dmgcpu.F_HALFCARRY);
    }
 }
@@ -2,28 +2,20 @@ package Instructions;
 import Emulator.Dmgcpu;
 
 public class DEC_2R extends Instruction{
-   private int reg1, reg2, address, value;
+   private final int pair;
    
-   public DEC_2R(int reg1, int reg2, Dmgcpu dmgcpu){
-      this.reg1 = reg1;   
-      this.reg2 = reg2;   
+   public DEC_2R(int pair, Dmgcpu dmgcpu){
+      this.pair = pair;
       this.dmgcpu = dmgcpu;
-      address = 0xFF00;
-      value = 0xFF;
    }
    
    @Override
    public void execute(int b1, int b2, int b3, int offset){
       dmgcpu.pc++;
-      dmgcpu.registers[reg2]--;
-      
-      if((dmgcpu.registers[reg2] & address) != 0){
-         dmgcpu.registers[reg2] = value;
-         dmgcpu.registers[reg1]--;
-         
-         if((dmgcpu.registers[reg1] & address) != 0){
-            dmgcpu.registers[reg1] = value;
-         }
+      if(pair == BC){
+         dmgcpu.bc = (dmgcpu.bc - 1) & 0xFFFF;
+      } else{
+         dmgcpu.de = (dmgcpu.de - 1) & 0xFFFF;
       }
    }
 }
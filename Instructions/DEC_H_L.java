@@ -8,7 +8,7 @@ import Emulator.Dmgcpu;
  * 
  */
 public class DEC_H_L extends Instruction{
-   private int mask1, mask2, mask3, address, shift;
+   private final int mask1, mask2, mask3, address, shift;
    
    public DEC_H_L(int mask1, int mask2, int mask3, int address, int shift, Dmgcpu dmgcpu){
       this.dmgcpu = dmgcpu;
@@ -21,6 +21,7 @@ public class DEC_H_L extends Instruction{
    
    @Override
    public void execute(int b1, int b2, int b3, int offset){
+      dmgcpu.updateFlags();
       dmgcpu.pc++;
       dmgcpu.f &= dmgcpu.F_CARRY;
       dmgcpu.f |= dmgcpu.F_SUBTRACT;
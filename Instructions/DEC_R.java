@@ -3,37 +3,21 @@ import Emulator.Dmgcpu;
 
 
 public class DEC_R extends Instruction{
-   private int reg;
+   private final Operand reg;
    
    public DEC_R(int reg, Dmgcpu dmgcpu){
-      this.reg = reg;      
+      this.reg = new Operand(reg);      
       this.dmgcpu = dmgcpu;
    }
    
          
    @Override
    public void execute(int b1, int b2, int b3, int offset){
+      dmgcpu.updateFlags();
       dmgcpu.pc++;
-      dmgcpu.f &= dmgcpu.F_CARRY;
-      dmgcpu.f |= dmgcpu.F_SUBTRACT;
-      
-      switch (dmgcpu.registers[reg]) {
-         case 0x00:
-            dmgcpu.f |= dmgcpu.F_HALFCARRY;
-            dmgcpu.registers[reg] = 0xFF;
-            break;
-         case 0x10:
-            dmgcpu.f |= dmgcpu.F_HALFCARRY;
-            dmgcpu.registers[reg] = 0x0F;
-            break;
-         case 0x01:
-            dmgcpu.f |= dmgcpu.F_ZERO;
-            dmgcpu.registers[reg] = 0x00;
-            break;
-         default:
-            dmgcpu.registers[reg]--;
-            break;
-   
-      }
+
+      int entry = FlagTables.DEC[reg.read(dmgcpu)];
+      dmgcpu.f = (dmgcpu.f & dmgcpu.F_CARRY) | (entry >> 8);
+      reg.write(dmgcpu, entry & 0xFF);
    }
 }
@@ -0,0 +1,188 @@
+package Instructions;
+import Emulator.Dmgcpu;
+import Emulator.Util;
+
+/*
+ * Keeps the decoded instruction (handler and operand bytes) of every address
+ * that has been executed, so the opcode and operands are only fetched through
+ * addressRead the first time an address is reached.
+ *
+ * ROM entries are kept per bank, mapRom only changes the bank looked up at
+ * 0x4000 - 0x7FFF. Code in work RAM (0xC000 - 0xDFFF) and high RAM
+ * (0xFF80 - 0xFFFE) is cached too, and the entries are dropped when the
+ * bytes they were decoded from are written or banked out. Code anywhere
+ * else (VRAM, cartridge RAM, echo RAM...) is fetched every time.
+ *
+ * Writes to plain RAM skip the CPU's slow path, so the work RAM pages that
+ * hold cached code are marked with protectCode() to keep their writes
+ * coming here. Dropped RAM entries are kept aside and decoded into again,
+ * so code that keeps its variables next to it does not allocate a new
+ * entry every time they change.
+ */
+public class DecodeCache {
+   private Dmgcpu dmgcpu;
+   private InstructionManager instructionManager;
+
+   /** Fixed ROM bank, 0x0000 - 0x3FFF */
+   private DecodedInstruction[] fixedBank;
+
+   /** Switchable ROM banks, 0x4000 - 0x7FFF, by bank number, and the one mapped */
+   private DecodedInstruction[][] romBanks;
+   private DecodedInstruction[] switchableBank;
+
+   /** Work RAM, 0xC000 - 0xDFFF, and high RAM, 0xFF80 - 0xFFFE */
+   private DecodedInstruction[] workRam;
+   private DecodedInstruction[] highRam;
+
+   /** Dropped entries of work RAM and high RAM, by address */
+   private DecodedInstruction[] workRamSpare;
+   private DecodedInstruction[] highRamSpare;
+
+   public DecodeCache(Dmgcpu dmgcpu, InstructionManager instructionManager){
+      this.dmgcpu = dmgcpu;
+      this.instructionManager = instructionManager;
+      flush();
+   }
+
+   /** Forget every decoded instruction */
+   public void flush(){
+      fixedBank = new DecodedInstruction[0x4000];
+      romBanks = new DecodedInstruction[0x200][];
+      workRam = new DecodedInstruction[0x2000];
+      highRam = new DecodedInstruction[0x80];
+      workRamSpare = new DecodedInstruction[0x2000];
+      highRamSpare = new DecodedInstruction[0x80];
+      dmgcpu.clearCodePages();
+      mapRom(dmgcpu.getRomBank());
+   }
+
+   /** Called when a ROM bank is mapped at 0x4000 */
+   public void mapRom(int bank){
+      if(bank < 0 || bank >= romBanks.length){
+         switchableBank = null;
+         return;
+      }
+
+      if(romBanks[bank] == null){
+         romBanks[bank] = new DecodedInstruction[0x4000];
+      }
+      switchableBank = romBanks[bank];
+   }
+
+   /** Called when a byte is written to RAM, drops the instructions that include it */
+   public final void write(int addr){
+      if(addr >= 0xC000 && addr < 0xE000){
+         drop(workRam, workRamSpare, addr - 0xC000);
+      } else if(addr >= 0xFF80 && addr < 0xFFFF){
+         drop(highRam, highRamSpare, addr - 0xFF80);
+      }
+   }
+
+   /**
+    * Drops every instruction decoded from RAM, used when its contents are put
+    * back from a snapshot without being written
+    */
+   public void flushRam(){
+      for(int i = 0; i < workRam.length; i++){
+         if(workRam[i] != null){
+            workRamSpare[i] = workRam[i];
+            workRam[i] = null;
+         }
+      }
+      for(int i = 0; i < highRam.length; i++){
+         if(highRam[i] != null){
+            highRamSpare[i] = highRam[i];
+            highRam[i] = null;
+         }
+      }
+      dmgcpu.clearCodePages();
+   }
+
+   /** Drops the instructions of a range of addresses, used when RAM is banked out */
+   public void invalidate(int addr, int length){
+      for(int i = addr; i < addr + length; i++){
+         write(i);
+      }
+   }
+
+   private static void drop(DecodedInstruction[] entries, DecodedInstruction[] spares, int index){
+      // an instruction is up to three bytes long
+      for(int i = Math.max(index - 2, 0); i <= index; i++){
+         if(entries[i] != null){
+            spares[i] = entries[i];
+            entries[i] = null;
+         }
+      }
+   }
+
+   /** Execute the instruction at pc */
+   public final void execute(){
+      int pc = dmgcpu.pc;
+      DecodedInstruction[] entries, spares = null;
+      int start;
+
+      if(pc < 0x4000){
+         entries = fixedBank;
+         start = 0;
+      } else if(pc < 0x8000){
+         entries = switchableBank;
+         start = 0x4000;
+      } else if(pc >= 0xC000 && pc < 0xE000){
+         entries = workRam;
+         spares = workRamSpare;
+         start = 0xC000;
+      } else if(pc >= 0xFF80 && pc < 0xFFFF){
+         entries = highRam;
+         spares = highRamSpare;
+         start = 0xFF80;
+      } else {
+         entries = null;
+         start = 0;
+      }
+
+      if(entries == null){
+         instructionManager.execute();
+         return;
+      }
+
+      DecodedInstruction decoded = entries[pc - start];
+      if(decoded == null){
+         decoded = decode(pc, (spares != null) ? spares[pc - start] : null);
+
+         // the operands must come from the same area, or they could change under the entry
+         if(pc - start + decoded.length > entries.length){
+            decoded.execute();
+            return;
+         }
+         entries[pc - start] = decoded;
+         if(entries == workRam){
+            dmgcpu.protectCode(pc);
+            dmgcpu.protectCode(pc + decoded.length - 1);
+         }
+      }
+
+      decoded.execute();
+   }
+
+   /** Decode the instruction at pc, into spare if it is not null */
+   private DecodedInstruction decode(int pc, DecodedInstruction spare){
+      int b1 = Util.unsign(dmgcpu.addressRead(pc));
+      int length = InstructionManager.LENGTH[b1];
+      int b2 = 0, b3 = 0, offset = 0;
+
+      if(length > 1){
+         offset = dmgcpu.addressRead(pc + 1);
+         b2 = Util.unsign((short) offset);
+      }
+      if(length > 2){
+         b3 = Util.unsign(dmgcpu.addressRead(pc + 2));
+      }
+
+      Instruction handler = instructionManager.getInstruction(b1, b2);
+      if(spare != null){
+         spare.set(handler, b1, b2, b3, offset, pc, length);
+         return spare;
+      }
+      return new DecodedInstruction(handler, b1, b2, b3, offset, pc, length);
+   }
+}
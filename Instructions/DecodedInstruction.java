@@ -0,0 +1,37 @@
+package Instructions;
+
+/*
+ * An instruction that has already been fetched and decoded: the handler
+ * that emulates it and the operand bytes that followed the opcode.
+ */
+final class DecodedInstruction {
+   Instruction handler;
+   int b1, b2, b3, offset;
+
+   /** Address of the opcode and the number of bytes the instruction takes */
+   int pc, length;
+   
+   /** Clock cycles taken, not counting a taken branch */
+   int cycles;
+
+   DecodedInstruction(Instruction handler, int b1, int b2, int b3, int offset, int pc, int length){
+      set(handler, b1, b2, b3, offset, pc, length);
+   }
+
+   /** Hold another instruction, so the entries of code in RAM can be used again */
+   void set(Instruction handler, int b1, int b2, int b3, int offset, int pc, int length){
+      this.handler = handler;
+      this.b1 = b1;
+      this.b2 = b2;
+      this.b3 = b3;
+      this.offset = offset;
+      this.pc = pc;
+      this.length = length;
+      this.cycles = InstructionManager.CYCLES[b1];
+   }
+
+   public void execute(){
+      handler.dmgcpu.cycles += cycles;
+      handler.execute(b1, b2, b3, offset);
+   }
+}
@@ -29,6 +29,12 @@ public class ExtOps extends Instruction {
    public void execute(int b1, int b2, int b3, int offset) {
       int i;
       dmgcpu.pc += 2;
+      dmgcpu.updateFlags();
+
+      // (HL) operations read memory, and write it back unless they are BIT
+      if ((b2 & 0x07) == 6) {
+         dmgcpu.cycles += ((b2 & 0xC0) == 0x40) ? 4 : 8;
+      }
 
       if ((b2 & 0xC0) == 0) {
          i = (b2 & 0xF8) / 0x08;
@@ -0,0 +1,274 @@
+package Instructions;
+import Emulator.Dmgcpu;
+
+/*
+ * Extended Operations (Two byte instruction codes) of the expanded
+ * dispatch table. There is one handler for each second byte, built with
+ * the operation, the bit and the register fixed, so they are run without
+ * decoding the second byte again
+ */
+public class ExtOpsTable extends Instruction {
+   private Instruction[] handlers = new Instruction[256];
+
+   public ExtOpsTable(Dmgcpu dmgcpu) {
+      this.dmgcpu = dmgcpu;
+
+      for (int b2 = 0; b2 < 256; b2++) {
+         int regNum = b2 & 0x07;
+         int bit = (b2 & 0x38) >> 3;
+
+         switch (b2 & 0xC0) {
+            case 0x00:
+               handlers[b2] = shiftOp(bit, regNum);
+               break;
+            case 0x40:
+               handlers[b2] = new CB_BIT(bit, regNum, dmgcpu);     // BIT n, r
+               break;
+            case 0x80:
+               handlers[b2] = new CB_RES(bit, regNum, dmgcpu);     // RES n, r
+               break;
+            default:
+               handlers[b2] = new CB_SET(bit, regNum, dmgcpu);     // SET n, r
+         }
+      }
+   }
+
+   private Instruction shiftOp(int op, int regNum) {
+      switch (op) {
+         case 0:  return new CB_RLC(regNum, dmgcpu);     // RLC r    0x00
+         case 1:  return new CB_RRC(regNum, dmgcpu);     // RRC r    0x08
+         case 2:  return new CB_RL(regNum, dmgcpu);      // RL r     0x10
+         case 3:  return new CB_RR(regNum, dmgcpu);      // RR r     0x18
+         case 4:  return new CB_SLA(regNum, dmgcpu);     // SLA r    0x20
+         case 5:  return new CB_SRA(regNum, dmgcpu);     // SRA r    0x28
+         case 6:  return new CB_SWAP(regNum, dmgcpu);    // SWAP r   0x30
+         default: return new CB_SRL(regNum, dmgcpu);     // SRL r    0x38
+      }
+   }
+
+   /** Returns the handler of the second byte */
+   Instruction getHandler(int b2) {
+      return handlers[b2];
+   }
+
+   public void execute(int b1, int b2, int b3, int offset) {
+      handlers[b2].execute(b1, b2, b3, offset);
+   }
+}
+
+/*
+ * Base of the handlers, the (HL) operations read memory and write it back
+ * unless they are BIT
+ */
+abstract class ExtOp extends Instruction {
+   protected final Operand operand;
+   protected final int extraCycles;
+
+   protected ExtOp(int regNum, int memoryCycles, Dmgcpu dmgcpu) {
+      this.dmgcpu = dmgcpu;
+      operand = new Operand(regNum);
+      extraCycles = operand.memory ? memoryCycles : 0;
+   }
+}
+
+class CB_RLC extends ExtOp {
+
+   CB_RLC(int regNum, Dmgcpu dmgcpu) {
+      super(regNum, 8, dmgcpu);
+   }
+
+   public void execute(int b1, int b2, int b3, int offset) {
+      dmgcpu.pc += 2;
+      dmgcpu.cycles += extraCycles;
+      int data = operand.read(dmgcpu);
+      int carry = (data & 0x80) >> 7;
+
+      data = ((data << 1) | carry) & 0xFF;
+      dmgcpu.flagOp = Dmgcpu.FLAGS_DONE;
+      dmgcpu.f = (carry << 4) | (data == 0 ? dmgcpu.F_ZERO : 0);
+      operand.write(dmgcpu, data);
+   }
+}
+
+class CB_RRC extends ExtOp {
+
+   CB_RRC(int regNum, Dmgcpu dmgcpu) {
+      super(regNum, 8, dmgcpu);
+   }
+
+   public void execute(int b1, int b2, int b3, int offset) {
+      dmgcpu.pc += 2;
+      dmgcpu.cycles += extraCycles;
+      int data = operand.read(dmgcpu);
+      int carry = data & 0x01;
+
+      data = (data >> 1) | (carry << 7);
+      dmgcpu.flagOp = Dmgcpu.FLAGS_DONE;
+      dmgcpu.f = (carry << 4) | (data == 0 ? dmgcpu.F_ZERO : 0);
+      operand.write(dmgcpu, data);
+   }
+}
+
+class CB_RL extends ExtOp {
+
+   CB_RL(int regNum, Dmgcpu dmgcpu) {
+      super(regNum, 8, dmgcpu);
+   }
+
+   public void execute(int b1, int b2, int b3, int offset) {
+      dmgcpu.pc += 2;
+      dmgcpu.cycles += extraCycles;
+      dmgcpu.updateFlags();
+      int data = operand.read(dmgcpu);
+      int carry = (data & 0x80) >> 7;
+
+      data = ((data << 1) | ((dmgcpu.f & dmgcpu.F_CARRY) >> 4)) & 0xFF;
+      dmgcpu.f = (carry << 4) | (data == 0 ? dmgcpu.F_ZERO : 0);
+      operand.write(dmgcpu, data);
+   }
+}
+
+class CB_RR extends ExtOp {
+
+   CB_RR(int regNum, Dmgcpu dmgcpu) {
+      super(regNum, 8, dmgcpu);
+   }
+
+   public void execute(int b1, int b2, int b3, int offset) {
+      dmgcpu.pc += 2;
+      dmgcpu.cycles += extraCycles;
+      dmgcpu.updateFlags();
+      int data = operand.read(dmgcpu);
+      int carry = data & 0x01;
+
+      data = (data >> 1) | ((dmgcpu.f & dmgcpu.F_CARRY) << 3);
+      dmgcpu.f = (carry << 4) | (data == 0 ? dmgcpu.F_ZERO : 0);
+      operand.write(dmgcpu, data);
+   }
+}
+
+class CB_SLA extends ExtOp {
+
+   CB_SLA(int regNum, Dmgcpu dmgcpu) {
+      super(regNum, 8, dmgcpu);
+   }
+
+   public void execute(int b1, int b2, int b3, int offset) {
+      dmgcpu.pc += 2;
+      dmgcpu.cycles += extraCycles;
+      int data = operand.read(dmgcpu);
+      int carry = (data & 0x80) >> 7;
+
+      data = (data << 1) & 0xFF;
+      dmgcpu.flagOp = Dmgcpu.FLAGS_DONE;
+      dmgcpu.f = (carry << 4) | (data == 0 ? dmgcpu.F_ZERO : 0);
+      operand.write(dmgcpu, data);
+   }
+}
+
+class CB_SRA extends ExtOp {
+
+   CB_SRA(int regNum, Dmgcpu dmgcpu) {
+      super(regNum, 8, dmgcpu);
+   }
+
+   public void execute(int b1, int b2, int b3, int offset) {
+      dmgcpu.pc += 2;
+      dmgcpu.cycles += extraCycles;
+      int data = operand.read(dmgcpu);
+      int carry = data & 0x01;
+
+      data = (data >> 1) | (data & 0x80);
+      dmgcpu.flagOp = Dmgcpu.FLAGS_DONE;
+      dmgcpu.f = (carry << 4) | (data == 0 ? dmgcpu.F_ZERO : 0);
+      operand.write(dmgcpu, data);
+   }
+}
+
+class CB_SWAP extends ExtOp {
+
+   CB_SWAP(int regNum, Dmgcpu dmgcpu) {
+      super(regNum, 8, dmgcpu);
+   }
+
+   public void execute(int b1, int b2, int b3, int offset) {
+      dmgcpu.pc += 2;
+      dmgcpu.cycles += extraCycles;
+      int data = operand.read(dmgcpu);
+
+      data = ((data & 0x0F) << 4) | ((data & 0xF0) >> 4);
+      dmgcpu.flagOp = Dmgcpu.FLAGS_DONE;
+      dmgcpu.f = data == 0 ? dmgcpu.F_ZERO : 0;
+      operand.write(dmgcpu, data);
+   }
+}
+
+class CB_SRL extends ExtOp {
+
+   CB_SRL(int regNum, Dmgcpu dmgcpu) {
+      super(regNum, 8, dmgcpu);
+   }
+
+   public void execute(int b1, int b2, int b3, int offset) {
+      dmgcpu.pc += 2;
+      dmgcpu.cycles += extraCycles;
+      int data = operand.read(dmgcpu);
+      int carry = data & 0x01;
+
+      data >>= 1;
+      dmgcpu.flagOp = Dmgcpu.FLAGS_DONE;
+      dmgcpu.f = (carry << 4) | (data == 0 ? dmgcpu.F_ZERO : 0);
+      operand.write(dmgcpu, data);
+   }
+}
+
+class CB_BIT extends ExtOp {
+   private final int mask;
+
+   CB_BIT(int bit, int regNum, Dmgcpu dmgcpu) {
+      super(regNum, 4, dmgcpu);
+      mask = 0x01 << bit;
+   }
+
+   public void execute(int b1, int b2, int b3, int offset) {
+      dmgcpu.pc += 2;
+      dmgcpu.cycles += extraCycles;
+      dmgcpu.updateFlags();
+
+      if ((operand.read(dmgcpu) & mask) != 0) {
+         dmgcpu.f = (dmgcpu.f & dmgcpu.F_CARRY) | dmgcpu.F_HALFCARRY;
+      } else {
+         dmgcpu.f = (dmgcpu.f & dmgcpu.F_CARRY) | (dmgcpu.F_HALFCARRY + dmgcpu.F_ZERO);
+      }
+   }
+}
+
+class CB_RES extends ExtOp {
+   private final int mask;
+
+   CB_RES(int bit, int regNum, Dmgcpu dmgcpu) {
+      super(regNum, 8, dmgcpu);
+      mask = 0xFF - (0x01 << bit);
+   }
+
+   public void execute(int b1, int b2, int b3, int offset) {
+      dmgcpu.pc += 2;
+      dmgcpu.cycles += extraCycles;
+      operand.write(dmgcpu, operand.read(dmgcpu) & mask);
+   }
+}
+
+class CB_SET extends ExtOp {
+   private final int mask;
+
+   CB_SET(int bit, int regNum, Dmgcpu dmgcpu) {
+      super(regNum, 8, dmgcpu);
+      mask = 0x01 << bit;
+   }
+
+   public void execute(int b1, int b2, int b3, int offset) {
+      dmgcpu.pc += 2;
+      dmgcpu.cycles += extraCycles;
+      operand.write(dmgcpu, operand.read(dmgcpu) | mask);
+   }
+}
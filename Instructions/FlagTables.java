@@ -0,0 +1,211 @@
+package Instructions;
+
+/*
+ * Precomputed results and flags of the 8-bit arithmetic instructions, built
+ * once when the class is loaded and shared by every CPU.
+ *
+ * Each entry holds the new value of the register in the low byte and the new
+ * flags in the next byte, so an instruction only needs one table load:
+ *    entry = ADD[index(carry, a, operand)];
+ *    a = entry & 0xFF;
+ *    f = entry >> 8;
+ *
+ * The tables are filled with the same code the instructions used before, so
+ * the flags keep their quirks (ADD A, nn only sets Z when the result
+ * overflows to 0, CP nn does not set N...).
+ */
+public final class FlagTables {
+   private static final int F_ZERO = 0x80;
+   private static final int F_SUBTRACT = 0x40;
+   private static final int F_HALFCARRY = 0x20;
+   private static final int F_CARRY = 0x10;
+
+   /** ADD A, nn and ADC A, nn, by index(carry, a, operand) */
+   public static final int[] ADD = new int[0x20000];
+
+   /** ADD A, r and ADC A, r, by index(carry, a, operand) */
+   public static final int[] ADD_A = new int[0x20000];
+
+   /** SUB and SBC, by index(carry, a, operand). CP A, r has the flags of SUB */
+   public static final int[] SUB = new int[0x20000];
+
+   /** INC r and DEC r, by value. The flags do not include C, which is kept */
+   public static final int[] INC = new int[0x100];
+   public static final int[] DEC = new int[0x100];
+
+   /** AND, OR and XOR, the flags of a result */
+   public static final int[] LOGIC = new int[0x100];
+
+   /** DAA, by ((f & (N | H | C)) << 4) | a */
+   public static final int[] DAA = new int[0x800];
+
+   private FlagTables(){
+   }
+
+   /** Index of the ADD, ADD_A and SUB tables, carry is 0 or 1 */
+   public static int index(int carry, int a, int operand){
+      return (carry << 16) | (a << 8) | operand;
+   }
+
+   static {
+      for(int carry = 0; carry <= 1; carry++){
+         for(int a = 0; a < 0x100; a++){
+            for(int operand = 0; operand < 0x100; operand++){
+               int i = index(carry, a, operand);
+               ADD[i] = add(a, operand + carry, false);
+               ADD_A[i] = add(a, operand + carry, true);
+               SUB[i] = sub(a, operand + carry);
+            }
+         }
+      }
+
+      for(int value = 0; value < 0x100; value++){
+         INC[value] = inc(value);
+         DEC[value] = dec(value);
+         LOGIC[value] = value == 0 ? (F_ZERO << 8) : value;
+      }
+
+      for(int flags = 0; flags < 0x80; flags += 0x10){
+         for(int a = 0; a < 0x100; a++){
+            DAA[(flags << 4) | a] = daa(a, flags);
+         }
+      }
+   }
+
+   private static int add(int a, int operand, boolean zeroFlag){
+      int f = 0;
+
+      if ((((a & 0x0F) + (operand & 0x0F)) & 0xF0) != 0x00) {
+         f |= F_HALFCARRY;
+      }
+
+      a += operand;
+
+      if (zeroFlag && (a == 0)) {
+         f |= F_ZERO;
+      }
+
+      if ((a & 0xFF00) != 0) {
+         if (a == 0x0100) {
+            f |= F_ZERO + F_CARRY + F_HALFCARRY;
+            a = 0;
+         } else {
+            f |= F_CARRY + F_HALFCARRY;
+            a &= 0x00FF;
+         }
+      }
+      return (f << 8) | a;
+   }
+
+   private static int sub(int a, int operand){
+      int f = F_SUBTRACT;
+
+      if ((((a & 0x0F) - (operand & 0x0F)) & 0xFFF0) != 0x00) {
+         f |= F_HALFCARRY;
+      }
+
+      a -= operand;
+
+      if ((a & 0xFF00) != 0) {
+         a &= 0x00FF;
+         f |= F_CARRY;
+      }
+      if (a == 0) {
+         f |= F_ZERO;
+      }
+      return (f << 8) | a;
+   }
+
+   private static int inc(int value){
+      switch (value) {
+         case 0xFF:
+            return ((F_HALFCARRY + F_ZERO) << 8) | 0x00;
+         case 0x0F:
+            return (F_HALFCARRY << 8) | 0x10;
+         default:
+            return value + 1;
+      }
+   }
+
+   private static int dec(int value){
+      switch (value) {
+         case 0x00:
+            return ((F_SUBTRACT + F_HALFCARRY) << 8) | 0xFF;
+         case 0x10:
+            return ((F_SUBTRACT + F_HALFCARRY) << 8) | 0x0F;
+         case 0x01:
+            return ((F_SUBTRACT + F_ZERO) << 8) | 0x00;
+         default:
+            return (F_SUBTRACT << 8) | (value - 1);
+      }
+   }
+
+   private static int daa(int a, int f){
+      int upperNibble = (a & 0xF0) >> 4;
+      int lowerNibble = a & 0x0F;
+      int newf = f & F_SUBTRACT;
+
+      if ((f & F_SUBTRACT) == 0) {
+
+         if ((f & F_CARRY) == 0) {
+            if ((upperNibble <= 8) && (lowerNibble >= 0xA) && ((f & F_HALFCARRY) == 0)) {
+               a += 0x06;
+            }
+
+            if ((upperNibble <= 9) && (lowerNibble <= 0x3) && ((f & F_HALFCARRY) == F_HALFCARRY)) {
+               a += 0x06;
+            }
+
+            if ((upperNibble >= 0xA) && (lowerNibble <= 0x9) && ((f & F_HALFCARRY) == 0)) {
+               a += 0x60;
+               newf |= F_CARRY;
+            }
+
+            if ((upperNibble >= 0x9) && (lowerNibble >= 0xA) && ((f & F_HALFCARRY) == 0)) {
+               a += 0x66;
+               newf |= F_CARRY;
+            }
+
+            if ((upperNibble >= 0xA) && (lowerNibble <= 0x3) && ((f & F_HALFCARRY) == F_HALFCARRY)) {
+               a += 0x66;
+               newf |= F_CARRY;
+            }
+
+         } else { // If carry set
+            if ((upperNibble <= 0x2) && (lowerNibble <= 0x9) && ((f & F_HALFCARRY) == 0)) {
+               a += 0x60;
+               newf |= F_CARRY;
+            }
+            if ((upperNibble <= 0x2) && (lowerNibble >= 0xA) && ((f & F_HALFCARRY) == 0)) {
+               a += 0x66;
+               newf |= F_CARRY;
+            }
+            if ((upperNibble <= 0x3) && (lowerNibble <= 0x3) && ((f & F_HALFCARRY) == F_HALFCARRY)) {
+               a += 0x66;
+               newf |= F_CARRY;
+            }
+         }
+      } else { // Subtract is set
+         if ((f & F_CARRY) == 0) {
+            if ((upperNibble <= 0x8) && (lowerNibble >= 0x6) && ((f & F_HALFCARRY) == F_HALFCARRY)) {
+               a += 0xFA;
+            }
+         } else { // Carry is set
+            if ((upperNibble >= 0x7) && (lowerNibble <= 0x9) && ((f & F_HALFCARRY) == 0)) {
+               a += 0xA0;
+               newf |= F_CARRY;
+            }
+            if ((upperNibble >= 0x6) && (lowerNibble >= 0x6) && ((f & F_HALFCARRY) == F_HALFCARRY)) {
+               a += 0x9A;
+               newf |= F_CARRY;
+            }
+         }
+      }
+
+      a &= 0x00FF;
+      if (a == 0) {
+         newf |= F_ZERO;
+      }
+      return (newf << 8) | a;
+   }
+}
@@ -0,0 +1,93 @@
+package Instructions;
+import Emulator.Util;
+
+/*
+ * Superinstruction: executes an instruction and then the instructions that
+ * usually follow it, without going back to the main loop in between.
+ *
+ * Every following opcode is read from memory and compared with the chain
+ * before it is executed. The chain stops at the first opcode that does not
+ * match and the normal dispatch carries on from there, so a fused
+ * instruction never executes anything the plain ones would not.
+ *
+ * The chain also stops before an instruction whenever the main loop would
+ * have had something to do after the last one: an EI taking effect, an
+ * interrupt to take or an event due. Each instruction of the chain is
+ * counted in instrCount, so a chain runs exactly as the plain instructions
+ * would, only without going through the main loop.
+ */
+final class FusedInstruction extends Instruction {
+   private final Instruction first;
+
+   /** Opcodes that can follow the first instruction, one chain per possible next opcode */
+   private final int[][] chains;
+   private final Instruction[][] handlers;
+
+   FusedInstruction(Instruction first, int[][] chains, Instruction[][] handlers){
+      this.dmgcpu = first.dmgcpu;
+      this.first = first;
+      this.chains = chains;
+      this.handlers = handlers;
+   }
+
+   /** The handler that runs when the following bytes do not match any chain */
+   Instruction getFirst(){
+      return first;
+   }
+
+   int[][] getChains(){
+      return chains;
+   }
+
+   @Override
+   public void execute(int b1, int b2, int b3, int offset){
+      first.execute(b1, b2, b3, offset);
+
+      if(!canContinue()){
+         return;
+      }
+      int opcode = Util.unsign(dmgcpu.addressRead(dmgcpu.pc));
+      for(int i = 0; i < chains.length; i++){
+         if(chains[i][0] == opcode){
+            run(chains[i], handlers[i], opcode);
+            return;
+         }
+      }
+   }
+
+   /** True if the main loop would do nothing but count the instruction just run */
+   private boolean canContinue(){
+      return dmgcpu.ieDelay == -1 && dmgcpu.cycles < dmgcpu.getNextEvent()
+            && (dmgcpu.pendingInterrupts == 0 || !dmgcpu.interruptsEnabled);
+   }
+
+   private void run(int[] opcodes, Instruction[] chain, int opcode){
+      int i = 0;
+
+      while(true){
+         int length = InstructionManager.LENGTH[opcode];
+         int operand2 = 0, operand3 = 0, operandOffset = 0;
+
+         if(length > 1){
+            operandOffset = dmgcpu.addressRead(dmgcpu.pc + 1);
+            operand2 = Util.unsign((short) operandOffset);
+         }
+         if(length > 2){
+            operand3 = Util.unsign(dmgcpu.addressRead(dmgcpu.pc + 2));
+         }
+
+         dmgcpu.instrCount++;
+         dmgcpu.cycles += InstructionManager.CYCLES[opcode];
+         chain[i].execute(opcode, operand2, operand3, operandOffset);
+
+         if(++i == opcodes.length || !canContinue()){
+            return;
+         }
+
+         opcode = Util.unsign(dmgcpu.addressRead(dmgcpu.pc));
+         if(opcode != opcodes[i]){
+            return;
+         }
+      }
+   }
+}
@@ -0,0 +1,182 @@
+package Instructions;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+
+/*
+ * Counts the opcode n-grams executed by a game, either while it runs or
+ * from the opcode sequence written by Emulator.Stats, and picks the ones
+ * worth turning into superinstructions.
+ */
+public class FusionProfile {
+   /** Longest opcode sequence that is recorded */
+   static final int MAX_LENGTH = 4;
+
+   /** Maximum number of chains selected, and of chains starting with the same opcode */
+   static final int MAX_CHAINS = 32;
+   static final int MAX_CHAINS_PER_OPCODE = 4;
+
+   /** A sequence must save at least this fraction (1/n) of the dispatches to be fused */
+   static final int MIN_SHARE = 500;
+
+   /**
+    * Opcodes that must keep going through the main loop on their own: those
+    * that stop the CPU or change IME, and the writes to the IO registers,
+    * which can change IF, IE, the timer or the LCD
+    */
+   private static final boolean[] NOT_FUSABLE = new boolean[256];
+
+   static {
+      int[] opcodes = {
+         0x10, 0x52, 0x76, 0xFB, 0xF3, 0xD9,                                       // STOP, LD D, D, HALT, EI, DI, RETI
+         0xE0, 0xE2,                                                               // LDH (nn), A, LD (C), A
+         0xD3, 0xDB, 0xDD, 0xE3, 0xE4, 0xEB, 0xEC, 0xED, 0xF2, 0xF4, 0xFC, 0xFD    // unrecognized
+      };
+      for(int i = 0; i < opcodes.length; i++){
+         NOT_FUSABLE[opcodes[i]] = true;
+      }
+   }
+
+   /** True if the opcode can be part of a superinstruction */
+   static boolean isFusable(int opcode){
+      return !NOT_FUSABLE[opcode];
+   }
+
+   /** Counts, keyed by n-gram length (upper 32 bits) and the packed opcodes */
+   private HashMap<Long, int[]> counts = new HashMap<Long, int[]>();
+
+   /** The last opcodes recorded, most recent in the low byte */
+   private long history;
+   private int historyLength;
+   private long total;
+
+   /** Record the execution of an opcode */
+   public void record(int opcode){
+      if(NOT_FUSABLE[opcode]){
+         historyLength = 0;
+         return;
+      }
+
+      total++;
+      history = (history << 8) | opcode;
+      if(historyLength < MAX_LENGTH){
+         historyLength++;
+      }
+
+      for(int n = 2; n <= historyLength; n++){
+         Long key = ((long) n << 32) | (history & ((1L << (8 * n)) - 1));
+         int[] count = counts.get(key);
+         if(count == null){
+            counts.put(key, new int[] { 1 });
+         } else {
+            count[0]++;
+         }
+      }
+   }
+
+   /**
+    * Record the opcode sequence of a statistics file written by Stats.printStats.
+    * The sequence follows the per opcode totals, after the first empty line
+    */
+   public boolean load(String fileName){
+      try {
+         BufferedReader in = new BufferedReader(new FileReader(fileName));
+         boolean sequence = false;
+         String line;
+
+         while((line = in.readLine()) != null){
+            line = line.trim();
+            if(line.length() == 0){
+               sequence = true;
+            } else if(sequence){
+               record(Integer.parseInt(line) & 0xFF);
+            }
+         }
+         in.close();
+         return true;
+
+      } catch (IOException e) {
+         System.out.println("Can't open fusion profile '" + fileName + "'!");
+      } catch (NumberFormatException e) {
+         System.out.println("Fusion profile '" + fileName + "' is not a statistics file!");
+      }
+      return false;
+   }
+
+   /**
+    * Returns the opcode chains to fuse, most profitable first. Each chain
+    * starts with the opcode whose dispatch entry it replaces
+    */
+   public int[][] select(){
+      ArrayList<Map.Entry<Long, int[]>> entries = new ArrayList<Map.Entry<Long, int[]>>(counts.entrySet());
+      Collections.sort(entries, new Comparator<Map.Entry<Long, int[]>>() {
+         public int compare(Map.Entry<Long, int[]> x, Map.Entry<Long, int[]> y){
+            long scoreX = score(x.getKey(), x.getValue()[0]);
+            long scoreY = score(y.getKey(), y.getValue()[0]);
+            return scoreX < scoreY ? 1 : (scoreX > scoreY ? -1 : 0);
+         }
+      });
+
+      ArrayList<int[]> chosen = new ArrayList<int[]>();
+      int[] perOpcode = new int[256];
+
+      for(Map.Entry<Long, int[]> entry : entries){
+         if(chosen.size() == MAX_CHAINS || score(entry.getKey(), entry.getValue()[0]) * MIN_SHARE < total){
+            break;
+         }
+
+         int[] chain = unpack(entry.getKey());
+         boolean covered = false;
+
+         for(int i = 0; i < chosen.size() && !covered; i++){
+            int[] other = chosen.get(i);
+            if(isPrefix(chain, other)){
+               // a longer chain already stops wherever this one would
+               covered = true;
+            } else if(isPrefix(other, chain)){
+               chosen.set(i, chain);
+               covered = true;
+            }
+         }
+
+         if(!covered && perOpcode[chain[0]] < MAX_CHAINS_PER_OPCODE){
+            perOpcode[chain[0]]++;
+            chosen.add(chain);
+         }
+      }
+
+      return chosen.toArray(new int[chosen.size()][]);
+   }
+
+   private static long score(long key, int count){
+      // each execution of a fused chain saves one dispatch per opcode after the first
+      return (long) count * ((key >>> 32) - 1);
+   }
+
+   private static int[] unpack(long key){
+      int n = (int) (key >>> 32);
+      int[] chain = new int[n];
+      for(int i = 0; i < n; i++){
+         chain[i] = (int) ((key >> (8 * (n - 1 - i))) & 0xFF);
+      }
+      return chain;
+   }
+
+   private static boolean isPrefix(int[] prefix, int[] chain){
+      if(prefix.length > chain.length){
+         return false;
+      }
+      for(int i = 0; i < prefix.length; i++){
+         if(prefix[i] != chain[i]){
+            return false;
+         }
+      }
+      return true;
+   }
+}
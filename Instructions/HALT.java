@@ -12,11 +12,7 @@ public class HALT extends Instruction{
    @Override
    public void execute(int b1, int b2, int b3, int offset){
       dmgcpu.interruptsEnabled = true;
-      
-      while (dmgcpu.ioHandler.registers[0x0F] == 0) {
-         dmgcpu.initiateInterrupts();
-         dmgcpu.instrCount++;
-      }
       dmgcpu.pc++;
+      dmgcpu.waitForInterrupt();
    }
 }
@@ -8,7 +8,7 @@ import Emulator.Dmgcpu;
  * 
  */
 public class INC_H_L extends Instruction{
-   private int mask1, mask2, address, shift;
+   private final int mask1, mask2, address, shift;
    
    public INC_H_L(int mask1, int mask2, int address, int shift, Dmgcpu dmgcpu){
       this.dmgcpu = dmgcpu;
@@ -28,6 +28,7 @@ public class INC_H_L extends Instruction{
    
    @Override
    public void execute(int b1, int b2, int b3, int offset){
+      dmgcpu.updateFlags();
       dmgcpu.pc++;
       dmgcpu.f &= dmgcpu.F_CARRY;
       
@@ -4,7 +4,9 @@ import Emulator.Dmgcpu;
 
 public abstract class Instruction {
    protected Dmgcpu dmgcpu;
-   protected final int a = 7, b = 0, c = 1, d = 2, e = 3;
+   
+   /** Selects the register pair of the handlers that work on BC or DE */
+   static final int BC = 0, DE = 1;
    
    public abstract void execute(int b1, int b2, int b3, int offset);
 }
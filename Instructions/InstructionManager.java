@@ -1,41 +1,130 @@
 package Instructions;
 import Emulator.Dmgcpu;
-import Emulator.JavaBoy;
+import Emulator.Util;
+import java.util.Arrays;
 
 public class InstructionManager {
    private final int a = 7, b = 0, c = 1, d = 2, e = 3;
+   private final int bc = Instruction.BC, de = Instruction.DE;
    private Dmgcpu dmgcpu;
    
+   /** Number of bytes taken by each opcode, including the operands */
+   static final int[] LENGTH = {
+   /*     0  1  2  3  4  5  6  7  8  9  A  B  C  D  E  F */
+   /*0*/  1, 3, 1, 1, 1, 1, 2, 1, 3, 1, 1, 1, 1, 1, 2, 1,
+   /*1*/  2, 3, 1, 1, 1, 1, 2, 1, 2, 1, 1, 1, 1, 1, 2, 1,
+   /*2*/  2, 3, 1, 1, 1, 1, 2, 1, 2, 1, 1, 1, 1, 1, 2, 1,
+   /*3*/  2, 3, 1, 1, 1, 1, 2, 1, 2, 1, 1, 1, 1, 1, 2, 1,
+   /*4*/  1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1,
+   /*5*/  1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1,
+   /*6*/  1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1,
+   /*7*/  1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1,
+   /*8*/  1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1,
+   /*9*/  1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1,
+   /*A*/  1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1,
+   /*B*/  1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1,
+   /*C*/  1, 1, 3, 3, 3, 1, 2, 1, 1, 1, 3, 2, 3, 3, 2, 1,
+   /*D*/  1, 1, 3, 1, 3, 1, 2, 1, 1, 1, 3, 1, 3, 1, 2, 1,
+   /*E*/  2, 1, 1, 1, 1, 1, 2, 1, 2, 1, 3, 1, 1, 1, 2, 1,
+   /*F*/  2, 1, 1, 1, 1, 1, 2, 1, 2, 1, 3, 1, 1, 1, 2, 1
+   };
+   
+   /**
+    * Clock cycles taken by each opcode. Conditional jumps, calls and returns
+    * are listed with the cost of the condition failing, the handlers add the
+    * rest when it is taken. CB is the cost of the register operations, the CB
+    * handlers add the extra cycles of the (HL) ones
+    */
+   public static final int[] CYCLES = {
+   /*     0   1   2   3   4   5   6   7   8   9   A   B   C   D   E   F */
+   /*0*/  4, 12,  8,  8,  4,  4,  8,  4, 20,  8,  8,  8,  4,  4,  8,  4,
+   /*1*/  4, 12,  8,  8,  4,  4,  8,  4, 12,  8,  8,  8,  4,  4,  8,  4,
+   /*2*/  8, 12,  8,  8,  4,  4,  8,  4,  8,  8,  8,  8,  4,  4,  8,  4,
+   /*3*/  8, 12,  8,  8, 12, 12, 12,  4,  8,  8,  8,  8,  4,  4,  8,  4,
+   /*4*/  4,  4,  4,  4,  4,  4,  8,  4,  4,  4,  4,  4,  4,  4,  8,  4,
+   /*5*/  4,  4,  4,  4,  4,  4,  8,  4,  4,  4,  4,  4,  4,  4,  8,  4,
+   /*6*/  4,  4,  4,  4,  4,  4,  8,  4,  4,  4,  4,  4,  4,  4,  8,  4,
+   /*7*/  8,  8,  8,  8,  8,  8,  4,  8,  4,  4,  4,  4,  4,  4,  8,  4,
+   /*8*/  4,  4,  4,  4,  4,  4,  8,  4,  4,  4,  4,  4,  4,  4,  8,  4,
+   /*9*/  4,  4,  4,  4,  4,  4,  8,  4,  4,  4,  4,  4,  4,  4,  8,  4,
+   /*A*/  4,  4,  4,  4,  4,  4,  8,  4,  4,  4,  4,  4,  4,  4,  8,  4,
+   /*B*/  4,  4,  4,  4,  4,  4,  8,  4,  4,  4,  4,  4,  4,  4,  8,  4,
+   /*C*/  8, 12, 12, 16, 12, 16,  8, 16,  8, 16, 12,  8, 12, 24,  8, 16,
+   /*D*/  8, 12, 12,  4, 12, 16,  8, 16,  8, 16, 12,  4, 12,  4,  8, 16,
+   /*E*/ 12, 12,  8,  4,  4, 16,  8, 16, 16,  4, 16,  4,  4,  4,  8, 16,
+   /*F*/ 12, 12,  8,  4,  4, 16,  8, 16, 12,  8, 16,  4,  4,  4,  8, 16
+   };
+   
+   /**
+    * Opcodes that end a basic block: everything that can change pc other
+    * than by moving to the next instruction, and the opcodes that stop the
+    * processor
+    */
+   static final boolean[] ENDS_BLOCK = new boolean[256];
+   
+   static {
+      int[] ends = {
+         0x10, 0x18, 0x20, 0x28, 0x30, 0x38, 0x52, 0x76,                    // STOP, JR, LD D, D, HALT
+         0xC0, 0xC2, 0xC3, 0xC4, 0xC7, 0xC8, 0xC9, 0xCA, 0xCC, 0xCD, 0xCF,  // RET, JP, CALL, RST
+         0xD0, 0xD2, 0xD4, 0xD7, 0xD8, 0xD9, 0xDA, 0xDC, 0xDF,
+         0xE7, 0xE9, 0xEF, 0xF7, 0xFF,
+         0xD3, 0xDB, 0xDD, 0xE3, 0xE4, 0xEB, 0xEC, 0xED, 0xF2, 0xF4, 0xFC, 0xFD   // unrecognized
+      };
+      for(int i = 0; i < ends.length; i++){
+         ENDS_BLOCK[ends[i]] = true;
+      }
+   }
+   
+   /** The dispatch table, with the superinstructions installed */
    private Instruction[] instructions;
    
+   /** The handlers of each opcode on their own */
+   private Instruction[] plainInstructions;
+   
+   /** Opcode n-grams being recorded, null when not profiling */
+   private FusionProfile profile;
+   
+   /** 
+    * The superinstructions installed, kept to rebuild the dispatch table.
+    * There are none until a profile is taken or loaded
+    */
+   private int[][] fusionChains = new int[0][];
+   
+   /**
+    * Use one handler per opcode for LD r, r', the ALU operations on
+    * registers and the CB prefixed opcodes, instead of shared handlers that
+    * decode the registers and the operation from the opcode every time
+    */
+   private boolean expanded = true;
+   
    private void init(){
       instructions[0x00] = new NOP(dmgcpu);                                          // NOP
-      instructions[0x01] = new LD_2R(b, c, dmgcpu);                                  // LD BC, nn
-      instructions[0x02] = new LD_RR_A("bc", dmgcpu);                                // LD (BC), A
-      instructions[0x03] = new INC_2R(b, c, dmgcpu);                                 // INC BC
+      instructions[0x01] = new LD_2R(bc, dmgcpu);                                    // LD BC, nn
+      instructions[0x02] = new LD_RR_A(bc, dmgcpu);                                  // LD (BC), A
+      instructions[0x03] = new INC_2R(bc, dmgcpu);                                   // INC BC
       instructions[0x04] = new INC_R(b, dmgcpu);                                     // INC B
       instructions[0x05] = new DEC_R(b, dmgcpu);                                     // DEC B
       instructions[0x06] = new LD_R(b, dmgcpu);                                      // LD B, nn
       instructions[0x07] = new RLC(dmgcpu);                                          // RLC A
       instructions[0x08] = new LD_nn_SP(dmgcpu);                                     // LD (nnnn), SP
-      instructions[0x09] = new ADD_2R(b, c, dmgcpu);                                 // ADD HL, BC
-      instructions[0x0A] = new LD_A(b, c, dmgcpu);                                   // LD A, (BC)
-      instructions[0x0B] = new DEC_2R(b, c, dmgcpu);                                 // DEC BC
+      instructions[0x09] = new ADD_2R(bc, dmgcpu);                                   // ADD HL, BC
+      instructions[0x0A] = new LD_A(bc, dmgcpu);                                     // LD A, (BC)
+      instructions[0x0B] = new DEC_2R(bc, dmgcpu);                                   // DEC BC
       instructions[0x0C] = new INC_R(c, dmgcpu);                                     // INC C
       instructions[0x0D] = new DEC_R(c, dmgcpu);                                     // DEC C
       instructions[0x0E] = new LD_R(c, dmgcpu);                                      // LD C, nn
       instructions[0x0F] = new RRC(dmgcpu);                                          // RRC A
       instructions[0x10] = new STOP(dmgcpu);                                         // STOP
-      instructions[0x11] = new LD_2R(d, e, dmgcpu);                                  // LD DE, nnnn
-      instructions[0x12] = new LD_RR_A("de", dmgcpu);                                // LD (DE), A
-      instructions[0x13] = new INC_2R(d, e, dmgcpu);                                 // INC DE
+      instructions[0x11] = new LD_2R(de, dmgcpu);                                    // LD DE, nnnn
+      instructions[0x12] = new LD_RR_A(de, dmgcpu);                                  // LD (DE), A
+      instructions[0x13] = new INC_2R(de, dmgcpu);                                   // INC DE
       instructions[0x14] = new INC_R(d, dmgcpu);                                     // INC D
       instructions[0x15] = new DEC_R(d, dmgcpu);                                     // DEC D
       instructions[0x16] = new LD_R(d, dmgcpu);                                      // LD D, nn
       instructions[0x17] = new RL(dmgcpu);                                           // RL A
-      instructions[0x19] = new ADD_2R(d, e, dmgcpu);                                 // ADD HL, DE
-      instructions[0x1A] = new LD_A(d, e, dmgcpu);                                   // LD A, (DE)
-      instructions[0x1B] = new DEC_2R(d, e, dmgcpu);                                 // DEC DE
+      instructions[0x19] = new ADD_2R(de, dmgcpu);                                   // ADD HL, DE
+      instructions[0x1A] = new LD_A(de, dmgcpu);                                     // LD A, (DE)
+      instructions[0x1B] = new DEC_2R(de, dmgcpu);                                   // DEC DE
       instructions[0x1C] = new INC_R(e, dmgcpu);                                     // INC E
       instructions[0x1D] = new DEC_R(e, dmgcpu);                                     // DEC E
       instructions[0x1E] = new LD_R(e, dmgcpu);                                      // LD E, nn
@@ -43,14 +132,14 @@ public class InstructionManager {
       instructions[0x18] = new JR(dmgcpu);                                           // JR nn
       instructions[0x20] = new JR_F(dmgcpu.F_ZERO, (short)0, dmgcpu);                // JR NZ, nn
       instructions[0x21] = new LD_HL(dmgcpu);                                        // LD HL, nnnn
-      instructions[0x22] = new LD_HL_A("+", dmgcpu);                                 // LD (HL+), A
+      instructions[0x22] = new LD_HL_A(1, dmgcpu);                                   // LD (HL+), A
       instructions[0x23] = new INC_HL(dmgcpu);                                       // INC HL
       instructions[0x24] = new INC_H_L(0x00FF, 0xFF00, 0x0100, 8, dmgcpu);           // INC H
       instructions[0x25] = new DEC_H_L(0x00FF, 0xFF00, 0x0F00, 0x0100, 8, dmgcpu);   // DEC H
       instructions[0x26] = new LD_H_L(0x00FF, 8, dmgcpu);                            // LD H, nn
       instructions[0x27] = new DAA(dmgcpu);                                          // DAA
       instructions[0x28] = new JR_F(dmgcpu.F_ZERO, dmgcpu.F_ZERO, dmgcpu);           // JR Z, nn
-      instructions[0x29] = new ADD_2R("hl", dmgcpu);                                 // ADD HL, HL
+      instructions[0x29] = new ADD_HL_HL(dmgcpu);                                    // ADD HL, HL
       instructions[0x2A] = new LDI(dmgcpu);                                          // LDI A, (HL)
       instructions[0x2B] = new DEC_HL(dmgcpu);                                       // DEC HL
       instructions[0x2C] = new INC_H_L(0xFF00, 0x00FF, 1, 0, dmgcpu);                // INC L
@@ -59,14 +148,14 @@ public class InstructionManager {
       instructions[0x2F] = new CPL(dmgcpu);                                          // CPL A
       instructions[0x30] = new JR_F(dmgcpu.F_CARRY, (short)0, dmgcpu);               // JR NC, nn
       instructions[0x31] = new LD_SP(dmgcpu);                                        // LD SP, nnnn
-      instructions[0x32] = new LD_HL_A("-", dmgcpu);                                 // LD (HL-), A
+      instructions[0x32] = new LD_HL_A(-1, dmgcpu);                                  // LD (HL-), A
       instructions[0x33] = new INC_SP(dmgcpu);                                       // INC SP
       instructions[0x34] = new INC_A_HL(dmgcpu);                                     // INC (HL)
       instructions[0x35] = new DEC_A_HL(dmgcpu);                                     // DEC (HL)
       instructions[0x36] = new LD_A_HL(dmgcpu);                                      // LD (HL), nn
       instructions[0x37] = new SCF(dmgcpu);                                          // SCF
       instructions[0x38] = new JR_F(dmgcpu.F_CARRY, dmgcpu.F_CARRY, dmgcpu);         // JR C, nn
-      instructions[0x39] = new ADD_2R("sp", dmgcpu);                                 // ADD HL, SP
+      instructions[0x39] = new ADD_HL_SP(dmgcpu);                                    // ADD HL, SP
       instructions[0x3A] = new LD_A__HL(dmgcpu);                                     // LD A, (HL-)
       instructions[0x3B] = new DEC_SP(dmgcpu);                                       // DEC SP
       instructions[0x3C] = new INC_R(a, dmgcpu);                                     // INC A
@@ -98,11 +187,11 @@ public class InstructionManager {
          }
       }
       instructions[0xC0] = new RET_F(dmgcpu.F_ZERO, (short)0, dmgcpu);            // RET NZ, nnnn
-      instructions[0xC1] = new POP_RR(b, c, dmgcpu);                              // POP BC
+      instructions[0xC1] = new POP_RR(bc, dmgcpu);                                // POP BC
       instructions[0xC2] = new JP_F(dmgcpu.F_ZERO, (short)0, dmgcpu);             // JP NZ, nnnn
       instructions[0xC3] = new JP(dmgcpu);                                        // JP nnnn
       instructions[0xC4] = new CALL_F(dmgcpu.F_ZERO, (short)0, dmgcpu);           // CALL  NZ, nnnn
-      instructions[0xC5] = new PUSH_RR(b, c, dmgcpu);                             // PUSH BC
+      instructions[0xC5] = new PUSH_RR(bc, dmgcpu);                               // PUSH BC
       instructions[0xC6] = new ADD(dmgcpu);                                       // ADD A, nn
       instructions[0xC7] = new RST(0x00, dmgcpu);                                 // RST 00
       instructions[0xC8] = new RET_F(dmgcpu.F_ZERO, dmgcpu.F_ZERO, dmgcpu);       // RET Z, nnnn
@@ -114,10 +203,10 @@ public class InstructionManager {
       instructions[0xCE] = new ADC(dmgcpu);                                       // ADC A, nn
       instructions[0xCF] = new RST(0x08, dmgcpu);                                 // RST 08
       instructions[0xD0] = new RET_F(dmgcpu.F_CARRY, (short)0, dmgcpu);           // RET NC, nnnn
-      instructions[0xD1] = new POP_RR(d, e, dmgcpu);                              // POP DE
+      instructions[0xD1] = new POP_RR(de, dmgcpu);                                // POP DE
       instructions[0xD2] = new JP_F(dmgcpu.F_CARRY, (short)0, dmgcpu);            // JP NC, nnnn
       instructions[0xD4] = new CALL_F(dmgcpu.F_CARRY, (short)0, dmgcpu);          // CALL NC, nnnn
-      instructions[0xD5] = new PUSH_RR(d, e, dmgcpu);                             // PUSH DE
+      instructions[0xD5] = new PUSH_RR(de, dmgcpu);                               // PUSH DE
       instructions[0xD6] = new SUB(dmgcpu);                                       // SUB A, nn
       instructions[0xD7] = new RST(0x10, dmgcpu);                                 // RST 10
       instructions[0xD8] = new RET_F(dmgcpu.F_CARRY, dmgcpu.F_CARRY, dmgcpu);     // RET C, nnnn
@@ -164,45 +253,197 @@ public class InstructionManager {
       instructions[0xF4] = noInst;
       instructions[0xFC] = noInst;
       instructions[0xFD] = noInst;
+      
+      if(expanded){
+         expand();
+      }
+   }
+   
+   /**
+    * Install the handlers of the expanded dispatch table: LD r, r' and the
+    * ALU operations on registers get one handler per opcode, and the CB
+    * prefixed opcodes a table of 256 handlers
+    */
+   private void expand(){
+      for(int i = 0x40; i <= 0x7F; i++){
+         if(i != 0x76 && i != 0x52){
+            instructions[i] = new LD_R_R((i & 0x38) >> 3, i & 0x07, dmgcpu);   // LD r, r'
+         }
+      }
+      for(int i = 0x80; i <= 0xBF; i++){
+         if(i != 0xAF){
+            instructions[i] = ALU_R.create(i, dmgcpu);                         // ALU A, r
+         }
+      }
+      instructions[0xCB] = new ExtOpsTable(dmgcpu);                            // ExtOps
    }
    
    public InstructionManager(Dmgcpu dmgcpu){
       this.dmgcpu = dmgcpu;
       instructions = new Instruction[256];
       init();
+      plainInstructions = instructions.clone();
    }
    
-   public void execute(int b1, int b2, int b3, int offset){
+   /**
+    * Switch between the expanded dispatch table and the shared LD, ALU and
+    * ExtOps handlers. The superinstructions installed are kept
+    */
+   public void setExpandedDispatch(boolean on){
+      expanded = on;
+      instructions = new Instruction[256];
+      init();
+      plainInstructions = instructions.clone();
       
-      instructions[b1].execute(b1, b2, b3, offset);
+      if(profile != null){
+         instructions = plainInstructions.clone();
+      } else {
+         installFusion(fusionChains);
+      }
+   }
+   
+   /**
+    * Replace the superinstructions in the dispatch table by the given opcode
+    * chains. Chains with the same first opcode share one dispatch entry.
+    * Chains are cut before the first opcode that cannot be fused
+    */
+   public void installFusion(int[][] chains){
+      int[][] fusable = new int[chains.length][];
+      for(int i = 0; i < chains.length; i++){
+         int length = 0;
+         while(length < chains[i].length && FusionProfile.isFusable(chains[i][length])){
+            length++;
+         }
+         fusable[i] = Arrays.copyOf(chains[i], length);
+      }
+      chains = fusable;
+      fusionChains = chains;
+      instructions = plainInstructions.clone();
       
-      if(b1 == 32){
-         if(JavaBoy.unsign(dmgcpu.addressRead(dmgcpu.pc)) == 61){
-            instructions[61].execute(0, 0, 0, 0);
-            
-            if(JavaBoy.unsign(dmgcpu.addressRead(dmgcpu.pc)) == 234){
-               instructions[234].execute(0, JavaBoy.unsign((short) dmgcpu.addressRead(dmgcpu.pc + 1)), JavaBoy.unsign(dmgcpu.addressRead(dmgcpu.pc + 2)), 0);
-               instructions[167].execute(JavaBoy.unsign(dmgcpu.addressRead(dmgcpu.pc)), 0, 0, 0);
-               instructions[192].execute(0, 0, 0, 0);
+      for(int opcode = 0; opcode < 256; opcode++){
+         int n = 0;
+         for(int i = 0; i < chains.length; i++){
+            if(chains[i].length > 1 && chains[i][0] == opcode){
+               n++;
             }
-            
-         } 
-         else if(JavaBoy.unsign(dmgcpu.addressRead(dmgcpu.pc)) == 111){
-            instructions[111].execute(111, 0, 0, 0);
-            instructions[214].execute(0, JavaBoy.unsign((short) dmgcpu.addressRead(dmgcpu.pc + 1)), 0, 0);
-            instructions[79].execute(79, 0, 0, 0);
-            instructions[224].execute(0, JavaBoy.unsign((short) dmgcpu.addressRead(dmgcpu.pc + 1)), 0, 0);
-            instructions[126].execute(126, 0, 0, 0);
-            instructions[167].execute(JavaBoy.unsign(dmgcpu.addressRead(dmgcpu.pc)), 0, 0, 0);
-            instructions[40].execute(0, 0, 0, dmgcpu.addressRead(dmgcpu.pc + 1));
          }
-
-         b1 = JavaBoy.unsign(dmgcpu.addressRead(dmgcpu.pc));
-         offset = dmgcpu.addressRead(dmgcpu.pc + 1);
-         b3 = JavaBoy.unsign(dmgcpu.addressRead(dmgcpu.pc + 2));
-         b2 = JavaBoy.unsign((short) offset);
+         if(n == 0){
+            continue;
+         }
          
-         instructions[b1].execute(b1, b2, b3, offset);
+         int[][] followers = new int[n][];
+         Instruction[][] handlers = new Instruction[n][];
+         n = 0;
+         for(int i = 0; i < chains.length; i++){
+            if(chains[i].length > 1 && chains[i][0] == opcode){
+               followers[n] = new int[chains[i].length - 1];
+               handlers[n] = new Instruction[chains[i].length - 1];
+               for(int j = 1; j < chains[i].length; j++){
+                  followers[n][j - 1] = chains[i][j];
+                  handlers[n][j - 1] = plainInstructions[chains[i][j]];
+               }
+               n++;
+            }
+         }
+         instructions[opcode] = new FusedInstruction(plainInstructions[opcode], followers, handlers);
+      }
+   }
+   
+   /**
+    * Start recording the executed opcodes. Superinstructions are removed
+    * while profiling so every opcode goes through execute()
+    */
+   public void startFusionProfile(){
+      instructions = plainInstructions.clone();
+      profile = new FusionProfile();
+   }
+   
+   /** Stop recording and install the superinstructions found */
+   public void finishFusionProfile(){
+      if(profile != null){
+         installFusion(profile.select());
+         profile = null;
+      }
+   }
+   
+   /** Install the superinstructions found in a statistics file written by Stats */
+   public boolean loadFusionProfile(String fileName){
+      FusionProfile fileProfile = new FusionProfile();
+      if(!fileProfile.load(fileName)){
+         return false;
       }
+      installFusion(fileProfile.select());
+      return true;
+   }
+   
+   /** Describe the superinstructions installed, one chain per line */
+   public String getFusionInfo(){
+      StringBuffer info = new StringBuffer();
+      for(int opcode = 0; opcode < 256; opcode++){
+         if(instructions[opcode] instanceof FusedInstruction){
+            int[][] chains = ((FusedInstruction) instructions[opcode]).getChains();
+            for(int i = 0; i < chains.length; i++){
+               info.append(Util.hexByte(opcode));
+               for(int j = 0; j < chains[i].length; j++){
+                  info.append(" " + Util.hexByte(chains[i][j]));
+               }
+               info.append("\n");
+            }
+         }
+      }
+      return info.toString();
+   }
+   
+   /** Returns the handler installed for an opcode */
+   Instruction getInstruction(int opcode){
+      return instructions[opcode];
+   }
+   
+   /**
+    * Returns the handler to run for an instruction. With the expanded table
+    * the handler of a CB prefixed opcode is picked from its second byte, so
+    * decoded instructions skip the ExtOpsTable lookup
+    */
+   Instruction getInstruction(int opcode, int b2){
+      Instruction handler = instructions[opcode];
+      if(handler instanceof ExtOpsTable){
+         return ((ExtOpsTable) handler).getHandler(b2);
+      }
+      return handler;
+   }
+   
+   /** True if a basic block can not continue after this opcode */
+   boolean endsBlock(int opcode){
+      return ENDS_BLOCK[opcode] || instructions[opcode] != plainInstructions[opcode];
+   }
+   
+   /**
+    * Fetch the instruction at pc and execute it. Only the operand bytes the
+    * opcode takes are read, the others are passed as 0
+    */
+   public void execute(){
+      int pc = dmgcpu.pc;
+      int b1 = Util.unsign(dmgcpu.addressRead(pc));
+      int length = LENGTH[b1];
+      int b2 = 0, b3 = 0, offset = 0;
+      
+      if(length > 1){
+         offset = dmgcpu.addressRead(pc + 1);
+         b2 = Util.unsign((short) offset);
+         if(length > 2){
+            b3 = Util.unsign(dmgcpu.addressRead(pc + 2));
+         }
+      }
+      
+      execute(b1, b2, b3, offset);
+   }
+   
+   public void execute(int b1, int b2, int b3, int offset){
+      if(profile != null){
+         profile.record(b1);
+      }
+      
+      dmgcpu.cycles += CYCLES[b1];
+      instructions[b1].execute(b1, b2, b3, offset);
    }
 }
@@ -9,7 +9,7 @@ import Emulator.Dmgcpu;
  *    JP C, nnnn
  */
 public class JP_F extends Instruction{
-   private short flag1, flag2;
+   private final short flag1, flag2;
    
    public JP_F(short flag1, short flag2, Dmgcpu dmgcpu){
       this.dmgcpu = dmgcpu;
@@ -19,7 +19,9 @@ public class JP_F extends Instruction{
    
    @Override
    public void execute(int b1, int b2, int b3, int offset){
+      dmgcpu.updateFlags();
       if ((dmgcpu.f & flag1) == flag2) {        
+         dmgcpu.cycles += 4;
          dmgcpu.pc = (b3 << 8) + b2;
       } else {
          dmgcpu.pc += 3;
@@ -9,7 +9,7 @@ import Emulator.Dmgcpu;
  *    JR C, nn
  */
 public class JR_F extends Instruction{
-   private short flag1, flag2;
+   private final short flag1, flag2;
    
    public JR_F(short flag1, short flag2, Dmgcpu dmgcpu){
       this.dmgcpu = dmgcpu;
@@ -19,7 +19,9 @@ public class JR_F extends Instruction{
    
    @Override
    public void execute(int b1, int b2, int b3, int offset){
+      dmgcpu.updateFlags();
       if ((dmgcpu.f & flag1) == flag2) {
+         dmgcpu.cycles += 4;
          dmgcpu.pc += 2 + offset;
       } else {
          dmgcpu.pc += 2;
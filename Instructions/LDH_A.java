@@ -14,6 +14,6 @@ public class LDH_A extends Instruction{
    @Override
    public void execute(int b1, int b2, int b3, int offset){  
       dmgcpu.pc += 2;
-      dmgcpu.addressWrite(0xFF00 + b2, dmgcpu.registers[a]);
+      dmgcpu.addressWrite(0xFF00 + b2, dmgcpu.a);
    }
 }
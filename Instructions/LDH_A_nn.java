@@ -1,6 +1,6 @@
 package Instructions;
 import Emulator.Dmgcpu;
-import Emulator.JavaBoy;
+import Emulator.Util;
 
 /*
  * this class emulates: 
@@ -15,6 +15,6 @@ public class LDH_A_nn extends Instruction{
    @Override
    public void execute(int b1, int b2, int b3, int offset){  
       dmgcpu.pc += 2;
-      dmgcpu.registers[a] = JavaBoy.unsign(dmgcpu.addressRead(0xFF00 + b2));
+      dmgcpu.a = Util.unsign(dmgcpu.addressRead(0xFF00 + b2));
    }
 }
@@ -14,6 +14,6 @@ public class LDH_CA extends Instruction{
    @Override
    public void execute(int b1, int b2, int b3, int offset){  
       dmgcpu.pc++;
-      dmgcpu.addressWrite(0xFF00 + dmgcpu.registers[c], dmgcpu.registers[a]);
+      dmgcpu.addressWrite(0xFF00 + (dmgcpu.bc & 0xFF), dmgcpu.a);
    }
 }
@@ -1,6 +1,6 @@
 package Instructions;
 import Emulator.Dmgcpu;
-import Emulator.JavaBoy;
+import Emulator.Util;
 
 /*
  * this class emulates: 
@@ -15,7 +15,7 @@ public class LDI extends Instruction{
    @Override
    public void execute(int b1, int b2, int b3, int offset){  
       dmgcpu.pc++;
-      dmgcpu.registers[a] = JavaBoy.unsign(dmgcpu.addressRead(dmgcpu.hl));
+      dmgcpu.a = Util.unsign(dmgcpu.addressRead(dmgcpu.hl));
       dmgcpu.hl++;
    }
 }
@@ -3,18 +3,20 @@ import Emulator.Dmgcpu;
 
 
 public class LD_2R extends Instruction{
-   private int reg1, reg2;
+   private final int pair;
    
-   public LD_2R(int reg1, int reg2, Dmgcpu dmgcpu){
-      this.reg1 = reg1;   
-      this.reg2 = reg2;   
+   public LD_2R(int pair, Dmgcpu dmgcpu){
+      this.pair = pair;
       this.dmgcpu = dmgcpu;
    }
    
    @Override
    public void execute(int b1, int b2, int b3, int offset){
       dmgcpu.pc += 3;
-      dmgcpu.registers[reg1] = b3;
-      dmgcpu.registers[reg2] = b2;
+      if(pair == BC){
+         dmgcpu.bc = (b3 << 8) | b2;
+      } else{
+         dmgcpu.de = (b3 << 8) | b2;
+      }
    }
 }
@@ -1,5 +1,5 @@
 package Instructions;
-import Emulator.JavaBoy;
+import Emulator.Util;
 import Emulator.Dmgcpu;
 
 /*
@@ -9,32 +9,31 @@ import Emulator.Dmgcpu;
  * 
  */
 public class LD_A extends Instruction{
-   private int reg1, reg2, address, type;
+   private final int pair, type;
    
-   private void setAddress(){
+   private int getAddress(){
       if(type == 0){
-         address = 0xFF00 + dmgcpu.registers[c];
-      } else{
-         address = ((dmgcpu.registers[reg1] << 8) + dmgcpu.registers[reg2]);
+         return 0xFF00 + (dmgcpu.bc & 0xFF);
       }
+      return (pair == BC) ? dmgcpu.bc : dmgcpu.de;
    }
    
    public LD_A(Dmgcpu dmgcpu){
       this.dmgcpu = dmgcpu;
+      pair = 0;
       type = 0;
    }
    
-   public LD_A(int reg1, int reg2, Dmgcpu dmgcpu){
+   public LD_A(int pair, Dmgcpu dmgcpu){
       this.dmgcpu = dmgcpu;
-      this.reg1 = reg1;
-      this.reg2 = reg2;
+      this.pair = pair;
       type = 1;
    }
    
    @Override
    public void execute(int b1, int b2, int b3, int offset){
-      setAddress();
+      int address = getAddress();
       dmgcpu.pc++;
-      dmgcpu.registers[a] = JavaBoy.unsign(dmgcpu.addressRead(address));
+      dmgcpu.a = Util.unsign(dmgcpu.addressRead(address));
    }
 }
@@ -3,29 +3,21 @@ import Emulator.Dmgcpu;
 
 /*
  * this class emulates: 
- *    LD (HL+), A
- *    LD (HL-), A
+ *    LD (HL+), A    step 1
+ *    LD (HL-), A    step -1
  */
 public class LD_HL_A extends Instruction{
-   private String type;
+   private final int step;
    
-   public LD_HL_A(String type, Dmgcpu dmgcpu){
+   public LD_HL_A(int step, Dmgcpu dmgcpu){
       this.dmgcpu = dmgcpu;
-      this.type = type;
-   }
-   
-   private int getAddress(){
-      if(type.equals("+")){
-         return ((dmgcpu.hl + 1) & 0xFFFF);
-      } 
-
-      return (dmgcpu.hl - 1);   
+      this.step = step;
    }
    
    @Override
    public void execute(int b1, int b2, int b3, int offset){  
       dmgcpu.pc++;
-      dmgcpu.addressWrite(dmgcpu.hl, dmgcpu.registers[a]);
-      dmgcpu.hl = getAddress();
+      dmgcpu.addressWrite(dmgcpu.hl, dmgcpu.a);
+      dmgcpu.hl = (dmgcpu.hl + step) & 0xFFFF;
    }
 }
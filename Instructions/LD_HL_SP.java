@@ -13,6 +13,7 @@ public class LD_HL_SP extends Instruction{
    
    @Override
    public void execute(int b1, int b2, int b3, int offset){  
+      dmgcpu.updateFlags();
       dmgcpu.pc += 2;
       dmgcpu.hl = (dmgcpu.sp + offset);
       if ((dmgcpu.hl & 0x10000) != 0) {
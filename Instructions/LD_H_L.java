@@ -7,7 +7,7 @@ import Emulator.Dmgcpu;
  *    LD L, nn
  */
 public class LD_H_L extends Instruction{
-   private int mask, shift;
+   private final int mask, shift;
    
    public LD_H_L(int mask, int shift, Dmgcpu dmgcpu){
       this.dmgcpu = dmgcpu;
@@ -3,16 +3,16 @@ import Emulator.Dmgcpu;
 
 
 public class LD_R extends Instruction{
-   private int reg;
+   private final Operand reg;
    
    public LD_R(int reg, Dmgcpu dmgcpu){
-      this.reg = reg;   
+      this.reg = new Operand(reg);   
       this.dmgcpu = dmgcpu;
    }
    
    @Override
    public void execute(int b1, int b2, int b3, int offset){
       dmgcpu.pc += 2;
-      dmgcpu.registers[reg] = b2;
+      reg.write(dmgcpu, b2);
    }
 }
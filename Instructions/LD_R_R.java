@@ -0,0 +1,22 @@
+package Instructions;
+import Emulator.Dmgcpu;
+
+/*
+ * this class emulates:
+ *    LD r, r' for one pair of registers, decoded when it is built
+ */
+public class LD_R_R extends Instruction{
+   private final Operand dst, src;
+
+   public LD_R_R(int dstNum, int srcNum, Dmgcpu dmgcpu){
+      this.dmgcpu = dmgcpu;
+      dst = new Operand(dstNum);
+      src = new Operand(srcNum);
+   }
+
+   @Override
+   public void execute(int b1, int b2, int b3, int offset){
+      dmgcpu.pc++;
+      dst.write(dmgcpu, src.read(dmgcpu));
+   }
+}
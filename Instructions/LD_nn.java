@@ -14,6 +14,6 @@ public class LD_nn extends Instruction{
    @Override
    public void execute(int b1, int b2, int b3, int offset){  
       dmgcpu.pc += 3;
-      dmgcpu.addressWrite((b3 << 8) + b2, dmgcpu.registers[a]);
+      dmgcpu.addressWrite((b3 << 8) + b2, dmgcpu.a);
    }
 }
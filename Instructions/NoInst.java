@@ -1,6 +1,6 @@
 package Instructions;
 import Emulator.Dmgcpu;
-import Emulator.JavaBoy;
+import Emulator.Util;
 
 /*
  *  Unrecognized opcodes
@@ -13,7 +13,7 @@ public class NoInst extends Instruction{
    
    @Override
    public void execute(int b1, int b2, int b3, int offset){
-      System.out.println("Unrecognized opcode (" + JavaBoy.hexByte(b1) + ")");
+      System.out.println("Unrecognized opcode (" + Util.hexByte(b1) + ")");
       dmgcpu.terminate = true;
       dmgcpu.pc++;
    }
@@ -0,0 +1,76 @@
+package Instructions;
+import Emulator.Dmgcpu;
+import Emulator.Util;
+
+/*
+ * An 8-bit register operand. The register number encoded in the opcode
+ * (B, C, D, E, H, L, (HL), A) is decoded once, when the handler is built,
+ * into where the value is kept: A, one half of a register pair, or the
+ * memory hl points to.
+ */
+final class Operand {
+   private static final int A = 0;
+   private static final int BC = 1;
+   private static final int DE = 2;
+   private static final int HL = 3;
+   private static final int MEMORY = 4;
+
+   private final int kind;
+
+   /** Position of the byte in its pair and the mask of the other byte */
+   private final int shift, keep;
+
+   /** True for (HL), which takes extra cycles */
+   final boolean memory;
+
+   Operand(int regNum){
+      switch(regNum){
+         case 0:  kind = BC; break;       // B
+         case 1:  kind = BC; break;       // C
+         case 2:  kind = DE; break;       // D
+         case 3:  kind = DE; break;       // E
+         case 4:  kind = HL; break;       // H
+         case 5:  kind = HL; break;       // L
+         case 6:  kind = MEMORY; break;   // (HL)
+         default: kind = A;
+      }
+      // B, D and H are the high bytes of their pairs
+      shift = ((regNum & 1) == 0) ? 8 : 0;
+      keep = (shift == 8) ? 0x00FF : 0xFF00;
+      memory = kind == MEMORY;
+   }
+
+   int read(Dmgcpu dmgcpu){
+      switch(kind){
+         case A:
+            return dmgcpu.a;
+         case BC:
+            return (dmgcpu.bc >> shift) & 0xFF;
+         case DE:
+            return (dmgcpu.de >> shift) & 0xFF;
+         case HL:
+            return (dmgcpu.hl >> shift) & 0xFF;
+         default:
+            return Util.unsign(dmgcpu.addressRead(dmgcpu.hl));
+      }
+   }
+
+   void write(Dmgcpu dmgcpu, int data){
+      switch(kind){
+         case A:
+            dmgcpu.a = data;
+            break;
+         case BC:
+            dmgcpu.bc = (dmgcpu.bc & keep) | (data << shift);
+            break;
+         case DE:
+            dmgcpu.de = (dmgcpu.de & keep) | (data << shift);
+            break;
+         case HL:
+            dmgcpu.hl = (dmgcpu.hl & keep) | (data << shift);
+            break;
+         default:
+            dmgcpu.addressWrite(dmgcpu.hl, data);
+      }
+   }
+}
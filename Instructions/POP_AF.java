@@ -1,6 +1,6 @@
 package Instructions;
 import Emulator.Dmgcpu;
-import Emulator.JavaBoy;
+import Emulator.Util;
 
 
 public class POP_AF extends Instruction{
@@ -11,9 +11,10 @@ public class POP_AF extends Instruction{
    
    @Override
    public void execute(int b1, int b2, int b3, int offset){
+      dmgcpu.updateFlags();
       dmgcpu.pc++;
-      dmgcpu.f = JavaBoy.unsign(dmgcpu.addressRead(dmgcpu.sp));
-      dmgcpu.registers[a] = JavaBoy.unsign(dmgcpu.addressRead(dmgcpu.sp + 1));
+      dmgcpu.f = Util.unsign(dmgcpu.addressRead(dmgcpu.sp));
+      dmgcpu.a = Util.unsign(dmgcpu.addressRead(dmgcpu.sp + 1));
       dmgcpu.sp += 2;
    }
 }
@@ -1,6 +1,6 @@
 package Instructions;
 import Emulator.Dmgcpu;
-import Emulator.JavaBoy;
+import Emulator.Util;
 
 
 public class POP_HL extends Instruction{
@@ -12,7 +12,7 @@ public class POP_HL extends Instruction{
    @Override
    public void execute(int b1, int b2, int b3, int offset){
       dmgcpu.pc++;
-      dmgcpu.hl = (JavaBoy.unsign(dmgcpu.addressRead(dmgcpu.sp + 1)) << 8) + JavaBoy.unsign(dmgcpu.addressRead(dmgcpu.sp));
+      dmgcpu.hl = (Util.unsign(dmgcpu.addressRead(dmgcpu.sp + 1)) << 8) + Util.unsign(dmgcpu.addressRead(dmgcpu.sp));
       dmgcpu.sp += 2;
    }
 }
@@ -1,22 +1,27 @@
 package Instructions;
 import Emulator.Dmgcpu;
-import Emulator.JavaBoy;
+import Emulator.Util;
 
 
 public class POP_RR extends Instruction{
-   private int reg1, reg2;
+   private final int pair;
    
-   public POP_RR(int reg1, int reg2, Dmgcpu dmgcpu){
-      this.reg1 = reg1;   
-      this.reg2 = reg2;   
+   public POP_RR(int pair, Dmgcpu dmgcpu){
+      this.pair = pair;
       this.dmgcpu = dmgcpu;
    }
    
    @Override
    public void execute(int b1, int b2, int b3, int offset){
       dmgcpu.pc++;
-      dmgcpu.registers[reg2] = JavaBoy.unsign(dmgcpu.addressRead(dmgcpu.sp));
-      dmgcpu.registers[reg1] = JavaBoy.unsign(dmgcpu.addressRead(dmgcpu.sp + 1));
+      int value = Util.unsign(dmgcpu.addressRead(dmgcpu.sp));
+      value |= Util.unsign(dmgcpu.addressRead(dmgcpu.sp + 1)) << 8;
       dmgcpu.sp += 2;
+      
+      if(pair == BC){
+         dmgcpu.bc = value;
+      } else{
+         dmgcpu.de = value;
+      }
    }
 }
@@ -10,10 +10,11 @@ public class PUSH_AF extends Instruction{
    
    @Override
    public void execute(int b1, int b2, int b3, int offset){
+      dmgcpu.updateFlags();
       dmgcpu.pc++;
       dmgcpu.sp -= 2;
       dmgcpu.sp &= 0xFFFF;
       dmgcpu.addressWrite(dmgcpu.sp, dmgcpu.f);
-      dmgcpu.addressWrite(dmgcpu.sp + 1, dmgcpu.registers[a]);
+      dmgcpu.addressWrite(dmgcpu.sp + 1, dmgcpu.a);
    }
 }
@@ -3,11 +3,10 @@ import Emulator.Dmgcpu;
 
 
 public class PUSH_RR extends Instruction{
-   private int reg1, reg2;
+   private final int pair;
    
-   public PUSH_RR(int reg1, int reg2, Dmgcpu dmgcpu){
-      this.reg1 = reg1;   
-      this.reg2 = reg2;   
+   public PUSH_RR(int pair, Dmgcpu dmgcpu){
+      this.pair = pair;
       this.dmgcpu = dmgcpu;
    }
    
@@ -16,7 +15,8 @@ public class PUSH_RR extends Instruction{
       dmgcpu.pc++;
       dmgcpu.sp -= 2;
       dmgcpu.sp &= 0xFFFF;
-      dmgcpu.addressWrite(dmgcpu.sp, dmgcpu.registers[reg2]);
-      dmgcpu.addressWrite(dmgcpu.sp + 1, dmgcpu.registers[reg1]);
+      int value = (pair == BC) ? dmgcpu.bc : dmgcpu.de;
+      dmgcpu.addressWrite(dmgcpu.sp, value & 0xFF);
+      dmgcpu.addressWrite(dmgcpu.sp + 1, value >> 8);
    }
 }
@@ -1,6 +1,6 @@
 package Instructions;
 import Emulator.Dmgcpu;
-import Emulator.JavaBoy;
+import Emulator.Util;
 
 /*
  * this class emulates: 
@@ -14,7 +14,7 @@ public class RET extends Instruction{
    
    @Override
    public void execute(int b1, int b2, int b3, int offset){  
-      dmgcpu.pc = (JavaBoy.unsign(dmgcpu.addressRead(dmgcpu.sp + 1)) << 8) + JavaBoy.unsign(dmgcpu.addressRead(dmgcpu.sp));
+      dmgcpu.pc = (Util.unsign(dmgcpu.addressRead(dmgcpu.sp + 1)) << 8) + Util.unsign(dmgcpu.addressRead(dmgcpu.sp));
       dmgcpu.sp += 2;
    }
 }
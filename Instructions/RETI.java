@@ -1,6 +1,6 @@
 package Instructions;
 import Emulator.Dmgcpu;
-import Emulator.JavaBoy;
+import Emulator.Util;
 
 /*
  * this class emulates: 
@@ -16,7 +16,7 @@ public class RETI extends Instruction{
    public void execute(int b1, int b2, int b3, int offset){  
       dmgcpu.interruptsEnabled = true;
       dmgcpu.inInterrupt = false;
-      dmgcpu.pc = (JavaBoy.unsign(dmgcpu.addressRead(dmgcpu.sp + 1)) << 8) + JavaBoy.unsign(dmgcpu.addressRead(dmgcpu.sp));
+      dmgcpu.pc = (Util.unsign(dmgcpu.addressRead(dmgcpu.sp + 1)) << 8) + Util.unsign(dmgcpu.addressRead(dmgcpu.sp));
       dmgcpu.sp += 2;
    }
 }
@@ -1,6 +1,6 @@
 package Instructions;
 import Emulator.Dmgcpu;
-import Emulator.JavaBoy;
+import Emulator.Util;
 
 /*
  * this class emulates: 
@@ -10,7 +10,7 @@ import Emulator.JavaBoy;
  *    RET C, nnnn
  */
 public class RET_F extends Instruction{
-   private short flag1, flag2;
+   private final short flag1, flag2;
    
    public RET_F(short flag1, short flag2, Dmgcpu dmgcpu){
       this.dmgcpu = dmgcpu;
@@ -20,8 +20,10 @@ public class RET_F extends Instruction{
    
    @Override
    public void execute(int b1, int b2, int b3, int offset){
+      dmgcpu.updateFlags();
       if ((dmgcpu.f & flag1) == flag2) {        
-         dmgcpu.pc = (JavaBoy.unsign(dmgcpu.addressRead(dmgcpu.sp + 1)) << 8) + JavaBoy.unsign(dmgcpu.addressRead(dmgcpu.sp));
+         dmgcpu.cycles += 12;
+         dmgcpu.pc = (Util.unsign(dmgcpu.addressRead(dmgcpu.sp + 1)) << 8) + Util.unsign(dmgcpu.addressRead(dmgcpu.sp));
          dmgcpu.sp += 2;
       } else {
          dmgcpu.pc++;
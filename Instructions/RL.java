@@ -13,20 +13,21 @@ public class RL extends Instruction{
    
    @Override
    public void execute(int b1, int b2, int b3, int offset){  
+      dmgcpu.updateFlags();
       dmgcpu.pc++;
-      if (((dmgcpu.registers[a]) & dmgcpu.F_ZERO) == dmgcpu.F_ZERO) {
+      if (((dmgcpu.a) & dmgcpu.F_ZERO) == dmgcpu.F_ZERO) {
          dmgcpu.newf = dmgcpu.F_CARRY;
       } else {
          dmgcpu.newf = 0;
       }
-      dmgcpu.registers[a] <<= 1;
+      dmgcpu.a <<= 1;
 
       if ((dmgcpu.f & dmgcpu.F_CARRY) == dmgcpu.F_CARRY) {
-         dmgcpu.registers[a] |= 1;
+         dmgcpu.a |= 1;
       }
 
-      dmgcpu.registers[a] &= 0xFF;
-      if (dmgcpu.registers[a] == 0) {
+      dmgcpu.a &= 0xFF;
+      if (dmgcpu.a == 0) {
          dmgcpu.newf |= dmgcpu.F_ZERO;
       }
       dmgcpu.f = dmgcpu.newf;
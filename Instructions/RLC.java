@@ -13,17 +13,18 @@ public class RLC extends Instruction{
    
    @Override
    public void execute(int b1, int b2, int b3, int offset){  
+      dmgcpu.updateFlags();
       dmgcpu.pc++;
       dmgcpu.f = 0;
 
-      dmgcpu.registers[a] <<= 1;
+      dmgcpu.a <<= 1;
 
-      if (((dmgcpu.registers[a]) & 0x0100) != 0) {
+      if (((dmgcpu.a) & 0x0100) != 0) {
          dmgcpu.f |= dmgcpu.F_CARRY;
-         dmgcpu.registers[a] |= 1;
-         dmgcpu.registers[a] &= 0xFF;
+         dmgcpu.a |= 1;
+         dmgcpu.a &= 0xFF;
       }
-      if (dmgcpu.registers[a] == 0) {
+      if (dmgcpu.a == 0) {
          dmgcpu.f |= dmgcpu.F_ZERO;
       }
    }
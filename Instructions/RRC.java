@@ -13,17 +13,18 @@ public class RRC extends Instruction{
    
    @Override
    public void execute(int b1, int b2, int b3, int offset){  
+      dmgcpu.updateFlags();
       dmgcpu.pc++;
-      if (((dmgcpu.registers[a]) & 0x01) == 0x01) {
+      if (((dmgcpu.a) & 0x01) == 0x01) {
          dmgcpu.f = dmgcpu.F_CARRY;
       } else {
          dmgcpu.f = 0;
       }
-      dmgcpu.registers[a] >>= 1;
+      dmgcpu.a >>= 1;
       if ((dmgcpu.f & dmgcpu.F_CARRY) == dmgcpu.F_CARRY) {
-         dmgcpu.registers[a] |= dmgcpu.F_ZERO;
+         dmgcpu.a |= dmgcpu.F_ZERO;
       }
-      if (dmgcpu.registers[a] == 0) {
+      if (dmgcpu.a == 0) {
          dmgcpu.f |= dmgcpu.F_ZERO;
       }
    }
@@ -13,7 +13,7 @@ import Emulator.Dmgcpu;
  *    RST 38
  */
 public class RST extends Instruction{
-   private int address;
+   private final int address;
    
    public RST(int address, Dmgcpu dmgcpu){
       this.dmgcpu = dmgcpu;
@@ -15,11 +15,9 @@ public class SBC extends Instruction{
    
    @Override
    public void execute(int b1, int b2, int b3, int offset){  
+      dmgcpu.updateFlags();
       dmgcpu.pc += 2;
-      if ((dmgcpu.f & dmgcpu.F_CARRY) != 0) {
-         b2++;
-      }
 
-      sub.execute(b2);
+      sub.execute(b2, (dmgcpu.f & dmgcpu.F_CARRY) >> 4);
    }
 }
@@ -13,6 +13,7 @@ public class SCF extends Instruction{
    
    @Override
    public void execute(int b1, int b2, int b3, int offset){  
+      dmgcpu.updateFlags();
       dmgcpu.pc++;
       dmgcpu.f &= dmgcpu.F_ZERO;
       dmgcpu.f |= dmgcpu.F_CARRY;
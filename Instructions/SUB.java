@@ -11,18 +11,15 @@ public class SUB extends Instruction{
       this.dmgcpu = dmgcpu;
    }
    
-   public void execute(int b2){
-      dmgcpu.f = dmgcpu.F_SUBTRACT;
-      if (((((dmgcpu.registers[a]) & 0x0F) - (b2 & 0x0F)) & 0xFFF0) != 0x00) {
-         dmgcpu.f |= dmgcpu.F_HALFCARRY;
-      }
-      dmgcpu.registers[a] -= b2;
-      if (((dmgcpu.registers[a]) & 0xFF00) != 0) {
-         dmgcpu.registers[a] &= 0x00FF;
-         dmgcpu.f |= dmgcpu.F_CARRY;
-      }
-      if (dmgcpu.registers[a] == 0) {
-         dmgcpu.f |= dmgcpu.F_ZERO;
+   public void execute(int b2, int carry){
+      int index = FlagTables.index(carry, dmgcpu.a, b2);
+      int entry = FlagTables.SUB[index];
+
+      dmgcpu.a = entry & 0xFF;
+      if (dmgcpu.lazyFlagsEnable) {
+         dmgcpu.setLazyFlags(Dmgcpu.FLAGS_SUB, index);
+      } else {
+         dmgcpu.f = entry >> 8;
       }
    }
    
@@ -30,6 +27,6 @@ public class SUB extends Instruction{
    public void execute(int b1, int b2, int b3, int offset){  
       dmgcpu.pc += 2;
 
-      execute(b2);
+      execute(b2, 0);
    }
 }
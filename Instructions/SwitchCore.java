@@ -0,0 +1,793 @@
+package Instructions;
+import Emulator.CpuCore;
+import Emulator.Dmgcpu;
+import Emulator.Util;
+
+/*
+ * The interpreter JavaBoy had before the strategy pattern: every opcode is
+ * a case of one switch, and the registers and the operation of LD r, r',
+ * the ALU and the CB opcodes are decoded from the opcode each time. The
+ * flags are always computed straight away.
+ *
+ * It behaves like the handlers of the InstructionManager, quirks included,
+ * so both cores can be run on the same game and compared
+ */
+public class SwitchCore implements CpuCore {
+   private Dmgcpu dmgcpu;
+
+   public SwitchCore(Dmgcpu dmgcpu) {
+      this.dmgcpu = dmgcpu;
+   }
+
+   public String getName() {
+      return "switch";
+   }
+
+   /** Read the register regNum (B, C, D, E, H, L, (HL), A) */
+   private int registerRead(int regNum) {
+      switch (regNum) {
+         case 0:
+            return dmgcpu.bc >> 8;
+         case 1:
+            return dmgcpu.bc & 0xFF;
+         case 2:
+            return dmgcpu.de >> 8;
+         case 3:
+            return dmgcpu.de & 0xFF;
+         case 4:
+            return dmgcpu.hl >> 8;
+         case 5:
+            return dmgcpu.hl & 0xFF;
+         case 6:
+            return Util.unsign(dmgcpu.addressRead(dmgcpu.hl));
+         default:
+            return dmgcpu.a;
+      }
+   }
+
+   /** Write the register regNum (B, C, D, E, H, L, (HL), A) */
+   private void registerWrite(int regNum, int data) {
+      switch (regNum) {
+         case 0:
+            dmgcpu.bc = (dmgcpu.bc & 0x00FF) | (data << 8);
+            break;
+         case 1:
+            dmgcpu.bc = (dmgcpu.bc & 0xFF00) | data;
+            break;
+         case 2:
+            dmgcpu.de = (dmgcpu.de & 0x00FF) | (data << 8);
+            break;
+         case 3:
+            dmgcpu.de = (dmgcpu.de & 0xFF00) | data;
+            break;
+         case 4:
+            dmgcpu.hl = (dmgcpu.hl & 0x00FF) | (data << 8);
+            break;
+         case 5:
+            dmgcpu.hl = (dmgcpu.hl & 0xFF00) | data;
+            break;
+         case 6:
+            dmgcpu.addressWrite(dmgcpu.hl, data);
+            break;
+         default:
+            dmgcpu.a = data;
+      }
+   }
+
+   private void push(int value) {
+      dmgcpu.sp -= 2;
+      dmgcpu.addressWrite(dmgcpu.sp + 1, value >> 8);
+      dmgcpu.addressWrite(dmgcpu.sp, value & 0x00FF);
+   }
+
+   private int pop() {
+      int value = (Util.unsign(dmgcpu.addressRead(dmgcpu.sp + 1)) << 8) + Util.unsign(dmgcpu.addressRead(dmgcpu.sp));
+      dmgcpu.sp += 2;
+      return value;
+   }
+
+   /** Add to HL, BC, DE, HL or SP, only the carry flag is changed */
+   private void addHL(int value) {
+      dmgcpu.hl += value;
+      if ((dmgcpu.hl & 0xFFFF0000) != 0) {
+         dmgcpu.f = (dmgcpu.f & (dmgcpu.F_SUBTRACT + dmgcpu.F_ZERO + dmgcpu.F_HALFCARRY)) | dmgcpu.F_CARRY;
+         dmgcpu.hl &= 0xFFFF;
+      } else {
+         dmgcpu.f = dmgcpu.f & (dmgcpu.F_SUBTRACT + dmgcpu.F_ZERO + dmgcpu.F_HALFCARRY);
+      }
+   }
+
+   /** ADD, ADC, SUB, SBC, AND, XOR, OR or CP of A and a register */
+   private void alu(int operation, int value) {
+      int carry = (dmgcpu.f & dmgcpu.F_CARRY) >> 4;
+      int entry;
+
+      switch (operation) {
+         case 0:     // ADD
+            entry = FlagTables.ADD_A[FlagTables.index(0, dmgcpu.a, value)];
+            dmgcpu.a = entry & 0xFF;
+            dmgcpu.f = entry >> 8;
+            break;
+         case 1:     // ADC
+            entry = FlagTables.ADD_A[FlagTables.index(carry, dmgcpu.a, value)];
+            dmgcpu.a = entry & 0xFF;
+            dmgcpu.f = entry >> 8;
+            break;
+         case 2:     // SUB
+            entry = FlagTables.SUB[FlagTables.index(0, dmgcpu.a, value)];
+            dmgcpu.a = entry & 0xFF;
+            dmgcpu.f = entry >> 8;
+            break;
+         case 3:     // SBC
+            entry = FlagTables.SUB[FlagTables.index(carry, dmgcpu.a, value)];
+            dmgcpu.a = entry & 0xFF;
+            dmgcpu.f = entry >> 8;
+            break;
+         case 4:     // AND
+            dmgcpu.a &= value;
+            dmgcpu.f = FlagTables.LOGIC[dmgcpu.a] >> 8;
+            break;
+         case 5:     // XOR
+            dmgcpu.a ^= value;
+            dmgcpu.f = FlagTables.LOGIC[dmgcpu.a] >> 8;
+            break;
+         case 6:     // OR
+            dmgcpu.a |= value;
+            dmgcpu.f = FlagTables.LOGIC[dmgcpu.a] >> 8;
+            break;
+         default:    // CP
+            dmgcpu.f = FlagTables.SUB[FlagTables.index(0, dmgcpu.a, value)] >> 8;
+      }
+   }
+
+   /** Run the CB prefixed opcode b2 */
+   private void extOp(int b2) {
+      int regNum = b2 & 0x07;
+      int bit = (b2 & 0x38) >> 3;
+      int data, carry;
+
+      dmgcpu.pc += 2;
+      if (regNum == 6) {
+         dmgcpu.cycles += ((b2 & 0xC0) == 0x40) ? 4 : 8;
+      }
+      data = registerRead(regNum);
+
+      switch (b2 & 0xC0) {
+         case 0x00:
+            switch (bit) {
+               case 0:     // RLC r
+                  carry = (data & 0x80) >> 7;
+                  data = ((data << 1) | carry) & 0xFF;
+                  break;
+               case 1:     // RRC r
+                  carry = data & 0x01;
+                  data = (data >> 1) | (carry << 7);
+                  break;
+               case 2:     // RL r
+                  carry = (data & 0x80) >> 7;
+                  data = ((data << 1) | ((dmgcpu.f & dmgcpu.F_CARRY) >> 4)) & 0xFF;
+                  break;
+               case 3:     // RR r
+                  carry = data & 0x01;
+                  data = (data >> 1) | ((dmgcpu.f & dmgcpu.F_CARRY) << 3);
+                  break;
+               case 4:     // SLA r
+                  carry = (data & 0x80) >> 7;
+                  data = (data << 1) & 0xFF;
+                  break;
+               case 5:     // SRA r
+                  carry = data & 0x01;
+                  data = (data >> 1) | (data & 0x80);
+                  break;
+               case 6:     // SWAP r
+                  carry = 0;
+                  data = ((data & 0x0F) << 4) | ((data & 0xF0) >> 4);
+                  break;
+               default:    // SRL r
+                  carry = data & 0x01;
+                  data >>= 1;
+            }
+            dmgcpu.f = (carry << 4) | (data == 0 ? dmgcpu.F_ZERO : 0);
+            registerWrite(regNum, data);
+            break;
+         case 0x40:        // BIT n, r
+            if ((data & (0x01 << bit)) != 0) {
+               dmgcpu.f = (dmgcpu.f & dmgcpu.F_CARRY) | dmgcpu.F_HALFCARRY;
+            } else {
+               dmgcpu.f = (dmgcpu.f & dmgcpu.F_CARRY) | (dmgcpu.F_HALFCARRY + dmgcpu.F_ZERO);
+            }
+            break;
+         case 0x80:        // RES n, r
+            registerWrite(regNum, data & (0xFF - (0x01 << bit)));
+            break;
+         default:          // SET n, r
+            registerWrite(regNum, data | (0x01 << bit));
+      }
+   }
+
+   /** True when the condition of a JR, JP, CALL or RET opcode is met */
+   private boolean condition(int b1) {
+      switch ((b1 & 0x18) >> 3) {
+         case 0:
+            return (dmgcpu.f & dmgcpu.F_ZERO) == 0;
+         case 1:
+            return (dmgcpu.f & dmgcpu.F_ZERO) != 0;
+         case 2:
+            return (dmgcpu.f & dmgcpu.F_CARRY) == 0;
+         default:
+            return (dmgcpu.f & dmgcpu.F_CARRY) != 0;
+      }
+   }
+
+   /**
+    * Fetch the instruction at pc and execute it. Only the operand bytes the
+    * opcode takes are read
+    */
+   public void step() {
+      int pc = dmgcpu.pc;
+      int b1 = Util.unsign(dmgcpu.addressRead(pc));
+      int length = InstructionManager.LENGTH[b1];
+      int b2 = 0, b3 = 0, offset = 0;
+      int entry, newf;
+
+      if (length > 1) {
+         offset = dmgcpu.addressRead(pc + 1);
+         b2 = Util.unsign((short) offset);
+         if (length > 2) {
+            b3 = Util.unsign(dmgcpu.addressRead(pc + 2));
+         }
+      }
+
+      dmgcpu.cycles += InstructionManager.CYCLES[b1];
+
+      switch (b1) {
+         case 0x00:                 // NOP
+            dmgcpu.pc++;
+            break;
+         case 0x01:                 // LD BC, nnnn
+            dmgcpu.pc += 3;
+            dmgcpu.bc = (b3 << 8) | b2;
+            break;
+         case 0x11:                 // LD DE, nnnn
+            dmgcpu.pc += 3;
+            dmgcpu.de = (b3 << 8) | b2;
+            break;
+         case 0x21:                 // LD HL, nnnn
+            dmgcpu.pc += 3;
+            dmgcpu.hl = (b3 << 8) + b2;
+            break;
+         case 0x31:                 // LD SP, nnnn
+            dmgcpu.pc += 3;
+            dmgcpu.sp = (b3 << 8) + b2;
+            break;
+         case 0x02:                 // LD (BC), A
+            dmgcpu.pc++;
+            dmgcpu.addressWrite(dmgcpu.bc, dmgcpu.a);
+            break;
+         case 0x12:                 // LD (DE), A
+            dmgcpu.pc++;
+            dmgcpu.addressWrite(dmgcpu.de, dmgcpu.a);
+            break;
+         case 0x22:                 // LD (HL+), A
+            dmgcpu.pc++;
+            dmgcpu.addressWrite(dmgcpu.hl, dmgcpu.a);
+            dmgcpu.hl = (dmgcpu.hl + 1) & 0xFFFF;
+            break;
+         case 0x32:                 // LD (HL-), A
+            dmgcpu.pc++;
+            dmgcpu.addressWrite(dmgcpu.hl, dmgcpu.a);
+            dmgcpu.hl = (dmgcpu.hl - 1) & 0xFFFF;
+            break;
+         case 0x03:                 // INC BC
+            dmgcpu.pc++;
+            dmgcpu.bc = (dmgcpu.bc + 1) & 0xFFFF;
+            break;
+         case 0x13:                 // INC DE
+            dmgcpu.pc++;
+            dmgcpu.de = (dmgcpu.de + 1) & 0xFFFF;
+            break;
+         case 0x23:                 // INC HL
+            dmgcpu.pc++;
+            dmgcpu.hl = (dmgcpu.hl + 1) & 0xFFFF;
+            break;
+         case 0x33:                 // INC SP
+            dmgcpu.pc++;
+            dmgcpu.sp = (dmgcpu.sp + 1) & 0xFFFF;
+            break;
+         case 0x0B:                 // DEC BC
+            dmgcpu.pc++;
+            dmgcpu.bc = (dmgcpu.bc - 1) & 0xFFFF;
+            break;
+         case 0x1B:                 // DEC DE
+            dmgcpu.pc++;
+            dmgcpu.de = (dmgcpu.de - 1) & 0xFFFF;
+            break;
+         case 0x2B:                 // DEC HL
+            dmgcpu.pc++;
+            if (dmgcpu.hl == 0) {
+               dmgcpu.hl = 0xFFFF;
+            } else {
+               dmgcpu.hl--;
+            }
+            break;
+         case 0x3B:                 // DEC SP
+            dmgcpu.pc++;
+            dmgcpu.sp = (dmgcpu.sp - 1) & 0xFFFF;
+            break;
+         case 0x04:                 // INC B
+         case 0x0C:                 // INC C
+         case 0x14:                 // INC D
+         case 0x1C:                 // INC E
+         case 0x34:                 // INC (HL)
+         case 0x3C:                 // INC A
+            dmgcpu.pc++;
+            entry = FlagTables.INC[registerRead((b1 & 0x38) >> 3)];
+            dmgcpu.f = (dmgcpu.f & dmgcpu.F_CARRY) | (entry >> 8);
+            registerWrite((b1 & 0x38) >> 3, entry & 0xFF);
+            break;
+         case 0x05:                 // DEC B
+         case 0x0D:                 // DEC C
+         case 0x15:                 // DEC D
+         case 0x1D:                 // DEC E
+         case 0x35:                 // DEC (HL)
+         case 0x3D:                 // DEC A
+            dmgcpu.pc++;
+            entry = FlagTables.DEC[registerRead((b1 & 0x38) >> 3)];
+            dmgcpu.f = (dmgcpu.f & dmgcpu.F_CARRY) | (entry >> 8);
+            registerWrite((b1 & 0x38) >> 3, entry & 0xFF);
+            break;
+         case 0x24:                 // INC H
+            dmgcpu.pc++;
+            dmgcpu.f &= dmgcpu.F_CARRY;
+            switch (dmgcpu.hl >> 8) {
+               case 0xFF:
+                  dmgcpu.f |= dmgcpu.F_HALFCARRY + dmgcpu.F_ZERO;
+                  dmgcpu.hl &= 0x00FF;
+                  break;
+               case 0x0F:
+                  dmgcpu.f |= dmgcpu.F_HALFCARRY;
+                  dmgcpu.hl = (dmgcpu.hl & 0x00FF) | 0x10;
+                  break;
+               default:
+                  dmgcpu.hl += 0x0100;
+            }
+            break;
+         case 0x2C:                 // INC L
+            dmgcpu.pc++;
+            dmgcpu.f &= dmgcpu.F_CARRY;
+            switch (dmgcpu.hl & 0xFF) {
+               case 0xFF:
+                  dmgcpu.f |= dmgcpu.F_HALFCARRY + dmgcpu.F_ZERO;
+                  dmgcpu.hl &= 0xFF00;
+                  break;
+               case 0x0F:
+                  dmgcpu.f |= dmgcpu.F_HALFCARRY;
+                  dmgcpu.hl++;
+                  break;
+               default:
+                  dmgcpu.hl++;
+            }
+            break;
+         case 0x25:                 // DEC H
+            dmgcpu.pc++;
+            dmgcpu.f = (dmgcpu.f & dmgcpu.F_CARRY) | dmgcpu.F_SUBTRACT;
+            switch (dmgcpu.hl >> 8) {
+               case 0x00:
+                  dmgcpu.f |= dmgcpu.F_HALFCARRY;
+                  dmgcpu.hl |= 0xFF00;
+                  break;
+               case 0x10:
+                  dmgcpu.f |= dmgcpu.F_HALFCARRY;
+                  dmgcpu.hl = (dmgcpu.hl & 0x00FF) | 0x0F00;
+                  break;
+               case 0x01:
+                  dmgcpu.f |= dmgcpu.F_ZERO;
+                  dmgcpu.hl &= 0x00FF;
+                  break;
+               default:
+                  dmgcpu.hl -= 0x0100;
+            }
+            break;
+         case 0x2D:                 // DEC L
+            dmgcpu.pc++;
+            dmgcpu.f = (dmgcpu.f & dmgcpu.F_CARRY) | dmgcpu.F_SUBTRACT;
+            switch (dmgcpu.hl & 0xFF) {
+               case 0x00:
+                  dmgcpu.f |= dmgcpu.F_HALFCARRY;
+                  dmgcpu.hl |= 0x00FF;
+                  break;
+               case 0x10:
+                  dmgcpu.f |= dmgcpu.F_HALFCARRY;
+                  dmgcpu.hl = (dmgcpu.hl & 0xFF00) | 0x000F;
+                  break;
+               case 0x01:
+                  dmgcpu.f |= dmgcpu.F_ZERO;
+                  dmgcpu.hl &= 0xFF00;
+                  break;
+               default:
+                  dmgcpu.hl--;
+            }
+            break;
+         case 0x06:                 // LD B, nn
+         case 0x0E:                 // LD C, nn
+         case 0x16:                 // LD D, nn
+         case 0x1E:                 // LD E, nn
+         case 0x26:                 // LD H, nn
+         case 0x2E:                 // LD L, nn
+         case 0x36:                 // LD (HL), nn
+         case 0x3E:                 // LD A, nn
+            dmgcpu.pc += 2;
+            registerWrite((b1 & 0x38) >> 3, b2);
+            break;
+         case 0x07:                 // RLC A
+            dmgcpu.pc++;
+            dmgcpu.f = 0;
+            dmgcpu.a <<= 1;
+            if ((dmgcpu.a & 0x0100) != 0) {
+               dmgcpu.f |= dmgcpu.F_CARRY;
+               dmgcpu.a = (dmgcpu.a | 1) & 0xFF;
+            }
+            if (dmgcpu.a == 0) {
+               dmgcpu.f |= dmgcpu.F_ZERO;
+            }
+            break;
+         case 0x0F:                 // RRC A
+            dmgcpu.pc++;
+            dmgcpu.f = ((dmgcpu.a & 0x01) == 0x01) ? dmgcpu.F_CARRY : 0;
+            dmgcpu.a >>= 1;
+            if ((dmgcpu.f & dmgcpu.F_CARRY) == dmgcpu.F_CARRY) {
+               dmgcpu.a |= dmgcpu.F_ZERO;
+            }
+            if (dmgcpu.a == 0) {
+               dmgcpu.f |= dmgcpu.F_ZERO;
+            }
+            break;
+         case 0x17:                 // RL A
+            dmgcpu.pc++;
+            newf = ((dmgcpu.a & 0x80) == 0x80) ? dmgcpu.F_CARRY : 0;
+            dmgcpu.a <<= 1;
+            if ((dmgcpu.f & dmgcpu.F_CARRY) == dmgcpu.F_CARRY) {
+               dmgcpu.a |= 1;
+            }
+            dmgcpu.a &= 0xFF;
+            if (dmgcpu.a == 0) {
+               newf |= dmgcpu.F_ZERO;
+            }
+            dmgcpu.f = newf;
+            break;
+         case 0x1F:                 // RR A
+            dmgcpu.pc++;
+            newf = ((dmgcpu.a & 0x01) == 0x01) ? dmgcpu.F_CARRY : 0;
+            dmgcpu.a >>= 1;
+            if ((dmgcpu.f & dmgcpu.F_CARRY) == dmgcpu.F_CARRY) {
+               dmgcpu.a |= dmgcpu.F_ZERO;
+            }
+            if (dmgcpu.a == 0) {
+               newf |= dmgcpu.F_ZERO;
+            }
+            dmgcpu.f = newf;
+            break;
+         case 0x08:                 // LD (nnnn), SP
+            dmgcpu.pc += 3;
+            dmgcpu.addressWrite((b3 << 8) + b2 + 1, (dmgcpu.sp & 0xFF00) >> 8);
+            dmgcpu.addressWrite((b3 << 8) + b2, dmgcpu.sp & 0x00FF);
+            break;
+         case 0x09:                 // ADD HL, BC
+            dmgcpu.pc++;
+            addHL(dmgcpu.bc);
+            break;
+         case 0x19:                 // ADD HL, DE
+            dmgcpu.pc++;
+            addHL(dmgcpu.de);
+            break;
+         case 0x29:                 // ADD HL, HL
+            dmgcpu.pc++;
+            addHL(dmgcpu.hl);
+            break;
+         case 0x39:                 // ADD HL, SP
+            dmgcpu.pc++;
+            addHL(dmgcpu.sp);
+            break;
+         case 0x0A:                 // LD A, (BC)
+            dmgcpu.pc++;
+            dmgcpu.a = Util.unsign(dmgcpu.addressRead(dmgcpu.bc));
+            break;
+         case 0x1A:                 // LD A, (DE)
+            dmgcpu.pc++;
+            dmgcpu.a = Util.unsign(dmgcpu.addressRead(dmgcpu.de));
+            break;
+         case 0x2A:                 // LDI A, (HL)
+            dmgcpu.pc++;
+            dmgcpu.a = Util.unsign(dmgcpu.addressRead(dmgcpu.hl));
+            dmgcpu.hl++;
+            break;
+         case 0x3A:                 // LD A, (HL-)
+            dmgcpu.pc++;
+            dmgcpu.a = Util.unsign(dmgcpu.addressRead(dmgcpu.hl));
+            dmgcpu.hl = (dmgcpu.hl - 1) & 0xFFFF;
+            break;
+         case 0x10:                 // STOP
+            dmgcpu.pc += 2;
+            if (dmgcpu.gbcFeatures && (dmgcpu.ioHandler.registers[0x4D] & 0x01) == 1) {
+               int newKey1Reg = dmgcpu.ioHandler.registers[0x4D] & 0xFE;
+               if ((newKey1Reg & 0x80) == 0x80) {
+                  dmgcpu.setDoubleSpeedCpu(false);
+                  newKey1Reg &= 0x7F;
+               } else {
+                  dmgcpu.setDoubleSpeedCpu(true);
+                  newKey1Reg |= 0x80;
+               }
+               dmgcpu.ioHandler.registers[0x4D] = (byte) newKey1Reg;
+            }
+            break;
+         case 0x18:                 // JR nn
+            dmgcpu.pc += 2 + offset;
+            break;
+         case 0x20:                 // JR NZ, nn
+         case 0x28:                 // JR Z, nn
+         case 0x30:                 // JR NC, nn
+         case 0x38:                 // JR C, nn
+            if (condition(b1)) {
+               dmgcpu.cycles += 4;
+               dmgcpu.pc += 2 + offset;
+            } else {
+               dmgcpu.pc += 2;
+            }
+            break;
+         case 0x27:                 // DAA
+            dmgcpu.pc++;
+            entry = FlagTables.DAA[((dmgcpu.f & (dmgcpu.F_SUBTRACT | dmgcpu.F_HALFCARRY | dmgcpu.F_CARRY)) << 4) | dmgcpu.a];
+            dmgcpu.a = entry & 0xFF;
+            dmgcpu.f = entry >> 8;
+            break;
+         case 0x2F:                 // CPL A
+            dmgcpu.pc++;
+            dmgcpu.a = (~dmgcpu.a) & 0x00FF;
+            dmgcpu.f = (dmgcpu.f & (dmgcpu.F_CARRY | dmgcpu.F_ZERO)) | dmgcpu.F_SUBTRACT | dmgcpu.F_HALFCARRY;
+            break;
+         case 0x37:                 // SCF
+            dmgcpu.pc++;
+            dmgcpu.f = (dmgcpu.f & dmgcpu.F_ZERO) | dmgcpu.F_CARRY;
+            break;
+         case 0x3F:                 // CCF
+            dmgcpu.pc++;
+            if ((dmgcpu.f & dmgcpu.F_CARRY) == 0) {
+               dmgcpu.f = (dmgcpu.f & dmgcpu.F_ZERO) | dmgcpu.F_CARRY;
+            } else {
+               dmgcpu.f = dmgcpu.f & dmgcpu.F_ZERO;
+            }
+            break;
+         case 0x52:                 // LD D, D
+            if (dmgcpu.breakpointEnable) {
+               dmgcpu.terminate = true;
+               System.out.println("- Breakpoint reached");
+            } else {
+               dmgcpu.pc++;
+            }
+            break;
+         case 0x76:                 // HALT
+            dmgcpu.interruptsEnabled = true;
+            dmgcpu.pc++;
+            dmgcpu.waitForInterrupt();
+            break;
+         case 0xAF:                 // XOR A, A
+            dmgcpu.pc++;
+            dmgcpu.a = 0;
+            dmgcpu.f = dmgcpu.F_ZERO;
+            break;
+         case 0xC0:                 // RET NZ
+         case 0xC8:                 // RET Z
+         case 0xD0:                 // RET NC
+         case 0xD8:                 // RET C
+            if (condition(b1)) {
+               dmgcpu.cycles += 12;
+               dmgcpu.pc = pop();
+            } else {
+               dmgcpu.pc++;
+            }
+            break;
+         case 0xC9:                 // RET
+            dmgcpu.pc = pop();
+            break;
+         case 0xD9:                 // RETI
+            dmgcpu.interruptsEnabled = true;
+            dmgcpu.inInterrupt = false;
+            dmgcpu.pc = pop();
+            break;
+         case 0xC1:                 // POP BC
+            dmgcpu.pc++;
+            dmgcpu.bc = Util.unsign(dmgcpu.addressRead(dmgcpu.sp));
+            dmgcpu.bc |= Util.unsign(dmgcpu.addressRead(dmgcpu.sp + 1)) << 8;
+            dmgcpu.sp += 2;
+            break;
+         case 0xD1:                 // POP DE
+            dmgcpu.pc++;
+            dmgcpu.de = Util.unsign(dmgcpu.addressRead(dmgcpu.sp));
+            dmgcpu.de |= Util.unsign(dmgcpu.addressRead(dmgcpu.sp + 1)) << 8;
+            dmgcpu.sp += 2;
+            break;
+         case 0xE1:                 // POP HL
+            dmgcpu.pc++;
+            dmgcpu.hl = pop();
+            break;
+         case 0xF1:                 // POP AF
+            dmgcpu.pc++;
+            dmgcpu.f = Util.unsign(dmgcpu.addressRead(dmgcpu.sp));
+            dmgcpu.a = Util.unsign(dmgcpu.addressRead(dmgcpu.sp + 1));
+            dmgcpu.sp += 2;
+            break;
+         case 0xC5:                 // PUSH BC
+            dmgcpu.pc++;
+            dmgcpu.sp = (dmgcpu.sp - 2) & 0xFFFF;
+            dmgcpu.addressWrite(dmgcpu.sp, dmgcpu.bc & 0xFF);
+            dmgcpu.addressWrite(dmgcpu.sp + 1, dmgcpu.bc >> 8);
+            break;
+         case 0xD5:                 // PUSH DE
+            dmgcpu.pc++;
+            dmgcpu.sp = (dmgcpu.sp - 2) & 0xFFFF;
+            dmgcpu.addressWrite(dmgcpu.sp, dmgcpu.de & 0xFF);
+            dmgcpu.addressWrite(dmgcpu.sp + 1, dmgcpu.de >> 8);
+            break;
+         case 0xE5:                 // PUSH HL
+            dmgcpu.pc++;
+            dmgcpu.sp = (dmgcpu.sp - 2) & 0xFFFF;
+            dmgcpu.addressWrite(dmgcpu.sp + 1, dmgcpu.hl >> 8);
+            dmgcpu.addressWrite(dmgcpu.sp, dmgcpu.hl & 0x00FF);
+            break;
+         case 0xF5:                 // PUSH AF
+            dmgcpu.pc++;
+            dmgcpu.sp = (dmgcpu.sp - 2) & 0xFFFF;
+            dmgcpu.addressWrite(dmgcpu.sp, dmgcpu.f);
+            dmgcpu.addressWrite(dmgcpu.sp + 1, dmgcpu.a);
+            break;
+         case 0xC3:                 // JP nnnn
+            dmgcpu.pc = (b3 << 8) + b2;
+            break;
+         case 0xC2:                 // JP NZ, nnnn
+         case 0xCA:                 // JP Z, nnnn
+         case 0xD2:                 // JP NC, nnnn
+         case 0xDA:                 // JP C, nnnn
+            if (condition(b1)) {
+               dmgcpu.cycles += 4;
+               dmgcpu.pc = (b3 << 8) + b2;
+            } else {
+               dmgcpu.pc += 3;
+            }
+            break;
+         case 0xE9:                 // JP (HL)
+            dmgcpu.pc = dmgcpu.hl;
+            break;
+         case 0xCD:                 // CALL nnnn
+            dmgcpu.pc += 3;
+            push(dmgcpu.pc);
+            dmgcpu.pc = (b3 << 8) + b2;
+            break;
+         case 0xC4:                 // CALL NZ, nnnn
+         case 0xCC:                 // CALL Z, nnnn
+         case 0xD4:                 // CALL NC, nnnn
+         case 0xDC:                 // CALL C, nnnn
+            dmgcpu.pc += 3;
+            if (condition(b1)) {
+               dmgcpu.cycles += 12;
+               push(dmgcpu.pc);
+               dmgcpu.pc = (b3 << 8) + b2;
+            }
+            break;
+         case 0xC7:                 // RST 00
+         case 0xCF:                 // RST 08
+         case 0xD7:                 // RST 10
+         case 0xDF:                 // RST 18
+         case 0xE7:                 // RST 20
+         case 0xEF:                 // RST 28
+         case 0xF7:                 // RST 30
+         case 0xFF:                 // RST 38
+            dmgcpu.pc++;
+            push(dmgcpu.pc);
+            dmgcpu.pc = b1 & 0x38;
+            break;
+         case 0xC6:                 // ADD A, nn
+            dmgcpu.pc += 2;
+            entry = FlagTables.ADD[FlagTables.index(0, dmgcpu.a, b2)];
+            dmgcpu.a = entry & 0xFF;
+            dmgcpu.f = entry >> 8;
+            break;
+         case 0xCE:                 // ADC A, nn
+            dmgcpu.pc += 2;
+            entry = FlagTables.ADD[FlagTables.index((dmgcpu.f & dmgcpu.F_CARRY) >> 4, dmgcpu.a, b2)];
+            dmgcpu.a = entry & 0xFF;
+            dmgcpu.f = entry >> 8;
+            break;
+         case 0xD6:                 // SUB A, nn
+         case 0xDE:                 // SBC A, nn
+         case 0xE6:                 // AND nn
+         case 0xEE:                 // XOR A, nn
+         case 0xF6:                 // OR A, nn
+            dmgcpu.pc += 2;
+            alu((b1 & 0x38) >> 3, b2);
+            break;
+         case 0xFE:                 // CP nn
+            dmgcpu.pc += 2;
+            dmgcpu.f = (FlagTables.SUB[FlagTables.index(0, dmgcpu.a, b2)] >> 8) & ~dmgcpu.F_SUBTRACT;
+            break;
+         case 0xCB:                 // ExtOps
+            extOp(b2);
+            break;
+         case 0xE0:                 // LDH (FFnn), A
+            dmgcpu.pc += 2;
+            dmgcpu.addressWrite(0xFF00 + b2, dmgcpu.a);
+            break;
+         case 0xF0:                 // LDH A, (FFnn)
+            dmgcpu.pc += 2;
+            dmgcpu.a = Util.unsign(dmgcpu.addressRead(0xFF00 + b2));
+            break;
+         case 0xE2:                 // LDH (FF00 + C), A
+            dmgcpu.pc++;
+            dmgcpu.addressWrite(0xFF00 + (dmgcpu.bc & 0xFF), dmgcpu.a);
+            break;
+         case 0xE8:                 // ADD SP, nn
+            dmgcpu.pc += 2;
+            dmgcpu.sp += offset;
+            if ((dmgcpu.sp & 0xFFFF0000) != 0) {
+               dmgcpu.f = (dmgcpu.f & (dmgcpu.F_SUBTRACT + dmgcpu.F_ZERO + dmgcpu.F_HALFCARRY)) | dmgcpu.F_CARRY;
+               dmgcpu.sp &= 0xFFFF;
+            } else {
+               dmgcpu.f = dmgcpu.f & (dmgcpu.F_SUBTRACT + dmgcpu.F_ZERO + dmgcpu.F_HALFCARRY);
+            }
+            break;
+         case 0xF8:                 // LD HL, SP + nn
+            dmgcpu.pc += 2;
+            dmgcpu.hl = dmgcpu.sp + offset;
+            if ((dmgcpu.hl & 0x10000) != 0) {
+               dmgcpu.f = dmgcpu.F_CARRY;
+               dmgcpu.hl &= 0xFFFF;
+            } else {
+               dmgcpu.f = 0;
+            }
+            break;
+         case 0xEA:                 // LD (nnnn), A
+            dmgcpu.pc += 3;
+            dmgcpu.addressWrite((b3 << 8) + b2, dmgcpu.a);
+            break;
+         case 0xFA:                 // LD A, (nnnn)
+            dmgcpu.pc += 3;
+            dmgcpu.a = Util.unsign(dmgcpu.addressRead((b3 << 8) + b2));
+            break;
+         case 0xF9:                 // LD SP, HL
+            dmgcpu.pc++;
+            dmgcpu.sp = dmgcpu.hl;
+            break;
+         case 0xF3:                 // DI
+            dmgcpu.pc++;
+            dmgcpu.interruptsEnabled = false;
+            break;
+         case 0xFB:                 // EI
+            dmgcpu.pc++;
+            dmgcpu.ieDelay = 1;
+            break;
+         case 0xD3:
+         case 0xDB:
+         case 0xDD:
+         case 0xE3:
+         case 0xE4:
+         case 0xEB:
+         case 0xEC:
+         case 0xED:
+         case 0xF2:
+         case 0xF4:
+         case 0xFC:
+         case 0xFD:
+            System.out.println("Unrecognized opcode (" + Util.hexByte(b1) + ")");
+            dmgcpu.terminate = true;
+            dmgcpu.pc++;
+            break;
+         default:
+            if (b1 < 0x80) {        // LD r, r'
+               dmgcpu.pc++;
+               registerWrite((b1 & 0x38) >> 3, registerRead(b1 & 0x07));
+            } else {                // ALU A, r
+               dmgcpu.pc++;
+               alu((b1 & 0x38) >> 3, registerRead(b1 & 0x07));
+            }
+      }
+   }
+}
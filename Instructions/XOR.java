@@ -14,11 +14,11 @@ public class XOR extends Instruction{
    @Override
    public void execute(int b1, int b2, int b3, int offset){  
       dmgcpu.pc += 2;
-      dmgcpu.registers[a] ^= b2;
-      if (dmgcpu.registers[a] == 0) {
-         dmgcpu.f = dmgcpu.F_ZERO;
+      dmgcpu.a ^= b2;
+      if (dmgcpu.lazyFlagsEnable) {
+         dmgcpu.setLazyFlags(Dmgcpu.FLAGS_LOGIC, dmgcpu.a);
       } else {
-         dmgcpu.f = 0;
+         dmgcpu.f = FlagTables.LOGIC[dmgcpu.a] >> 8;
       }
    }
 }
@@ -14,7 +14,8 @@ public class XOR_AA extends Instruction{
    @Override
    public void execute(int b1, int b2, int b3, int offset){  
       dmgcpu.pc++;
-      dmgcpu.registers[a] = 0;
+      dmgcpu.a = 0;
+      dmgcpu.flagOp = Dmgcpu.FLAGS_DONE;
       dmgcpu.f = dmgcpu.F_ZERO;
    }
 }